@@ -0,0 +1,245 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import edu.biu.scapi.exceptions.CircuitFileFormatException;
+import edu.biu.scapi.exceptions.NoSuchPartyException;
+
+/**
+ * Reads and writes {@link BooleanCircuit}s in a compact binary format. <p>
+ * Loading a circuit from the binary format does not involve any parsing. The file is mapped into memory and the wire indices 
+ * are copied in bulk into flat arrays. The {@link Gate} objects are created only when the gates of the circuit are requested. <p>
+ * 
+ * The format supports circuits whose gates have at most two input wires and exactly one output wire. All numbers are big endian:
+ * <ul>
+ * <li> Header: the magic number 0x53434243 ("SCBC"), the format version, the number of gates and the number of parties. </li>
+ * <li> For each party: the number of its input wires followed by their indices. </li>
+ * <li> The number of output wires of the circuit followed by their indices. </li>
+ * <li> The first input wire of each gate (-1 if the gate has no inputs). </li>
+ * <li> The second input wire of each gate (-1 if the gate has less than two inputs). </li>
+ * <li> The output wire of each gate. </li>
+ * <li> The truth tables of the gates, four bits per gate. The table of gate i is held in bits 4*(i%2) to 4*(i%2)+3 of byte i/2. </li>
+ * </ul>
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public final class BinaryCircuitFormat {
+	
+	private static final int MAGIC = 0x53434243;
+	private static final int VERSION = 1;
+	
+	private BinaryCircuitFormat(){}
+	
+	/**
+	 * Converts a circuit file in the text format that is read by {@link BooleanCircuit#BooleanCircuit(File)} to the binary format.
+	 * @param textFile The circuit file in the text format.
+	 * @param binaryFile The file to write the binary format to.
+	 * @throws FileNotFoundException if the text file is not found.
+	 * @throws CircuitFileFormatException if there is a problem with the format of the text file or the circuit has a gate with 
+	 * more than two inputs or more than one output.
+	 * @throws IOException if the writing failed.
+	 */
+	public static void convert(File textFile, File binaryFile) throws FileNotFoundException, CircuitFileFormatException, IOException {
+		write(new BooleanCircuit(textFile), binaryFile);
+	}
+	
+	/**
+	 * Writes the given circuit in the binary format.
+	 * @param circuit The circuit to write.
+	 * @param f The file to write to.
+	 * @throws CircuitFileFormatException if the circuit has a gate with more than two inputs or more than one output.
+	 * @throws IOException if the writing failed.
+	 */
+	public static void write(BooleanCircuit circuit, File f) throws CircuitFileFormatException, IOException {
+		Gate[] gates = circuit.getGates();
+		
+		//Check that all the gates can be represented before creating the file.
+		for (Gate gate : gates){
+			if (gate.getInputWireIndices().length > 2 || gate.getOutputWireIndices().length != 1){
+				throw new CircuitFileFormatException();
+			}
+		}
+		
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(gates.length);
+			out.writeInt(circuit.getNumberOfParties());
+			for (int i = 1; i <= circuit.getNumberOfParties(); i++){
+				ArrayList<Integer> inputs = null;
+				try {
+					inputs = circuit.getInputWireIndices(i);
+				} catch (NoSuchPartyException e) {
+					// Should not occur since the parties numbers are between 1 to getNumberOfParties.
+				}
+				out.writeInt(inputs.size());
+				for (int w : inputs){
+					out.writeInt(w);
+				}
+			}
+			int[] outputs = circuit.getOutputWireIndices();
+			out.writeInt(outputs.length);
+			for (int w : outputs){
+				out.writeInt(w);
+			}
+			
+			for (Gate gate : gates){
+				int[] inputs = gate.getInputWireIndices();
+				out.writeInt(inputs.length > 0 ? inputs[0] : PackedGates.NO_WIRE);
+			}
+			for (Gate gate : gates){
+				int[] inputs = gate.getInputWireIndices();
+				out.writeInt(inputs.length > 1 ? inputs[1] : PackedGates.NO_WIRE);
+			}
+			for (Gate gate : gates){
+				out.writeInt(gate.getOutputWireIndices()[0]);
+			}
+			
+			//Pack the truth tables, two gates per byte.
+			for (int i = 0; i < gates.length; i += 2){
+				int packed = packTruthTable(gates[i].getTruthTable());
+				if (i + 1 < gates.length){
+					packed |= packTruthTable(gates[i + 1].getTruthTable()) << 4;
+				}
+				out.writeByte(packed);
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Returns the first four bits of the given truth table as an int.
+	 */
+	private static int packTruthTable(BitSet truthTable){
+		int packed = 0;
+		for (int j = 0; j < 4; j++){
+			if (truthTable.get(j)){
+				packed |= 1 << j;
+			}
+		}
+		return packed;
+	}
+	
+	/**
+	 * Loads a circuit that was written in the binary format. <p>
+	 * The file is read through a memory mapping, so no parsing is done and the gates are kept in flat arrays until they are needed.
+	 * @param f The file to read.
+	 * @return the loaded circuit.
+	 * @throws FileNotFoundException if f is not found.
+	 * @throws CircuitFileFormatException if the file is not a valid circuit file in the binary format.
+	 * @throws IOException if the reading failed.
+	 */
+	public static BooleanCircuit read(File f) throws FileNotFoundException, CircuitFileFormatException, IOException {
+		RandomAccessFile file = new RandomAccessFile(f, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			try {
+				return read(buffer);
+			} catch (BufferUnderflowException e) {
+				//The file is shorter than its header declares.
+				throw new CircuitFileFormatException();
+			}
+		} finally {
+			file.close();
+		}
+	}
+	
+	/**
+	 * Reads a circuit in the binary format from the given buffer.
+	 */
+	private static BooleanCircuit read(ByteBuffer buffer) throws CircuitFileFormatException {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION){
+			throw new CircuitFileFormatException();
+		}
+		int numberOfGates = buffer.getInt();
+		int numberOfParties = buffer.getInt();
+		if (numberOfGates < 0 || numberOfParties < 0){
+			throw new CircuitFileFormatException();
+		}
+		
+		ArrayList<ArrayList<Integer>> eachPartysInputWires = new ArrayList<ArrayList<Integer>>();
+		for (int i = 0; i < numberOfParties; i++){
+			int[] inputs = readInts(buffer);
+			ArrayList<Integer> partyInputs = new ArrayList<Integer>(inputs.length);
+			for (int w : inputs){
+				partyInputs.add(w);
+			}
+			eachPartysInputWires.add(partyInputs);
+		}
+		int[] outputWireIndices = readInts(buffer);
+		
+		int[] firstInputWires = readInts(buffer, numberOfGates);
+		int[] secondInputWires = readInts(buffer, numberOfGates);
+		int[] outputWires = readInts(buffer, numberOfGates);
+		byte[] truthTables = new byte[(numberOfGates + 1) / 2];
+		buffer.get(truthTables);
+		
+		return new BooleanCircuit(new PackedGates(firstInputWires, secondInputWires, outputWires, truthTables), outputWireIndices, eachPartysInputWires);
+	}
+	
+	/**
+	 * Reads an array that is preceded by its length.
+	 */
+	private static int[] readInts(ByteBuffer buffer) throws CircuitFileFormatException {
+		int length = buffer.getInt();
+		if (length < 0){
+			throw new CircuitFileFormatException();
+		}
+		return readInts(buffer, length);
+	}
+	
+	/**
+	 * Reads an array of the given length in bulk.
+	 */
+	private static int[] readInts(ByteBuffer buffer, int length) throws CircuitFileFormatException {
+		if (buffer.remaining() / 4 < length){
+			throw new CircuitFileFormatException();
+		}
+		int[] ints = new int[length];
+		IntBuffer view = buffer.asIntBuffer();
+		view.get(ints);
+		buffer.position(buffer.position() + 4 * length);
+		return ints;
+	}
+}
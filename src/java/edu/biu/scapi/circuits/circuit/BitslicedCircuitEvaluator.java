@@ -0,0 +1,312 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.biu.scapi.exceptions.NoSuchPartyException;
+import edu.biu.scapi.exceptions.NotAllInputsSetException;
+
+/**
+ * Evaluates a {@link BooleanCircuit} on many independent inputs at once. <p>
+ * The value of each wire is held in an array of longs, where bit i of word j holds the value of the wire in input assignment 
+ * number 64*j+i. Each gate is then computed on all the assignments together using word-wide boolean operations that are derived
+ * from its truth table. This is useful for testing circuits and checking outputs of protocols over large sets of inputs.<p>
+ * 
+ * The evaluator does not change the given circuit and can be used many times.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class BitslicedCircuitEvaluator {
+	
+	/**
+	 * The number of input assignments held in each word.
+	 */
+	public static final int LANES_PER_WORD = 64;
+	
+	//Operations of gates with two inputs, given by their truth tables.
+	private static final int NOR = 0x1;
+	private static final int XOR = 0x6;
+	private static final int NAND = 0x7;
+	private static final int AND = 0x8;
+	private static final int XNOR = 0x9;
+	private static final int OR = 0xE;
+	
+	//Operations of gates with other number of inputs.
+	private static final int UNARY = 0x10;	//One input; the truth table is held in the two lower bits.
+	private static final int CONSTANT = 0x20;	//No inputs; the truth table is held in the lowest bit.
+	private static final int GENERAL = 0x40;	//More than two inputs.
+	
+	private Gate[] gates;
+	private int[] operations;			//The operation of each gate.
+	private int numberOfWires;			// One more than the largest wire index in the circuit.
+	private int[] outputWireIndices;
+	private ArrayList<Integer> inputWireIndices = new ArrayList<Integer>();	//The input wires of all the parties.
+	
+	/**
+	 * Prepares the given circuit for the evaluation.
+	 * @param circuit The circuit to evaluate.
+	 */
+	public BitslicedCircuitEvaluator(BooleanCircuit circuit){
+		gates = circuit.getGates();
+		outputWireIndices = circuit.getOutputWireIndices();
+		for (int i = 1; i <= circuit.getNumberOfParties(); i++){
+			try {
+				inputWireIndices.addAll(circuit.getInputWireIndices(i));
+			} catch (NoSuchPartyException e) {
+				// Should not occur since the parties numbers are between 1 to getNumberOfParties.
+			}
+		}
+		
+		for (int w : inputWireIndices){
+			numberOfWires = Math.max(numberOfWires, w + 1);
+		}
+		for (int w : outputWireIndices){
+			numberOfWires = Math.max(numberOfWires, w + 1);
+		}
+		
+		operations = new int[gates.length];
+		for (int i = 0; i < gates.length; i++){
+			Gate gate = gates[i];
+			for (int w : gate.getInputWireIndices()){
+				numberOfWires = Math.max(numberOfWires, w + 1);
+			}
+			for (int w : gate.getOutputWireIndices()){
+				numberOfWires = Math.max(numberOfWires, w + 1);
+			}
+			
+			int numberOfInputs = gate.getInputWireIndices().length;
+			BitSet truthTable = gate.getTruthTable();
+			if (numberOfInputs == 2){
+				operations[i] = truthTableBits(truthTable, 4);
+			} else if (numberOfInputs == 1){
+				operations[i] = UNARY | truthTableBits(truthTable, 2);
+			} else if (numberOfInputs == 0){
+				operations[i] = CONSTANT | truthTableBits(truthTable, 1);
+			} else {
+				operations[i] = GENERAL;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the first bits of the given truth table as an int.
+	 */
+	private static int truthTableBits(BitSet truthTable, int length){
+		int bits = 0;
+		for (int j = 0; j < length; j++){
+			if (truthTable.get(j)){
+				bits |= 1 << j;
+			}
+		}
+		return bits;
+	}
+	
+	/**
+	 * Computes the circuit on a batch of input assignments.
+	 * @param inputs Maps the index of each input wire of the circuit to its values. Bit i of word j is the value of the wire in 
+	 * assignment number 64*j+i. All the arrays should have the same length.
+	 * @return a map from the index of each output wire of the circuit to its values, in the same layout as the inputs.
+	 * @throws NotAllInputsSetException if the given map does not include values for each input wire.
+	 * @throws IllegalArgumentException if the arrays of the inputs are not of the same length.
+	 */
+	public Map<Integer, long[]> compute(Map<Integer, long[]> inputs) throws NotAllInputsSetException {
+		int words = inputs.isEmpty() ? 1 : inputs.values().iterator().next().length;
+		long[] wires = new long[numberOfWires * words];
+		
+		for (int w : inputWireIndices){
+			long[] values = inputs.get(w);
+			if (values == null){
+				throw new NotAllInputsSetException();
+			}
+			if (values.length != words){
+				throw new IllegalArgumentException("all the inputs should have the same number of words");
+			}
+			System.arraycopy(values, 0, wires, w * words, words);
+		}
+		
+		//The gates are sorted topologically, so the inputs of each gate are computed before it.
+		for (int i = 0; i < gates.length; i++){
+			computeGate(i, wires, words);
+		}
+		
+		Map<Integer, long[]> outputs = new HashMap<Integer, long[]>();
+		for (int w : outputWireIndices){
+			long[] values = new long[words];
+			System.arraycopy(wires, w * words, values, 0, words);
+			outputs.put(w, values);
+		}
+		return outputs;
+	}
+	
+	/**
+	 * Computes the given gate on all the words.
+	 */
+	private void computeGate(int gate, long[] wires, int words){
+		int[] inputs = gates[gate].getInputWireIndices();
+		int[] outputs = gates[gate].getOutputWireIndices();
+		int out = outputs[0] * words;
+		int op = operations[gate];
+		
+		if (op < UNARY){
+			int a = inputs[0] * words;
+			int b = inputs[1] * words;
+			switch (op){
+			case AND:
+				for (int j = 0; j < words; j++){
+					wires[out + j] = wires[a + j] & wires[b + j];
+				}
+				break;
+			case XOR:
+				for (int j = 0; j < words; j++){
+					wires[out + j] = wires[a + j] ^ wires[b + j];
+				}
+				break;
+			case OR:
+				for (int j = 0; j < words; j++){
+					wires[out + j] = wires[a + j] | wires[b + j];
+				}
+				break;
+			case XNOR:
+				for (int j = 0; j < words; j++){
+					wires[out + j] = ~(wires[a + j] ^ wires[b + j]);
+				}
+				break;
+			case NAND:
+				for (int j = 0; j < words; j++){
+					wires[out + j] = ~(wires[a + j] & wires[b + j]);
+				}
+				break;
+			case NOR:
+				for (int j = 0; j < words; j++){
+					wires[out + j] = ~(wires[a + j] | wires[b + j]);
+				}
+				break;
+			default:
+				/*
+				 * Bit k of the truth table is the output when the first input is the bit 1 of k and the second input is bit 0 of k.
+				 * The output is the OR of the rows of the table whose bit is set.
+				 */
+				long m0 = -(long) (op & 1);
+				long m1 = -(long) ((op >> 1) & 1);
+				long m2 = -(long) ((op >> 2) & 1);
+				long m3 = -(long) ((op >> 3) & 1);
+				for (int j = 0; j < words; j++){
+					long x = wires[a + j];
+					long y = wires[b + j];
+					wires[out + j] = (~x & ~y & m0) | (~x & y & m1) | (x & ~y & m2) | (x & y & m3);
+				}
+			}
+		} else if (op < CONSTANT){
+			int a = inputs[0] * words;
+			long m0 = -(long) (op & 1);
+			long m1 = -(long) ((op >> 1) & 1);
+			for (int j = 0; j < words; j++){
+				long x = wires[a + j];
+				wires[out + j] = (~x & m0) | (x & m1);
+			}
+		} else if (op < GENERAL){
+			long value = -(long) (op & 1);
+			for (int j = 0; j < words; j++){
+				wires[out + j] = value;
+			}
+		} else {
+			computeGeneralGate(gates[gate].getTruthTable(), inputs, wires, out, words);
+		}
+		
+		//A gate with several output wires puts the same value in all of them.
+		for (int i = 1; i < outputs.length; i++){
+			System.arraycopy(wires, out, wires, outputs[i] * words, words);
+		}
+	}
+	
+	/**
+	 * Computes a gate with any number of inputs as the OR of the rows of its truth table that are set. <p>
+	 * As in {@link Gate}, the first input wire is the most significant bit of the row number.
+	 */
+	private void computeGeneralGate(BitSet truthTable, int[] inputs, long[] wires, int out, int words){
+		int n = inputs.length;
+		int rows = 1 << n;
+		for (int j = 0; j < words; j++){
+			long value = 0;
+			for (int row = truthTable.nextSetBit(0); row >= 0 && row < rows; row = truthTable.nextSetBit(row + 1)){
+				long term = -1L;
+				for (int k = 0; k < n; k++){
+					long x = wires[inputs[k] * words + j];
+					term &= (((row >> (n - 1 - k)) & 1) == 1) ? x : ~x;
+				}
+				value |= term;
+			}
+			wires[out + j] = value;
+		}
+	}
+	
+	/**
+	 * Packs the given input assignments into the layout that is used by {@link #compute(Map)}.
+	 * @param assignments A list of input assignments, each maps the index of an input wire to its value.
+	 * @return a map from each wire index to its values in all the assignments. Bit i of word j is the value in assignment 64*j+i.
+	 */
+	public static Map<Integer, long[]> pack(List<Map<Integer, Wire>> assignments){
+		int words = Math.max(1, (assignments.size() + LANES_PER_WORD - 1) / LANES_PER_WORD);
+		Map<Integer, long[]> packed = new HashMap<Integer, long[]>();
+		for (int i = 0; i < assignments.size(); i++){
+			for (Map.Entry<Integer, Wire> entry : assignments.get(i).entrySet()){
+				long[] values = packed.get(entry.getKey());
+				if (values == null){
+					values = new long[words];
+					packed.put(entry.getKey(), values);
+				}
+				if (entry.getValue().getValue() == 1){
+					values[i / LANES_PER_WORD] |= 1L << (i % LANES_PER_WORD);
+				}
+			}
+		}
+		return packed;
+	}
+	
+	/**
+	 * Extracts the separate assignments from values in the layout that is returned by {@link #compute(Map)}.
+	 * @param values Maps the index of each wire to its values in all the assignments.
+	 * @param count The number of assignments to extract.
+	 * @return a list that contains the values of the wires in each of the assignments.
+	 */
+	public static List<Map<Integer, Wire>> unpack(Map<Integer, long[]> values, int count){
+		List<Map<Integer, Wire>> assignments = new ArrayList<Map<Integer, Wire>>(count);
+		for (int i = 0; i < count; i++){
+			Map<Integer, Wire> assignment = new HashMap<Integer, Wire>();
+			for (Map.Entry<Integer, long[]> entry : values.entrySet()){
+				long word = entry.getValue()[i / LANES_PER_WORD];
+				assignment.put(entry.getKey(), new Wire((byte) ((word >>> (i % LANES_PER_WORD)) & 1)));
+			}
+			assignments.add(assignment);
+		}
+		return assignments;
+	}
+}
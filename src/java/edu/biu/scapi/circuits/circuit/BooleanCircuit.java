@@ -65,6 +65,16 @@ public class BooleanCircuit {
 	 * An array of the {@code Gate}s of this {@code BooleanCircuit} sorted topologically.
 	 */
 	private Gate[] gates;
+	
+	/**
+	 * The gates of a circuit that was loaded from the binary format. The {@code Gate}s are created from it on the first request.
+	 */
+	private PackedGates packedGates;
+	
+	/**
+	 * The indices of the gates grouped by their depth in the circuit. Computed on the first request.
+	 */
+	private int[][] levels;
   
 	/**
 	 * An array containing the indices of the output {@code Wire}s of this {@code BooleanCircuit}.
@@ -202,7 +212,31 @@ public class BooleanCircuit {
 		this.outputWireIndices = outputWireIndices;
 		this.eachPartysInputWires = eachPartysInputWires;
 		numberOfParties = eachPartysInputWires.size();
+		isInputSet = new boolean[numberOfParties];
+		for (int i = 0; i < numberOfParties; i++){
+			isInputSet[i] = eachPartysInputWires.get(i).isEmpty();
+		}
   	}
+	
+	/**
+	 * Constructs a {@code BooleanCircuit} whose gates are held in flat arrays. The {@link Gate} objects are created when they are 
+	 * first requested. Used by {@link BinaryCircuitFormat}.
+	 * 
+	 * @param packedGates The gates of the circuit.
+	 * @param outputWireIndices An array containing the indices of the wires that will be output of the {@code BooleanCircuit}.
+	 * @param eachPartysInputWires An arrayList containing the indices of the input {@code Wire}s of this
+	 * {@code BooleanCircuit} indexed by the party number.
+	 */
+	BooleanCircuit(PackedGates packedGates, int[] outputWireIndices, ArrayList<ArrayList<Integer>> eachPartysInputWires) {
+		this.packedGates = packedGates;
+		this.outputWireIndices = outputWireIndices;
+		this.eachPartysInputWires = eachPartysInputWires;
+		numberOfParties = eachPartysInputWires.size();
+		isInputSet = new boolean[numberOfParties];
+		for (int i = 0; i < numberOfParties; i++){
+			isInputSet[i] = eachPartysInputWires.get(i).isEmpty();
+		}
+	}
 
     /**
      * Sets the specified party's input to the circuit from a map containing constructed and set {@link Wire}s. <p>
@@ -308,9 +342,74 @@ public class BooleanCircuit {
 	 * @return an array of the {@link Gate}s of this circuit.
 	 */
 	public Gate[] getGates() {
+		if (gates == null && packedGates != null){
+			gates = packedGates.toGates();
+			packedGates = null;
+		}
 		return gates;
 	}
 
+	/**
+	 * Returns the gates of this circuit grouped into dependency levels. <p>
+	 * Level 0 contains the gates whose inputs are all input wires of the circuit, and level i contains the gates that have an 
+	 * input computed by a gate of level i-1. Thus, the gates of each level depend only on gates of previous levels and can be 
+	 * computed in any order (or in parallel) once the previous levels are done. <p>
+	 * The levels are computed once and cached. The returned arrays should not be modified.
+	 * @return an array of levels, each is an array of gate indices (positions in {@link #getGates()}) in ascending order.
+	 */
+	public int[][] getLevels() {
+		if (levels == null){
+			Gate[] allGates = getGates();
+			
+			//Find the number of wires in order to hold the level of each wire in an array.
+			int numberOfWires = 0;
+			for (Gate gate : allGates){
+				for (int w : gate.getInputWireIndices()){
+					numberOfWires = Math.max(numberOfWires, w + 1);
+				}
+				for (int w : gate.getOutputWireIndices()){
+					numberOfWires = Math.max(numberOfWires, w + 1);
+				}
+			}
+			
+			//The level of a wire is the level of the gate that computes it. The input wires of the circuit get level -1.
+			int[] wireLevels = new int[numberOfWires];
+			for (int w = 0; w < numberOfWires; w++){
+				wireLevels[w] = -1;
+			}
+			int[] gateLevels = new int[allGates.length];
+			int numberOfLevels = 0;
+			for (int i = 0; i < allGates.length; i++){
+				int level = 0;
+				for (int w : allGates[i].getInputWireIndices()){
+					level = Math.max(level, wireLevels[w] + 1);
+				}
+				for (int w : allGates[i].getOutputWireIndices()){
+					wireLevels[w] = level;
+				}
+				gateLevels[i] = level;
+				numberOfLevels = Math.max(numberOfLevels, level + 1);
+			}
+			
+			//Group the gates by their levels.
+			int[] levelSizes = new int[numberOfLevels];
+			for (int level : gateLevels){
+				levelSizes[level]++;
+			}
+			int[][] grouped = new int[numberOfLevels][];
+			for (int level = 0; level < numberOfLevels; level++){
+				grouped[level] = new int[levelSizes[level]];
+				levelSizes[level] = 0;
+			}
+			for (int i = 0; i < allGates.length; i++){
+				int level = gateLevels[i];
+				grouped[level][levelSizes[level]++] = i;
+			}
+			levels = grouped;
+		}
+		return levels;
+	}
+
 	/**
 	 * @return an array of the output{@link Wire} indices of this circuit.
   	 */
@@ -0,0 +1,514 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.biu.scapi.exceptions.NoSuchPartyException;
+
+/**
+ * Builds {@link BooleanCircuit}s programmatically, without going through a circuit file. <p>
+ * 
+ * The builder creates wires and gates as its methods are called. Each method returns the indices of the wires that hold the result, 
+ * which can be used as inputs to the following calls. Once all the gates were created, {@link #build(int[])} creates the circuit.<p>
+ * 
+ * Numbers are given as arrays of wires, where the first wire holds the least significant bit. All numbers are unsigned.<p>
+ * 
+ * The templates are designed for the Free XOR technique, where XOR and XNOR gates are free and only the other gates have garbled 
+ * tables. Hence, they use as few non XOR gates as possible: 
+ * an adder and a comparator use one AND gate per bit, a multiplexer uses one AND gate per bit, equality of n bits uses n-1 AND gates 
+ * and the hamming distance of n bits uses less than n AND gates. Constants and negations are created using XOR and XNOR gates, so 
+ * they are free as well.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class BooleanCircuitBuilder {
+	
+	private static final BitSet XOR_TRUTH_TABLE = truthTable(1, 2);
+	private static final BitSet XNOR_TRUTH_TABLE = truthTable(0, 3);
+	private static final BitSet AND_TRUTH_TABLE = truthTable(3);
+	private static final BitSet OR_TRUTH_TABLE = truthTable(1, 2, 3);
+	private static final BitSet AND_NOT_TRUTH_TABLE = truthTable(2);	//x AND (NOT y)
+	
+	private List<Gate> gates = new ArrayList<Gate>();
+	private ArrayList<ArrayList<Integer>> eachPartysInputWires = new ArrayList<ArrayList<Integer>>();
+	private int numberOfWires = 0;
+	private int zero = -1;	//The wire that holds the constant zero, if created.
+	private int one = -1;	//The wire that holds the constant one, if created.
+	
+	/**
+	 * Creates a builder of a circuit with the given number of parties.
+	 * @param numberOfParties The number of parties that give inputs to the circuit.
+	 */
+	public BooleanCircuitBuilder(int numberOfParties){
+		for (int i = 0; i < numberOfParties; i++){
+			eachPartysInputWires.add(new ArrayList<Integer>());
+		}
+	}
+	
+	/**
+	 * Adds input wires to the given party.
+	 * @param partyNumber The number of the party whose inputs are added.
+	 * @param numberOfInputs The number of input wires to add.
+	 * @return the indices of the new input wires.
+	 * @throws NoSuchPartyException In case the given party number is not valid.
+	 */
+	public int[] addInputs(int partyNumber, int numberOfInputs) throws NoSuchPartyException{
+		if (partyNumber < 1 || partyNumber > eachPartysInputWires.size()){
+			throw new NoSuchPartyException();
+		}
+		int[] wires = new int[numberOfInputs];
+		for (int i = 0; i < numberOfInputs; i++){
+			wires[i] = numberOfWires++;
+			eachPartysInputWires.get(partyNumber - 1).add(wires[i]);
+		}
+		return wires;
+	}
+	
+	/**
+	 * Creates the circuit from all the gates that were added so far. <p>
+	 * An output wire that is an input wire, or that appears more than once in the given array, is copied to a new wire using a 
+	 * free gate, so that the output wires of the circuit are distinct gate outputs.
+	 * @param outputWires The wires that are the output of the circuit.
+	 * @return the created circuit.
+	 */
+	public BooleanCircuit build(int[] outputWires){
+		Set<Integer> inputs = new HashSet<Integer>();
+		for (ArrayList<Integer> partyInputs : eachPartysInputWires){
+			inputs.addAll(partyInputs);
+		}
+		Set<Integer> usedOutputs = new HashSet<Integer>();
+		int[] outputs = new int[outputWires.length];
+		for (int i = 0; i < outputWires.length; i++){
+			outputs[i] = outputWires[i];
+			if (inputs.contains(outputs[i]) || !usedOutputs.add(outputs[i])){
+				outputs[i] = xor(outputs[i], zero());
+			}
+		}
+		
+		ArrayList<ArrayList<Integer>> inputWires = new ArrayList<ArrayList<Integer>>();
+		for (ArrayList<Integer> partyInputs : eachPartysInputWires){
+			inputWires.add(new ArrayList<Integer>(partyInputs));
+		}
+		return new BooleanCircuit(gates.toArray(new Gate[gates.size()]), outputs, inputWires);
+	}
+	
+	/**
+	 * Returns the number of gates added so far that are not XOR or XNOR gates.
+	 */
+	public int getNumberOfNonXorGates(){
+		int count = 0;
+		for (Gate gate : gates){
+			if (!gate.getTruthTable().equals(XOR_TRUTH_TABLE) && !gate.getTruthTable().equals(XNOR_TRUTH_TABLE)){
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	private static BitSet truthTable(int... rows){
+		BitSet truthTable = new BitSet();
+		for (int row : rows){
+			truthTable.set(row);
+		}
+		return truthTable;
+	}
+	
+	/**
+	 * Adds a gate with the given truth table and input wires.
+	 * @param truthTable The truth table of the gate. Like in {@link Gate}, the first input wire is the most significant bit of the row number.
+	 * @param inputWires The input wires of the gate.
+	 * @return the output wire of the gate.
+	 */
+	public int gate(BitSet truthTable, int... inputWires){
+		int outputWire = numberOfWires++;
+		gates.add(new Gate(gates.size(), (BitSet) truthTable.clone(), inputWires.clone(), new int[]{outputWire}));
+		return outputWire;
+	}
+	
+	/**
+	 * Returns a wire that holds the constant zero.
+	 * @throws IllegalStateException if there are no input wires yet.
+	 */
+	public int zero(){
+		if (zero == -1){
+			zero = gate(XOR_TRUTH_TABLE, anyInput(), anyInput());
+		}
+		return zero;
+	}
+	
+	/**
+	 * Returns a wire that holds the constant one.
+	 * @throws IllegalStateException if there are no input wires yet.
+	 */
+	public int one(){
+		if (one == -1){
+			one = gate(XNOR_TRUTH_TABLE, anyInput(), anyInput());
+		}
+		return one;
+	}
+	
+	/**
+	 * Constants are computed from an input wire, since a gate must have inputs.
+	 */
+	private int anyInput(){
+		for (ArrayList<Integer> partyInputs : eachPartysInputWires){
+			if (!partyInputs.isEmpty()){
+				return partyInputs.get(0);
+			}
+		}
+		throw new IllegalStateException("constants can be created only after an input wire was added");
+	}
+	
+	/**
+	 * Returns the XOR of the given wires.
+	 */
+	public int xor(int x, int y){
+		return gate(XOR_TRUTH_TABLE, x, y);
+	}
+	
+	/**
+	 * Returns the XNOR of the given wires.
+	 */
+	public int xnor(int x, int y){
+		return gate(XNOR_TRUTH_TABLE, x, y);
+	}
+	
+	/**
+	 * Returns the AND of the given wires.
+	 */
+	public int and(int x, int y){
+		return gate(AND_TRUTH_TABLE, x, y);
+	}
+	
+	/**
+	 * Returns the OR of the given wires.
+	 */
+	public int or(int x, int y){
+		return gate(OR_TRUTH_TABLE, x, y);
+	}
+	
+	/**
+	 * Returns the negation of the given wire, using a free XNOR gate.
+	 */
+	public int not(int x){
+		return xnor(x, zero());
+	}
+	
+	/**
+	 * Returns y if the selection bit is one and x otherwise, using a single AND gate.
+	 */
+	public int mux(int selection, int x, int y){
+		//x XOR (s AND (x XOR y))
+		return xor(x, and(selection, xor(x, y)));
+	}
+	
+	/**
+	 * Returns y if the selection bit is one and x otherwise.
+	 * @throws IllegalArgumentException if x and y are not of the same length.
+	 */
+	public int[] mux(int selection, int[] x, int[] y){
+		checkSameLength(x, y);
+		int[] result = new int[x.length];
+		for (int i = 0; i < x.length; i++){
+			result[i] = mux(selection, x[i], y[i]);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the XOR of the given numbers, bit by bit.
+	 * @throws IllegalArgumentException if x and y are not of the same length.
+	 */
+	public int[] xor(int[] x, int[] y){
+		checkSameLength(x, y);
+		int[] result = new int[x.length];
+		for (int i = 0; i < x.length; i++){
+			result[i] = xor(x[i], y[i]);
+		}
+		return result;
+	}
+	
+	private static void checkSameLength(int[] x, int[] y){
+		if (x.length != y.length){
+			throw new IllegalArgumentException("the given numbers should be of the same length");
+		}
+	}
+	
+	/**
+	 * Returns the AND of all the given bits, using a tree of AND gates of logarithmic depth.
+	 */
+	public int and(int[] bits){
+		if (bits.length == 0){
+			return one();
+		}
+		List<Integer> level = new ArrayList<Integer>();
+		for (int bit : bits){
+			level.add(bit);
+		}
+		while (level.size() > 1){
+			List<Integer> next = new ArrayList<Integer>();
+			for (int i = 0; i + 1 < level.size(); i += 2){
+				next.add(and(level.get(i), level.get(i + 1)));
+			}
+			if (level.size() % 2 == 1){
+				next.add(level.get(level.size() - 1));
+			}
+			level = next;
+		}
+		return level.get(0);
+	}
+	
+	/**
+	 * Returns the carry of x + y + carry, using a single AND gate.
+	 */
+	private int carry(int x, int y, int carry){
+		//The majority of x, y and carry.
+		return xor(carry, and(xor(x, carry), xor(y, carry)));
+	}
+	
+	/**
+	 * Adds the given numbers using a ripple carry adder. The numbers may be of different lengths.
+	 * @return the sum, whose length is one bit more than the longer number.
+	 */
+	public int[] add(int[] x, int[] y){
+		return add(x, y, -1);
+	}
+	
+	/**
+	 * Adds the given numbers and the given carry wire (or no carry, if the carry is -1) using a ripple carry adder.
+	 */
+	private int[] add(int[] x, int[] y, int carry){
+		if (x.length < y.length){
+			int[] temp = x;
+			x = y;
+			y = temp;
+		}
+		int[] sum = new int[x.length + 1];
+		for (int i = 0; i < x.length; i++){
+			if (i < y.length){
+				if (carry == -1){
+					sum[i] = xor(x[i], y[i]);
+					carry = and(x[i], y[i]);
+				} else {
+					sum[i] = xor(xor(x[i], y[i]), carry);
+					carry = carry(x[i], y[i], carry);
+				}
+			} else {
+				if (carry == -1){
+					sum[i] = xor(x[i], zero());
+				} else {
+					sum[i] = xor(x[i], carry);
+					carry = and(x[i], carry);
+				}
+			}
+		}
+		sum[x.length] = (carry == -1) ? zero() : carry;
+		return sum;
+	}
+	
+	/**
+	 * Adds the given numbers using a carry select adder. <p>
+	 * The numbers are split into blocks. Each block except the first is added twice, assuming carry zero and carry one, and the 
+	 * carry of the previous block selects the right sum. This reduces the depth of the circuit at the cost of more AND gates.
+	 * @param blockSize The number of bits in each block.
+	 * @return the sum, whose length is one bit more than the given numbers.
+	 * @throws IllegalArgumentException if x and y are not of the same length or if the block size is not positive.
+	 */
+	public int[] carrySelectAdd(int[] x, int[] y, int blockSize){
+		checkSameLength(x, y);
+		if (blockSize < 1){
+			throw new IllegalArgumentException("the block size should be positive");
+		}
+		int[] sum = new int[x.length + 1];
+		int carry = -1;
+		for (int start = 0; start < x.length; start += blockSize){
+			int length = Math.min(blockSize, x.length - start);
+			int[] xBlock = new int[length];
+			int[] yBlock = new int[length];
+			System.arraycopy(x, start, xBlock, 0, length);
+			System.arraycopy(y, start, yBlock, 0, length);
+			int[] blockSum;
+			if (carry == -1){
+				blockSum = add(xBlock, yBlock, -1);
+			} else {
+				blockSum = mux(carry, add(xBlock, yBlock, -1), add(xBlock, yBlock, one()));
+			}
+			System.arraycopy(blockSum, 0, sum, start, length);
+			carry = blockSum[length];
+		}
+		sum[x.length] = (carry == -1) ? zero() : carry;
+		return sum;
+	}
+	
+	/**
+	 * Returns a wire that is one if x > y, using a single AND gate per bit.
+	 * @throws IllegalArgumentException if x and y are not of the same length.
+	 */
+	public int greaterThan(int[] x, int[] y){
+		checkSameLength(x, y);
+		if (x.length == 0){
+			return zero();
+		}
+		//x > y if and only if x + (NOT y) has a carry.
+		int carry = gate(AND_NOT_TRUTH_TABLE, x[0], y[0]);
+		for (int i = 1; i < x.length; i++){
+			carry = xor(carry, and(xor(x[i], carry), xnor(y[i], carry)));
+		}
+		return carry;
+	}
+	
+	/**
+	 * Returns a wire that is one if x < y.
+	 * @throws IllegalArgumentException if x and y are not of the same length.
+	 */
+	public int lessThan(int[] x, int[] y){
+		return greaterThan(y, x);
+	}
+	
+	/**
+	 * Returns a wire that is one if x >= y.
+	 * @throws IllegalArgumentException if x and y are not of the same length.
+	 */
+	public int greaterOrEqual(int[] x, int[] y){
+		return not(lessThan(x, y));
+	}
+	
+	/**
+	 * Returns a wire that is one if x <= y.
+	 * @throws IllegalArgumentException if x and y are not of the same length.
+	 */
+	public int lessOrEqual(int[] x, int[] y){
+		return not(greaterThan(x, y));
+	}
+	
+	/**
+	 * Returns a wire that is one if x == y, using length-1 AND gates.
+	 * @throws IllegalArgumentException if x and y are not of the same length.
+	 */
+	public int equal(int[] x, int[] y){
+		checkSameLength(x, y);
+		int[] sameBits = new int[x.length];
+		for (int i = 0; i < x.length; i++){
+			sameBits[i] = xnor(x[i], y[i]);
+		}
+		return and(sameBits);
+	}
+	
+	/**
+	 * Returns the number of bits that are one in the given wires. <p>
+	 * The bits of each weight are compressed using full adders (and a half adder when two bits are left), so that the count 
+	 * uses less AND gates than the number of given bits.
+	 * @return the count, with as many bits as needed to hold the number of given bits.
+	 */
+	public int[] count(int[] bits){
+		List<List<Integer>> columns = new ArrayList<List<Integer>>();
+		List<Integer> first = new ArrayList<Integer>();
+		for (int bit : bits){
+			first.add(bit);
+		}
+		columns.add(first);
+		List<Integer> result = new ArrayList<Integer>();
+		for (int weight = 0; weight < columns.size(); weight++){
+			List<Integer> column = columns.get(weight);
+			if (column.size() > 1 && weight + 1 == columns.size()){
+				columns.add(new ArrayList<Integer>());
+			}
+			while (column.size() > 1){
+				int x = column.remove(column.size() - 1);
+				int y = column.remove(column.size() - 1);
+				if (column.isEmpty()){
+					//Half adder.
+					column.add(xor(x, y));
+					columns.get(weight + 1).add(and(x, y));
+				} else {
+					//Full adder.
+					int z = column.remove(column.size() - 1);
+					column.add(xor(xor(x, y), z));
+					columns.get(weight + 1).add(carry(x, y, z));
+				}
+			}
+			result.add(column.isEmpty() ? zero() : column.get(0));
+		}
+		int[] count = new int[result.size()];
+		for (int i = 0; i < count.length; i++){
+			count[i] = result.get(i);
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the number of bits in which x and y differ.
+	 * @throws IllegalArgumentException if x and y are not of the same length.
+	 */
+	public int[] hammingDistance(int[] x, int[] y){
+		return count(xor(x, y));
+	}
+	
+	/**
+	 * Returns the minimum of the given numbers, using a tree of comparators.
+	 * @throws IllegalArgumentException if there are no numbers or the numbers are not of the same length.
+	 */
+	public int[] min(int[]... values){
+		return select(values, true);
+	}
+	
+	/**
+	 * Returns the maximum of the given numbers, using a tree of comparators.
+	 * @throws IllegalArgumentException if there are no numbers or the numbers are not of the same length.
+	 */
+	public int[] max(int[]... values){
+		return select(values, false);
+	}
+	
+	private int[] select(int[][] values, boolean isMin){
+		if (values.length == 0){
+			throw new IllegalArgumentException("there should be at least one number");
+		}
+		List<int[]> level = new ArrayList<int[]>();
+		for (int[] value : values){
+			level.add(value);
+		}
+		while (level.size() > 1){
+			List<int[]> next = new ArrayList<int[]>();
+			for (int i = 0; i + 1 < level.size(); i += 2){
+				int[] x = level.get(i);
+				int[] y = level.get(i + 1);
+				int isGreater = greaterThan(x, y);
+				next.add(isMin ? mux(isGreater, x, y) : mux(isGreater, y, x));
+			}
+			if (level.size() % 2 == 1){
+				next.add(level.get(level.size() - 1));
+			}
+			level = next;
+		}
+		return level.get(0);
+	}
+}
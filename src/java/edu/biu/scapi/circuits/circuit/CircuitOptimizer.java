@@ -0,0 +1,516 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.biu.scapi.exceptions.NoSuchPartyException;
+
+/**
+ * Optimizes a {@link BooleanCircuit} for garbling with the Free XOR technique. <p>
+ * 
+ * The optimizer builds a new circuit that computes the same outputs using the following passes:<p>
+ * 1. Constant propagation - inputs of a gate that are known to be constant are removed from its truth table, and gates whose 
+ * output is constant are removed.<p>
+ * 2. Identity and negation removal - gates that pass (or negate) one of their inputs are removed, and the negations are folded 
+ * into the truth tables of the gates that use them.<p>
+ * 3. XOR rewriting - each input that a gate's output depends on linearly is split out of the gate as a free XOR gate. Hence, 
+ * a two input gate whose truth table has an even number of ones becomes an XOR gate, and any other two input gate becomes an 
+ * AND gate (with negated inputs or output, if needed). Gates with more inputs lose the inputs that are XORed to their result.<p>
+ * 4. Common subexpression elimination - gates that compute the same function of the same wires are merged.<p>
+ * 5. Dead gate elimination - only gates that some output depends on are kept.<p>
+ * 
+ * The wires of the new circuit are renumbered: the input wires of all the parties come first (in the order of the parties), 
+ * followed by the output wires of the gates. {@link #getWireMapping()} gives the new indices of the original input and 
+ * output wires. The new circuit has an output wire for each output wire of the original circuit, in the same order.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class CircuitOptimizer {
+	
+	/*
+	 * During the optimization, the value of each wire is described by a literal, which is a node number and a negation bit: 
+	 * literal = 2*node + negation. Node 0 is the constant zero; thus literal 0 is false and literal 1 is true. 
+	 * The input wires are the next nodes, and each distinct gate of the optimized circuit is a node after them.
+	 */
+	private static final int FALSE = 0;
+	private static final int TRUE = 1;
+	
+	//The kinds of the gate nodes.
+	private static final int INPUT = 0;
+	private static final int XOR = 1;		//The XOR of two nodes.
+	private static final int AND = 2;		//The AND of two literals.
+	private static final int GENERAL = 3;	//Any function of three or more nodes, given by a truth table.
+	
+	private static final BitSet XOR_TRUTH_TABLE = truthTable(1, 2);
+	private static final BitSet XNOR_TRUTH_TABLE = truthTable(0, 3);
+	
+	/**
+	 * A node of the optimized circuit.
+	 */
+	private static class Node {
+		int kind;
+		int[] inputs;		//Nodes for XOR and GENERAL nodes, literals for AND nodes.
+		BitSet truthTable;	//The truth table of a GENERAL node, over its input nodes.
+		
+		Node(int kind, int[] inputs, BitSet truthTable){
+			this.kind = kind;
+			this.inputs = inputs;
+			this.truthTable = truthTable;
+		}
+	}
+	
+	private List<Node> nodes = new ArrayList<Node>();
+	private Map<String, Integer> existingNodes = new HashMap<String, Integer>();	//Used to find common subexpressions.
+	
+	private BooleanCircuit optimizedCircuit;
+	private Map<Integer, Integer> wireMapping = new HashMap<Integer, Integer>();
+	private int nonFreeGatesBefore;
+	private int nonFreeGatesAfter;
+	
+	/**
+	 * Optimizes the given circuit. The given circuit is not changed.
+	 * @param circuit The circuit to optimize.
+	 * @throws IllegalArgumentException if a gate uses a wire that is not an input wire and is not the output of a previous gate.
+	 */
+	public CircuitOptimizer(BooleanCircuit circuit){
+		Gate[] gates = circuit.getGates();
+		nonFreeGatesBefore = countNonFreeGates(gates);
+		
+		//The constant node.
+		nodes.add(null);
+		
+		//Create a node for each input wire.
+		Map<Integer, Integer> wireLiterals = new HashMap<Integer, Integer>();
+		ArrayList<ArrayList<Integer>> eachPartysInputWires = new ArrayList<ArrayList<Integer>>();
+		for (int party = 1; party <= circuit.getNumberOfParties(); party++){
+			ArrayList<Integer> partyInputs = new ArrayList<Integer>();
+			try {
+				for (int wire : circuit.getInputWireIndices(party)){
+					wireMapping.put(wire, nodes.size() - 1);
+					partyInputs.add(nodes.size() - 1);
+					wireLiterals.put(wire, 2 * nodes.size());
+					nodes.add(new Node(INPUT, null, null));
+				}
+			} catch (NoSuchPartyException e) {
+				// Should not occur since the party numbers are between 1 to getNumberOfParties.
+			}
+			eachPartysInputWires.add(partyInputs);
+		}
+		int numberOfInputs = nodes.size() - 1;
+		
+		//Translate each gate into a literal, creating nodes as needed.
+		for (Gate gate : gates){
+			int[] inputWires = gate.getInputWireIndices();
+			int[] literals = new int[inputWires.length];
+			for (int i = 0; i < inputWires.length; i++){
+				Integer literal = wireLiterals.get(inputWires[i]);
+				if (literal == null){
+					throw new IllegalArgumentException("wire " + inputWires[i] + " is used by gate " + gate.getGateNumber() + " before it is set");
+				}
+				literals[i] = literal;
+			}
+			int literal = simplify(literals, gate.getTruthTable());
+			for (int w : gate.getOutputWireIndices()){
+				wireLiterals.put(w, literal);
+			}
+		}
+		
+		int[] outputWires = circuit.getOutputWireIndices();
+		int[] outputLiterals = new int[outputWires.length];
+		for (int i = 0; i < outputWires.length; i++){
+			Integer literal = wireLiterals.get(outputWires[i]);
+			if (literal == null){
+				throw new IllegalArgumentException("output wire " + outputWires[i] + " is not set by any gate");
+			}
+			outputLiterals[i] = literal;
+		}
+		
+		optimizedCircuit = createCircuit(numberOfInputs, eachPartysInputWires, outputWires, outputLiterals);
+		nonFreeGatesAfter = countNonFreeGates(optimizedCircuit.getGates());
+	}
+	
+	/**
+	 * Returns the optimized circuit.
+	 */
+	public BooleanCircuit getOptimizedCircuit(){
+		return optimizedCircuit;
+	}
+	
+	/**
+	 * Returns a map from each input and output wire of the original circuit to its index in the optimized circuit.
+	 */
+	public Map<Integer, Integer> getWireMapping(){
+		return wireMapping;
+	}
+	
+	/**
+	 * Returns the number of gates of the original circuit that are not free in a Free XOR circuit, i.e. are not XOR or XNOR gates.
+	 */
+	public int getNonFreeGatesBefore(){
+		return nonFreeGatesBefore;
+	}
+	
+	/**
+	 * Returns the number of gates of the optimized circuit that are not free in a Free XOR circuit, i.e. are not XOR or XNOR gates.
+	 */
+	public int getNonFreeGatesAfter(){
+		return nonFreeGatesAfter;
+	}
+	
+	/**
+	 * Counts the gates that have a garbled table in a Free XOR circuit.
+	 */
+	private static int countNonFreeGates(Gate[] gates){
+		int count = 0;
+		for (Gate gate : gates){
+			BitSet truthTable = gate.getTruthTable();
+			if (!truthTable.equals(XOR_TRUTH_TABLE) && !truthTable.equals(XNOR_TRUTH_TABLE)){
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	private static BitSet truthTable(int... rows){
+		BitSet truthTable = new BitSet();
+		for (int row : rows){
+			truthTable.set(row);
+		}
+		return truthTable;
+	}
+	
+	/**
+	 * Returns the truth table of the function that is created from the given function by replacing its inputs.<p>
+	 * Input i of the given function is replaced by input sources[i] of the new function, or by the constant zero or one if 
+	 * sources[i] is -1 or -2, respectively. Like in {@link Gate}, the first input is the most significant bit of the row number.
+	 * @param truthTable The truth table of the given function.
+	 * @param sources The replacement of each input of the given function.
+	 * @param numberOfInputs The number of inputs of the new function.
+	 */
+	private static BitSet substitute(BitSet truthTable, int[] sources, int numberOfInputs){
+		int k = sources.length;
+		BitSet result = new BitSet();
+		for (int row = 0; row < (1 << numberOfInputs); row++){
+			int originalRow = 0;
+			for (int i = 0; i < k; i++){
+				int bit;
+				if (sources[i] >= 0){
+					bit = (row >> (numberOfInputs - 1 - sources[i])) & 1;
+				} else {
+					bit = (sources[i] == -2) ? 1 : 0;
+				}
+				originalRow |= bit << (k - 1 - i);
+			}
+			if (truthTable.get(originalRow)){
+				result.set(row);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the truth table of the given function where the given input is fixed to the given value.
+	 */
+	private static BitSet restrict(BitSet truthTable, int numberOfInputs, int input, boolean value){
+		int[] sources = new int[numberOfInputs];
+		for (int i = 0; i < numberOfInputs; i++){
+			sources[i] = (i < input) ? i : i - 1;
+		}
+		sources[input] = value ? -2 : -1;
+		return substitute(truthTable, sources, numberOfInputs - 1);
+	}
+	
+	/**
+	 * Returns a literal that holds the value of a gate with the given input literals and truth table. 
+	 * New nodes are created only if there are no existing nodes that compute the same values.
+	 */
+	private int simplify(int[] literals, BitSet truthTable){
+		int k = literals.length;
+		
+		//Fold the negated inputs into the truth table, replace the constant inputs and merge the inputs that are the same node.
+		BitSet table = new BitSet();
+		for (int row = 0; row < (1 << k); row++){
+			int originalRow = row;
+			for (int i = 0; i < k; i++){
+				if ((literals[i] & 1) == 1){
+					originalRow ^= 1 << (k - 1 - i);
+				}
+			}
+			if (truthTable.get(originalRow)){
+				table.set(row);
+			}
+		}
+		List<Integer> inputs = new ArrayList<Integer>();
+		int[] sources = new int[k];
+		for (int i = 0; i < k; i++){
+			int node = literals[i] >> 1;
+			if (node == 0){
+				sources[i] = -1;
+			} else {
+				if (!inputs.contains(node)){
+					inputs.add(node);
+				}
+				sources[i] = inputs.indexOf(node);
+			}
+		}
+		table = substitute(table, sources, inputs.size());
+		
+		//Remove the inputs that the function does not depend on and split out the inputs that it depends on linearly.
+		List<Integer> xorInputs = new ArrayList<Integer>();
+		boolean changed = true;
+		while (changed){
+			changed = false;
+			for (int i = 0; i < inputs.size() && !changed; i++){
+				BitSet zeroTable = restrict(table, inputs.size(), i, false);
+				BitSet oneTable = restrict(table, inputs.size(), i, true);
+				BitSet difference = (BitSet) zeroTable.clone();
+				difference.xor(oneTable);
+				if (difference.isEmpty() || difference.cardinality() == 1 << (inputs.size() - 1)){
+					if (!difference.isEmpty()){
+						xorInputs.add(2 * inputs.get(i));
+					}
+					inputs.remove(i);
+					table = zeroTable;
+					changed = true;
+				}
+			}
+		}
+		
+		//Create the node of the rest of the function.
+		int literal;
+		if (inputs.isEmpty()){
+			literal = table.get(0) ? TRUE : FALSE;
+		} else if (inputs.size() == 2){
+			//The table has an odd number of ones, otherwise both inputs would have been split out.
+			//Thus it is ((a XOR alpha) AND (b XOR beta)) XOR gamma.
+			boolean gamma = table.cardinality() == 3;
+			int row = 0;
+			while (table.get(row) == gamma){
+				row++;
+			}
+			int a = 2 * inputs.get(0) + 1 - (row >> 1);
+			int b = 2 * inputs.get(1) + 1 - (row & 1);
+			literal = and(a, b) ^ (gamma ? 1 : 0);
+		} else {
+			literal = general(inputs, table);
+		}
+		
+		for (int xorInput : xorInputs){
+			literal = xor(literal, xorInput);
+		}
+		return literal;
+	}
+	
+	/**
+	 * Returns the node with the given key, creating it if it does not exist yet.
+	 */
+	private int getNode(String key, int kind, int[] inputs, BitSet truthTable){
+		Integer node = existingNodes.get(key);
+		if (node == null){
+			node = nodes.size();
+			nodes.add(new Node(kind, inputs, truthTable));
+			existingNodes.put(key, node);
+		}
+		return node;
+	}
+	
+	/**
+	 * Returns a literal that holds the XOR of the given literals.
+	 */
+	private int xor(int a, int b){
+		int negation = (a ^ b) & 1;
+		int first = Math.min(a >> 1, b >> 1);
+		int second = Math.max(a >> 1, b >> 1);
+		if (first == second){
+			return negation;
+		}
+		if (first == 0){
+			return 2 * second + negation;
+		}
+		int node = getNode("X" + first + "," + second, XOR, new int[]{first, second}, null);
+		return 2 * node + negation;
+	}
+	
+	/**
+	 * Returns a literal that holds the AND of the given literals.
+	 */
+	private int and(int a, int b){
+		int first = Math.min(a, b);
+		int second = Math.max(a, b);
+		if (first == FALSE){
+			return FALSE;
+		}
+		if (first == TRUE){
+			return second;
+		}
+		if (first == second){
+			return first;
+		}
+		if ((first ^ 1) == second){
+			return FALSE;
+		}
+		return 2 * getNode("A" + first + "," + second, AND, new int[]{first, second}, null);
+	}
+	
+	/**
+	 * Returns a literal that holds the given function of the given nodes.
+	 */
+	private int general(List<Integer> inputs, BitSet truthTable){
+		//Sort the inputs, so that the same function of the same nodes always has the same key.
+		Integer[] sorted = inputs.toArray(new Integer[inputs.size()]);
+		Arrays.sort(sorted);
+		int[] nodeInputs = new int[sorted.length];
+		int[] sources = new int[sorted.length];
+		for (int i = 0; i < sorted.length; i++){
+			nodeInputs[i] = sorted[i];
+			sources[i] = Arrays.binarySearch(sorted, inputs.get(i));
+		}
+		BitSet sortedTable = substitute(truthTable, sources, sorted.length);
+		return 2 * getNode("G" + Arrays.toString(nodeInputs) + sortedTable, GENERAL, nodeInputs, sortedTable);
+	}
+	
+	/**
+	 * Creates the optimized circuit from the nodes that the outputs depend on.
+	 * @param numberOfInputs The number of input wires. The input wires of the new circuit are 0, ..., numberOfInputs-1.
+	 * @param eachPartysInputWires The new indices of the input wires of each party.
+	 * @param outputWires The original indices of the output wires.
+	 * @param outputLiterals The literal of each output wire.
+	 */
+	private BooleanCircuit createCircuit(int numberOfInputs, ArrayList<ArrayList<Integer>> eachPartysInputWires, int[] outputWires, int[] outputLiterals){
+		int numberOfNodes = nodes.size();
+		
+		//Find the nodes that the outputs depend on.
+		boolean[] isLive = new boolean[numberOfNodes];
+		for (int literal : outputLiterals){
+			isLive[literal >> 1] = true;
+		}
+		for (int node = numberOfNodes - 1; node > numberOfInputs; node--){
+			if (isLive[node]){
+				Node n = nodes.get(node);
+				for (int input : n.inputs){
+					isLive[(n.kind == AND) ? input >> 1 : input] = true;
+				}
+			}
+		}
+		
+		//The wire of each gate node holds the value of the node, unless it is the output wire of a negated output literal.
+		//In that case, the wire holds the negated value and the gates that use it fold the negation into their truth table.
+		boolean[] isInverted = new boolean[numberOfNodes];
+		boolean[] isOutputOfNode = new boolean[outputLiterals.length];
+		boolean[] isClaimed = new boolean[numberOfNodes];
+		for (int i = 0; i < outputLiterals.length; i++){
+			int node = outputLiterals[i] >> 1;
+			if (node > numberOfInputs && !isClaimed[node]){
+				isClaimed[node] = true;
+				isInverted[node] = (outputLiterals[i] & 1) == 1;
+				isOutputOfNode[i] = true;
+			}
+		}
+		
+		//Create a gate for each live node.
+		int[] nodeWires = new int[numberOfNodes];
+		for (int node = 1; node <= numberOfInputs; node++){
+			nodeWires[node] = node - 1;
+		}
+		List<Gate> gates = new ArrayList<Gate>();
+		for (int node = numberOfInputs + 1; node < numberOfNodes; node++){
+			if (!isLive[node]){
+				continue;
+			}
+			Node n = nodes.get(node);
+			int k = n.inputs.length;
+			int[] inputWires = new int[k];
+			int[] inputNodes = new int[k];
+			for (int i = 0; i < k; i++){
+				inputNodes[i] = (n.kind == AND) ? n.inputs[i] >> 1 : n.inputs[i];
+				inputWires[i] = nodeWires[inputNodes[i]];
+			}
+			BitSet truthTable = new BitSet();
+			for (int row = 0; row < (1 << k); row++){
+				//Compute the values of the input nodes from the values of their wires.
+				int nodeRow = row;
+				for (int i = 0; i < k; i++){
+					if (isInverted[inputNodes[i]]){
+						nodeRow ^= 1 << (k - 1 - i);
+					}
+				}
+				boolean value;
+				if (n.kind == XOR){
+					value = Integer.bitCount(nodeRow) == 1;
+				} else if (n.kind == AND){
+					value = (((nodeRow >> 1) ^ n.inputs[0]) & (nodeRow ^ n.inputs[1]) & 1) == 1;
+				} else {
+					value = n.truthTable.get(nodeRow);
+				}
+				if (value != isInverted[node]){
+					truthTable.set(row);
+				}
+			}
+			nodeWires[node] = numberOfInputs + gates.size();
+			gates.add(new Gate(gates.size(), truthTable, inputWires, new int[]{nodeWires[node]}));
+		}
+		
+		//Outputs that are not held by the wire of a node get a gate that copies, negates or sets them. 
+		//These are free XOR and XNOR gates with a wire that holds zero, which is the XOR of the first input wire with itself.
+		int[] outputWireIndices = new int[outputLiterals.length];
+		int zeroWire = -1;
+		for (int i = 0; i < outputLiterals.length; i++){
+			int node = outputLiterals[i] >> 1;
+			boolean negation = ((outputLiterals[i] & 1) == 1) != isInverted[node];
+			if (isOutputOfNode[i]){
+				outputWireIndices[i] = nodeWires[node];
+			} else {
+				int[] inputWires;
+				BitSet truthTable;
+				if (numberOfInputs > 0){
+					if (node != 0 && zeroWire == -1){
+						zeroWire = numberOfInputs + gates.size();
+						gates.add(new Gate(gates.size(), truthTable(1, 2), new int[]{0, 0}, new int[]{zeroWire}));
+					}
+					inputWires = (node != 0) ? new int[]{nodeWires[node], zeroWire} : new int[]{0, 0};
+					truthTable = negation ? truthTable(0, 3) : truthTable(1, 2);
+				} else {
+					inputWires = new int[0];
+					truthTable = negation ? truthTable(0) : truthTable();
+				}
+				outputWireIndices[i] = numberOfInputs + gates.size();
+				gates.add(new Gate(gates.size(), truthTable, inputWires, new int[]{outputWireIndices[i]}));
+			}
+			//A wire that is both an input and an output of the original circuit is mapped to its new input wire.
+			if (!wireMapping.containsKey(outputWires[i])){
+				wireMapping.put(outputWires[i], outputWireIndices[i]);
+			}
+		}
+		
+		return new BooleanCircuit(gates.toArray(new Gate[gates.size()]), outputWireIndices, eachPartysInputWires);
+	}
+}
@@ -0,0 +1,120 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.util.BitSet;
+
+/**
+ * Holds the gates of a circuit as flat arrays instead of {@link Gate} objects. <p>
+ * Each gate has at most two input wires and exactly one output wire, and its truth table is packed into four bits 
+ * (two gates per byte). The {@link Gate} objects are created only when they are requested.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+final class PackedGates {
+	
+	/**
+	 * Marks a missing input wire of a gate that has less than two inputs.
+	 */
+	static final int NO_WIRE = -1;
+	
+	private final int[] firstInputWires;	//The first input wire of each gate, or NO_WIRE.
+	private final int[] secondInputWires;	//The second input wire of each gate, or NO_WIRE.
+	private final int[] outputWires;		//The output wire of each gate.
+	private final byte[] truthTables;		//The truth tables of the gates, four bits per gate.
+	
+	/**
+	 * Sets the given arrays.
+	 * @param firstInputWires The first input wire of each gate, or NO_WIRE if the gate has no inputs.
+	 * @param secondInputWires The second input wire of each gate, or NO_WIRE if the gate has less than two inputs.
+	 * @param outputWires The output wire of each gate.
+	 * @param truthTables The truth tables of the gates. The table of gate i is held in bits 4*(i%2) to 4*(i%2)+3 of byte i/2.
+	 */
+	PackedGates(int[] firstInputWires, int[] secondInputWires, int[] outputWires, byte[] truthTables){
+		this.firstInputWires = firstInputWires;
+		this.secondInputWires = secondInputWires;
+		this.outputWires = outputWires;
+		this.truthTables = truthTables;
+	}
+	
+	/**
+	 * Returns the number of gates.
+	 */
+	int size(){
+		return outputWires.length;
+	}
+	
+	int getFirstInputWire(int gate){
+		return firstInputWires[gate];
+	}
+	
+	int getSecondInputWire(int gate){
+		return secondInputWires[gate];
+	}
+	
+	int getOutputWire(int gate){
+		return outputWires[gate];
+	}
+	
+	/**
+	 * Returns the truth table of the given gate, where bit j of the result is bit j of the gate's truth table.
+	 */
+	int getTruthTable(int gate){
+		return (truthTables[gate >> 1] >> ((gate & 1) << 2)) & 0xF;
+	}
+	
+	/**
+	 * Creates the {@link Gate} objects of the circuit. <p>
+	 * Gates that have the same truth table share the same {@code BitSet} instance, which must not be modified.
+	 * @return the created gates.
+	 */
+	Gate[] toGates(){
+		BitSet[] tables = new BitSet[16];
+		for (int i = 0; i < tables.length; i++){
+			tables[i] = new BitSet();
+			for (int j = 0; j < 4; j++){
+				if ((i & (1 << j)) != 0){
+					tables[i].set(j);
+				}
+			}
+		}
+		
+		int length = size();
+		Gate[] gates = new Gate[length];
+		for (int i = 0; i < length; i++){
+			int[] inputWireIndices;
+			if (firstInputWires[i] == NO_WIRE){
+				inputWireIndices = new int[0];
+			} else if (secondInputWires[i] == NO_WIRE){
+				inputWireIndices = new int[]{firstInputWires[i]};
+			} else {
+				inputWireIndices = new int[]{firstInputWires[i], secondInputWires[i]};
+			}
+			gates[i] = new Gate(i, tables[getTruthTable(i)], inputWireIndices, new int[]{outputWires[i]});
+		}
+		return gates;
+	}
+}
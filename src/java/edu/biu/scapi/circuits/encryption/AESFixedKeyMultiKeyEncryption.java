@@ -35,6 +35,7 @@ import javax.crypto.spec.SecretKeySpec;
 import edu.biu.scapi.exceptions.KeyNotSetException;
 import edu.biu.scapi.exceptions.TweakNotSetException;
 import edu.biu.scapi.primitives.prf.AES;
+import edu.biu.scapi.primitives.prf.PrpFixedBatch;
 import edu.biu.scapi.primitives.prf.cryptopp.CryptoPpAES;
 
 /**
@@ -48,7 +49,7 @@ import edu.biu.scapi.primitives.prf.cryptopp.CryptoPpAES;
  * @author Steven Goldfeder
  * 
  */
-public class AESFixedKeyMultiKeyEncryption implements MultiKeyEncryptionScheme {
+public class AESFixedKeyMultiKeyEncryption implements BatchMultiKeyEncryptionScheme {
 
 	//The number of bits in the key. It is currently set to 128, and the {@code FIXED_KEY} field is this size.
 	static final int KEY_SIZE = 128; 
@@ -78,6 +79,10 @@ public class AESFixedKeyMultiKeyEncryption implements MultiKeyEncryptionScheme {
 	//To avoid that, the input to the aes function should be different. 
 	//This flag indicates which algorithm to use.
 	private boolean isFreeXor = false; 
+	
+	//Buffers used by processRows, that hold the inputs and outputs of the AES for a whole batch. They grow as needed.
+	private byte[] rowsIn = new byte[KEY_SIZE / 8];
+	private byte[] rowsOut = new byte[KEY_SIZE / 8];
 
 	public AESFixedKeyMultiKeyEncryption() {
 		this(new CryptoPpAES());
@@ -175,6 +180,90 @@ public class AESFixedKeyMultiKeyEncryption implements MultiKeyEncryptionScheme {
 		return outBytes;
 	}
 
+	/**
+	 * Encrypts or decrypts a single row using keys that are held in one array, without creating {@code SecretKey} objects. <p>
+	 * This is equivalent to setting the multi key and the tweak and calling {@link #decrypt(byte[])}, and is used by the garbled 
+	 * gates to compute directly on the values kept in a {@code GarbledWireStore}.
+	 * @param keys an array that holds the keys.
+	 * @param keyOffsets the offset of each key in the keys array.
+	 * @param tweak the tweak to use.
+	 * @param text the plaintext or ciphertext.
+	 * @param textOffset the offset of the row in the text array.
+	 * @param out the array to put the result in. May be the keys array, as long as the result does not overwrite a key.
+	 * @param outOffset the offset of the result in the out array.
+	 * @throws IllegalBlockSizeException
+	 */
+	public void processRow(byte[] keys, int[] keyOffsets, byte[] tweak, byte[] text, int textOffset, byte[] out, int outOffset) throws IllegalBlockSizeException {
+		processRows(keys, keyOffsets, keyOffsets.length, tweak, 0, text, textOffset, out, outOffset, 1);
+	}
+	
+	/**
+	 * Encrypts or decrypts a batch of rows. <p>
+	 * The inputs of the AES of all the rows are computed first, and then the AES is called once on all of them. If the AES 
+	 * implements {@link PrpFixedBatch}, as the OpenSSL and Crypto++ implementations do, this is a single native call.
+	 */
+	@Override
+	public void processRows(byte[] keys, int[] keyOffsets, int keysPerRow, byte[] tweaks, int tweaksOffset, 
+			byte[] texts, int textsOffset, byte[] out, int outOffset, int numRows) throws IllegalBlockSizeException {
+		int size = KEY_SIZE / 8;
+		if (keysPerRow < 1 || keyOffsets.length < numRows * keysPerRow) {
+			throw new IllegalArgumentException("there should be at least one key offset for each row");
+		}
+		int length = numRows * size;
+		if (rowsIn.length < length) {
+			rowsIn = new byte[length];
+			rowsOut = new byte[length];
+		}
+		
+		// For each row, XOR all of the keys to each other and to the tweak, a long at a time.
+		for (int row = 0; row < numRows; row++) {
+			int firstKey = row * keysPerRow;
+			int tweakOffset = tweaksOffset + row * size;
+			for (int half = 0; half < size; half += 8) {
+				long k = getLong(keys, keyOffsets[firstKey] + half);
+				long value = isFreeXor ? k << 1 : k;
+				for (int i = 1; i < keysPerRow; i++) {
+					k = getLong(keys, keyOffsets[firstKey + i] + half);
+					value ^= isFreeXor ? k >> 1 : k;
+				}
+				putLong(rowsIn, row * size + half, value ^ getLong(tweaks, tweakOffset + half));
+			}
+		}
+		
+		if (aes instanceof PrpFixedBatch) {
+			((PrpFixedBatch) aes).computeBlocks(rowsIn, 0, rowsOut, 0, numRows);
+		} else {
+			for (int offset = 0; offset < length; offset += size) {
+				aes.computeBlock(rowsIn, offset, rowsOut, offset);
+			}
+		}
+		
+		if (texts == null) {
+			for (int i = 0; i < length; i++) {
+				out[outOffset + i] = (byte) (rowsOut[i] ^ rowsIn[i]);
+			}
+		} else {
+			for (int i = 0; i < length; i++) {
+				out[outOffset + i] = (byte) (rowsOut[i] ^ rowsIn[i] ^ texts[textsOffset + i]);
+			}
+		}
+	}
+	
+	private static long getLong(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (bytes[offset + i] & 0xFF);
+		}
+		return value;
+	}
+	
+	private static void putLong(byte[] bytes, int offset, long value) {
+		for (int i = 7; i >= 0; i--) {
+			bytes[offset + i] = (byte) value;
+			value >>>= 8;
+		}
+	}
+	
 	/**
 	 * Shifts the bits of the given array to the right.
 	 * @param bytes to shift right.
@@ -0,0 +1,61 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.encryption;
+
+import javax.crypto.IllegalBlockSizeException;
+
+/**
+ * A {@link MultiKeyEncryptionScheme} that can encrypt or decrypt many rows in a single call. <p>
+ * The keys, tweaks and texts of all the rows are given in arrays that belong to the caller, and no {@code SecretKey} or 
+ * {@code MultiSecretKey} objects are created. A garbling loop can thus collect all the rows of a gate, or of a whole level of 
+ * the circuit, and pay the cost of calling the underlying primitive once per batch instead of once per row.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public interface BatchMultiKeyEncryptionScheme extends MultiKeyEncryptionScheme {
+
+	/**
+	 * Encrypts or decrypts a batch of rows. <p>
+	 * Row i combines the keys at keyOffsets[i*keysPerRow], ..., keyOffsets[(i+1)*keysPerRow - 1] with the tweak at 
+	 * tweaksOffset + i*cipherSize, applies the scheme to the text at textsOffset + i*cipherSize and puts the result at 
+	 * outOffset + i*cipherSize, where cipherSize is the result of {@link #getCipherSize()}. <p>
+	 * All the keys are read before any result is written, so the out array may be the keys array.
+	 * 
+	 * @param keys an array that holds the keys.
+	 * @param keyOffsets the offset of each key in the keys array, keysPerRow offsets for each row.
+	 * @param keysPerRow the number of keys that are combined in each row.
+	 * @param tweaks an array that holds the tweaks of the rows, one after the other.
+	 * @param tweaksOffset the offset of the first tweak in the tweaks array.
+	 * @param texts an array that holds the plaintexts or ciphertexts of the rows, one after the other. 
+	 * May be {@code null}, in which case the texts are taken to be zero.
+	 * @param textsOffset the offset of the first text in the texts array.
+	 * @param out the array to put the results in.
+	 * @param outOffset the offset of the first result in the out array.
+	 * @param numRows the number of rows to process.
+	 * @throws IllegalBlockSizeException
+	 */
+	public void processRows(byte[] keys, int[] keyOffsets, int keysPerRow, byte[] tweaks, int tweaksOffset, 
+			byte[] texts, int textsOffset, byte[] out, int outOffset, int numRows) throws IllegalBlockSizeException;
+}
@@ -24,6 +24,7 @@
 */
 package edu.biu.scapi.circuits.fastGarbledCircuit;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.util.Date;
 
@@ -64,6 +65,7 @@ public class ScNativeGarbledBooleanCircuit implements FastGarbledBooleanCircuit{
 																			
 	private native byte[] getGarbleTables(long ptr);//Gets the garbled tables from the jni dll. Again, this is a costly functions since we need to pass a large amount of information
 													//from the dll memory space to the java memory space.
+	private native ByteBuffer getGarbleTablesBuffer(long ptr);//Returns a direct buffer that wraps the garbled tables in the dll memory space. Nothing is copied.
 	
 	
 	/*
@@ -325,6 +327,21 @@ public class ScNativeGarbledBooleanCircuit implements FastGarbledBooleanCircuit{
 		
 	}
 	
+	/**
+	 * Returns the garbled tables of this circuit as a direct buffer that shares its memory with the native code circuit. <p>
+	 * Unlike {@link #getGarbledTables()} and {@link #setGarbledTables(GarbledTablesHolder)}, the tables are not copied to or from 
+	 * the java heap. Garbling the circuit writes the new tables directly into the buffer's memory, so the buffer can be written 
+	 * as is to a {@link java.nio.channels.SocketChannel} or to a file. The receiver of the circuit sets the garbled tables by reading 
+	 * them into the buffer, for example from a {@code SocketChannel} or from a memory mapped file.<p>
+	 * Each call returns a new buffer whose position is zero and whose capacity is the size of the garbled tables.
+	 * The buffer must not be used after the native circuit is deleted.
+	 * @return a direct buffer that holds the garbled tables of this circuit.
+	 */
+	public ByteBuffer getGarbledTablesBuffer() {
+		
+		return getGarbleTablesBuffer(garbledCircuitPtr);
+	}
+	
 	/**
      * Returns the translation table of the circuit calculated and stored in the native code. <P>
      * This is necessary since the constructor of the circuit may want to pass the translation table to a different party. <p>
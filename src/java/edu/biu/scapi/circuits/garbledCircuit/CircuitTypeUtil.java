@@ -74,4 +74,18 @@ interface CircuitTypeUtil {
 	public CircuitCreationValues garble(BooleanCircuit ungarbledCircuit, GarbledTablesHolder garbledTablesHolder, 
 			GarbledGate[] gates, PseudorandomGenerator prg, byte[] seed) throws InvalidKeyException;
 	
+	/**
+	 * Sets a listener that is notified each time a garbled table has been created during garbling.<p>
+	 * The tables are created in the order of the gates, thus the listener can forward them before the garbling is done.
+	 * @param listener The listener to notify. Null in order to stop the notifications.
+	 */
+	public void setGarbledTableListener(GarbledTableListener listener);
+	
+	/**
+	 * Sets a scheduler that creates the garbled tables in parallel.<p>
+	 * The scheduler is not used while there is a garbled table listener, since the listener expects the tables in order.
+	 * @param scheduler The scheduler to use. Null in order to garble on the calling thread.
+	 */
+	public void setScheduler(ParallelGateScheduler scheduler);
+	
 }
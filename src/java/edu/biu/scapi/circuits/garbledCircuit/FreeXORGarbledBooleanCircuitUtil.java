@@ -66,6 +66,10 @@ class FreeXORGarbledBooleanCircuitUtil implements CircuitTypeUtil {
 	private BitSet XORNOTTruthTable;	
 	private BitSet XORTruthTable;
 	
+	private GarbledTableListener tableListener;	//Notified about each created garbled table. May be null.
+	
+	private ParallelGateScheduler scheduler;	//Creates the garbled tables in parallel. May be null.
+	
 	/**
 	 * Sets the given MultiKeyEncryptionScheme.
 	 * @param mes The concrete encryption object to use.
@@ -188,6 +192,9 @@ class FreeXORGarbledBooleanCircuitUtil implements CircuitTypeUtil {
 			translationTable.put(n, (byte) (k0[k0.length-1] & 1));			
 		}
 		
+		CircuitCreationValues values = new CircuitCreationValues(allInputWireValues, allOutputWireValues, translationTable);
+		notifyKeysCreated(values);
+		
 		//now that we have all keys, we can create the garbled tables.
 		try {
 			createGarbledTables(gates, (BasicGarbledTablesHolder) garbledTablesHolder, ungarbledGates, allWireValues);
@@ -198,7 +205,7 @@ class FreeXORGarbledBooleanCircuitUtil implements CircuitTypeUtil {
 		} catch (PlaintextTooLongException e) {
 			// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
 		} 
-		return new CircuitCreationValues(allInputWireValues, allOutputWireValues, translationTable);		
+		return values;		
 	}	
 	
 	/**
@@ -262,6 +269,21 @@ class FreeXORGarbledBooleanCircuitUtil implements CircuitTypeUtil {
 		// Get the XOR and XORNOT truth table to be used to test against for equality.
 		BitSet XORTruthTable = getXORTruthTable();
 		BitSet XORNOTTruthTable = getXORNOTTruthTable();
+		
+		if (scheduler != null && tableListener == null){
+			//Collect the gates that have garbled tables and let the scheduler garble them in parallel.
+			int[] tableGates = new int[ungarbledGates.length];
+			int numberOfTableGates = 0;
+			for (int gate = 0; gate < ungarbledGates.length; gate++) {
+				if (!ungarbledGates[gate].getTruthTable().equals(XORTruthTable) && !(ungarbledGates[gate].getTruthTable().equals(XORNOTTruthTable))) {
+					tableGates[numberOfTableGates++] = gate;
+				}
+			}
+			int[] gatesToGarble = new int[numberOfTableGates];
+			System.arraycopy(tableGates, 0, gatesToGarble, 0, numberOfTableGates);
+			scheduler.createGarbledTables(gatesToGarble, ungarbledGates, allWireValues);
+			return;
+		}
 				
 		//For each Standard gate, create the suitable StandardGarbledGate object. 
 		//Free XOR gate and Free XOR NOT gates do not have a garbled tables, thus they should not be created.
@@ -269,10 +291,33 @@ class FreeXORGarbledBooleanCircuitUtil implements CircuitTypeUtil {
 			
 			if (!ungarbledGates[gate].getTruthTable().equals(XORTruthTable) && !(ungarbledGates[gate].getTruthTable().equals(XORNOTTruthTable))) {
 				((StandardGarbledGate) gates[gate]).createGarbledTable(ungarbledGates[gate], allWireValues);
+				if (tableListener != null){
+					tableListener.tableCreated(gate, garbledTablesHolder.toDoubleByteArray()[gate]);
+				}
 			}
 		}
 	}
 	
+	@Override
+	public void setGarbledTableListener(GarbledTableListener listener){
+		tableListener = listener;
+	}
+	
+	@Override
+	public void setScheduler(ParallelGateScheduler scheduler){
+		this.scheduler = scheduler;
+	}
+	
+	/**
+	 * Notifies the listener (if there is one) that all the keys have been created.
+	 * @param values The created keys.
+	 */
+	protected void notifyKeysCreated(CircuitCreationValues values){
+		if (tableListener != null){
+			tableListener.keysCreated(values);
+		}
+	}
+	
 	/**
 	 * Creates the keys of the non-input wires.
 	 * @param ungarbledGates The gates that should be garbled.
@@ -430,6 +475,7 @@ class FreeXORGarbledBooleanCircuitUtil implements CircuitTypeUtil {
 		
 		//Call the function thast actually performs the keys generation.
 		CircuitCreationValues values = sampleSeedKeys(ungarbledCircuit, prg, seed, allWireValues);
+		notifyKeysCreated(values);
 		
 		//Now that all wires have garbled values, we create the garbled tables.
 		try {
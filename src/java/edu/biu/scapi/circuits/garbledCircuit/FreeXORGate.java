@@ -110,6 +110,16 @@ class FreeXORGate implements GarbledGate{
 	     
 	 }
 
+	 @Override
+	 public void compute(GarbledWireStore wires) {
+		 
+		 // XOR the input values directly in the store. See compute(Map) for details.
+		 wires.xor(outputWireIndices[0], inputWireIndices[0], inputWireIndices[1]);
+		 for (int i = 1; i < outputWireIndices.length; i++) {
+			 wires.copy(outputWireIndices[i], outputWireIndices[0]);
+		 }
+	 }
+
 	 @Override
 	 public boolean verify(Gate g, Map<Integer, SecretKey[]> allWireValues) {
 		 
@@ -116,6 +116,10 @@ abstract class GarbledBooleanCircuitAbs implements GarbledBooleanCircuit{
   		
   		//Call the internalVerify function that verifies the circuit without the last part of the translation table.
 		boolean verified = internalVerify(allInputWireValues, outputValues);
+		//In case the gates were not verified, the output keys are not known.
+		if (!verified){
+			return false;
+		}
 		
 		//Check that the output wires translate correctly. 
 	    //outputValues contains both possible values for every output wire in the circuit. 
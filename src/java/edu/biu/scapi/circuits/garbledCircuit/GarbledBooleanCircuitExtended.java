@@ -47,18 +47,40 @@ public interface GarbledBooleanCircuitExtended extends GarbledBooleanCircuit{
 
 	/**
 	 * Gets the input keys, which are the input garbled values and sets them. 
-	 * This way when calling the garble function the input values will not be sampled but taken from the given values.
+	 * This way when calling the garble function the input values will not be sampled but taken from the given values.<p>
+	 * The keys are used by every following garbling, until other keys are set. Setting {@code null} makes the following 
+	 * garblings sample the input values again.
 	 * @param inputValues contains both garbled values for each input wire.
 	 */
 	public void setInputKeys(Map<Integer, SecretKey[]> inputValues);
 	
+	/**
+	 * Sets the input keys like {@link #setInputKeys(Map)}, but lets the keys be used by the next garbling only. 
+	 * After it, the input values are sampled again.
+	 * @param inputValues contains both garbled values for each input wire.
+	 * @param nextGarblingOnly {@code true} if the keys should be used by the next garbling only; {@code false} if they should 
+	 * be used by every following garbling, like in {@link #setInputKeys(Map)}.
+	 */
+	public void setInputKeys(Map<Integer, SecretKey[]> inputValues, boolean nextGarblingOnly);
+	
 	/**
 	 * Gets the output keys, which are the output garbled values and sets them. 
-	 * This way when calling the garble function the output values will not be sampled but taken from the given values.
+	 * This way when calling the garble function the output values will not be sampled but taken from the given values.<p>
+	 * The keys are used by every following garbling, until other keys are set. Setting {@code null} makes the following 
+	 * garblings sample the output values again.
 	 * @param outputValues contains both garbled values for each output wire.
 	 */
 	public void setOutputKeys(Map<Integer, SecretKey[]> outputValues);
 	
+	/**
+	 * Sets the output keys like {@link #setOutputKeys(Map)}, but lets the keys be used by the next garbling only. 
+	 * After it, the output values are sampled again.
+	 * @param outputValues contains both garbled values for each output wire.
+	 * @param nextGarblingOnly {@code true} if the keys should be used by the next garbling only; {@code false} if they should 
+	 * be used by every following garbling, like in {@link #setOutputKeys(Map)}.
+	 */
+	public void setOutputKeys(Map<Integer, SecretKey[]> outputValues, boolean nextGarblingOnly);
+	
 	/**
 	 * Compute the hash function on the garbled tables and translation table of the circuit.
 	 * @param hash CryptographicHash function object to use.
@@ -74,6 +96,41 @@ public interface GarbledBooleanCircuitExtended extends GarbledBooleanCircuit{
 	 */
 	public boolean verifyHashedCircuit(CryptographicHash hash, byte[] hashedCircuit);
 	
+	/**
+	 * Garbles the circuit using the given seed and computes the hash function on its garbled tables and translation table, 
+	 * without holding all the garbled tables in memory.<p>
+	 * Each garbled table is fed into the hash as soon as it is created and is then released. The result is the same as calling 
+	 * {@link #garble(byte[])} followed by {@link #getHashedCircuit(CryptographicHash)}, but since the tables are not kept, the 
+	 * circuit should be garbled again (or get its tables using {@link #setGarbledTables(GarbledTablesHolder)}) before it can be 
+	 * computed or hashed again.<p>
+	 * This lets the garbler commit to many circuits, and the verifier check many circuits, using memory for a single set of keys.
+	 * 
+	 * @param seed to use in order to generate the keys.
+	 * @param hash CryptographicHash function object to use.
+	 * @return The result of the hash function on the circuit.
+	 * @throws InvalidKeyException in case the seed is an invalid key for the prg.
+	 */
+	public byte[] garbleAndHash(byte[] seed, CryptographicHash hash) throws InvalidKeyException;
+	
+	/**
+	 * Verifies that the given hashedCircuit is the hash of the circuit that is garbled using the given seed.<p>
+	 * Unlike {@link #verify(byte[], Map, Map, CryptographicHash, byte[])}, the circuit is always garbled again, and its garbled 
+	 * tables are hashed while they are created using {@link #garbleAndHash(byte[], CryptographicHash)}, thus they are not 
+	 * held in memory. The given keys are used by this garbling only.
+	 * 
+	 * @param seed to use in order to generate the keys.
+	 * @param allInputGarbledValues A {@Map} containing both keys for each input wire. 
+	 * Should be null in case the user set no input garbled values before garbling.
+	 * @param allOutputGarbledValues A {@Map} containing both keys for each output wire.
+	 * Should be null in case the user set no output garbled values before garbling.
+	 * @param hash CryptographicHash object to use.
+	 * @param hashedCircuit A byte array that suppose to be the result of the hash function on the circuit.
+	 * @return {@code true} if the given hashedCircuit is the hash of the circuit garbled from the given seed, {@code false} otherwise.
+	 * @throws InvalidKeyException in case the seed is an invalid key for the prg.
+	 */
+	public boolean verifyHashedCircuit(byte[] seed, Map<Integer, SecretKey[]> allInputGarbledValues, Map<Integer, SecretKey[]> allOutputGarbledValues, 
+			CryptographicHash hash, byte[] hashedCircuit) throws InvalidKeyException;
+	
 	/**
      * The verify method is used in the case of malicious adversaries.<p>
      * Alice constructs n circuits and Bob can verify n-1 of them (of his choice) to confirm that they are indeed garbling of the 
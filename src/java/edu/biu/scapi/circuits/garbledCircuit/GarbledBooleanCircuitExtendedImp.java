@@ -26,6 +26,7 @@ package edu.biu.scapi.circuits.garbledCircuit;
 
 import java.security.InvalidKeyException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
@@ -110,6 +111,17 @@ public class GarbledBooleanCircuitExtendedImp implements GarbledBooleanCircuitEx
   	// will be the values from the user, we save the output from the inner circuit and use them in order to get the signal bit and do the translate.
   	private HashMap<Integer, GarbledWire> outputFromInnerCircuit;	
   	
+  	// Set after garbleAndHash released the garbled tables of the inner circuit while hashing them. In this state the circuit 
+  	// should be garbled again (or get its tables) before it can be computed, verified or hashed.
+  	private boolean tablesReleased;
+  	
+  	// The input (output) keys set by the user, in the adjusted indices. They are used by every following garbling, unless they 
+  	// were set for the next garbling only.
+  	private Map<Integer, SecretKey[]> userInputKeys;
+  	private Map<Integer, SecretKey[]> userOutputKeys;
+  	private boolean inputKeysOnce;
+  	private boolean outputKeysOnce;
+  	
   	/**
   	 * This constructor should be used in case the garbling is done using a MultiKeyEncryptionScheme.<P>
   	 * It gets the inner garbled boolean circuit and the encryption scheme.
@@ -156,18 +168,31 @@ public class GarbledBooleanCircuitExtendedImp implements GarbledBooleanCircuitEx
 	
 	@Override
 	public void setInputKeys(Map<Integer, SecretKey[]> inputValues){
-		this.inputGarbledValues = adjustIndices(inputValues);
+		setInputKeys(inputValues, false);
+	}
+	
+	@Override
+	public void setInputKeys(Map<Integer, SecretKey[]> inputValues, boolean nextGarblingOnly){
+		userInputKeys = (inputValues == null) ? null : adjustIndices(inputValues);
+		inputKeysOnce = nextGarblingOnly;
 	}
 	
 	@Override
 	public void setOutputKeys(Map<Integer, SecretKey[]> outputValues){
-		this.outputGarbledValues = adjustIndices(outputValues);
+		setOutputKeys(outputValues, false);
+	}
+	
+	@Override
+	public void setOutputKeys(Map<Integer, SecretKey[]> outputValues, boolean nextGarblingOnly){
+		userOutputKeys = (outputValues == null) ? null : adjustIndices(outputValues);
+		outputKeysOnce = nextGarblingOnly;
 	}
 	
 	@Override
 	public CircuitCreationValues garble() {
 		//Call the inner circuit's garble function to generate its keys.
 		CircuitCreationValues values = gbc.garble();
+		tablesReleased = false;
 		//Generate the input and output gates, if needed.
 		return generateInputOutputGates(values);
 	}
@@ -175,8 +200,25 @@ public class GarbledBooleanCircuitExtendedImp implements GarbledBooleanCircuitEx
 	@Override
 	public CircuitCreationValues garble(byte[] seed) throws InvalidKeyException {
 		// In order to garble using seed, we need two seeds: one for the inner circuit and one for the extended.
-		// Use the given seed in order to generate two new seeds.
+		byte[][] seeds = splitSeed(seed);
+		
+		//Garble the inner circuit using the inner seed.
+		CircuitCreationValues values = gbc.garble(seeds[0]);
+		tablesReleased = false;
 		
+		//Set the extended seed as the prg's key. It will be used in the identity gates.
+		prg.setKey(new SecretKeySpec(seeds[1], ""));
+		//Generate the input and output gates, if needed.
+		return generateInputOutputGates(values);
+	}
+	
+	/**
+	 * Uses the given seed in order to generate two new seeds: one for the inner circuit and one for the extended.
+	 * @param seed The seed that was given by the user.
+	 * @return An array that contains the inner seed followed by the extended seed.
+	 * @throws InvalidKeyException in case the seed is an invalid key for the prg.
+	 */
+	private byte[][] splitSeed(byte[] seed) throws InvalidKeyException {
 		//Set the given seed as the prg's key.
 		prg.setKey(new SecretKeySpec(seed, ""));
 		
@@ -185,18 +227,45 @@ public class GarbledBooleanCircuitExtendedImp implements GarbledBooleanCircuitEx
 		prg.getPRGBytes(out, 0, out.length);
 		
 		//Create new seeds.
-		byte[] innerSeed = new byte[seed.length];
-		byte[] extendedSeed = new byte[seed.length];
-		System.arraycopy(out, 0, innerSeed, 0, seed.length);
-		System.arraycopy(out, seed.length, extendedSeed, 0, seed.length);
+		byte[][] seeds = new byte[2][seed.length];
+		System.arraycopy(out, 0, seeds[0], 0, seed.length);
+		System.arraycopy(out, seed.length, seeds[1], 0, seed.length);
+		return seeds;
+	}
+	
+	@Override
+	public byte[] garbleAndHash(byte[] seed, final CryptographicHash hash) throws InvalidKeyException {
+		//The tables can only be streamed out of a GarbledBooleanCircuitImp. Otherwise, garble the whole circuit and then hash it.
+		if (!(gbc instanceof GarbledBooleanCircuitImp)){
+			garble(seed);
+			return getHashedCircuit(hash);
+		}
 		
-		//Garble the inner circuit using the inner seed.
-		CircuitCreationValues values = gbc.garble(innerSeed);
+		final byte[][] seeds = splitSeed(seed);
+		
+		/*
+		 * The input identity tables should be hashed before the tables of the inner circuit. 
+		 * All the identity gates can be garbled once the keys of the inner circuit were created, before its first table.
+		 */
+		GarbledTablesHasher hasher = new GarbledTablesHasher(hash, (BasicGarbledTablesHolder) gbc.getGarbledTables()){
+			@Override
+			public void keysCreated(CircuitCreationValues values){
+				//Set the extended seed as the prg's key. It will be used in the identity gates.
+				try {
+					prg.setKey(new SecretKeySpec(seeds[1], ""));
+				} catch (InvalidKeyException e) {
+					// Should not occur since the extended seed has the same length as the inner seed, which was a valid key.
+				}
+				generateInputOutputGates(values);
+				updateTables(hash, garbledTablesHolder.getInputGarbledTables().toDoubleByteArray());
+			}
+		};
+		((GarbledBooleanCircuitImp) gbc).garble(seeds[0], hasher);
+		//The hasher released the tables of the inner circuit.
+		tablesReleased = true;
 		
-		//Set the extended seed as the prg's key. It will be used in the identity gates.
-		prg.setKey(new SecretKeySpec(extendedSeed, ""));
-		//Generate the input and output gates, if needed.
-		return generateInputOutputGates(values);
+		GarbledTablesHasher.updateTables(hash, garbledTablesHolder.getOutputGarbledTables().toDoubleByteArray());
+		return GarbledTablesHasher.finish(hash, gbc.getOutputWireIndices(), gbc.getTranslationTable());
 	}
 
 	/**
@@ -217,7 +286,11 @@ public class GarbledBooleanCircuitExtendedImp implements GarbledBooleanCircuitEx
 		allValues.putAll(values.getAllOutputWireValues());
 		
 		//In case the user set the input keys, create the input identity gates.
-		if (inputGarbledValues != null){
+		if (userInputKeys != null){
+			inputGarbledValues = userInputKeys;
+			if (inputKeysOnce){
+				userInputKeys = null;
+			}
 			//Put the input keys in the keys array.
 			allValues.putAll(inputGarbledValues);
 			
@@ -226,11 +299,18 @@ public class GarbledBooleanCircuitExtendedImp implements GarbledBooleanCircuitEx
 			garbledTablesHolder.getInputGarbledTables().setGarbledTables(new byte[size][]);
 			createInputIdentityGates(size);
 		} else{
+			//Drop the identity gates of a previous garbling that used keys from the user.
+			inputIdentityGates = null;
+			garbledTablesHolder.getInputGarbledTables().setGarbledTables(null);
 			inputGarbledValues = values.getAllInputWireValues();
 		}
 		
 		//In case the user set the output keys, create the output identity gates.
-		if (outputGarbledValues != null){
+		if (userOutputKeys != null){
+			outputGarbledValues = userOutputKeys;
+			if (outputKeysOnce){
+				userOutputKeys = null;
+			}
 			//Put the output keys in the keys array.
 			allValues.putAll(outputGarbledValues);
 			
@@ -239,6 +319,8 @@ public class GarbledBooleanCircuitExtendedImp implements GarbledBooleanCircuitEx
 			garbledTablesHolder.getOutputGarbledTables().setGarbledTables(new byte[size][]);
 			createOutputIdentityGates(size);
 		} else{
+			outputIdentityGates = null;
+			garbledTablesHolder.getOutputGarbledTables().setGarbledTables(null);
 			outputGarbledValues = values.getAllOutputWireValues();
 		}
 		
@@ -342,6 +424,7 @@ public class GarbledBooleanCircuitExtendedImp implements GarbledBooleanCircuitEx
  
   	@Override
   	public HashMap<Integer, GarbledWire> compute() throws NotAllInputsSetException{
+  		checkTables();
   		//check that all the input has been set.
   		for (int i=1; i <= getNumberOfParties(); i++){
   			//Get the wire numbers of the current party.
@@ -518,6 +601,7 @@ public class GarbledBooleanCircuitExtendedImp implements GarbledBooleanCircuitEx
   	 */
 	private boolean verifyCircuitReturnOutputs(Map<Integer, SecretKey[]> allInputWireValues, Map<Integer, SecretKey[]> internalOutputs,
 			Map<Integer, SecretKey[]> extendedOutputs) {
+		checkTables();
 		
 		// We are going to need to add values for non-input wires to the map as we compute them (this will take place in the Gate's 
 		// verify method that we are about to call). In order to not change the input Map, we first copy its contents to a new Map.
@@ -566,15 +650,16 @@ public class GarbledBooleanCircuitExtendedImp implements GarbledBooleanCircuitEx
 		//Verify using a seed verifies that if you create a circuit using the given seed, the output garbled tables and translation table is correct.
 		//This is done by computing a hash function on the garlbed tables and translation table and comparing it to the given hashedCircuit.
 		
-		//In case this circuit has no garbled tables yet, garble it to create the tables.
-		if (garbledTablesHolder.getInternalGarbledTables().toDoubleByteArray() == null){
-			//Set the input keys if there are.
+		//In case this circuit has no garbled tables yet (or they were released by garbleAndHash), garble it to create the tables.
+		//The inner circuit allocates an empty tables array on construction, so a missing translation table also means it was not garbled.
+		if (garbledTablesHolder.getInternalGarbledTables().toDoubleByteArray() == null || gbc.getTranslationTable() == null || tablesReleased){
+			//Set the input keys if there are. They are used by this garbling only.
 			if (allInputGarbledValues != null){
-				setInputKeys(allInputGarbledValues);
+				setInputKeys(allInputGarbledValues, true);
 			}
 			//Set the output keys if there are.
 			if (allOutputGarbledValues != null){
-				setOutputKeys(allOutputGarbledValues);
+				setOutputKeys(allOutputGarbledValues, true);
 			}
 			//Garble the circuit using the seed.
 			garble(seed);
@@ -584,6 +669,22 @@ public class GarbledBooleanCircuitExtendedImp implements GarbledBooleanCircuitEx
 		return verifyHashedCircuit(hash, hashedCircuit);
 	}
 	
+	@Override
+	public boolean verifyHashedCircuit(byte[] seed, Map<Integer, SecretKey[]> allInputGarbledValues,
+			Map<Integer, SecretKey[]> allOutputGarbledValues, CryptographicHash hash, byte[] hashedCircuit) throws InvalidKeyException {
+		//Set the input keys if there are. They are used by this garbling only.
+		if (allInputGarbledValues != null){
+			setInputKeys(allInputGarbledValues, true);
+		}
+		//Set the output keys if there are.
+		if (allOutputGarbledValues != null){
+			setOutputKeys(allOutputGarbledValues, true);
+		}
+		
+		//Garble the circuit using the seed while hashing its tables, and compare the result to the given hash.
+		return Arrays.equals(garbleAndHash(seed, hash), hashedCircuit);
+	}
+	
 	/**
 	 * Checks that the given secretKey arrays contain the same keys.
 	 * @param secretKeys The first array to compare.
@@ -689,32 +790,12 @@ public class GarbledBooleanCircuitExtendedImp implements GarbledBooleanCircuitEx
 	
 	@Override
 	public byte[] getHashedCircuit(CryptographicHash hash){
-		//Get the garbled tables arrays
-		byte[][] tables = garbledTablesHolder.toDoubleByteArray();
-		
+		checkTables();
 		//Update the hash with each gate's garbled table.
-		for (int i=0; i<tables.length; i++){
-			if (tables[i] != null){
-				hash.update(tables[i], 0, tables[i].length);
-			}
-		}
-		
-		Byte signalbit;
-		byte[] signalBitArray;
-		//Update the hash with each signal bit.
-		for (Object index : gbc.getOutputWireIndices()){
-			signalbit = gbc.getTranslationTable().get(index);
-			signalBitArray = new byte[1];
-			signalBitArray[0] = signalbit;
-			hash.update(signalBitArray, 0, 1);
-			
-		}
+		GarbledTablesHasher.updateTables(hash, garbledTablesHolder.toDoubleByteArray());
 		
-		//Compute the hash function.
-		byte[] output = new byte[hash.getHashedMsgSize()];
-		hash.hashFinal(output, 0);
-		
-		return output;
+		//Update the hash with each signal bit and compute the hash function.
+		return GarbledTablesHasher.finish(hash, gbc.getOutputWireIndices(), gbc.getTranslationTable());
 	}
 	
 	@Override
@@ -777,6 +858,17 @@ public class GarbledBooleanCircuitExtendedImp implements GarbledBooleanCircuitEx
 		this.garbledTablesHolder.setGarbledTables(holder.getInternalGarbledTables(), holder.getInputGarbledTables(), holder.getOutputGarbledTables());
 		generateInputOutputGates();
 		gbc.setGarbledTables(holder.getInternalGarbledTables());
+		tablesReleased = false;
+	}
+	
+	/**
+	 * Checks that the garbled tables were not released by {@link #garbleAndHash(byte[], CryptographicHash)}.
+	 * @throws IllegalStateException if the tables were released.
+	 */
+	private void checkTables(){
+		if (tablesReleased){
+			throw new IllegalStateException("the garbled tables were released by garbleAndHash. Garble the circuit again or set its garbled tables");
+		}
 	}
 	
 	/**
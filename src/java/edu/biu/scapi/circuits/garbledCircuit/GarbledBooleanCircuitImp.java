@@ -24,16 +24,21 @@
 */
 package edu.biu.scapi.circuits.garbledCircuit;
 
+import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.SecretKey;
 
 import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.circuits.circuit.Gate;
 import edu.biu.scapi.circuits.encryption.AESFixedKeyMultiKeyEncryption;
+import edu.biu.scapi.comm.Channel;
 import edu.biu.scapi.exceptions.CiphertextTooLongException;
 import edu.biu.scapi.exceptions.NoSuchPartyException;
 import edu.biu.scapi.exceptions.NotAllInputsSetException;
@@ -52,6 +57,9 @@ public class GarbledBooleanCircuitImp extends GarbledBooleanCircuitAbs implement
 	private CircuitTypeUtil util; 		//Executes all functionalities that specific to the circuit type.
 	private PseudorandomGenerator prg;  //used in case of generating the keys using a seed.
 	private GarbledGate[] gates; 		// The garbled gates of this garbled circuit.
+	private int numberOfWires;			// One more than the largest wire index in the circuit.
+	private GarbledWireStore wireStore;	// Holds the values of the wires during computation. Reused between computations.
+	private ParallelGateScheduler scheduler;	// Garbles and computes the gates in parallel. Null if the work is done on the calling thread.
 	
   	/**
 	 * Default constructor. Sets the given boolean circuit and creates a Free XOR circuit using a AESFixedKeyMultiKeyEncryption.
@@ -123,6 +131,49 @@ public class GarbledBooleanCircuitImp extends GarbledBooleanCircuitAbs implement
 		
 		//Create the circuit's gates.
 		gates = util.createGates(bc.getGates(), garbledTablesHolder);
+		
+		//Find the number of wires in order to allocate the wire store in computation time.
+		for (Gate gate : bc.getGates()){
+			for (int w : gate.getInputWireIndices()){
+				numberOfWires = Math.max(numberOfWires, w + 1);
+			}
+			for (int w : gate.getOutputWireIndices()){
+				numberOfWires = Math.max(numberOfWires, w + 1);
+			}
+		}
+	}
+	
+	/**
+	 * Lets this circuit garble and compute its gates using several threads.<p>
+	 * Each worker thread needs its own encryption scheme, thus the caller should give garbling parameters for each additional 
+	 * worker. These should be of the same type as the parameters this circuit was constructed with, but contain different 
+	 * {@code MultiKeyEncryptionScheme} (and KDF) instances. This circuit's own gates serve as the first worker. <p>
+	 * The garbled tables are identical to the ones created on a single thread with the same keys (or seed), since all the keys 
+	 * are generated on the calling thread before the tables are created. The computation is done level by level, using 
+	 * {@link BooleanCircuit#getLevels()}. <p>
+	 * The streaming functions ({@link #garbleAndSend(Channel, int, GarbledKeysHandler)} and {@link #receiveAndCompute(Channel)}) 
+	 * keep working on the calling thread since they process the gates in order.
+	 * @param executor Runs the workers' tasks. It is not shut down by this circuit. Null in order to stop the parallel execution.
+	 * @param workerParameters Parameters for each additional worker.
+	 * @throws IllegalArgumentException if the parameters do not match the type of this circuit.
+	 */
+	public void setParallelExecution(ExecutorService executor, GarblingParameters... workerParameters){
+		if (executor == null){
+			scheduler = null;
+			util.setScheduler(null);
+			return;
+		}
+		GarbledGate[][] workerGates = new GarbledGate[workerParameters.length + 1][];
+		workerGates[0] = gates;
+		for (int i = 0; i < workerParameters.length; i++){
+			CircuitTypeUtil workerUtil = workerParameters[i].createCircuitUtil();
+			if (workerUtil.getClass() != util.getClass()){
+				throw new IllegalArgumentException("the workers' parameters should be of the same type as this circuit's parameters");
+			}
+			workerGates[i + 1] = workerUtil.createGates(bc.getGates(), garbledTablesHolder);
+		}
+		scheduler = new ParallelGateScheduler(workerGates, executor);
+		util.setScheduler(scheduler);
 	}
 	
 	@Override
@@ -143,10 +194,170 @@ public class GarbledBooleanCircuitImp extends GarbledBooleanCircuitAbs implement
 		translationTable = values.getTranslationTable();
 		return values;
 	}
+	
+	/**
+	 * Garbles the circuit using the given seed and notifies the given listener about the keys and about each garbled table 
+	 * as soon as it is created.
+	 * @param seed Used to initialize the prg.
+	 * @param listener Notified during the garbling.
+	 * @return CircuitCreationValues contains both keys for each input and output wire, the translation table and the signal bits of the input wires.
+	 * @throws InvalidKeyException in case the seed is an invalid key for the prg.
+	 */
+	CircuitCreationValues garble(byte[] seed, GarbledTableListener listener) throws InvalidKeyException {
+		util.setGarbledTableListener(listener);
+		try {
+			return garble(seed);
+		} finally {
+			util.setGarbledTableListener(null);
+		}
+	}
+	
+	/**
+	 * Garbles the circuit and sends the garbled tables over the given channel while the garbling is still in progress.<p>
+	 * The tables are sent in chunks of about chunkSize bytes, in the order of the gates. The other party should call 
+	 * {@link #receiveAndCompute(Channel)} on a circuit that was constructed with the same parameters.<p>
+	 * All the keys are created before the first table. At that point the given handler is called in order to let the caller deliver
+	 * the input keys (and the translation table, if needed) to the evaluator, since the evaluator needs its inputs before it can 
+	 * compute the arriving gates.<p>
+	 * In order to keep the memory bounded, the tables are not kept in this circuit after they are sent.
+	 * The channel should not be used by other threads until this function returns. In case the garbling fails, the channel 
+	 * is closed so that the evaluator will not wait for the rest of the tables.
+	 * @param channel The channel to send the garbled tables on.
+	 * @param chunkSize The number of bytes of garbled tables to send in each message.
+	 * @param keysHandler Called with the created keys before the tables are sent. May be null.
+	 * @return CircuitCreationValues contains both keys for each input and output wire, the translation table and the signal bits of the input wires.
+	 * @throws IOException in case of a problem during the communication.
+	 */
+	public CircuitCreationValues garbleAndSend(Channel channel, int chunkSize, GarbledKeysHandler keysHandler) throws IOException {
+		GarbledTablesStream.Sender sender = new GarbledTablesStream.Sender(channel, (BasicGarbledTablesHolder) garbledTablesHolder, chunkSize, keysHandler);
+		util.setGarbledTableListener(sender);
+		CircuitCreationValues values = null;
+		try {
+			values = garble();
+		} finally {
+			util.setGarbledTableListener(null);
+			//In case the garbling failed, the stream is aborted instead of being ended as if it were complete.
+			if (values == null){
+				sender.abort();
+			}
+		}
+		sender.finish();
+		return values;
+	}
+	
+	/**
+	 * Garbles the circuit using the given seed and sends the garbled tables over the given channel while the garbling is still in progress.<p>
+	 * See {@link #garbleAndSend(Channel, int, GarbledKeysHandler)} for details.
+	 * @param seed Used to initialize the prg.
+	 * @param channel The channel to send the garbled tables on.
+	 * @param chunkSize The number of bytes of garbled tables to send in each message.
+	 * @param keysHandler Called with the created keys before the tables are sent. May be null.
+	 * @return CircuitCreationValues contains both keys for each input and output wire, the translation table and the signal bits of the input wires.
+	 * @throws InvalidKeyException in case the seed is an invalid key for the prg.
+	 * @throws IOException in case of a problem during the communication.
+	 */
+	public CircuitCreationValues garbleAndSend(byte[] seed, Channel channel, int chunkSize, GarbledKeysHandler keysHandler) throws InvalidKeyException, IOException {
+		if (prg == null){
+			throw new IllegalStateException("This circuit can not use seed to generate keys since it has no prg. Use the other garbleAndSend() function");
+		}
+		GarbledTablesStream.Sender sender = new GarbledTablesStream.Sender(channel, (BasicGarbledTablesHolder) garbledTablesHolder, chunkSize, keysHandler);
+		util.setGarbledTableListener(sender);
+		CircuitCreationValues values = null;
+		try {
+			values = garble(seed);
+		} finally {
+			util.setGarbledTableListener(null);
+			//In case the garbling failed, the stream is aborted instead of being ended as if it were complete.
+			if (values == null){
+				sender.abort();
+			}
+		}
+		sender.finish();
+		return values;
+	}
+	
+	/**
+	 * Receives the garbled tables that were sent by {@link #garbleAndSend(Channel, int, GarbledKeysHandler)} and computes the circuit while the 
+	 * tables are still arriving.<p>
+	 * Each gate is computed as soon as its table has arrived and the table is released right after that, so the whole set of 
+	 * tables is never held in memory. As a result, the circuit can not be computed again without receiving the tables again.<p>
+	 * All the inputs should be set before calling this function. In case the computation fails before the end of the stream, 
+	 * the channel is closed, since the rest of the tables cannot be skipped.
+	 * @param channel The channel to receive the garbled tables from.
+	 * @return returns the garbled values of the output wires.
+	 * @throws NotAllInputsSetException if the given inputs array does not include a value for each input wire.
+	 * @throws IOException in case of a problem during the communication.
+	 */
+	public HashMap<Integer, GarbledWire> receiveAndCompute(Channel channel) throws NotAllInputsSetException, IOException {
+		checkInputs();
+		
+		GarbledWireStore wires = getInputWireStore();
+		
+		byte[][] tables = garbledTablesHolder.toDoubleByteArray();
+		GarbledTablesStream.Receiver receiver = new GarbledTablesStream.Receiver(channel);
+		int nextGate = 0;
+		byte[] chunk;
+		boolean done = false;
+		try {
+			while ((chunk = receiver.nextChunk()) != null){
+				//Compute all the gates up to the last gate whose table has arrived.
+				int lastGate = GarbledTablesStream.readChunk(chunk, tables, nextGate);
+				for (; nextGate <= lastGate; nextGate++){
+					computeGate(gates[nextGate], wires);
+					tables[nextGate] = null;
+				}
+			}
+			done = true;
+		} finally {
+			//Release the receiving thread in case the stream was not read to its end.
+			if (!done){
+				receiver.abort();
+			}
+		}
+		//The rest of the gates have no garbled tables.
+		for (; nextGate < gates.length; nextGate++){
+			computeGate(gates[nextGate], wires);
+		}
+		
+		return wires.toMap(outputWireIndices);
+	}
  
   	@Override
   	public HashMap<Integer, GarbledWire> compute() throws NotAllInputsSetException{
-  		//Check that all the inputs have been set.
+  		checkInputs();
+  		
+  		/*
+  		 * The gates are computed on a GarbledWireStore that holds the values of all the wires in a single array indexed by the 
+  		 * wire number. The inputs are copied from the computedWires map and only the output wires are copied back to a map.
+  		 */
+  		GarbledWireStore wires = getInputWireStore();
+  		
+  		/*
+  		 * We use the interface GarbledGate and thus this works for all implementing classes. The compute method of the 
+  		 * specific garbled gate being used will be called. This allows us to have circuits with different types of gates 
+  		 * {i.e a FreeXORGarbledBooleanCircuit contains both StandardGarbledGates and FreeXORGates) and this will work for all the gates.
+  		 */
+  		if (scheduler != null){
+  			scheduler.compute(bc.getLevels(), wires);
+  		} else {
+	  		for (GarbledGate g : gates) {
+	  			computeGate(g, wires);
+	  		}
+  		}
+  		
+  		/*
+  		 * Copy only the values that we need to retain -- i.e. the values of the output wires to a new map to be returned. 
+  		 * The wire store contains more values than we need to retain as it has values for all wires, 
+  		 * not only circuit output wires.
+  		 */
+  		return wires.toMap(outputWireIndices);
+  	}	
+  	
+  	/**
+  	 * Checks that all the inputs have been set.
+  	 * @throws NotAllInputsSetException if the inputs of one of the input wires is missing.
+  	 */
+  	private void checkInputs() throws NotAllInputsSetException{
   		for (int i=1; i <= getNumberOfParties(); i++){
   			List<Integer> wireNumbers = null;
 			try {
@@ -161,36 +372,53 @@ public class GarbledBooleanCircuitImp extends GarbledBooleanCircuitAbs implement
 	  			}
 	  		}
   		}
-  		
-  		/*
-  		 * We use the interface GarbledGate and thus this works for all implementing classes. The compute method of the 
-  		 * specific garbled gate being used will be called. This allows us to have circuits with different types of gates 
-  		 * {i.e a FreeXORGarbledBooleanCircuit contains both StandardGarbledGates and FreeXORGates) and this will work for all the gates.
-  		 */
-  		for (GarbledGate g : gates) {
-  			try {
-				g.compute(computedWires);
-			} catch (InvalidKeyException e) {
-				// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
-			} catch (IllegalBlockSizeException e) {
-				// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
-			} catch (CiphertextTooLongException e) {
-				// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
-			}
+  	}
+  	
+  	/**
+  	 * Computes the given gate on the given wire store.
+  	 */
+  	private void computeGate(GarbledGate g, GarbledWireStore wires){
+  		try {
+			g.compute(wires);
+		} catch (InvalidKeyException e) {
+			// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
+		} catch (IllegalBlockSizeException e) {
+			// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
+		} catch (CiphertextTooLongException e) {
+			// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
+		}
+  	}
+  	
+  	/**
+  	 * Returns a wire store that holds the values of the circuit's input wires. The store is allocated once and reused.<p>
+  	 * Only the input wires of the circuit are copied from the computedWires map. The map may hold other wires, for example the 
+  	 * negative indices of the identity gates that {@link GarbledBooleanCircuitExtendedImp} adds before the inputs of this circuit.
+  	 */
+  	private GarbledWireStore getInputWireStore(){
+  		//A circuit without inputs uses the AES block size.
+  		int labelSize = 16;
+  		GarbledWire first = null;
+  		for (int i = 0; i < eachPartysInputWires.size() && first == null; i++){
+  			if (!eachPartysInputWires.get(i).isEmpty()){
+  				first = computedWires.get(eachPartysInputWires.get(i).get(0));
+  			}
+  		}
+  		if (first != null){
+  			labelSize = first.getValueAndSignalBit().getEncoded().length;
+  		}
+  		if (wireStore == null || wireStore.getLabelSize() != labelSize){
+  			wireStore = new GarbledWireStore(numberOfWires, labelSize);
+  		} else {
+  			wireStore.clear();
   		}
   		
-  		/*
-  		 * Copy only the values that we need to retain -- i.e. the values of the output wires to a new map to be returned. 
-  		 * The computedWire's map contains more values than we need to retain as it has values for all wires, 
-  		 * not only circuit output wires.
-  		 */
-  		HashMap<Integer, GarbledWire> garbledOutput = new HashMap<Integer, GarbledWire>();
-  		for (int w : outputWireIndices) {
-  			garbledOutput.put(w, computedWires.get(w));
+  		for (ArrayList<Integer> partyInputs : eachPartysInputWires){
+  			for (int w : partyInputs){
+  				wireStore.putWire(w, computedWires.get(w));
+  			}
   		}
-
-  		return garbledOutput;
-  	}	
+  		return wireStore;
+  	}
   	
   	byte getKeySignalBit(SecretKey key){
   		return (byte) ((key.getEncoded()[key.getEncoded().length - 1] & 1) == 0 ? 0 : 1);
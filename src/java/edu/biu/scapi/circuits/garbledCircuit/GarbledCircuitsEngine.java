@@ -0,0 +1,275 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.security.InvalidKeyException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.exceptions.ScapiRuntimeException;
+import edu.biu.scapi.primitives.hash.CryptographicHash;
+import edu.biu.scapi.primitives.prg.PseudorandomGenerator;
+
+/**
+ * Garbles, hashes and verifies many copies of the same boolean circuit, each one from its own seed, using several threads.<p>
+ * 
+ * This is the work that is done in the cut-and-choose technique of malicious secure two party computation: the garbler creates 
+ * many garblings of the same circuit and the evaluator checks most of them. <p>
+ * 
+ * Each worker thread owns a single {@link GarbledBooleanCircuitImp}, with its own encryption scheme and prg. The garbled gates of 
+ * a worker are created once and are reused for all the copies it garbles, and all the workers share the same ungarbled circuit.
+ * Thus, the only memory that belongs to a single copy is its keys and its garbled tables, and the garbled tables are only kept 
+ * when the caller asks for them. When hashing or verifying, the tables are hashed while they are created (see 
+ * {@link GarbledBooleanCircuitExtended#garbleAndHash(byte[], CryptographicHash)}) and are not held in memory at all. <p>
+ * 
+ * A copy is garbled the same way {@link GarbledBooleanCircuitExtendedImp#garble(byte[])} garbles a circuit that has no fixed input 
+ * or output keys. Hence, the hashes of the copies can be compared to {@link GarbledBooleanCircuitExtended#getHashedCircuit(CryptographicHash)} 
+ * and the copies can be set to such a circuit using {@link GarbledBooleanCircuit#setGarbledTables(GarbledTablesHolder)} and 
+ * {@link GarbledBooleanCircuit#setTranslationTable(HashMap)}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class GarbledCircuitsEngine {
+	
+	private GarbledBooleanCircuitImp[] workers;	//The circuit of each worker.
+	private PseudorandomGenerator[] prgs;		//The prg of each worker, used to derive the inner seed of each copy.
+	private ExecutorService executor;
+	private int numberOfGates;
+	
+	/**
+	 * A single garbled copy of the circuit.
+	 */
+	public static class GarbledCopy {
+		private CircuitCreationValues values;
+		private GarbledTablesHolder garbledTables;
+		
+		GarbledCopy(CircuitCreationValues values, GarbledTablesHolder garbledTables){
+			this.values = values;
+			this.garbledTables = garbledTables;
+		}
+		
+		/**
+		 * Returns both keys of each input and output wire and the translation table of this copy.
+		 */
+		public CircuitCreationValues getCreationValues(){
+			return values;
+		}
+		
+		/**
+		 * Returns the garbled tables of this copy.
+		 */
+		public GarbledTablesHolder getGarbledTables(){
+			return garbledTables;
+		}
+	}
+	
+	/**
+	 * A piece of work that should be done on a single copy.
+	 */
+	private static abstract class CopyTask {
+		abstract void process(int worker, int copy) throws InvalidKeyException;
+	}
+	
+	/**
+	 * Creates a worker for each of the given parameters.<p>
+	 * All the parameters should refer to the same {@link BooleanCircuit}, but should contain different 
+	 * {@code MultiKeyEncryptionScheme} (and KDF) instances, since the workers run concurrently. For the same reason, each worker 
+	 * should be given its own prg.
+	 * @param executor Runs the workers' tasks. It is not shut down by this engine.
+	 * @param workerParameters The garbling parameters of each worker.
+	 * @param workerPrgs The prg of each worker.
+	 * @throws IllegalArgumentException if the number of parameters and prgs is not the same, or if the parameters refer to 
+	 * different circuits.
+	 */
+	public GarbledCircuitsEngine(ExecutorService executor, GarblingParameters[] workerParameters, PseudorandomGenerator[] workerPrgs){
+		if (workerParameters.length == 0 || workerParameters.length != workerPrgs.length){
+			throw new IllegalArgumentException("there should be a prg for each worker's parameters");
+		}
+		BooleanCircuit bc = workerParameters[0].getUngarbledCircuit();
+		workers = new GarbledBooleanCircuitImp[workerParameters.length];
+		for (int i = 0; i < workers.length; i++){
+			if (workerParameters[i].getUngarbledCircuit() != bc){
+				throw new IllegalArgumentException("all the workers should garble the same circuit");
+			}
+			workers[i] = new GarbledBooleanCircuitImp(workerParameters[i], workerPrgs[i]);
+		}
+		this.prgs = workerPrgs;
+		this.executor = executor;
+		numberOfGates = bc.getGates().length;
+	}
+	
+	/**
+	 * Garbles a copy of the circuit from each of the given seeds.
+	 * @param seeds The seed of each copy.
+	 * @return The garbled copies, in the order of the seeds.
+	 * @throws InvalidKeyException if one of the seeds is not a valid key for the prg.
+	 */
+	public GarbledCopy[] garble(final byte[][] seeds) throws InvalidKeyException{
+		final GarbledCopy[] copies = new GarbledCopy[seeds.length];
+		run(seeds.length, new CopyTask(){
+			@Override
+			void process(int worker, int copy) throws InvalidKeyException {
+				//Give the worker a new array of tables, so that the tables of this copy are not overridden by the next copy.
+				BasicGarbledTablesHolder tables = new BasicGarbledTablesHolder(new byte[numberOfGates][]);
+				workers[worker].setGarbledTables(tables);
+				CircuitCreationValues values = garbleCopy(worker, seeds[copy], null);
+				copies[copy] = new GarbledCopy(values, tables);
+			}
+		});
+		return copies;
+	}
+	
+	/**
+	 * Garbles a copy of the circuit from each of the given seeds and hashes its garbled tables and translation table. <p>
+	 * The garbled tables are hashed while they are created, thus they are not held in memory.
+	 * @param seeds The seed of each copy.
+	 * @param hashes A hash function object for each worker.
+	 * @return The hash of each copy, in the order of the seeds.
+	 * @throws InvalidKeyException if one of the seeds is not a valid key for the prg.
+	 * @throws IllegalArgumentException if the number of hashes is not the number of workers.
+	 */
+	public byte[][] getHashedCircuits(final byte[][] seeds, final CryptographicHash... hashes) throws InvalidKeyException{
+		checkHashes(hashes);
+		final byte[][] hashedCircuits = new byte[seeds.length][];
+		run(seeds.length, new CopyTask(){
+			@Override
+			void process(int worker, int copy) throws InvalidKeyException {
+				hashedCircuits[copy] = garbleAndHashCopy(worker, seeds[copy], hashes[worker]);
+			}
+		});
+		return hashedCircuits;
+	}
+	
+	/**
+	 * Verifies that each of the given hashed circuits is the hash of the copy that is garbled from the corresponding seed.
+	 * @param seeds The seed of each copy.
+	 * @param hashedCircuits The hash that was received for each copy.
+	 * @param hashes A hash function object for each worker.
+	 * @return For each copy, {@code true} if it is verified; {@code false}, otherwise.
+	 * @throws InvalidKeyException if one of the seeds is not a valid key for the prg.
+	 * @throws IllegalArgumentException if the number of hashes is not the number of workers or if the number of hashed circuits
+	 * is not the number of seeds.
+	 */
+	public boolean[] verify(final byte[][] seeds, final byte[][] hashedCircuits, final CryptographicHash... hashes) throws InvalidKeyException{
+		checkHashes(hashes);
+		if (hashedCircuits.length != seeds.length){
+			throw new IllegalArgumentException("there should be a hashed circuit for each seed");
+		}
+		final boolean[] verified = new boolean[seeds.length];
+		run(seeds.length, new CopyTask(){
+			@Override
+			void process(int worker, int copy) throws InvalidKeyException {
+				verified[copy] = Arrays.equals(garbleAndHashCopy(worker, seeds[copy], hashes[worker]), hashedCircuits[copy]);
+			}
+		});
+		return verified;
+	}
+	
+	private void checkHashes(CryptographicHash[] hashes){
+		if (hashes.length != workers.length){
+			throw new IllegalArgumentException("there should be a hash function object for each worker");
+		}
+	}
+	
+	/**
+	 * Garbles the circuit of the given worker from the given seed. <p>
+	 * Like {@link GarbledBooleanCircuitExtendedImp#garble(byte[])}, the seed is expanded into two seeds and the inner circuit 
+	 * is garbled using the first one.
+	 * @param listener Notified during the garbling. May be null.
+	 */
+	private CircuitCreationValues garbleCopy(int worker, byte[] seed, GarbledTableListener listener) throws InvalidKeyException{
+		PseudorandomGenerator prg = prgs[worker];
+		prg.setKey(new SecretKeySpec(seed, ""));
+		byte[] out = new byte[seed.length * 2];
+		prg.getPRGBytes(out, 0, out.length);
+		byte[] innerSeed = new byte[seed.length];
+		System.arraycopy(out, 0, innerSeed, 0, seed.length);
+		
+		return workers[worker].garble(innerSeed, listener);
+	}
+	
+	/**
+	 * Garbles the circuit of the given worker from the given seed and hashes its garbled tables and translation table, the same 
+	 * way {@link GarbledBooleanCircuitExtendedImp#getHashedCircuit(CryptographicHash)} does.
+	 */
+	private byte[] garbleAndHashCopy(int worker, byte[] seed, CryptographicHash hash) throws InvalidKeyException{
+		GarbledBooleanCircuitImp circuit = workers[worker];
+		//Give the worker a new array of tables. The current array may belong to a copy that was returned by garble(byte[][]), 
+		//and the hasher releases the tables from the array.
+		circuit.setGarbledTables(new BasicGarbledTablesHolder(new byte[numberOfGates][]));
+		garbleCopy(worker, seed, new GarbledTablesHasher(hash, (BasicGarbledTablesHolder) circuit.getGarbledTables()));
+		return GarbledTablesHasher.finish(hash, circuit.getOutputWireIndices(), circuit.getTranslationTable());
+	}
+	
+	/**
+	 * Runs the task on all the copies. Each worker takes the next copy that was not taken yet, until all the copies are done.
+	 */
+	private void run(final int numberOfCopies, final CopyTask task) throws InvalidKeyException{
+		final AtomicInteger nextCopy = new AtomicInteger();
+		List<Callable<Object>> parts = new ArrayList<Callable<Object>>(workers.length);
+		for (int w = 0; w < workers.length; w++){
+			final int worker = w;
+			parts.add(new Callable<Object>(){
+				@Override
+				public Object call() throws InvalidKeyException {
+					int copy;
+					while ((copy = nextCopy.getAndIncrement()) < numberOfCopies){
+						task.process(worker, copy);
+					}
+					return null;
+				}
+			});
+		}
+		
+		try {
+			List<Future<Object>> results = executor.invokeAll(parts);
+			for (Future<Object> result : results){
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ScapiRuntimeException("interrupted while waiting for the workers");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof InvalidKeyException){
+				throw (InvalidKeyException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException){
+				throw (RuntimeException) e.getCause();
+			}
+			throw new ScapiRuntimeException("a worker failed. The error is: " + e.getCause());
+		}
+	}
+}
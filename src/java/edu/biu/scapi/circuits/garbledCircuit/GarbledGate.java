@@ -53,6 +53,17 @@ public interface GarbledGate {
 	 */
 	public void compute(Map<Integer, GarbledWire> computedWires) throws InvalidKeyException, IllegalBlockSizeException, CiphertextTooLongException;
 
+	/**
+	 * Computes the output of this gate and sets the output wire(s) to that value.<p>
+	 * This is the same as {@link #compute(Map)}, but works on a {@link GarbledWireStore} that holds the values of all the wires 
+	 * in a single array, indexed by the wire number.
+	 * @param wires A {@link GarbledWireStore} containing the values of the wires that have already been computed.
+	 * @throws InvalidKeyException
+	 * @throws IllegalBlockSizeException
+	 * @throws CiphertextTooLongException
+	 */
+	public void compute(GarbledWireStore wires) throws InvalidKeyException, IllegalBlockSizeException, CiphertextTooLongException;
+
 	/**
 	 * This method tests an ungarbled {@link Gate} for equality to this {@code GarbledGate}. <P>
 	 * That is, they have the same truth table and indices.<p>
@@ -0,0 +1,104 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.util.Map;
+
+import edu.biu.scapi.primitives.hash.CryptographicHash;
+
+/**
+ * Hashes the garbled tables of a circuit while it is being garbled.<p>
+ * Each table is fed into the hash as soon as it is created and is then released from the tables holder. Thus, the hash of a 
+ * circuit can be computed without holding all of its garbled tables in memory. <p>
+ * The hash is the same as the one computed by {@link GarbledBooleanCircuitExtended#getHashedCircuit(CryptographicHash)}: 
+ * the garbled tables in the order of the gates (gates with no table are skipped), followed by the signal bit of each output wire.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+class GarbledTablesHasher implements GarbledTableListener {
+	
+	private CryptographicHash hash;
+	private BasicGarbledTablesHolder holder;	//The tables of the garbled circuit. The hashed tables are released from it.
+	
+	/**
+	 * Sets the given hash and tables holder.
+	 * @param hash The hash to update with the tables. Should not be used by others until the hash is finished.
+	 * @param holder Holds the tables of the garbled circuit.
+	 */
+	GarbledTablesHasher(CryptographicHash hash, BasicGarbledTablesHolder holder){
+		this.hash = hash;
+		this.holder = holder;
+	}
+	
+	/**
+	 * Does nothing, since the keys are not part of the hash.
+	 */
+	@Override
+	public void keysCreated(CircuitCreationValues values) {}
+	
+	@Override
+	public void tableCreated(int gateNumber, byte[] garbledTable) {
+		hash.update(garbledTable, 0, garbledTable.length);
+		
+		//The table is not needed anymore.
+		holder.toDoubleByteArray()[gateNumber] = null;
+	}
+	
+	/**
+	 * Updates the given hash with the given tables, in their order. Null tables are skipped.
+	 * @param hash The hash to update.
+	 * @param tables The tables to hash. May be null.
+	 */
+	static void updateTables(CryptographicHash hash, byte[][] tables){
+		if (tables == null){
+			return;
+		}
+		for (int i = 0; i < tables.length; i++){
+			if (tables[i] != null){
+				hash.update(tables[i], 0, tables[i].length);
+			}
+		}
+	}
+	
+	/**
+	 * Updates the given hash with the signal bit of each output wire and computes the hash result.
+	 * @param hash The hash to finish.
+	 * @param outputWireIndices The indices of the output wires, in the order of hashing.
+	 * @param translationTable The signal bit of each output wire.
+	 * @return The result of the hash function.
+	 */
+	static byte[] finish(CryptographicHash hash, int[] outputWireIndices, Map<Integer, Byte> translationTable){
+		byte[] signalBit = new byte[1];
+		for (int w : outputWireIndices){
+			signalBit[0] = translationTable.get(w);
+			hash.update(signalBit, 0, 1);
+		}
+		
+		byte[] output = new byte[hash.getHashedMsgSize()];
+		hash.hashFinal(output, 0);
+		return output;
+	}
+}
@@ -0,0 +1,351 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.RawChannel;
+import edu.biu.scapi.exceptions.ScapiRuntimeException;
+
+/**
+ * Transfers the garbled tables of a circuit over a channel in chunks, so that the garbler can send tables while it is still 
+ * garbling and the evaluator can compute gates while the rest of the tables are still on their way.<p>
+ * 
+ * Each chunk is a byte array that contains a sequence of records of the form [gate number (int)][table length (int)][table].
+ * The records are ordered by the gate number. An empty chunk marks the end of the stream.<p>
+ * 
+ * Both sides use a dedicated thread for the communication and a bounded queue of chunks between that thread and the 
+ * garbling/computing thread. Thus, only a few chunks are held in memory at any time.<p>
+ * 
+ * In case the garbling or the computing thread fails in the middle of the stream, the stream should be aborted. This closes 
+ * the channel, since the rest of the stream cannot be skipped, and stops the communication thread.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+final class GarbledTablesStream {
+	
+	//The number of chunks that can wait in the queue between the communication thread and the garbling/computing thread.
+	private static final int QUEUE_CAPACITY = 4;
+	
+	//The size of the header of each record in the chunk.
+	private static final int RECORD_HEADER_SIZE = 8;
+	
+	private static final byte[] END_OF_STREAM = new byte[0];
+	
+	private GarbledTablesStream(){}
+	
+	/**
+	 * Sends a byte array over the given channel. If the channel is a {@link RawChannel}, the array is sent without serialization.
+	 */
+	private static void send(Channel channel, byte[] data) throws IOException {
+		if (channel instanceof RawChannel){
+			((RawChannel) channel).send(data);
+		} else {
+			channel.send(data);
+		}
+	}
+	
+	/**
+	 * Receives a byte array sent by {@link #send(Channel, byte[])} on the other side.
+	 */
+	private static byte[] receive(Channel channel) throws IOException {
+		if (channel instanceof RawChannel){
+			return ((RawChannel) channel).receiveBytes();
+		} 
+		Serializable message;
+		try {
+			message = channel.receive();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("failed to receive a chunk of garbled tables. The error is: " + e.getMessage());
+		}
+		if (!(message instanceof byte[])){
+			throw new IllegalArgumentException("the given message should be a byte array");
+		}
+		return (byte[]) message;
+	}
+	
+	/**
+	 * The garbler side of the stream.<p>
+	 * Gets notified about each created garbled table, packs the tables into chunks and passes full chunks to a thread that 
+	 * sends them. A table is removed from the tables holder once it has been packed into a chunk.<p>
+	 * The given {@link GarbledKeysHandler} is called on the garbling thread before the first table is created.
+	 */
+	static final class Sender implements GarbledTableListener, Runnable {
+		
+		private final Channel channel;
+		private final BasicGarbledTablesHolder holder;
+		private final int chunkSize;
+		private final GarbledKeysHandler keysHandler;
+		private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<byte[]>(QUEUE_CAPACITY);
+		private final Thread thread;
+		private ByteBuffer chunk;
+		private volatile IOException failure;
+		
+		/**
+		 * Starts the sending thread.
+		 * @param channel The channel to send the tables on.
+		 * @param holder Holds the garbled tables of the circuit.
+		 * @param chunkSize The number of bytes to accumulate before sending a chunk.
+		 * @param keysHandler Gets the keys of the circuit before the tables are sent. May be null.
+		 */
+		Sender(Channel channel, BasicGarbledTablesHolder holder, int chunkSize, GarbledKeysHandler keysHandler){
+			if (chunkSize <= 0){
+				throw new IllegalArgumentException("chunkSize should be positive");
+			}
+			this.channel = channel;
+			this.holder = holder;
+			this.chunkSize = chunkSize;
+			this.keysHandler = keysHandler;
+			chunk = ByteBuffer.allocate(chunkSize);
+			thread = new Thread(this, "GarbledTablesSender");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		
+		@Override
+		public void keysCreated(CircuitCreationValues values) {
+			if (keysHandler != null){
+				try {
+					keysHandler.keysCreated(values);
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+		}
+		
+		@Override
+		public void tableCreated(int gateNumber, byte[] garbledTable) {
+			//The tables can not be used by the other party after the keys failed to be delivered.
+			if (failure != null){
+				return;
+			}
+			int recordSize = RECORD_HEADER_SIZE + garbledTable.length;
+			if (chunk.remaining() < recordSize){
+				flush();
+				//A table that is larger than the chunk size is sent in its own chunk.
+				if (chunk.capacity() < recordSize){
+					chunk = ByteBuffer.allocate(recordSize);
+				}
+			}
+			chunk.putInt(gateNumber).putInt(garbledTable.length).put(garbledTable);
+			
+			//The table is not needed by the garbler anymore.
+			holder.toDoubleByteArray()[gateNumber] = null;
+		}
+		
+		/**
+		 * Sends the last chunk and the end of the stream and waits until everything was sent.<p>
+		 * In case the keys could not be delivered or the sending failed, the end of the stream is not sent and the channel is 
+		 * closed, so the evaluator gets an error instead of waiting for the rest of the tables.
+		 * @throws IOException if the keys handler or the sending failed.
+		 */
+		void finish() throws IOException {
+			if (failure == null){
+				flush();
+			}
+			enqueue(END_OF_STREAM);
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ScapiRuntimeException("interrupted while sending the garbled tables");
+			}
+			if (failure != null){
+				channel.close();
+				throw failure;
+			}
+		}
+		
+		/**
+		 * Stops the stream in case the garbling failed. The channel is closed, so the evaluator gets an error instead of 
+		 * waiting for the rest of the tables or treating a partial stream as complete. Does not wait for the sending thread.
+		 */
+		void abort(){
+			queue.clear();
+			thread.interrupt();
+			channel.close();
+		}
+		
+		/**
+		 * Passes the current chunk to the sending thread and starts a new one.
+		 */
+		private void flush(){
+			if (chunk.position() == 0){
+				return;
+			}
+			byte[] data = new byte[chunk.position()];
+			chunk.flip();
+			chunk.get(data);
+			if (chunk.capacity() != chunkSize){
+				chunk = ByteBuffer.allocate(chunkSize);
+			} else {
+				chunk.clear();
+			}
+			enqueue(data);
+		}
+		
+		private void enqueue(byte[] data){
+			try {
+				queue.put(data);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ScapiRuntimeException("interrupted while sending the garbled tables");
+			}
+		}
+		
+		@Override
+		public void run() {
+			while (true){
+				byte[] data;
+				try {
+					data = queue.take();
+				} catch (InterruptedException e) {
+					return;
+				}
+				//After a failure the chunks are still taken from the queue so that the garbling thread will not block.
+				if (failure == null){
+					try {
+						send(channel, data);
+					} catch (IOException e) {
+						failure = e;
+					}
+				}
+				if (data.length == 0){
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The evaluator side of the stream.<p>
+	 * A thread receives the chunks from the channel ahead of the computation and the computing thread takes them by calling 
+	 * {@link #nextChunk()}.
+	 */
+	static final class Receiver implements Runnable {
+		
+		private final Channel channel;
+		private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<byte[]>(QUEUE_CAPACITY);
+		private final Thread thread;
+		private volatile IOException failure;
+		
+		/**
+		 * Starts the receiving thread.
+		 * @param channel The channel to receive the tables from.
+		 */
+		Receiver(Channel channel){
+			this.channel = channel;
+			thread = new Thread(this, "GarbledTablesReceiver");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		
+		/**
+		 * Stops the stream in case the computation failed before the end of the stream. The channel is closed, since the rest 
+		 * of the chunks cannot be skipped, and the receiving thread is released.
+		 */
+		void abort(){
+			queue.clear();
+			thread.interrupt();
+			channel.close();
+		}
+		
+		/**
+		 * Returns the next chunk of the stream, or null if the stream has ended.
+		 * @throws IOException if the receiving failed.
+		 */
+		byte[] nextChunk() throws IOException {
+			byte[] data;
+			try {
+				data = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ScapiRuntimeException("interrupted while receiving the garbled tables");
+			}
+			if (data.length == 0){
+				if (failure != null){
+					throw failure;
+				}
+				return null;
+			}
+			return data;
+		}
+		
+		@Override
+		public void run() {
+			byte[] data;
+			do {
+				try {
+					data = receive(channel);
+				} catch (IOException e) {
+					failure = e;
+					data = END_OF_STREAM;
+				} catch (RuntimeException e) {
+					failure = new IOException("received an illegal chunk of garbled tables. The error is: " + e.getMessage());
+					data = END_OF_STREAM;
+				}
+				try {
+					queue.put(data);
+				} catch (InterruptedException e) {
+					return;
+				}
+			} while (data.length != 0);
+		}
+	}
+	
+	/**
+	 * Reads the records of the given chunk into the given garbled tables array.
+	 * @param chunk A chunk that was received from the garbler.
+	 * @param tables The garbled tables of the circuit.
+	 * @param firstGate The smallest gate number that can appear in the chunk.
+	 * @return the number of the last gate in the chunk.
+	 * @throws IllegalArgumentException if the chunk is malformed.
+	 */
+	static int readChunk(byte[] chunk, byte[][] tables, int firstGate){
+		ByteBuffer buffer = ByteBuffer.wrap(chunk);
+		int lastGate = firstGate - 1;
+		while (buffer.hasRemaining()){
+			if (buffer.remaining() < RECORD_HEADER_SIZE){
+				throw new IllegalArgumentException("the given chunk of garbled tables is malformed");
+			}
+			int gateNumber = buffer.getInt();
+			int length = buffer.getInt();
+			if (gateNumber <= lastGate || gateNumber >= tables.length || length < 0 || length > buffer.remaining()){
+				throw new IllegalArgumentException("the given chunk of garbled tables is malformed");
+			}
+			byte[] table = new byte[length];
+			buffer.get(table);
+			tables[gateNumber] = table;
+			lastGate = gateNumber;
+		}
+		return lastGate;
+	}
+}
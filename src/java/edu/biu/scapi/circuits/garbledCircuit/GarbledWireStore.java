@@ -0,0 +1,221 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A dense store of the garbled values of a circuit's wires, used during computation. <p>
+ * All the garbled values are kept in a single flat {@code byte[]}, where the value of wire w starts at offset w*labelSize. 
+ * This way, the gates read their inputs and write their outputs by wire index, without boxing the indices, 
+ * looking them up in a {@link Map} or copying the keys every time the signal bit is needed. <p>
+ * The wire indices should be non negative. The store grows if a wire index beyond its size is set.<p>
+ * The {@code Map} based API of the circuits is kept by converting the input wires into the store with {@link #putAll(Map)} and 
+ * the output wires back with {@link #toMap(int[])}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class GarbledWireStore {
+	
+	private byte[] labels;		//The garbled values of all the wires, one after the other.
+	private boolean[] isSet;	//Indicates for each wire whether its value was set.
+	private int labelSize;		//The size of each garbled value in bytes.
+	
+	/**
+	 * Creates a store for the given number of wires.
+	 * @param numberOfWires the number of wires. The wire indices are expected to be between 0 and numberOfWires-1.
+	 * @param labelSize the size of each garbled value in bytes.
+	 */
+	public GarbledWireStore(int numberOfWires, int labelSize){
+		this.labelSize = labelSize;
+		labels = new byte[numberOfWires * labelSize];
+		isSet = new boolean[numberOfWires];
+	}
+	
+	/**
+	 * @return the size of each garbled value in bytes.
+	 */
+	public int getLabelSize(){
+		return labelSize;
+	}
+	
+	/**
+	 * @return the number of wires the store currently holds.
+	 */
+	public int getNumberOfWires(){
+		return isSet.length;
+	}
+	
+	/**
+	 * Returns the underlying array that holds all the garbled values. The value of wire w is in {@link #getOffset(int)}. <p>
+	 * This array is used by the gates in order to encrypt and decrypt in place. Note that it is replaced if the store grows.
+	 */
+	public byte[] getLabels(){
+		return labels;
+	}
+	
+	/**
+	 * @return the offset of the given wire's value in the array returned by {@link #getLabels()}.
+	 */
+	public int getOffset(int wireIndex){
+		return wireIndex * labelSize;
+	}
+	
+	/**
+	 * @return true if the value of the given wire was set; false, otherwise.
+	 */
+	public boolean isSet(int wireIndex){
+		return wireIndex >= 0 && wireIndex < isSet.length && isSet[wireIndex];
+	}
+	
+	/**
+	 * Returns the signal bit of the given wire, that is the least significant bit of its garbled value.
+	 */
+	public byte getSignalBit(int wireIndex){
+		return (byte) (labels[(wireIndex + 1) * labelSize - 1] & 1);
+	}
+	
+	/**
+	 * @return a copy of the garbled value of the given wire.
+	 */
+	public byte[] getLabel(int wireIndex){
+		byte[] label = new byte[labelSize];
+		System.arraycopy(labels, wireIndex * labelSize, label, 0, labelSize);
+		return label;
+	}
+	
+	/**
+	 * Sets the garbled value of the given wire from the given array.
+	 * @param wireIndex the wire to set.
+	 * @param value holds the garbled value.
+	 * @param offset the offset of the value in the given array.
+	 */
+	public void setLabel(int wireIndex, byte[] value, int offset){
+		ensureCapacity(wireIndex);
+		System.arraycopy(value, offset, labels, wireIndex * labelSize, labelSize);
+		isSet[wireIndex] = true;
+	}
+	
+	/**
+	 * Marks the given wire as set after its value was written directly to the array returned by {@link #getLabels()}.
+	 */
+	public void markSet(int wireIndex){
+		isSet[wireIndex] = true;
+	}
+	
+	/**
+	 * Sets the value of the output wire to be the XOR of the values of the two given input wires.
+	 */
+	public void xor(int outputWireIndex, int firstInputIndex, int secondInputIndex){
+		ensureCapacity(outputWireIndex);
+		int out = outputWireIndex * labelSize;
+		int first = firstInputIndex * labelSize;
+		int second = secondInputIndex * labelSize;
+		for (int i = 0; i < labelSize; i++){
+			labels[out + i] = (byte) (labels[first + i] ^ labels[second + i]);
+		}
+		isSet[outputWireIndex] = true;
+	}
+	
+	/**
+	 * Copies the value of one wire to another wire. Used for gates with more than one output wire.
+	 */
+	public void copy(int toWireIndex, int fromWireIndex){
+		ensureCapacity(toWireIndex);
+		System.arraycopy(labels, fromWireIndex * labelSize, labels, toWireIndex * labelSize, labelSize);
+		isSet[toWireIndex] = true;
+	}
+	
+	/**
+	 * @return a {@link GarbledWire} that holds a copy of the given wire's value.
+	 */
+	public GarbledWire getWire(int wireIndex){
+		return new GarbledWire(new SecretKeySpec(labels, wireIndex * labelSize, labelSize, ""));
+	}
+	
+	/**
+	 * Sets the value of the given wire to the value of the given {@link GarbledWire}.
+	 */
+	public void putWire(int wireIndex, GarbledWire wire){
+		byte[] value = wire.getValueAndSignalBit().getEncoded();
+		if (value.length != labelSize){
+			throw new IllegalArgumentException("the garbled value should be of " + labelSize + " bytes");
+		}
+		setLabel(wireIndex, value, 0);
+	}
+	
+	/**
+	 * Sets the values of all the wires in the given map.
+	 * @throws IllegalArgumentException if one of the wire indices is negative.
+	 */
+	public void putAll(Map<Integer, GarbledWire> wires){
+		for (Map.Entry<Integer, GarbledWire> entry : wires.entrySet()){
+			putWire(entry.getKey(), entry.getValue());
+		}
+	}
+	
+	/**
+	 * @return a map from each of the given wire indices to its garbled wire. Wires that were not set are not put in the map.
+	 */
+	public HashMap<Integer, GarbledWire> toMap(int[] wireIndices){
+		HashMap<Integer, GarbledWire> wires = new HashMap<Integer, GarbledWire>();
+		for (int w : wireIndices){
+			if (isSet(w)){
+				wires.put(w, getWire(w));
+			}
+		}
+		return wires;
+	}
+	
+	/**
+	 * Marks all the wires as not set, so the store can be reused for another computation.
+	 */
+	public void clear(){
+		Arrays.fill(isSet, false);
+	}
+	
+	/**
+	 * Grows the store so that it can hold the given wire index.
+	 */
+	private void ensureCapacity(int wireIndex){
+		if (wireIndex < 0){
+			throw new IllegalArgumentException("wire indices should be non negative");
+		}
+		if (wireIndex >= isSet.length){
+			int numberOfWires = Math.max(wireIndex + 1, isSet.length * 2);
+			byte[] newLabels = new byte[numberOfWires * labelSize];
+			System.arraycopy(labels, 0, newLabels, 0, labels.length);
+			labels = newLabels;
+			boolean[] newIsSet = new boolean[numberOfWires];
+			System.arraycopy(isSet, 0, newIsSet, 0, isSet.length);
+			isSet = newIsSet;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.security.InvalidKeyException;
+import java.util.Map;
+
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.SecretKey;
+
+import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.encryption.AESFixedKeyMultiKeyEncryption;
+import edu.biu.scapi.primitives.prg.PseudorandomGenerator;
+
+/**
+ * The {@code HalfGatesGarbledBooleanCircuitUtil} class is a utility class that computes the functionalities regarding Free XOR 
+ * Garbled Boolean Circuit using the half gates technique.<p>
+ * XOR gates are free and each two-input gate whose truth table has an odd number of ones (AND, OR etc.) is garbled as a 
+ * {@link HalfGatesGarbledGate} with two ciphertexts. Other gates (such as gates with more inputs) are garbled as standard gates.<p>
+ * The output keys of a half gate are derived from its input keys, thus its garbled table is created during the creation of the keys.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+class HalfGatesGarbledBooleanCircuitUtil extends FreeXORGarbledBooleanCircuitUtil {
+	
+	private AESFixedKeyMultiKeyEncryption aes;
+	
+	//The garbled tables of the circuit that is currently garbled. The tables of the half gates are put there during the keys creation.
+	private BasicGarbledTablesHolder garbledTablesHolder;
+	
+	/**
+	 * Sets the given fixed key AES.
+	 * @param aes Used as the hash function of the half gates.
+	 */
+	HalfGatesGarbledBooleanCircuitUtil(AESFixedKeyMultiKeyEncryption aes) {
+		super(aes);
+		this.aes = aes;
+	}
+	
+	@Override
+	protected GarbledGate createStandardGate(Gate ungarbledGate, BasicGarbledTablesHolder garbledTablesHolder) {
+		if (HalfGatesGarbledGate.isHalfGate(ungarbledGate)){
+			return new HalfGatesGarbledGate(ungarbledGate, aes, garbledTablesHolder);
+		}
+		return super.createStandardGate(ungarbledGate, garbledTablesHolder);
+	}
+	
+	@Override
+	public CircuitCreationValues garble(BooleanCircuit ungarbledCircuit, GarbledTablesHolder garbledTablesHolder, GarbledGate[] gates) {
+		if (!(garbledTablesHolder instanceof BasicGarbledTablesHolder)){
+			throw new IllegalArgumentException("the given garbledTablesHolder should be an instance of BasicGarbledTablesHolder");
+		}
+		this.garbledTablesHolder = (BasicGarbledTablesHolder) garbledTablesHolder;
+		return super.garble(ungarbledCircuit, garbledTablesHolder, gates);
+	}
+	
+	@Override
+	public CircuitCreationValues garble(BooleanCircuit ungarbledCircuit, GarbledTablesHolder garbledTablesHolder, 
+			GarbledGate[] gates, PseudorandomGenerator prg, byte[] seed) throws InvalidKeyException {
+		if (!(garbledTablesHolder instanceof BasicGarbledTablesHolder)){
+			throw new IllegalArgumentException("the given garbledTablesHolder should be an instance of BasicGarbledTablesHolder");
+		}
+		this.garbledTablesHolder = (BasicGarbledTablesHolder) garbledTablesHolder;
+		return super.garble(ungarbledCircuit, garbledTablesHolder, gates, prg, seed);
+	}
+	
+	/**
+	 * Generates the keys of a half gate by garbling it, and puts its garbled table in the tables holder.
+	 * Other gates get keys as in a regular Free XOR circuit.
+	 * @param zeroValueBytes this value is ignored for half gates since their keys are derived from the gate's input keys.
+	 */
+	@Override
+	protected void generateStandardValues(Gate ungarbledGate, Map<Integer, SecretKey[]> allWireValues, byte[] globalKeyOffset, byte[] zeroValueBytes) {
+		if (!HalfGatesGarbledGate.isHalfGate(ungarbledGate)){
+			super.generateStandardValues(ungarbledGate, allWireValues, globalKeyOffset, zeroValueBytes);
+			return;
+		}
+		
+		byte[] garbledTable = new byte[2 * aes.getCipherSize()];
+		byte[] outputZeroValue = null;
+		try {
+			outputZeroValue = HalfGatesGarbledGate.garble(aes, ungarbledGate, allWireValues, globalKeyOffset, garbledTable);
+		} catch (IllegalBlockSizeException e) {
+			// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
+		}
+		garbledTablesHolder.toDoubleByteArray()[ungarbledGate.getGateNumber()] = garbledTable;
+		calcK1AndPutInMaps(allWireValues, globalKeyOffset, outputZeroValue, null, ungarbledGate.getOutputWireIndices()[0]);
+	}
+}
@@ -0,0 +1,249 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.encryption.AESFixedKeyMultiKeyEncryption;
+import edu.biu.scapi.exceptions.CiphertextTooLongException;
+
+/**
+ * A garbled gate that uses the half gates technique. <p>
+ * The gate computes a function of the form ((a XOR alpha) AND (b XOR beta)) XOR gamma, that is, any two-input gate whose truth
+ * table has an odd number of ones (AND, OR, NAND, NOR etc.). Its garbled table contains only two ciphertexts: one for the 
+ * "generator half gate", in which the garbler knows the second input, and one for the "evaluator half gate", in which the 
+ * evaluator knows the second input. The output keys are derived from the input keys, thus they are created together with the 
+ * garbled table by {@link #garble(AESFixedKeyMultiKeyEncryption, Gate, Map, byte[], byte[])}. <p>
+ * The hash function is the fixed key AES function of {@link AESFixedKeyMultiKeyEncryption} in its Free XOR mode, which computes
+ * H(k, tweak) = AES(2k ^ tweak) ^ 2k ^ tweak. <p>
+ * See "Two Halves Make a Whole: Reducing Data Transfer in Garbled Circuits using Half Gates" by Samee Zahur, Mike Rosulek and 
+ * David Evans.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+class HalfGatesGarbledGate extends StandardGarbledGate {
+	
+	//The size of the keys and of each ciphertext in the garbled table, which is the AES block size.
+	private static final int LABEL_SIZE = 16;
+	
+	//The offsets of the four keys that are hashed when garbling the gate.
+	private static final int[] ALL_KEYS = {0, LABEL_SIZE, 2 * LABEL_SIZE, 3 * LABEL_SIZE};
+	
+	private AESFixedKeyMultiKeyEncryption aes;
+	
+	/**
+	 * Constructs a half gate from an ungarbled gate.
+	 * @param ungarbledGate The gate to garble. Should be a gate that {@link #isHalfGate(Gate)} accepts.
+	 * @param aes The fixed key AES used as the hash function. Should be in the Free XOR mode.
+	 * @param garbledTablesHolder A reference to the garbled tables of the circuit.
+	 */
+	HalfGatesGarbledGate(Gate ungarbledGate, AESFixedKeyMultiKeyEncryption aes, BasicGarbledTablesHolder garbledTablesHolder) {
+		super(ungarbledGate, aes, garbledTablesHolder);
+		this.aes = aes;
+	}
+	
+	/**
+	 * Checks if the given gate can be garbled as a half gate, i.e. it has two inputs and its truth table has an odd number of ones.
+	 * @param gate The gate to check.
+	 */
+	static boolean isHalfGate(Gate gate){
+		return gate.getInputWireIndices().length == 2 && gate.getTruthTable().get(0, 4).cardinality() % 2 == 1;
+	}
+	
+	/**
+	 * Puts the tweaks of the gate's two halves, one after the other, in the given array. <p>
+	 * The tweak of a half is the gate number followed by 0 for the generator half gate or 1 for the evaluator half gate.
+	 * @param gateNumber The number of the gate.
+	 * @param tweaks The array to put the tweaks in.
+	 * @param generatorCopies The number of copies of the generator tweak, which are followed by the same number of copies of the 
+	 * evaluator tweak.
+	 */
+	private static void putTweaks(int gateNumber, byte[] tweaks, int generatorCopies){
+		ByteBuffer buffer = ByteBuffer.wrap(tweaks);
+		for (int i = 0; i < 2 * generatorCopies; i++){
+			buffer.putInt(i * LABEL_SIZE, gateNumber).putInt(i * LABEL_SIZE + 4, i / generatorCopies);
+		}
+	}
+	
+	private static void xor(byte[] target, byte[] value){
+		for (int i = 0; i < LABEL_SIZE; i++){
+			target[i] ^= value[i];
+		}
+	}
+	
+	/**
+	 * Garbles the given gate. <p>
+	 * The truth table is written as ((a XOR alpha) AND (b XOR beta)) XOR gamma, and the AND gate is garbled on the keys of 
+	 * a XOR alpha and b XOR beta. 
+	 * @param aes The fixed key AES used as the hash function.
+	 * @param ungarbledGate The gate to garble. Should be a gate that {@link #isHalfGate(Gate)} accepts.
+	 * @param allWireValues Contains both keys of the gate's input wires.
+	 * @param globalKeyOffset The Free XOR delta.
+	 * @param garbledTable An array of two ciphertexts to fill with the garbled table.
+	 * @return the 0-key of the gate's output wire.
+	 * @throws IllegalBlockSizeException 
+	 */
+	static byte[] garble(AESFixedKeyMultiKeyEncryption aes, Gate ungarbledGate, Map<Integer, SecretKey[]> allWireValues, 
+			byte[] globalKeyOffset, byte[] garbledTable) throws IllegalBlockSizeException {
+		
+		/*
+		 * If the truth table has a single one at row 2x+y, the gate is (a == x) AND (b == y). 
+		 * If it has a single zero at row 2x+y, the gate is the negation of it.
+		 */
+		BitSet truthTable = ungarbledGate.getTruthTable();
+		boolean gamma = truthTable.get(0, 4).cardinality() == 3;
+		int row = 0;
+		while (truthTable.get(row) == gamma){
+			row++;
+		}
+		int alpha = 1 - (row >> 1);
+		int beta = 1 - (row & 1);
+		
+		//The four keys a0, a1, b0, b1 are hashed together, with the generator tweak for a0, a1 and the evaluator tweak for b0, b1.
+		int[] inputs = ungarbledGate.getInputWireIndices();
+		byte[] labels = new byte[4 * LABEL_SIZE];
+		System.arraycopy(allWireValues.get(inputs[0])[alpha].getEncoded(), 0, labels, 0, LABEL_SIZE);
+		System.arraycopy(allWireValues.get(inputs[0])[1 - alpha].getEncoded(), 0, labels, LABEL_SIZE, LABEL_SIZE);
+		System.arraycopy(allWireValues.get(inputs[1])[beta].getEncoded(), 0, labels, 2 * LABEL_SIZE, LABEL_SIZE);
+		System.arraycopy(allWireValues.get(inputs[1])[1 - beta].getEncoded(), 0, labels, 3 * LABEL_SIZE, LABEL_SIZE);
+		byte pa = (byte) (labels[LABEL_SIZE - 1] & 1);
+		byte pb = (byte) (labels[3 * LABEL_SIZE - 1] & 1);
+		byte[] tweaks = new byte[4 * LABEL_SIZE];
+		putTweaks(ungarbledGate.getGateNumber(), tweaks, 2);
+		byte[] hashes = new byte[4 * LABEL_SIZE];
+		aes.processRows(labels, ALL_KEYS, 1, tweaks, 0, null, 0, hashes, 0, 4);
+		
+		//Generator half gate: TG = H(a0) ^ H(a1) ^ pb*R, WG0 = H(a0) ^ pa*TG.
+		//Evaluator half gate: TE = H(b0) ^ H(b1) ^ a0, WE0 = H(b0) ^ pb*(TE ^ a0) = H(pb ? b1 : b0).
+		int we0Offset = (pb == 1) ? 3 * LABEL_SIZE : 2 * LABEL_SIZE;
+		byte[] outputZero = new byte[LABEL_SIZE];
+		for (int i = 0; i < LABEL_SIZE; i++){
+			byte tg = (byte) (hashes[i] ^ hashes[LABEL_SIZE + i] ^ ((pb == 1) ? globalKeyOffset[i] : 0));
+			garbledTable[i] = tg;
+			garbledTable[LABEL_SIZE + i] = (byte) (hashes[2 * LABEL_SIZE + i] ^ hashes[3 * LABEL_SIZE + i] ^ labels[i]);
+			
+			//The output 0-key is WG0 ^ WE0, negated in case of gamma.
+			outputZero[i] = (byte) (hashes[i] ^ ((pa == 1) ? tg : 0) ^ hashes[we0Offset + i] ^ (gamma ? globalKeyOffset[i] : 0));
+		}
+		return outputZero;
+	}
+	
+	/**
+	 * The garbled table of a half gate is created together with its output keys, during the creation of the circuit's keys.
+	 * Thus, there is nothing left to do here.
+	 */
+	@Override
+	void createGarbledTable(Gate ungarbledGate, Map<Integer, SecretKey[]> allWireValues) {}
+	
+	/**
+	 * Computes the output key out of the input keys: H(a, j) ^ sa*TG ^ H(b, j') ^ sb*(TE ^ a).
+	 * @param labels Holds the input keys.
+	 * @param aOffset The offset of the first input key in labels.
+	 * @param bOffset The offset of the second input key in labels.
+	 * @param out The array to put the output key in.
+	 * @param outOffset The offset of the output key in out.
+	 */
+	private void evaluate(byte[] labels, int aOffset, int bOffset, byte[] out, int outOffset) throws IllegalBlockSizeException{
+		byte[] garbledTable = garbledTablesHolder.toDoubleByteArray()[gateNumber];
+		
+		//The texts of the two halves are sa*TG and sb*(TE ^ a), and both halves are hashed together.
+		byte[] texts = new byte[2 * LABEL_SIZE];
+		if ((labels[aOffset + LABEL_SIZE - 1] & 1) == 1){
+			System.arraycopy(garbledTable, 0, texts, 0, LABEL_SIZE);
+		}
+		if ((labels[bOffset + LABEL_SIZE - 1] & 1) == 1){
+			for (int i = 0; i < LABEL_SIZE; i++){
+				texts[LABEL_SIZE + i] = (byte) (garbledTable[LABEL_SIZE + i] ^ labels[aOffset + i]);
+			}
+		}
+		byte[] tweaks = new byte[2 * LABEL_SIZE];
+		putTweaks(gateNumber, tweaks, 1);
+		aes.processRows(labels, new int[]{aOffset, bOffset}, 1, tweaks, 0, texts, 0, texts, 0, 2);
+		
+		for (int i = 0; i < LABEL_SIZE; i++){
+			out[outOffset + i] = (byte) (texts[i] ^ texts[LABEL_SIZE + i]);
+		}
+	}
+
+	@Override
+	public void compute(Map<Integer, GarbledWire> computedWires) throws IllegalBlockSizeException {
+		byte[] labels = new byte[2 * LABEL_SIZE];
+		System.arraycopy(computedWires.get(inputWireIndices[0]).getValueAndSignalBit().getEncoded(), 0, labels, 0, LABEL_SIZE);
+		System.arraycopy(computedWires.get(inputWireIndices[1]).getValueAndSignalBit().getEncoded(), 0, labels, LABEL_SIZE, LABEL_SIZE);
+		byte[] out = new byte[LABEL_SIZE];
+		evaluate(labels, 0, LABEL_SIZE, out, 0);
+		
+		SecretKey wireValue = new SecretKeySpec(out, "");
+		for (int w : outputWireIndices) {
+			computedWires.put(w, new GarbledWire(wireValue));
+		}
+	}
+	
+	@Override
+	public void compute(GarbledWireStore wires) throws IllegalBlockSizeException {
+		evaluate(wires.getLabels(), wires.getOffset(inputWireIndices[0]), wires.getOffset(inputWireIndices[1]), 
+				wires.getLabels(), wires.getOffset(outputWireIndices[0]));
+		wires.markSet(outputWireIndices[0]);
+		setOutputWires(wires);
+	}
+	
+	/**
+	 * Since the garbling of a half gate is deterministic given the input keys, the gate is verified by garbling it again and 
+	 * comparing the results.
+	 */
+	@Override
+	protected boolean verifyGarbledTable(Gate g, Map<Integer, SecretKey[]> allWireValues) 
+			throws CiphertextTooLongException, InvalidKeyException, IllegalBlockSizeException {
+		if (!isHalfGate(g)){
+			return false;
+		}
+		SecretKey[] firstInputKeys = allWireValues.get(inputWireIndices[0]);
+		byte[] globalKeyOffset = firstInputKeys[0].getEncoded();
+		xor(globalKeyOffset, firstInputKeys[1].getEncoded());
+		
+		byte[] garbledTable = new byte[2 * LABEL_SIZE];
+		byte[] outputZero = garble(aes, g, allWireValues, globalKeyOffset, garbledTable);
+		if (!Arrays.equals(garbledTable, garbledTablesHolder.toDoubleByteArray()[gateNumber])){
+			return false;
+		}
+		
+		byte[] outputOne = outputZero.clone();
+		xor(outputOne, globalKeyOffset);
+		for (int w : outputWireIndices) {
+			allWireValues.put(w, new SecretKey[] {new SecretKeySpec(outputZero, ""), new SecretKeySpec(outputOne, "")});
+		}
+		return true;
+	}
+}
@@ -28,6 +28,7 @@ import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.crypto.IllegalBlockSizeException;
@@ -241,6 +242,18 @@ public class IdentityGate implements GarbledGate{
 		computedWires.put(outputWireIndex, new GarbledWire(outputValue));	
 	}
 
+	/**
+	 * Identity gates are used by the extended circuit, with negative wire indices, and thus they are computed on a map. <p>
+	 * This function adapts the store to {@link #compute(Map)}, for the case that the indices of the gate are non negative.
+	 */
+	@Override
+	public void compute(GarbledWireStore wires) throws InvalidKeyException, IllegalBlockSizeException, CiphertextTooLongException {
+		Map<Integer, GarbledWire> computedWires = new HashMap<Integer, GarbledWire>();
+		computedWires.put(inputWireIndex, wires.getWire(inputWireIndex));
+		compute(computedWires);
+		wires.putWire(outputWireIndex, computedWires.get(outputWireIndex));
+	}
+
 	/**
 	 * Check that the given byte array contains 0^cipherSize.
 	 * @param validateZeros That should be verified.
@@ -0,0 +1,174 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.security.InvalidKeyException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.SecretKey;
+
+import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.exceptions.CiphertextTooLongException;
+import edu.biu.scapi.exceptions.PlaintextTooLongException;
+import edu.biu.scapi.exceptions.ScapiRuntimeException;
+
+/**
+ * Garbles and computes the gates of a circuit using several threads.<p>
+ * Each worker has its own array of garbled gates, created by its own circuit utility. Thus, each worker uses its own 
+ * encryption scheme (and KDF) object and the workers do not share any state other than the garbled tables and the wire values.
+ * All the arrays of gates point to the same garbled tables holder. <p>
+ * 
+ * The garbled tables can be created in any order since all the keys are generated before the tables. 
+ * The computation is done level by level (see {@link edu.biu.scapi.circuits.circuit.BooleanCircuit#getLevels()}), where the 
+ * gates of each level are divided between the workers.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+final class ParallelGateScheduler {
+	
+	//Levels with less gates than this are computed by the calling thread, since the synchronization costs more than the gates.
+	private static final int MIN_PARALLEL_GATES = 64;
+	
+	private final GarbledGate[][] workerGates;	//The gates of each worker.
+	private final ExecutorService executor;
+	
+	/**
+	 * Sets the given gates and executor.
+	 * @param workerGates The gates of each worker. The gates of the first worker are also used for sequential work.
+	 * @param executor Runs the workers' tasks.
+	 */
+	ParallelGateScheduler(GarbledGate[][] workerGates, ExecutorService executor){
+		this.workerGates = workerGates;
+		this.executor = executor;
+	}
+	
+	/**
+	 * A piece of work that should be done on a single gate.
+	 */
+	private static abstract class GateTask {
+		abstract void process(GarbledGate[] gates, int gate) throws InvalidKeyException, IllegalBlockSizeException, 
+			PlaintextTooLongException, CiphertextTooLongException;
+	}
+	
+	/**
+	 * Creates the garbled tables of the given gates in parallel.
+	 * @param tableGates The indices of the gates that have garbled tables.
+	 * @param ungarbledGates The gates of the ungarbled circuit.
+	 * @param allWireValues Both keys of all the circuit's wires. Only read by the workers.
+	 */
+	void createGarbledTables(int[] tableGates, final Gate[] ungarbledGates, final Map<Integer, SecretKey[]> allWireValues){
+		run(tableGates, new GateTask(){
+			@Override
+			void process(GarbledGate[] gates, int gate) throws InvalidKeyException, IllegalBlockSizeException, PlaintextTooLongException{
+				((StandardGarbledGate) gates[gate]).createGarbledTable(ungarbledGates[gate], allWireValues);
+			}
+		});
+	}
+	
+	/**
+	 * Computes the gates level by level.
+	 * @param levels The indices of the gates grouped by their levels.
+	 * @param wires Holds the values of the circuit's wires. Each gate writes only to its own output wires.
+	 */
+	void compute(int[][] levels, final GarbledWireStore wires){
+		GateTask task = new GateTask(){
+			@Override
+			void process(GarbledGate[] gates, int gate) throws InvalidKeyException, IllegalBlockSizeException, CiphertextTooLongException{
+				gates[gate].compute(wires);
+			}
+		};
+		for (int[] level : levels){
+			if (level.length < MIN_PARALLEL_GATES){
+				for (int gate : level){
+					processGate(task, workerGates[0], gate);
+				}
+			} else {
+				run(level, task);
+			}
+		}
+	}
+	
+	/**
+	 * Divides the given gates between the workers, runs the task on them and waits until all the workers are done.
+	 */
+	private void run(final int[] gateIndices, final GateTask task){
+		int numberOfWorkers = workerGates.length;
+		List<Callable<Object>> parts = new ArrayList<Callable<Object>>(numberOfWorkers);
+		for (int w = 0; w < numberOfWorkers; w++){
+			final GarbledGate[] gates = workerGates[w];
+			final int from = (int) ((long) gateIndices.length * w / numberOfWorkers);
+			final int to = (int) ((long) gateIndices.length * (w + 1) / numberOfWorkers);
+			parts.add(new Callable<Object>(){
+				@Override
+				public Object call() {
+					for (int i = from; i < to; i++){
+						processGate(task, gates, gateIndices[i]);
+					}
+					return null;
+				}
+			});
+		}
+		
+		try {
+			List<Future<Object>> results = executor.invokeAll(parts);
+			for (Future<Object> result : results){
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ScapiRuntimeException("interrupted while waiting for the workers");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException){
+				throw (RuntimeException) e.getCause();
+			}
+			throw new ScapiRuntimeException("a worker failed. The error is: " + e.getCause());
+		}
+	}
+	
+	/**
+	 * Runs the task on a single gate.
+	 */
+	private static void processGate(GateTask task, GarbledGate[] gates, int gate){
+		try {
+			task.process(gates, gate);
+		} catch (InvalidKeyException e) {
+			// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
+		} catch (IllegalBlockSizeException e) {
+			// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
+		} catch (PlaintextTooLongException e) {
+			// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
+		} catch (CiphertextTooLongException e) {
+			// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
+		}
+	}
+}
@@ -55,6 +55,10 @@ class StandardGarbledBooleanCircuitUtil implements CircuitTypeUtil{
 	
 	protected SecureRandom random;
 	
+	private GarbledTableListener tableListener;	//Notified about each created garbled table. May be null.
+	
+	private ParallelGateScheduler scheduler;	//Creates the garbled tables in parallel. May be null.
+	
 	/**
 	 * Sets the given MultiKeyEncryptionScheme and random.
 	 * @param mes
@@ -135,6 +139,9 @@ class StandardGarbledBooleanCircuitUtil implements CircuitTypeUtil{
 		allOutputWireValues = new HashMap<Integer, SecretKey[]>();
 		fillOutputWiresValues(ungarbledCircuit.getOutputWireIndices(), allOutputWireValues, allWireValues, translationTable);
 		
+		CircuitCreationValues values = new CircuitCreationValues(allInputWireValues, allOutputWireValues, translationTable);
+		notifyKeysCreated(values);
+		
 		//After we have all keys, create the garbledTables according to them.
 		try {
 			createGarbledTables(gates, (BasicGarbledTablesHolder) garbledTablesHolder, ungarbledGates, allWireValues);
@@ -146,7 +153,7 @@ class StandardGarbledBooleanCircuitUtil implements CircuitTypeUtil{
 			// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
 		}
 		
-		return new CircuitCreationValues(allInputWireValues, allOutputWireValues, translationTable);
+		return values;
 	}
 	
 	/**
@@ -178,9 +185,40 @@ class StandardGarbledBooleanCircuitUtil implements CircuitTypeUtil{
 	 */
 	private void createGarbledTables(GarbledGate[] gates, BasicGarbledTablesHolder garbledTablesHolder, Gate[] ungarbledGates, Map<Integer, SecretKey[]> allWireValues) throws InvalidKeyException, IllegalBlockSizeException, PlaintextTooLongException {
 		int length = ungarbledGates.length;
+		if (scheduler != null && tableListener == null){
+			int[] tableGates = new int[length];
+			for (int gate = 0; gate < length; gate++) {
+				tableGates[gate] = gate;
+			}
+			scheduler.createGarbledTables(tableGates, ungarbledGates, allWireValues);
+			return;
+		}
 		//After we have all keys, create the garbledTables according to them.
 		for (int gate = 0; gate < length; gate++) {
 			((StandardGarbledGate) gates[gate]).createGarbledTable(ungarbledGates[gate], allWireValues);
+			if (tableListener != null){
+				tableListener.tableCreated(gate, garbledTablesHolder.toDoubleByteArray()[gate]);
+			}
+		}
+	}
+	
+	@Override
+	public void setGarbledTableListener(GarbledTableListener listener){
+		tableListener = listener;
+	}
+	
+	@Override
+	public void setScheduler(ParallelGateScheduler scheduler){
+		this.scheduler = scheduler;
+	}
+	
+	/**
+	 * Notifies the listener (if there is one) that all the keys have been created.
+	 * @param values The created keys.
+	 */
+	protected void notifyKeysCreated(CircuitCreationValues values){
+		if (tableListener != null){
+			tableListener.keysCreated(values);
 		}
 	}
 
@@ -252,6 +290,7 @@ class StandardGarbledBooleanCircuitUtil implements CircuitTypeUtil{
 		
 		//Call the function that sample the keys.
 		CircuitCreationValues values = sampleSeedKeys(prg, seed, ungarbledCircuit, allWireValues);
+		notifyKeysCreated(values);
 				
 		try {
 			createGarbledTables(gates, (BasicGarbledTablesHolder) garbledTablesHolder, ungarbledGates, allWireValues);
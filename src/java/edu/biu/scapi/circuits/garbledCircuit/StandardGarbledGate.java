@@ -35,6 +35,7 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
 import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.encryption.AESFixedKeyMultiKeyEncryption;
 import edu.biu.scapi.circuits.encryption.MultiKeyEncryptionScheme;
 import edu.biu.scapi.exceptions.CiphertextTooLongException;
 import edu.biu.scapi.exceptions.KeyNotSetException;
@@ -192,6 +193,89 @@ class StandardGarbledGate implements GarbledGate {
 		}
 	}
 
+	@Override
+	public void compute(GarbledWireStore wires) throws InvalidKeyException, IllegalBlockSizeException, CiphertextTooLongException {
+		
+		//Calculate the row in the garbled table we need to decrypt and the tweak, directly from the signal bits in the store.
+		byte[] tweak = new byte[16];
+		int garbledTableIndex = getIndexToDecrypt(wires, tweak);
+		
+		// Decrypt the output value into the first output wire and copy it to the other output wires.
+		computeGarbledTable(wires, garbledTableIndex, tweak);
+		setOutputWires(wires);
+	}
+	
+	/**
+	 * Decrypts the given row of the garbled table into the first output wire of this gate.<p>
+	 * If the encryption scheme is {@link AESFixedKeyMultiKeyEncryption}, the row is decrypted in place, without creating keys.
+	 * @param wires The store that holds the values of the input wires.
+	 * @param garbledTableIndex The index of the row that should be decrypted.
+	 * @param tweak The tweak of the row.
+	 * @throws CiphertextTooLongException
+	 * @throws InvalidKeyException
+	 * @throws IllegalBlockSizeException
+	 */
+	protected void computeGarbledTable(GarbledWireStore wires, int garbledTableIndex, byte[] tweak) 
+			throws CiphertextTooLongException, InvalidKeyException, IllegalBlockSizeException {
+		
+		int numberOfInputs = inputWireIndices.length;
+		int cipherSize = mes.getCipherSize();
+		byte[] garbledTable = garbledTablesHolder.toDoubleByteArray()[gateNumber];
+		
+		if (mes instanceof AESFixedKeyMultiKeyEncryption){
+			int[] keyOffsets = new int[numberOfInputs];
+			for (int i = 0; i < numberOfInputs; i++) {
+				keyOffsets[i] = wires.getOffset(inputWireIndices[i]);
+			}
+			((AESFixedKeyMultiKeyEncryption) mes).processRow(wires.getLabels(), keyOffsets, tweak, garbledTable, 
+					garbledTableIndex * cipherSize, wires.getLabels(), wires.getOffset(outputWireIndices[0]));
+			wires.markSet(outputWireIndices[0]);
+			return;
+		}
+		
+		SecretKey[] keysToDecryptOn = new SecretKey[numberOfInputs];
+		for (int i = 0; i < numberOfInputs; i++) {
+			keysToDecryptOn[i] = new SecretKeySpec(wires.getLabels(), wires.getOffset(inputWireIndices[i]), wires.getLabelSize(), "");
+		}
+		mes.setKey(mes.generateMultiKey(keysToDecryptOn));
+		mes.setTweak(tweak);
+		try {
+			byte[] wireValue = mes.decrypt(Arrays.copyOfRange(garbledTable, garbledTableIndex * cipherSize, (garbledTableIndex + 1) * cipherSize));
+			wires.setLabel(outputWireIndices[0], wireValue, 0);
+		} catch (KeyNotSetException e) {
+			// Should not occur since the key was set.
+		} catch (TweakNotSetException e) {
+			// Should not occur since the tweak was set.
+		}
+	}
+	
+	/**
+	 * Computes the index to decrypt from the signal bits of the input wires, and fills the tweak with the gate number and the signal bits.
+	 * @param wires The store that holds the values of the input wires.
+	 * @param tweak A 16 bytes array to fill.
+	 * @return the index of the garbled truth table that the input wires' signal bits signal to decrypt.
+	 */
+	protected int getIndexToDecrypt(GarbledWireStore wires, byte[] tweak) {
+		ByteBuffer tweakBuffer = ByteBuffer.wrap(tweak);
+		tweakBuffer.putInt(gateNumber);
+		int garbledTableIndex = 0;
+		for (int i = 0; i < inputWireIndices.length; i++) {
+			byte signalBit = wires.getSignalBit(inputWireIndices[i]);
+			garbledTableIndex = (garbledTableIndex << 1) | signalBit;
+			tweakBuffer.putInt(signalBit);
+		}
+		return garbledTableIndex;
+	}
+	
+	/**
+	 * Copies the value of the first output wire to the other output wires, if there are any.
+	 */
+	protected void setOutputWires(GarbledWireStore wires) {
+		for (int i = 1; i < outputWireIndices.length; i++) {
+			wires.copy(outputWireIndices[i], outputWireIndices[0]);
+		}
+	}
+	
 	/**
 	 * Computes the garbled table of this gate.
 	 * @param computedWires A Map containing the GarbledWiress that have already been computed and had their values set.
@@ -180,6 +180,34 @@ class StandardRowReductionGarbledGate extends StandardGarbledGate{
 		}
 	}
 
+	@Override
+	public void compute(GarbledWireStore wires) throws InvalidKeyException, IllegalBlockSizeException, CiphertextTooLongException {
+		//Calculate the row in the garbled table we need to decrypt.
+		byte[] tweak = new byte[16];
+		int garbledTableIndex = getIndexToDecrypt(wires, tweak);
+		int numberOfInputs = inputWireIndices.length;
+		
+		//In case of the last row, calculate the output key by the KDF.
+		int numberOfRows = (1 << numberOfInputs) - 1;
+		if (garbledTableIndex == numberOfRows){
+			
+			//The input for the kdf is the concatenation of input keys, gate number and input keys' signal bits.
+			//The last two are exactly the tweak.
+			int labelSize = wires.getLabelSize();
+			byte[] kdfBytes = new byte[labelSize * numberOfInputs + 16];
+			for (int i = 0; i < numberOfInputs; i++) {
+				System.arraycopy(wires.getLabels(), wires.getOffset(inputWireIndices[i]), kdfBytes, i * labelSize, labelSize);
+			}
+			System.arraycopy(tweak, 0, kdfBytes, labelSize * numberOfInputs, 16);
+			byte[] wireValue = kdf.deriveKey(kdfBytes, 0, kdfBytes.length, mes.getCipherSize()).getEncoded();
+			wires.setLabel(outputWireIndices[0], wireValue, 0);
+			
+		}else {
+			computeGarbledTable(wires, garbledTableIndex, tweak);
+		}
+		setOutputWires(wires);
+	}
+
 	@Override
 	protected boolean verifyGarbledTable(Gate g, Map<Integer, SecretKey[]> allWireValues)
 			throws CiphertextTooLongException, InvalidKeyException,	IllegalBlockSizeException {
@@ -0,0 +1,55 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * This interface extends the {@link Channel} with the ability to write messages to an internal buffer without sending them 
+ * to the network immediately.<p>
+ * 
+ * The regular {@link Channel#send(Serializable)} function flushes the message to the network, which costs a system call 
+ * (and possibly a Nagle delay) per message. A protocol round that sends several messages can instead write them all and 
+ * flush once. The {@link PipelinedChannel} uses this interface when the underlying channel implements it.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public interface BufferedChannel extends Channel{
+	
+	/**
+	 * Writes the given message to the buffer of the channel. The message is not guaranteed to be sent before the next 
+	 * call to {@link #flush()} or {@link Channel#send(Serializable)}.
+	 * @param data the object to write.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public void write(Serializable data) throws IOException;
+	
+	/**
+	 * Sends all the written messages to the network.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public void flush() throws IOException;
+}
@@ -1,5 +1,7 @@
 package edu.biu.scapi.comm;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
@@ -15,7 +17,7 @@ import java.util.logging.Level;
 
 import edu.biu.scapi.generals.Logging;
 
-public class FasterTCPChannel extends PlainChannel {
+public class FasterTCPChannel extends PlainChannel implements RawChannel {
 	
 	public static class FasterMessage implements Serializable {
 		private static final long serialVersionUID = -3417234887693230863L;
@@ -87,18 +89,26 @@ public class FasterTCPChannel extends PlainChannel {
 		}
 		outStream.writeInt(msgBytes.length);
 		outStream.write(msgBytes);
+		outStream.flush();
+	}
+	
+	/**
+	 * Sends the given bytes as a "faster" message, without serializing them.
+	 * @param data the bytes to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public void send(byte[] data) throws IOException {
+		outStream.writeBoolean(true); // is faster
+		outStream.writeInt(data.length);
+		outStream.write(data);
+		outStream.flush();
 	}
 
 	@Override
 	public Serializable receive() throws ClassNotFoundException, IOException {
 		boolean isFaster = inStream.readBoolean();
-		int msgSize = inStream.readInt();
-		byte[] msg = new byte[msgSize];
-		int bytesRead = inStream.read(msg, 0, msgSize);
-		
-		if (bytesRead < msgSize) {
-			throw new IOException("did not read all bytes...");
-		}
+		byte[] msg = readMessage();
 		
 		if (isFaster) {
 			return new FasterMessage(msg);
@@ -109,6 +119,35 @@ public class FasterTCPChannel extends PlainChannel {
 		return (Serializable) ois.readObject();
 	}
 	
+	/**
+	 * Receives a message that was sent by the other party using the {@link #send(byte[])} function or as a {@link FasterMessage}.
+	 * @return the received bytes.
+	 * @throws IOException In case the received message is not a "faster" message or any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		boolean isFaster = inStream.readBoolean();
+		byte[] msg = readMessage();
+		
+		if (!isFaster) {
+			throw new IOException("the received message is not a raw message");
+		}
+		return msg;
+	}
+	
+	/**
+	 * Reads the size of the message and then the message itself.
+	 * @return the read message.
+	 * @throws IOException
+	 */
+	private byte[] readMessage() throws IOException {
+		int msgSize = inStream.readInt();
+		byte[] msg = new byte[msgSize];
+		//read blocks until all the bytes were received, so a message that was split over several TCP segments is read entirely.
+		inStream.readFully(msg);
+		return msg;
+	}
+	
 	/**
 	 * Closes the socket and all other used resources.
 	 */
@@ -153,8 +192,8 @@ public class FasterTCPChannel extends PlainChannel {
 		if(socket.isConnected()){
 			try {
 				Logging.getLogger().log(Level.INFO, "Socket connected");
-				outStream = new DataOutputStream(socket.getOutputStream());
-				inStream = new DataInputStream(socket.getInputStream());
+				outStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				inStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
 			} catch (IOException e) {
 				Logging.getLogger().log(Level.FINEST, e.toString());
 			}
@@ -186,8 +225,8 @@ public class FasterTCPChannel extends PlainChannel {
 		
 		try {
 			//set t he input and output streams
-			outStream = new DataOutputStream(socket.getOutputStream());
-			inStream = new DataInputStream(socket.getInputStream());
+			outStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			inStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
 		} catch (IOException e) {
 
 			Logging.getLogger().log(Level.WARNING, e.toString());
@@ -0,0 +1,310 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class adds asynchronous, pipelined sending to any {@link Channel}.<p>
+ * 
+ * The {@link #sendAsync(Serializable)} function puts the message in a bounded queue and returns immediately with a 
+ * {@link Future} that completes once the message was written to the underlying channel. A dedicated writer thread takes 
+ * the messages from the queue in order and writes them. In case the underlying channel is a {@link BufferedChannel}, the 
+ * messages are only written to its buffer, and the network is used once the {@link #flush()} function is called. 
+ * This way, a protocol round can queue all its outgoing messages and pay for a single system call.<p>
+ * 
+ * In order to avoid waiting forever for a response to a message that was never flushed, the receive functions flush 
+ * the queued messages before receiving. The regular {@link #send(Serializable)} function is synchronous: it queues the 
+ * message and flushes.<p>
+ * 
+ * A failure to write a message fails the future of this message and all the following operations. Operations that are 
+ * still queued when the channel is closed fail as well, so no future is left waiting.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class PipelinedChannel implements RawChannel, BufferedChannel{
+	
+	/**
+	 * The default number of messages that can wait in the queue. 
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 1024;
+	
+	//Put in the queue in order to stop the writer thread.
+	private static final FutureTask<Void> STOP = new FutureTask<Void>(new Callable<Void>() {
+		public Void call() {
+			return null;
+		}
+	});
+	
+	private Channel channel;									//The underlying channel.
+	private ArrayBlockingQueue<FutureTask<Void>> queue;			//The operations that wait for the writer thread.
+	private Thread writer;
+	private volatile IOException failure;						//The first failure of the writer thread.
+	private volatile boolean dirty;								//Indicates that messages were queued since the last flush.
+	private volatile boolean closed;
+	private volatile boolean stopped;							//Set once the writer thread stopped. Queued operations fail from then on.
+	
+	/**
+	 * A constructor that wraps the given channel, with the default queue size.
+	 * @param channel the underlying channel.
+	 */
+	public PipelinedChannel(Channel channel){
+		this(channel, DEFAULT_QUEUE_SIZE);
+	}
+	
+	/**
+	 * A constructor that wraps the given channel.
+	 * @param channel the underlying channel.
+	 * @param queueSize the number of messages that can wait in the queue. In case the queue is full, sendAsync waits.
+	 */
+	public PipelinedChannel(Channel channel, int queueSize){
+		this.channel = channel;
+		queue = new ArrayBlockingQueue<FutureTask<Void>>(queueSize);
+		
+		writer = new Thread(new Runnable() {
+			public void run() {
+				writeLoop();
+			}
+		}, "scapi-pipelined-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	/**
+	 * Queues the given message and returns immediately.<p>
+	 * The sender must not change the message until the returned future is done.
+	 * @param msg the object to send.
+	 * @return a future that is done once the message was written to the underlying channel. In case the underlying channel 
+	 * is buffered, the message reaches the network only after flush.
+	 * @throws IOException in case the channel is closed or a previous message has failed.
+	 */
+	public Future<Void> sendAsync(final Serializable msg) throws IOException {
+		dirty = true;
+		return enqueue(new Callable<Void>() {
+			public Void call() throws IOException {
+				if (channel instanceof BufferedChannel){
+					((BufferedChannel) channel).write(msg);
+				} else{
+					channel.send(msg);
+				}
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Queues the given message without waiting for it to be sent. The same as {@link #sendAsync(Serializable)}.
+	 */
+	public void write(Serializable msg) throws IOException {
+		sendAsync(msg);
+	}
+	
+	/**
+	 * Sends all the queued messages to the network and waits until they were sent.
+	 * @throws IOException in case one of the queued messages has failed.
+	 */
+	public void flush() throws IOException {
+		dirty = false;
+		Future<Void> done = enqueue(new Callable<Void>() {
+			public Void call() throws IOException {
+				if (channel instanceof BufferedChannel){
+					((BufferedChannel) channel).flush();
+				}
+				return null;
+			}
+		});
+		await(done);
+	}
+	
+	/**
+	 * Queues the given message and waits until it was sent to the network.
+	 */
+	public void send(Serializable msg) throws IOException {
+		sendAsync(msg);
+		flush();
+	}
+	
+	/**
+	 * Queues the given bytes and waits until they were sent to the network.
+	 */
+	public void send(byte[] data) throws IOException {
+		send((Serializable) data);
+	}
+	
+	private Future<Void> enqueue(final Callable<Void> operation) throws IOException {
+		if (closed){
+			throw new IOException("the channel is closed");
+		}
+		if (failure != null){
+			throw failure;
+		}
+		
+		//Once the writer failed, all the following operations fail with the same failure.
+		FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+			public Void call() throws IOException {
+				if (failure != null){
+					throw failure;
+				}
+				if (stopped){
+					throw new IOException("the channel was closed before the operation was done");
+				}
+				try {
+					return operation.call();
+				} catch (IOException e) {
+					failure = e;
+					throw e;
+				} catch (Exception e) {
+					failure = new IOException(e.toString());
+					throw failure;
+				}
+			}
+		});
+		try {
+			queue.put(task);
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("interrupted while waiting for a free place in the queue");
+		}
+		//The channel was closed while this thread waited for a free place, so the writer thread will not run the task.
+		if (stopped){
+			failQueued();
+		}
+		return task;
+	}
+	
+	/**
+	 * Runs the operations that are left in the queue after the writer thread stopped. Each of them fails immediately.
+	 */
+	private void failQueued(){
+		FutureTask<Void> task;
+		while ((task = queue.poll()) != null){
+			if (task != STOP){
+				task.run();
+			}
+		}
+	}
+	
+	private void await(Future<Void> future) throws IOException {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("interrupted while waiting for the queued messages");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause().toString());
+		}
+	}
+	
+	/**
+	 * The main function of the writer thread. Runs the queued operations in order.
+	 */
+	private void writeLoop(){
+		while (true){
+			FutureTask<Void> task;
+			try {
+				task = queue.take();
+			} catch (InterruptedException e) {
+				Logging.getLogger().log(Level.INFO, e.toString());
+				continue;
+			}
+			if (task == STOP){
+				break;
+			}
+			task.run();
+		}
+	}
+
+	/** 
+	 * Flushes the queued messages and receives the next message from the underlying channel.
+	 */
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		if (dirty){
+			flush();
+		}
+		return channel.receive();
+	}
+	
+	/**
+	 * Flushes the queued messages and receives the next raw message from the underlying channel.
+	 */
+	public byte[] receiveBytes() throws IOException {
+		if (dirty){
+			flush();
+		}
+		if (channel instanceof RawChannel){
+			return ((RawChannel) channel).receiveBytes();
+		}
+		try {
+			return (byte[]) channel.receive();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e.toString());
+		} catch (ClassCastException e) {
+			throw new IOException("the received message is not a raw message");
+		}
+	}
+
+	/**
+	 * Sends the queued messages, stops the writer thread and closes the underlying channel.<p>
+	 * Operations that were queued by other threads during the close and were not done by the writer thread fail.
+	 */
+	public void close() {
+		if (closed){
+			return;
+		}
+		try {
+			flush();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+		closed = true;
+		try {
+			queue.put(STOP);
+			writer.join();
+		} catch (InterruptedException e) {
+			Logging.getLogger().log(Level.INFO, e.toString());
+		}
+		stopped = true;
+		failQueued();
+		channel.close();
+	}
+
+	/**
+	 * Checks if the channel is closed or not.
+	 */
+	public boolean isClosed() {
+		return closed || channel.isClosed();
+	}
+}
@@ -0,0 +1,57 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm;
+
+import java.io.IOException;
+
+/**
+ * This interface extends the {@link Channel} with the ability to send and receive raw byte arrays.<p>
+ * 
+ * A regular channel passes every message through java serialization, which is costly for protocols that send many large 
+ * byte arrays (OT matrices, garbled tables, etc.). A channel implementing this interface writes the given bytes to the 
+ * underlying connection preceded only by a short header that contains the length of the message, and reads them back 
+ * without any deserialization.<p>
+ * 
+ * Messages sent using {@link #send(byte[])} should be received using {@link #receiveBytes()}. 
+ * Messages sent using {@link Channel#send(java.io.Serializable)} should be received using {@link Channel#receive()}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public interface RawChannel extends Channel{
+	
+	/**
+	 * Sends the given bytes to the other party as is, without serializing them.
+	 * @param data the bytes to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public void send(byte[] data) throws IOException;
+	
+	/**
+	 * Receives a message that was sent by the other party using the {@link #send(byte[])} function.
+	 * @return the received bytes.
+	 * @throws IOException In case the received message is not a raw message or any of the usual Input/Output related exceptions.
+	 */
+	public byte[] receiveBytes() throws IOException;
+}
@@ -0,0 +1,254 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.logging.Level;
+
+import edu.biu.scapi.comm.BufferedChannel;
+import edu.biu.scapi.comm.RawChannel;
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class represents a concrete channel in the Decorator Pattern used to create Channels. This channel ensures TCP 
+ * type of communication and sends the messages using a binary length-prefixed framing.<p>
+ * 
+ * The {@link PlainTCPSocketChannel} serializes each message twice: once to a byte array and again as part of the 
+ * {@link PlainTCPSocketChannel.Message} object that is written to the socket's ObjectOutputStream. 
+ * This channel writes each message as a frame that contains a one byte type, four bytes length and the payload 
+ * itself, directly to a buffered stream of the socket. <p>
+ * There are two types of frames:
+ * <ul>
+ * <li>RAW frame - contains a byte array as is. Byte arrays are sent this way both from the {@link #send(byte[])} function 
+ * and the {@link #send(Serializable)} function.</li>
+ * <li>OBJECT frame - contains a serialized object. The object is serialized only once.</li>
+ * </ul>
+ * 
+ * The channel also implements {@link BufferedChannel}, so several messages can be written and then flushed together.<p>
+ * 
+ * Both parties must use this channel type in order to communicate. 
+ * This channel is created by the {@link BinarySocketCommunicationSetup}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class BinaryTCPSocketChannel extends PlainTCPSocketChannel implements RawChannel, BufferedChannel{
+	
+	private static final byte RAW_FRAME = 0;		//Indicates that the frame contains a byte array.
+	private static final byte OBJECT_FRAME = 1;		//Indicates that the frame contains a serialized object.
+	
+	private static final int BUFFER_SIZE = 64 * 1024; //The size of the buffers of the socket streams.
+	
+	private DataOutputStream dataOut;				//Used to send the frames.
+	private DataInputStream dataIn;					//Used to receive the frames.
+	private ByteArrayOutputStream serialized;		//A reusable buffer that the objects are serialized into.
+	
+	/**
+	 * A constructor that create the socket address according to the given ip and port and set the state of this channel to not ready.
+	 * @param ipAddress other party's IP address.
+	 * @param port other party's port.
+	 */
+	BinaryTCPSocketChannel(InetAddress ipAddress, int port, boolean checkIdentity, SocketPartyData me) {
+		
+		this(new InetSocketAddress(ipAddress, port), checkIdentity, me);
+	}
+	
+	/**
+	 * A constructor that set the given socket address and set the state of this channel to not ready.
+	 * @param socketAddress other end's InetSocketAddress
+	 */
+	BinaryTCPSocketChannel(InetSocketAddress socketAddress, boolean checkIdentity, SocketPartyData me) {
+		
+		super(socketAddress, checkIdentity, me);
+		serialized = new ByteArrayOutputStream();
+	}
+	
+	/** 
+	 * Sends the message to the other user of the channel.<p>
+	 * In case the message is a byte array, it is sent as is. Otherwise, the message is serialized once and the 
+	 * serialized bytes are sent.
+	 *  
+	 * @param msg the object to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.  
+	 */
+	@Override
+	public void send(Serializable msg) throws IOException {
+		write(msg);
+		dataOut.flush();
+	}
+	
+	/**
+	 * Sends the given bytes to the other party as is, without serializing them.
+	 * @param data the bytes to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public void send(byte[] data) throws IOException {
+		writeRaw(data);
+		dataOut.flush();
+	}
+	
+	/**
+	 * Writes the message to the buffer of the socket stream without flushing it.
+	 * @param msg the object to write.
+	 * @throws IOException Any of the usual Input/Output related exceptions.  
+	 */
+	@Override
+	public void write(Serializable msg) throws IOException {
+		//Byte arrays do not need to be serialized.
+		if (msg instanceof byte[]){
+			writeRaw((byte[]) msg);
+			return;
+		}
+		
+		//Serialize the object into the reusable buffer.
+		serialized.reset();
+		ObjectOutputStream oOut = new ObjectOutputStream(serialized);
+		oOut.writeObject(msg);
+		oOut.close();
+		
+		//Write the header and the serialized bytes directly from the buffer, without copying them.
+		dataOut.writeByte(OBJECT_FRAME);
+		dataOut.writeInt(serialized.size());
+		serialized.writeTo(dataOut);
+	}
+	
+	private void writeRaw(byte[] data) throws IOException {
+		dataOut.writeByte(RAW_FRAME);
+		dataOut.writeInt(data.length);
+		dataOut.write(data);
+	}
+	
+	/**
+	 * Sends all the written messages to the network.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public void flush() throws IOException {
+		dataOut.flush();
+	}
+
+	/** 
+	 * Receives the message sent by the other user of the channel.<p>
+	 * In case the message was sent as a byte array, the returned object is the byte array. 
+	 * 
+	 * @throws ClassNotFoundException  The Class of the serialized object cannot be found.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		byte type = dataIn.readByte();
+		byte[] payload = readPayload();
+		
+		if (type == RAW_FRAME){
+			return payload;
+		}
+		
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload));
+		return (Serializable) ois.readObject();
+	}
+	
+	/**
+	 * Receives a message that was sent by the other party as a byte array.
+	 * @return the received bytes.
+	 * @throws IOException In case the received message is not a byte array or any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		byte type = dataIn.readByte();
+		byte[] payload = readPayload();
+		
+		if (type != RAW_FRAME){
+			throw new IOException("the received message is not a raw message");
+		}
+		return payload;
+	}
+	
+	/**
+	 * Reads the length of the frame and then the payload itself.
+	 * @return the payload of the frame.
+	 * @throws IOException
+	 */
+	private byte[] readPayload() throws IOException{
+		int size = dataIn.readInt();
+		if (size < 0){
+			throw new IOException("illegal frame size " + size);
+		}
+		byte[] payload = new byte[size];
+		dataIn.readFully(payload);
+		return payload;
+	}
+	
+	/**
+	 * Creates a buffered data stream on top of the send socket.
+	 */
+	@Override
+	protected void initOutputStream() throws IOException {
+		dataOut = new DataOutputStream(new BufferedOutputStream(sendSocket.getOutputStream(), BUFFER_SIZE));
+	}
+	
+	/**
+	 * Creates a buffered data stream on top of the receive socket.
+	 */
+	@Override
+	protected void initInputStream() throws IOException {
+		dataIn = new DataInputStream(new BufferedInputStream(receiveSocket.getInputStream(), BUFFER_SIZE));
+	}
+	
+	/**
+	 * Closes the sockets and all other used resources.
+	 */
+	@Override
+	public void close() {
+		try {
+			if(sendSocket != null){
+				if (dataOut != null){
+					dataOut.close();
+				}
+				sendSocket.close();
+			}
+			if(receiveSocket != null){
+				if (dataIn != null){
+					dataIn.close();
+				}
+				receiveSocket.close();
+			}
+		} catch (IOException e) {
+			
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+	}
+}
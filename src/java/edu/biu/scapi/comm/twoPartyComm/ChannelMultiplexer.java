@@ -0,0 +1,468 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.RawChannel;
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class carries many logical channels over one physical channel.<p>
+ * 
+ * Each logical channel ({@link MultiplexedChannel}) is identified by a name. The first time a name is requested, the 
+ * multiplexer assigns it a stream number and announces the pair to the other side, which creates (or finds) the logical 
+ * channel with the same name. Every message of a logical channel is then split into chunks of at most chunkSize bytes, and 
+ * each chunk is sent over the physical channel with a five bytes header: the frame kind and the stream number. The 
+ * announcement of a new stream is always sent in a single frame.<p>
+ * 
+ * A single writer thread sends the chunks of all the logical channels in a round robin manner, so a large message of one 
+ * channel (a garbled table, for example) does not delay the small messages of the other channels (an OT or a commitment, 
+ * for example) by more than one chunk. A single reader thread receives the chunks, reassembles them and delivers the 
+ * complete messages to the queues of the logical channels.<p>
+ * 
+ * The physical channel should not be used directly once the multiplexer was created over it. In case the physical 
+ * channel is a {@link RawChannel} the chunks are sent as raw bytes; otherwise they are sent as byte array objects.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class ChannelMultiplexer {
+	
+	//The kinds of the frames sent over the physical channel.
+	static final byte OPEN = 0;			//Announces a new stream. The payload is the name of the logical channel.
+	static final byte CHUNK = 1;		//A part of a message. More parts follow.
+	static final byte END_RAW = 2;		//The last part of a message that was sent as a byte array.
+	static final byte END_OBJECT = 3;	//The last part of a message that contains a serialized object.
+	static final byte CLOSE = 4;		//The logical channel was closed by the other side.
+	
+	private static final int HEADER_SIZE = 5;
+	
+	/**
+	 * The default maximal size of the chunks.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+	
+	/**
+	 * A message waiting to be sent by the writer thread. 
+	 */
+	private static class OutgoingMessage{
+		private MultiplexedChannel channel;
+		private byte kind;
+		private byte[] data;
+		private int offset;
+		private boolean done;
+		private IOException failure;
+		
+		OutgoingMessage(MultiplexedChannel channel, byte kind, byte[] data){
+			this.channel = channel;
+			this.kind = kind;
+			this.data = data;
+		}
+		
+		synchronized void complete(IOException failure){
+			if (done){
+				return;
+			}
+			this.failure = failure;
+			done = true;
+			notifyAll();
+		}
+		
+		synchronized void await() throws IOException{
+			while (!done){
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new IOException("interrupted while waiting for the message to be sent");
+				}
+			}
+			if (failure != null){
+				throw failure;
+			}
+		}
+	}
+	
+	private Channel physical;										//The underlying channel.
+	private int chunkSize;											//The maximal size of a chunk.
+	private Map<String, MultiplexedChannel> channels;				//The logical channels by their names.
+	private Map<Integer, MultiplexedChannel> remoteStreams;			//The logical channels by the stream numbers of the other side. Used only by the reader thread.
+	private Map<String, LinkedList<MultiplexedChannel>> unpaired;	//The logical channels whose stream the other side has not opened yet, by names and in creation order.
+	private int nextStreamId;										//The stream number of the next created logical channel.
+	private LinkedList<OutgoingMessage> ready;						//The messages waiting to be sent, in round robin order.
+	private volatile boolean closed;
+	private Thread writer;
+	private Thread reader;
+	
+	/**
+	 * A constructor that sets the physical channel and the default chunk size, and starts the writer and reader threads.
+	 * @param physical the channel to carry the logical channels over.
+	 */
+	public ChannelMultiplexer(Channel physical){
+		this(physical, DEFAULT_CHUNK_SIZE);
+	}
+	
+	/**
+	 * A constructor that sets the physical channel and the chunk size, and starts the writer and reader threads.
+	 * @param physical the channel to carry the logical channels over.
+	 * @param chunkSize the maximal size of a chunk. Smaller chunks give fairer interleaving; bigger chunks give less overhead.
+	 */
+	public ChannelMultiplexer(Channel physical, int chunkSize){
+		if (chunkSize <= 0){
+			throw new IllegalArgumentException("chunk size should be positive");
+		}
+		this.physical = physical;
+		this.chunkSize = chunkSize;
+		channels = new HashMap<String, MultiplexedChannel>();
+		remoteStreams = new HashMap<Integer, MultiplexedChannel>();
+		unpaired = new HashMap<String, LinkedList<MultiplexedChannel>>();
+		ready = new LinkedList<OutgoingMessage>();
+		
+		writer = new Thread(new Runnable() {
+			public void run() {
+				writeLoop();
+			}
+		}, "scapi-mux-writer");
+		writer.setDaemon(true);
+		reader = new Thread(new Runnable() {
+			public void run() {
+				readLoop();
+			}
+		}, "scapi-mux-reader");
+		reader.setDaemon(true);
+		
+		writer.start();
+		reader.start();
+	}
+	
+	/**
+	 * Returns the logical channel with the given name, creating it if it does not exist.<p>
+	 * Both sides should use the same name in order to get the two ends of the same logical channel. It does not matter 
+	 * which side calls this function first; messages that arrive before the channel was requested are kept until then.
+	 * @param name the name of the logical channel.
+	 * @return the logical channel with the given name.
+	 */
+	public synchronized MultiplexedChannel getChannel(String name){
+		MultiplexedChannel channel = channels.get(name);
+		//A channel that the user got and the other side closed is dropped, but the reader thread may have not removed it yet.
+		if (channel != null && channel.isRequested() && channel.isClosed()){
+			channels.remove(name);
+			channel = null;
+		}
+		if (channel == null){
+			channel = createChannel(name);
+		}
+		channel.setRequested();
+		//The other side has already closed the channel. It is returned once, with the messages that were sent before the close.
+		if (channel.isClosed()){
+			channels.remove(name);
+		}
+		return channel;
+	}
+	
+	/**
+	 * Returns the logical channel that the stream the other side has just opened with the given name belongs to.<p>
+	 * The streams are paired by their order: the n-th stream that the other side opened with some name belongs to the n-th 
+	 * logical channel that this side created with that name. This holds even if this side has already closed that channel, 
+	 * since the open announcement of the other side may arrive after the close. Otherwise, a late announcement of a closed 
+	 * stream would be taken by the new channel with the same name.
+	 */
+	private synchronized MultiplexedChannel getChannelForRemoteStream(String name){
+		LinkedList<MultiplexedChannel> waiting = unpaired.get(name);
+		if (waiting == null){
+			createChannel(name);
+			waiting = unpaired.get(name);
+		}
+		MultiplexedChannel channel = waiting.removeFirst();
+		if (waiting.isEmpty()){
+			unpaired.remove(name);
+		}
+		return channel;
+	}
+	
+	/**
+	 * Creates a new logical channel with the given name and announces it to the other side. Should be called while 
+	 * holding the lock of this object.
+	 */
+	private MultiplexedChannel createChannel(String name){
+		MultiplexedChannel channel = new MultiplexedChannel(this, name, nextStreamId++);
+		channels.put(name, channel);
+		LinkedList<MultiplexedChannel> waiting = unpaired.get(name);
+		if (waiting == null){
+			waiting = new LinkedList<MultiplexedChannel>();
+			unpaired.put(name, waiting);
+		}
+		waiting.addLast(channel);
+		
+		//Announce the new stream. The writer sends the messages in order, so this frame precedes the data of the channel.
+		try {
+			enqueue(new OutgoingMessage(channel, OPEN, name.getBytes("UTF-8")));
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+		return channel;
+	}
+	
+	/**
+	 * Removes the given logical channel, which was closed by the user, so that a following call to {@link #getChannel(String)} 
+	 * with the same name will create a new logical channel.
+	 */
+	synchronized void removeChannel(MultiplexedChannel channel){
+		if (channels.get(channel.getName()) == channel){
+			channels.remove(channel.getName());
+		}
+	}
+	
+	/**
+	 * Removes the given logical channel, which was closed by the other side, in case the user has already got it. 
+	 * Otherwise, it is removed when the user gets it by {@link #getChannel(String)}.
+	 */
+	private synchronized void removeRemotelyClosedChannel(MultiplexedChannel channel){
+		if (channel.isRequested()){
+			removeChannel(channel);
+		}
+	}
+	
+	/**
+	 * Sends the given message of the given logical channel and waits until it was written to the physical channel.
+	 */
+	void send(MultiplexedChannel channel, byte kind, byte[] data) throws IOException{
+		OutgoingMessage msg = new OutgoingMessage(channel, kind, data);
+		enqueue(msg);
+		msg.await();
+	}
+	
+	/**
+	 * Notifies the other side that the given logical channel was closed. Does not wait.
+	 */
+	void sendClose(MultiplexedChannel channel){
+		try {
+			enqueue(new OutgoingMessage(channel, CLOSE, new byte[0]));
+		} catch (IOException e) {
+			//The physical channel is already closed.
+		}
+	}
+	
+	private void enqueue(OutgoingMessage msg) throws IOException{
+		synchronized (ready) {
+			if (closed){
+				throw new IOException("the multiplexed connection is closed");
+			}
+			//The logical channel is closed before its close frame is enqueued, so no message of the channel follows that frame.
+			if ((msg.kind == END_RAW || msg.kind == END_OBJECT) && msg.channel.isClosed()){
+				throw new IOException("the channel is closed");
+			}
+			ready.addLast(msg);
+			ready.notifyAll();
+		}
+	}
+	
+	/**
+	 * The main function of the writer thread. Takes the first waiting message, sends its next chunk and in case the 
+	 * message has more chunks, puts it back at the end of the queue.<p>
+	 * The close frame of a logical channel is sent only after all the other messages of that channel were sent, since the 
+	 * other side drops the stream once it receives that frame.
+	 */
+	private void writeLoop(){
+		OutgoingMessage msg = null;
+		try {
+			while (true){
+				synchronized (ready) {
+					while (ready.isEmpty() && !closed){
+						ready.wait();
+					}
+					if (closed){
+						break;
+					}
+					msg = ready.removeFirst();
+					if (msg.kind == CLOSE && hasMessagesOf(msg.channel)){
+						ready.addLast(msg);
+						continue;
+					}
+				}
+				
+				//The announcement of a stream is not split, since the other side does not know the stream before it.
+				int length = (msg.kind == OPEN) ? msg.data.length : Math.min(chunkSize, msg.data.length - msg.offset);
+				boolean last = (msg.offset + length == msg.data.length);
+				
+				byte[] frame = new byte[HEADER_SIZE + length];
+				frame[0] = last ? msg.kind : CHUNK;
+				writeInt(frame, 1, msg.channel.getStreamId());
+				System.arraycopy(msg.data, msg.offset, frame, HEADER_SIZE, length);
+				sendPhysical(frame);
+				msg.offset += length;
+				
+				if (last){
+					msg.complete(null);
+					msg = null;
+				} else{
+					synchronized (ready) {
+						ready.addLast(msg);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Logging.getLogger().log(Level.INFO, e.toString());
+		} catch (IOException e) {
+			if (!closed){
+				Logging.getLogger().log(Level.WARNING, e.toString());
+			}
+			//Release the thread that waits for the message that failed.
+			if (msg != null){
+				msg.complete(e);
+			}
+		}
+		
+		close();
+	}
+	
+	/**
+	 * Checks if there is a message of the given logical channel waiting to be sent. Should be called while holding the 
+	 * lock of the queue.
+	 */
+	private boolean hasMessagesOf(MultiplexedChannel channel){
+		for (OutgoingMessage msg : ready){
+			if (msg.channel == channel){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * The main function of the reader thread. Receives the frames and delivers them to the logical channels.
+	 */
+	private void readLoop(){
+		try {
+			while (!closed){
+				byte[] frame = receivePhysical();
+				if (frame.length < HEADER_SIZE){
+					throw new IOException("illegal multiplexed frame");
+				}
+				byte kind = frame[0];
+				int streamId = readInt(frame, 1);
+				
+				if (kind == OPEN){
+					String name = new String(frame, HEADER_SIZE, frame.length - HEADER_SIZE, "UTF-8");
+					remoteStreams.put(Integer.valueOf(streamId), getChannelForRemoteStream(name));
+				} else{
+					MultiplexedChannel channel = remoteStreams.get(Integer.valueOf(streamId));
+					if (channel == null){
+						throw new IOException("received a frame of an unknown stream " + streamId);
+					}
+					channel.onFrame(kind, frame, HEADER_SIZE, frame.length - HEADER_SIZE);
+					//The other side does not use this stream anymore.
+					if (kind == CLOSE){
+						remoteStreams.remove(Integer.valueOf(streamId));
+						removeRemotelyClosedChannel(channel);
+					}
+				}
+			}
+		} catch (ClassNotFoundException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		} catch (IOException e) {
+			if (!closed){
+				Logging.getLogger().log(Level.WARNING, e.toString());
+			}
+		}
+		
+		close();
+	}
+	
+	private void sendPhysical(byte[] frame) throws IOException{
+		if (physical instanceof RawChannel){
+			((RawChannel) physical).send(frame);
+		} else{
+			physical.send((Serializable) frame);
+		}
+	}
+	
+	private byte[] receivePhysical() throws IOException, ClassNotFoundException{
+		if (physical instanceof RawChannel){
+			return ((RawChannel) physical).receiveBytes();
+		}
+		return (byte[]) physical.receive();
+	}
+	
+	private static void writeInt(byte[] array, int offset, int value){
+		array[offset] = (byte) (value >>> 24);
+		array[offset + 1] = (byte) (value >>> 16);
+		array[offset + 2] = (byte) (value >>> 8);
+		array[offset + 3] = (byte) value;
+	}
+	
+	private static int readInt(byte[] array, int offset){
+		return ((array[offset] & 0xFF) << 24) | ((array[offset + 1] & 0xFF) << 16) | 
+				((array[offset + 2] & 0xFF) << 8) | (array[offset + 3] & 0xFF);
+	}
+	
+	/**
+	 * Checks if the physical channel was closed.
+	 */
+	public boolean isClosed(){
+		return closed;
+	}
+	
+	/**
+	 * Closes the physical channel and all the logical channels. Messages that were not sent yet fail.
+	 */
+	public void close(){
+		List<OutgoingMessage> pending;
+		synchronized (ready) {
+			if (closed){
+				return;
+			}
+			closed = true;
+			pending = new ArrayList<OutgoingMessage>(ready);
+			ready.clear();
+			ready.notifyAll();
+		}
+		
+		//Release the threads that wait for their messages to be sent.
+		IOException failure = new IOException("the multiplexed connection is closed");
+		for (int i=0; i<pending.size(); i++){
+			pending.get(i).complete(failure);
+		}
+		
+		physical.close();
+		
+		//Release the threads that wait for messages.
+		synchronized (this) {
+			Iterator<MultiplexedChannel> itr = channels.values().iterator();
+			while (itr.hasNext()){
+				itr.next().onPhysicalClosed();
+			}
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import edu.biu.scapi.comm.RawChannel;
+
+/**
+ * This class represents one end of an in-memory channel between two threads of the same process.<p>
+ * 
+ * The two ends of the channel are created together by {@link #createPair(boolean)}. Each direction of the channel is a 
+ * lock-free {@link SpscQueue}, so there is no socket, no system call and (without copying) no serialization. 
+ * This makes it possible to measure the computation cost of a two party protocol separately from the network cost, 
+ * by running both parties in one process.<p>
+ * 
+ * The channel has two modes:
+ * <ul>
+ * <li>Without copying, the sent object itself is handed to the other side. The sender must not change the object after 
+ * sending it.</li>
+ * <li>With copy on send, byte arrays are cloned and other objects are serialized by the sender and deserialized by the 
+ * receiver, so the two parties never share objects, as when working over a real network.</li>
+ * </ul>
+ * 
+ * Since the queues have a single producer and a single consumer, each end of the channel should be used by one sending 
+ * thread and one receiving thread at a time.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class LoopbackChannel implements RawChannel{
+	
+	/**
+	 * The default number of messages that can be sent before the receiver takes any of them.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/**
+	 * Holds an object that was serialized by the sender, in copy on send mode.
+	 */
+	private static class SerializedObject{
+		private byte[] data;
+		
+		SerializedObject(byte[] data){
+			this.data = data;
+		}
+	}
+	
+	private SpscQueue<Object> in;				//The messages sent by the other end.
+	private SpscQueue<Object> out;				//The messages sent by this end.
+	private boolean copyOnSend;					//Indicates whether or not to copy the sent messages.
+	
+	private LoopbackChannel(SpscQueue<Object> in, SpscQueue<Object> out, boolean copyOnSend){
+		this.in = in;
+		this.out = out;
+		this.copyOnSend = copyOnSend;
+	}
+	
+	/**
+	 * Creates the two connected ends of a loopback channel, with the default capacity.
+	 * @param copyOnSend indicates whether or not to copy the sent messages.
+	 * @return an array of size two that contains the two ends of the channel.
+	 */
+	public static LoopbackChannel[] createPair(boolean copyOnSend){
+		return createPair(copyOnSend, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates the two connected ends of a loopback channel.
+	 * @param copyOnSend indicates whether or not to copy the sent messages.
+	 * @param capacity the number of messages that can be sent before the receiver takes any of them. 
+	 * A sender that reaches this number waits until the receiver takes a message.
+	 * @return an array of size two that contains the two ends of the channel.
+	 */
+	public static LoopbackChannel[] createPair(boolean copyOnSend, int capacity){
+		SpscQueue<Object> firstToSecond = new SpscQueue<Object>(capacity);
+		SpscQueue<Object> secondToFirst = new SpscQueue<Object>(capacity);
+		
+		LoopbackChannel[] pair = new LoopbackChannel[2];
+		pair[0] = new LoopbackChannel(secondToFirst, firstToSecond, copyOnSend);
+		pair[1] = new LoopbackChannel(firstToSecond, secondToFirst, copyOnSend);
+		return pair;
+	}
+	
+	/** 
+	 * Sends the message to the other end of the channel.<p>
+	 * In copy on send mode, byte arrays are cloned and other objects are serialized.
+	 *  
+	 * @param msg the object to send.
+	 * @throws IOException In case the channel is closed.  
+	 */
+	public void send(Serializable msg) throws IOException {
+		if (msg instanceof byte[]){
+			send((byte[]) msg);
+			return;
+		}
+		
+		if (copyOnSend){
+			ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+			ObjectOutputStream oOut = new ObjectOutputStream(bOut);
+			oOut.writeObject(msg);
+			oOut.close();
+			out.put(new SerializedObject(bOut.toByteArray()));
+		} else{
+			out.put(msg);
+		}
+	}
+	
+	/**
+	 * Sends the given bytes to the other end of the channel. In copy on send mode, the array is cloned.
+	 * @param data the bytes to send.
+	 * @throws IOException In case the channel is closed.
+	 */
+	public void send(byte[] data) throws IOException {
+		out.put(copyOnSend ? data.clone() : data);
+	}
+
+	/** 
+	 * Receives the message sent by the other end of the channel.
+	 * 
+	 * @throws ClassNotFoundException  The Class of the serialized object cannot be found.
+	 * @throws IOException In case the channel is closed.
+	 */
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		Object msg = in.take();
+		if (msg instanceof SerializedObject){
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(((SerializedObject) msg).data));
+			return (Serializable) ois.readObject();
+		}
+		return (Serializable) msg;
+	}
+
+	/**
+	 * Receives a message that was sent by the other end as a byte array.
+	 * @return the received bytes.
+	 * @throws IOException In case the received message is not a byte array or the channel is closed.
+	 */
+	public byte[] receiveBytes() throws IOException {
+		Object msg = in.take();
+		if (!(msg instanceof byte[])){
+			throw new IOException("the received message is not a raw message");
+		}
+		return (byte[]) msg;
+	}
+
+	/**
+	 * Closes both ends of the channel.
+	 */
+	public void close() {
+		in.close();
+		out.close();
+	}
+
+	/**
+	 * Checks if the channel is closed or not.
+	 * @return true if the channel is closed; False, otherwise.
+	 */
+	public boolean isClosed() {
+		return out.isClosed();
+	}
+}
@@ -0,0 +1,122 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+import edu.biu.scapi.comm.Channel;
+
+/**
+ * This class implements a communication between two parties that run in the same process, using {@link LoopbackChannel}s.<p>
+ * 
+ * The two setups are created together by {@link #createPair(boolean)}. Each party gives its setup to its own thread, and 
+ * calls prepareForCommunication as it would do with a {@link SocketCommunicationSetup}. The channels with the same name in 
+ * both setups are the two ends of the same loopback channel. There is no connection stage, so the timeout is ignored.<p>
+ * 
+ * This makes it possible to run existing two party applications in one process, without a network, for benchmarking.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class LoopbackCommunicationSetup implements TwoPartyCommunicationSetup{
+	
+	private ConcurrentHashMap<String, LoopbackChannel[]> pairs;	//The channels by their names. Shared by the two setups.
+	private int side;												//The index of this party's end in each pair.
+	private boolean copyOnSend;										//Indicates whether or not the channels copy the sent messages.
+	private int connectionsNumber;									//Holds the number of created connections.
+	
+	private LoopbackCommunicationSetup(ConcurrentHashMap<String, LoopbackChannel[]> pairs, int side, boolean copyOnSend){
+		this.pairs = pairs;
+		this.side = side;
+		this.copyOnSend = copyOnSend;
+		connectionsNumber = 0;
+	}
+	
+	/**
+	 * Creates the setups of the two parties.
+	 * @param copyOnSend indicates whether or not the created channels copy the sent messages. See {@link LoopbackChannel}.
+	 * @return an array of size two that contains the setups of the two parties.
+	 */
+	public static LoopbackCommunicationSetup[] createPair(boolean copyOnSend){
+		ConcurrentHashMap<String, LoopbackChannel[]> pairs = new ConcurrentHashMap<String, LoopbackChannel[]>();
+		LoopbackCommunicationSetup[] setups = new LoopbackCommunicationSetup[2];
+		setups[0] = new LoopbackCommunicationSetup(pairs, 0, copyOnSend);
+		setups[1] = new LoopbackCommunicationSetup(pairs, 1, copyOnSend);
+		return setups;
+	}
+
+	/**
+	 * Returns this party's ends of the requested channels. The timeout is ignored since there is no connection stage.
+	 */
+	@Override
+	public Map<String, Channel> prepareForCommunication(String[] connectionsIds, long timeOut) throws TimeoutException {
+		Map<String, Channel> connections = new HashMap<String, Channel>();
+		for (int i=0; i<connectionsIds.length; i++){
+			LoopbackChannel[] pair = pairs.get(connectionsIds[i]);
+			if (pair == null){
+				//The other party has not asked for this channel yet. 
+				LoopbackChannel[] created = LoopbackChannel.createPair(copyOnSend);
+				pair = pairs.putIfAbsent(connectionsIds[i], created);
+				if (pair == null){
+					pair = created;
+				}
+			}
+			connections.put(connectionsIds[i], pair[side]);
+		}
+		
+		//Update the number of the created connections.
+		connectionsNumber += connections.size();
+		
+		return connections;
+	}
+
+	@Override
+	public Map<String, Channel> prepareForCommunication(int connectionsNum, long timeOut) throws TimeoutException {
+		//Prepare the connections Ids using the default implementation, meaning the connections are numbered 
+		//according to their index. i.e the first connection's name is "1", the second is "2" and so on.
+		String[] names = new String[connectionsNum];
+		for (int i=0; i<connectionsNum; i++){
+			names[i] = Integer.toString(connectionsNumber + i);
+		}
+		
+		//Call the other prepareForCommunication function with the created ids.
+		return prepareForCommunication(names, timeOut);
+	}
+
+	/**
+	 * There is no network, so the Nagle algorithm is irrelevant.
+	 */
+	@Override
+	public void enableNagle() {}
+
+	/**
+	 * This implementation has nothing to close besides the channels (which are being closed by the user).
+	 */
+	@Override
+	public void close() {}
+}
@@ -0,0 +1,252 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import edu.biu.scapi.comm.RawChannel;
+
+/**
+ * This class represents a logical channel that is carried, together with other logical channels, over one physical 
+ * channel by a {@link ChannelMultiplexer}.<p>
+ * 
+ * The send functions return after the whole message was written to the physical channel. Messages of different logical 
+ * channels that are sent at the same time (from different threads) are interleaved chunk by chunk. 
+ * The received messages are kept in a queue until they are taken by the receive functions.<p>
+ * 
+ * Instances of this class are created only by the {@link ChannelMultiplexer#getChannel(String)} function.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class MultiplexedChannel implements RawChannel{
+	
+	/**
+	 * A received message. 
+	 */
+	private static class Frame{
+		private boolean isRaw;
+		private byte[] data;
+		
+		Frame(boolean isRaw, byte[] data){
+			this.isRaw = isRaw;
+			this.data = data;
+		}
+	}
+	
+	//Put in the incoming queue when the channel is closed, in order to release the waiting receiver.
+	private static final Frame CLOSED = new Frame(true, null);
+	
+	private ChannelMultiplexer multiplexer;				//Carries the messages of this channel.
+	private String name;								//The name of this logical channel.
+	private int streamId;								//The stream number that this side gave to this channel.
+	private LinkedBlockingQueue<Frame> incoming;		//The received messages that were not taken yet.
+	private ByteArrayOutputStream partial;				//The chunks of a message that was not received entirely yet. Used only by the reader thread.
+	private Object sendLock = new Object();				//Keeps the messages of this channel in order.
+	private volatile boolean closed;
+	private boolean requested;							//Indicates whether the user got this channel from the multiplexer. Guarded by the multiplexer's lock.
+	
+	MultiplexedChannel(ChannelMultiplexer multiplexer, String name, int streamId){
+		this.multiplexer = multiplexer;
+		this.name = name;
+		this.streamId = streamId;
+		incoming = new LinkedBlockingQueue<Frame>();
+		partial = new ByteArrayOutputStream();
+	}
+	
+	/**
+	 * Returns the name of this logical channel.
+	 */
+	public String getName(){
+		return name;
+	}
+	
+	int getStreamId(){
+		return streamId;
+	}
+	
+	void setRequested(){
+		requested = true;
+	}
+	
+	boolean isRequested(){
+		return requested;
+	}
+	
+	/** 
+	 * Sends the message to the other user of the channel.<p>
+	 * In case the message is a byte array, it is sent as is. Otherwise, the message is serialized once and the 
+	 * serialized bytes are sent.
+	 *  
+	 * @param msg the object to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.  
+	 */
+	public void send(Serializable msg) throws IOException {
+		if (msg instanceof byte[]){
+			send((byte[]) msg);
+			return;
+		}
+		
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+		ObjectOutputStream oOut = new ObjectOutputStream(bOut);
+		oOut.writeObject(msg);
+		oOut.close();
+		doSend(ChannelMultiplexer.END_OBJECT, bOut.toByteArray());
+	}
+	
+	/**
+	 * Sends the given bytes to the other party as is, without serializing them.
+	 * @param data the bytes to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public void send(byte[] data) throws IOException {
+		doSend(ChannelMultiplexer.END_RAW, data);
+	}
+	
+	private void doSend(byte kind, byte[] data) throws IOException {
+		if (closed){
+			throw new IOException("the channel is closed");
+		}
+		synchronized (sendLock) {
+			multiplexer.send(this, kind, data);
+		}
+	}
+	
+	/**
+	 * Called by the reader thread of the multiplexer for each frame of this channel.
+	 */
+	void onFrame(byte kind, byte[] frame, int offset, int length){
+		if (kind == ChannelMultiplexer.CHUNK){
+			partial.write(frame, offset, length);
+			
+		} else if (kind == ChannelMultiplexer.END_RAW || kind == ChannelMultiplexer.END_OBJECT){
+			byte[] data;
+			if (partial.size() == 0){
+				data = new byte[length];
+				System.arraycopy(frame, offset, data, 0, length);
+			} else{
+				partial.write(frame, offset, length);
+				data = partial.toByteArray();
+				partial.reset();
+			}
+			incoming.add(new Frame(kind == ChannelMultiplexer.END_RAW, data));
+			
+		} else if (kind == ChannelMultiplexer.CLOSE){
+			//The other side will not send more messages. Close this end too, so that it can not be used to send, and let 
+			//the other side know that this stream is not used anymore.
+			if (!closed){
+				closed = true;
+				multiplexer.sendClose(this);
+			}
+			incoming.add(CLOSED);
+		}
+	}
+	
+	/**
+	 * Called by the multiplexer when the physical channel was closed.
+	 */
+	void onPhysicalClosed(){
+		closed = true;
+		incoming.add(CLOSED);
+	}
+	
+	/**
+	 * Takes the next frame from the incoming queue, waiting for it if necessary.
+	 */
+	private Frame takeFrame() throws IOException {
+		Frame frame;
+		try {
+			frame = incoming.take();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("interrupted while waiting for a message");
+		}
+		if (frame == CLOSED){
+			//Keep the indication for the following calls.
+			incoming.add(CLOSED);
+			throw new EOFException("the channel is closed");
+		}
+		return frame;
+	}
+
+	/** 
+	 * Receives the message sent by the other user of the channel.<p>
+	 * In case the message was sent as a byte array, the returned object is the byte array. 
+	 * 
+	 * @throws ClassNotFoundException  The Class of the serialized object cannot be found.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		Frame frame = takeFrame();
+		if (frame.isRaw){
+			return frame.data;
+		}
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(frame.data));
+		return (Serializable) ois.readObject();
+	}
+
+	/**
+	 * Receives a message that was sent by the other party as a byte array.
+	 * @return the received bytes.
+	 * @throws IOException In case the received message is not a byte array or any of the usual Input/Output related exceptions.
+	 */
+	public byte[] receiveBytes() throws IOException {
+		Frame frame = takeFrame();
+		if (!frame.isRaw){
+			throw new IOException("the received message is not a raw message");
+		}
+		return frame.data;
+	}
+
+	/**
+	 * Closes this logical channel and notifies the other side. The physical channel and the other logical channels stay open.<p>
+	 * The channel is also closed when the other side closes it. In that case, the messages that were received before the 
+	 * close can still be received.<p>
+	 * A following request of a channel with the same name from the multiplexer returns a new logical channel.
+	 */
+	public void close() {
+		if (!closed){
+			closed = true;
+			multiplexer.removeChannel(this);
+			multiplexer.sendClose(this);
+			incoming.add(CLOSED);
+		}
+	}
+
+	/**
+	 * Checks if the channel is closed or not.
+	 * @return true if the channel is closed; False, otherwise.
+	 */
+	public boolean isClosed() {
+		return closed || multiplexer.isClosed();
+	}
+}
@@ -0,0 +1,138 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.exceptions.DuplicatePartyException;
+
+/**
+ * This class implements a communication between two parties where all the requested connections share one physical 
+ * connection.<p>
+ * 
+ * The first call to prepareForCommunication creates a single connection using an underlying 
+ * {@link TwoPartyCommunicationSetup} (by default, a {@link BinarySocketCommunicationSetup}) and builds a 
+ * {@link ChannelMultiplexer} over it. Each requested connection is then a {@link MultiplexedChannel} of this multiplexer. 
+ * Following calls do not open any new socket, so sub protocols that run at the same time (OT, commitments, garbled tables 
+ * transfer, etc.) all use the same warmed-up connection and pay the handshake only once.<p>
+ * 
+ * The returned map has the same form as in the {@link SocketCommunicationSetup}, so protocols need no changes. 
+ * Both parties must use this communication setup in order to communicate.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class MultiplexedCommunicationSetup implements TwoPartyCommunicationSetup{
+	
+	private static final String PHYSICAL_CONNECTION = "multiplexed";	//The name of the physical connection.
+	
+	private TwoPartyCommunicationSetup physicalSetup;	//Creates the physical connection.
+	private ChannelMultiplexer multiplexer;				//Carries all the logical channels.
+	private int chunkSize;								//The maximal size of a chunk of the multiplexer.
+	private int connectionsNumber;						//Holds the number of created connections.
+	
+	/**
+	 * A constructor that set the given parties. The physical connection is created by a {@link BinarySocketCommunicationSetup}.
+	 * @param me The data of the current application.
+	 * @param party The data of the other application to communicate with.
+	 * @throws DuplicatePartyException 
+	 */
+	public MultiplexedCommunicationSetup(PartyData me, PartyData party) throws DuplicatePartyException{
+		this(new BinarySocketCommunicationSetup(me, party));
+	}
+	
+	/**
+	 * A constructor that sets the setup that creates the physical connection.
+	 * @param physicalSetup creates the physical connection.
+	 */
+	public MultiplexedCommunicationSetup(TwoPartyCommunicationSetup physicalSetup){
+		this(physicalSetup, ChannelMultiplexer.DEFAULT_CHUNK_SIZE);
+	}
+	
+	/**
+	 * A constructor that sets the setup that creates the physical connection and the chunk size of the multiplexer.
+	 * @param physicalSetup creates the physical connection.
+	 * @param chunkSize the maximal size of a chunk. 
+	 */
+	public MultiplexedCommunicationSetup(TwoPartyCommunicationSetup physicalSetup, int chunkSize){
+		this.physicalSetup = physicalSetup;
+		this.chunkSize = chunkSize;
+		connectionsNumber = 0;
+	}
+	
+	/**  
+	 * Creates the physical connection (only in the first call) and returns the requested logical channels over it.
+	 * @throws TimeoutException in case a timeout has occurred before the physical connection has been connected.
+	 */
+	@Override
+	public Map<String, Channel> prepareForCommunication(String[] connectionsIds, long timeOut) throws TimeoutException {
+		if (multiplexer == null || multiplexer.isClosed()){
+			Map<String, Channel> physical = physicalSetup.prepareForCommunication(new String[]{PHYSICAL_CONNECTION}, timeOut);
+			multiplexer = new ChannelMultiplexer(physical.get(PHYSICAL_CONNECTION), chunkSize);
+		}
+		
+		Map<String, Channel> connections = new HashMap<String, Channel>();
+		for (int i=0; i<connectionsIds.length; i++){
+			connections.put(connectionsIds[i], multiplexer.getChannel(connectionsIds[i]));
+		}
+		
+		//Update the number of the created connections.
+		connectionsNumber += connections.size();
+		
+		return connections;
+	}
+
+	@Override
+	public Map<String, Channel> prepareForCommunication(int connectionsNum, long timeOut) throws TimeoutException {
+		//Prepare the connections Ids using the default implementation, meaning the connections are numbered 
+		//according to their index. i.e the first connection's name is "1", the second is "2" and so on.
+		String[] names = new String[connectionsNum];
+		for (int i=0; i<connectionsNum; i++){
+			names[i] = Integer.toString(connectionsNumber + i);
+		}
+		
+		//Call the other prepareForCommunication function with the created ids.
+		return prepareForCommunication(names, timeOut);
+	}
+
+	@Override
+	public void enableNagle() {
+		physicalSetup.enableNagle();
+	}
+
+	/**
+	 * Closes the physical connection, and with it all the logical channels.
+	 */
+	@Override
+	public void close() {
+		if (multiplexer != null){
+			multiplexer.close();
+		}
+		physicalSetup.close();
+	}
+}
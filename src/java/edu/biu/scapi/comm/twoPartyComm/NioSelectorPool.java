@@ -0,0 +1,287 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import edu.biu.scapi.exceptions.ScapiRuntimeException;
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class holds a small, fixed number of I/O threads that serve all the {@link NioSocketChannel}s.<p>
+ * Each I/O thread owns a {@link Selector}. A channel is registered to one of the threads (in a round robin manner) and 
+ * from that point on this thread reads the incoming data of the channel and notifies the channel when its socket becomes 
+ * writable again. This way, any number of channels (and any number of parallel protocol executions) are served by the same 
+ * few threads instead of one blocked thread per connection.<p>
+ * 
+ * By default, all the channels share the pool returned by {@link #getDefault()}. A dedicated pool can be given to the 
+ * {@link NioSocketCommunicationSetup} constructor.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class NioSelectorPool {
+	
+	private static NioSelectorPool defaultPool;		//The pool shared by all the setups that do not get a pool. 
+	private static final long REGISTER_POLL_INTERVAL = 100;	//The time (in milliseconds) between two checks that the I/O thread is still alive.
+	private static final long SELECT_RETRY_INTERVAL = 100;	//The time (in milliseconds) to wait after a failed select.
+	private static final int MAX_SELECT_FAILURES = 10;		//The number of successive failed selects after which the I/O thread stops.
+	
+	private SelectorThread[] threads;				//The I/O threads of this pool.
+	private AtomicInteger next;						//The index of the thread that will get the next registered channel.
+	private volatile boolean isShutdown;			//Set when the pool was shut down.
+	
+	/**
+	 * Returns the pool that is shared by default by all the NIO channels.<p>
+	 * The number of I/O threads in this pool is the minimum between the number of available processors and 4.
+	 * @return the default pool.
+	 */
+	public static synchronized NioSelectorPool getDefault(){
+		if (defaultPool == null){
+			try {
+				defaultPool = new NioSelectorPool(Math.min(4, Runtime.getRuntime().availableProcessors()));
+			} catch (IOException e) {
+				throw new ScapiRuntimeException("cannot open the selectors of the default NIO pool: " + e.getMessage());
+			}
+		}
+		return defaultPool;
+	}
+	
+	/**
+	 * Creates a pool with the given number of I/O threads and starts the threads.
+	 * @param numThreads the number of I/O threads.
+	 * @throws IOException in case a selector could not be opened.
+	 */
+	public NioSelectorPool(int numThreads) throws IOException{
+		if (numThreads <= 0){
+			throw new IllegalArgumentException("the number of threads should be positive");
+		}
+		threads = new SelectorThread[numThreads];
+		for (int i=0; i<numThreads; i++){
+			threads[i] = new SelectorThread(Selector.open(), i);
+			threads[i].start();
+		}
+		next = new AtomicInteger(0);
+	}
+	
+	/**
+	 * Returns the number of I/O threads in this pool.
+	 */
+	public int getNumThreads(){
+		return threads.length;
+	}
+	
+	/**
+	 * Registers the given channel to one of the I/O threads. 
+	 * The function returns after the channel has been registered to the selector of the chosen thread.
+	 * @param channel the channel to register.
+	 * @throws IOException in case the registration failed or the pool was shut down.
+	 */
+	void register(final NioSocketChannel channel) throws IOException{
+		if (isShutdown){
+			throw new IOException("the NIO pool was shut down");
+		}
+		final SelectorThread thread = threads[(next.getAndIncrement() & Integer.MAX_VALUE) % threads.length];
+		final CountDownLatch registered = new CountDownLatch(1);
+		final IOException[] failure = new IOException[1];
+		
+		thread.execute(new Runnable() {
+			public void run() {
+				try {
+					SelectionKey key = channel.getSocket().register(thread.selector, SelectionKey.OP_READ, channel);
+					channel.setSelectionKey(key, thread);
+				} catch (ClosedChannelException e) {
+					failure[0] = e;
+				} finally {
+					registered.countDown();
+				}
+			}
+		});
+		
+		//Wait for the registration. In case the thread stopped before executing the task, the registration will never be done.
+		try {
+			while (!registered.await(REGISTER_POLL_INTERVAL, TimeUnit.MILLISECONDS)){
+				if (!thread.isAlive()){
+					throw new IOException("the NIO pool was shut down");
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new IOException("interrupted while registering the channel");
+		}
+		if (failure[0] != null){
+			throw failure[0];
+		}
+	}
+	
+	/**
+	 * Stops all the I/O threads of this pool. Channels that are still registered to this pool stop receiving data. 
+	 */
+	public void shutdown(){
+		isShutdown = true;
+		for (int i=0; i<threads.length; i++){
+			threads[i].stopRunning();
+		}
+	}
+	
+	/**
+	 * An I/O thread. Waits on its selector and dispatches the ready events to the channels attached to the selection keys.<p>
+	 * Any change of the registered keys is done by this thread, using tasks that are given to the {@link #execute(Runnable)} function.
+	 */
+	static class SelectorThread extends Thread{
+		
+		private Selector selector;							//The selector that all the channels of this thread are registered to.
+		private ConcurrentLinkedQueue<Runnable> tasks;		//Tasks that should be executed by this thread.
+		private volatile boolean running;					//Indicates whether or not to keep on running.
+		
+		SelectorThread(Selector selector, int index){
+			super("scapi-nio-" + index);
+			this.selector = selector;
+			tasks = new ConcurrentLinkedQueue<Runnable>();
+			running = true;
+			setDaemon(true);
+		}
+		
+		/**
+		 * Adds the given task to the tasks of this thread and wakes up the selector so the task will be executed.
+		 * @param task to execute.
+		 */
+		void execute(Runnable task){
+			tasks.add(task);
+			selector.wakeup();
+		}
+		
+		void stopRunning(){
+			running = false;
+			selector.wakeup();
+		}
+		
+		/**
+		 * Closes the channels that are registered to this thread when it stops because of a failure, since no one will serve them.
+		 */
+		private void closeChannels(){
+			SelectionKey[] keys;
+			try {
+				keys = selector.keys().toArray(new SelectionKey[0]);
+			} catch (ClosedSelectorException e) {
+				//There are no channels to close.
+				return;
+			}
+			for (int i=0; i<keys.length; i++){
+				((NioSocketChannel) keys[i].attachment()).close();
+			}
+		}
+		
+		public void run(){
+			int failures = 0;		//The number of successive failed selects.
+			while (running){
+				try {
+					selector.select();
+					failures = 0;
+				} catch (IOException e) {
+					//Wait before trying again, instead of spinning on a selector that keeps failing. In case it does not 
+					//recover, stop the thread and close its channels, so that their users fail instead of waiting forever.
+					Logging.getLogger().log(Level.WARNING, e.toString());
+					if (++failures == MAX_SELECT_FAILURES){
+						Logging.getLogger().log(Level.SEVERE, "the selector keeps failing, closing its channels");
+						running = false;
+						closeChannels();
+						break;
+					}
+					try {
+						Thread.sleep(SELECT_RETRY_INTERVAL * failures);
+					} catch (InterruptedException ie) {
+						Logging.getLogger().log(Level.INFO, ie.toString());
+					}
+					continue;
+				}
+				
+				//Execute the waiting tasks. A failure of one task does not stop the thread, which serves all the channels.
+				Runnable task;
+				while ((task = tasks.poll()) != null){
+					try {
+						task.run();
+					} catch (RuntimeException e) {
+						Logging.getLogger().log(Level.WARNING, e.toString());
+					}
+				}
+				
+				//Dispatch the ready events to the channels.
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()){
+					SelectionKey key = keys.next();
+					keys.remove();
+					NioSocketChannel channel = (NioSocketChannel) key.attachment();
+					try {
+						if (key.isValid() && key.isReadable()){
+							channel.onReadable();
+						}
+						if (key.isValid() && key.isWritable()){
+							channel.onWritable();
+						}
+					} catch (CancelledKeyException e) {
+						//The channel was closed by the user. Nothing to do.
+					} catch (IOException e) {
+						Logging.getLogger().log(Level.WARNING, e.toString());
+						channel.close();
+					} catch (RuntimeException e) {
+						//Only the channel that failed is closed. The other channels of this thread keep working.
+						Logging.getLogger().log(Level.WARNING, e.toString());
+						channel.close();
+					}
+				}
+			}
+			
+			try {
+				selector.close();
+			} catch (IOException e) {
+				Logging.getLogger().log(Level.WARNING, e.toString());
+			}
+		}
+	}
+	
+	/**
+	 * Used by the channels to change the interest set of their key. The change is done by the I/O thread.
+	 */
+	static void setInterest(SelectorThread thread, final SelectionKey key, final int op, final boolean on){
+		thread.execute(new Runnable() {
+			public void run() {
+				if (key.isValid()){
+					key.interestOps(on ? (key.interestOps() | op) : (key.interestOps() & ~op));
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,386 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import edu.biu.scapi.comm.RawChannel;
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class represents a concrete channel that uses a non-blocking {@link SocketChannel}.<p>
+ * 
+ * Unlike the {@link PlainTCPSocketChannel}, there is no thread blocked on the socket of this channel. The incoming data 
+ * is read by one of the I/O threads of a {@link NioSelectorPool}, which assembles it into complete messages and puts them 
+ * in a queue. The {@link #receive()} function takes the next message from this queue. 
+ * The {@link #send(Serializable)} function writes the message directly to the socket from the calling thread, and waits 
+ * for the I/O thread only in case the socket's buffer is full.<p>
+ * 
+ * The messages are written using the same framing as the {@link BinaryTCPSocketChannel}: one byte type, four bytes length 
+ * and then the payload. Byte arrays are sent as is and other objects are serialized once.<p>
+ * 
+ * In order to enforce the right usage of the Channel class the constructor of this channel is reachable only from the 
+ * {@link NioSocketCommunicationSetup}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class NioSocketChannel implements RawChannel{
+	
+	private static final byte RAW_FRAME = 0;		//Indicates that the frame contains a byte array.
+	private static final byte OBJECT_FRAME = 1;		//Indicates that the frame contains a serialized object.
+	private static final int HEADER_SIZE = 5;		//The size of the type and length of each frame.
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	
+	//In case the received messages that were not taken by the user exceed this size, the channel stops reading 
+	//until the user takes some of them.
+	private static final long MAX_PENDING_BYTES = 64L * 1024 * 1024;
+	
+	/**
+	 * A received message. 
+	 */
+	private static class Frame{
+		private byte type;
+		private byte[] data;
+		
+		Frame(byte type, byte[] data){
+			this.type = type;
+			this.data = data;
+		}
+	}
+	
+	//Put in the incoming queue when the socket is closed, in order to release the waiting receiver.
+	private static final Frame CLOSED = new Frame(RAW_FRAME, null);
+	
+	/**
+	 * A ByteArrayOutputStream that gives access to its internal buffer, in order to avoid copying the serialized object.
+	 */
+	private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream{
+		byte[] getBuffer(){
+			return buf;
+		}
+	}
+	
+	private SocketChannel socket;								//The underlying non-blocking socket.
+	private SelectionKey key;									//The key of the socket in the selector of the I/O thread.
+	private NioSelectorPool.SelectorThread ioThread;			//The I/O thread that serves this channel.
+	
+	private LinkedBlockingQueue<Frame> incoming;				//The received messages that were not taken yet.
+	private AtomicLong pendingBytes;							//The total size of the messages in the incoming queue.
+	private boolean readSuspended;								//Indicates if the I/O thread stopped reading because of a slow receiver.
+	private Object suspendLock = new Object();					//Used to check and change readSuspended together with the pending bytes.
+	
+	//The following members are used only by the I/O thread.
+	private ByteBuffer readBuffer;								//Holds the received bytes that were not parsed yet.
+	private byte currentType;									//The type of the frame that is currently received.
+	private byte[] currentFrame;								//The payload of the frame that is currently received.
+	private int currentPosition;								//The number of payload bytes that were received.
+	
+	private Object writeLock = new Object();					//Used to serialize the senders and to wait until the socket is writable.
+	private boolean writable;									//Set by the I/O thread when the socket becomes writable.
+	private ByteBuffer header;									//A reusable buffer for the frame headers.
+	private ExposedByteArrayOutputStream serialized;			//A reusable buffer that the objects are serialized into.
+	
+	private volatile boolean closed;
+	
+	/**
+	 * A constructor that sets the given connected socket and configures it to non-blocking mode.<p>
+	 * The channel can be used only after it was registered to a {@link NioSelectorPool}.
+	 * @param socket a connected socket.
+	 * @throws IOException
+	 */
+	NioSocketChannel(SocketChannel socket) throws IOException{
+		this.socket = socket;
+		socket.configureBlocking(false);
+		
+		incoming = new LinkedBlockingQueue<Frame>();
+		pendingBytes = new AtomicLong(0);
+		readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+		header = ByteBuffer.allocate(HEADER_SIZE);
+		serialized = new ExposedByteArrayOutputStream();
+	}
+	
+	SocketChannel getSocket(){
+		return socket;
+	}
+	
+	/**
+	 * Called by the I/O thread after the socket was registered to its selector.
+	 */
+	void setSelectionKey(SelectionKey key, NioSelectorPool.SelectorThread ioThread){
+		this.key = key;
+		this.ioThread = ioThread;
+	}
+	
+	/** 
+	 * Sends the message to the other user of the channel.<p>
+	 * In case the message is a byte array, it is sent as is. Otherwise, the message is serialized once and the 
+	 * serialized bytes are sent.
+	 *  
+	 * @param msg the object to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.  
+	 */
+	public void send(Serializable msg) throws IOException {
+		//Byte arrays do not need to be serialized.
+		if (msg instanceof byte[]){
+			send((byte[]) msg);
+			return;
+		}
+		
+		synchronized (writeLock) {
+			serialized.reset();
+			ObjectOutputStream oOut = new ObjectOutputStream(serialized);
+			oOut.writeObject(msg);
+			oOut.close();
+			
+			writeFrame(OBJECT_FRAME, ByteBuffer.wrap(serialized.getBuffer(), 0, serialized.size()));
+		}
+	}
+	
+	/**
+	 * Sends the given bytes to the other party as is, without serializing them.
+	 * @param data the bytes to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public void send(byte[] data) throws IOException {
+		synchronized (writeLock) {
+			writeFrame(RAW_FRAME, ByteBuffer.wrap(data));
+		}
+	}
+	
+	/**
+	 * Writes the header and the payload of a frame to the socket. Should be called while holding the writeLock.
+	 * In case the socket's buffer is full, waits until the I/O thread notifies that the socket is writable.
+	 */
+	private void writeFrame(byte type, ByteBuffer payload) throws IOException {
+		if (closed){
+			throw new SocketException("the channel is closed");
+		}
+		header.clear();
+		header.put(type);
+		header.putInt(payload.remaining());
+		header.flip();
+		
+		ByteBuffer[] buffers = new ByteBuffer[]{header, payload};
+		//The header should be written even if the payload is empty.
+		while (header.hasRemaining() || payload.hasRemaining()){
+			if (socket.write(buffers) == 0){
+				awaitWritable();
+			}
+		}
+	}
+	
+	/**
+	 * Asks the I/O thread to notify when the socket becomes writable and waits for this notification.
+	 */
+	private void awaitWritable() throws IOException {
+		writable = false;
+		NioSelectorPool.setInterest(ioThread, key, SelectionKey.OP_WRITE, true);
+		while (!writable && !closed){
+			try {
+				writeLock.wait();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException("interrupted while waiting to send");
+			}
+		}
+		if (closed){
+			throw new SocketException("the channel is closed");
+		}
+	}
+	
+	/**
+	 * Called by the I/O thread when the socket becomes writable.
+	 */
+	void onWritable() {
+		key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+		synchronized (writeLock) {
+			writable = true;
+			writeLock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Called by the I/O thread when there is data to read. 
+	 * Reads the available data and puts all the complete frames in the incoming queue.
+	 * @throws IOException
+	 */
+	void onReadable() throws IOException {
+		int read = socket.read(readBuffer);
+		if (read < 0){
+			//The other party closed the connection.
+			key.cancel();
+			incoming.add(CLOSED);
+			return;
+		}
+		
+		readBuffer.flip();
+		while (true){
+			//Start a new frame if there is a complete header.
+			if (currentFrame == null){
+				if (readBuffer.remaining() < HEADER_SIZE){
+					break;
+				}
+				currentType = readBuffer.get();
+				int size = readBuffer.getInt();
+				if (size < 0){
+					throw new IOException("illegal frame size " + size);
+				}
+				currentFrame = new byte[size];
+				currentPosition = 0;
+			}
+			
+			//Copy as much of the payload as possible.
+			int toCopy = Math.min(readBuffer.remaining(), currentFrame.length - currentPosition);
+			readBuffer.get(currentFrame, currentPosition, toCopy);
+			currentPosition += toCopy;
+			
+			if (currentPosition < currentFrame.length){
+				break;
+			}
+			
+			//The frame is complete.
+			pendingBytes.addAndGet(currentFrame.length);
+			incoming.add(new Frame(currentType, currentFrame));
+			currentFrame = null;
+		}
+		readBuffer.compact();
+		
+		//In case the user does not take the messages, stop reading until he does.
+		//The check is done under the lock so that a receiver that takes the messages at the same time will resume the reading.
+		synchronized (suspendLock) {
+			if (pendingBytes.get() > MAX_PENDING_BYTES){
+				readSuspended = true;
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+			}
+		}
+	}
+	
+	/**
+	 * Takes the next frame from the incoming queue, waiting for it if necessary.
+	 */
+	private Frame takeFrame() throws IOException {
+		Frame frame;
+		try {
+			frame = incoming.take();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("interrupted while waiting for a message");
+		}
+		
+		if (frame == CLOSED){
+			//Keep the indication for the following calls.
+			incoming.add(CLOSED);
+			throw new EOFException("the channel is closed");
+		}
+		
+		//Resume reading in case it was suspended and the receiver has caught up.
+		synchronized (suspendLock) {
+			if (pendingBytes.addAndGet(-frame.data.length) <= MAX_PENDING_BYTES / 2 && readSuspended){
+				readSuspended = false;
+				NioSelectorPool.setInterest(ioThread, key, SelectionKey.OP_READ, true);
+			}
+		}
+		return frame;
+	}
+
+	/** 
+	 * Receives the message sent by the other user of the channel.<p>
+	 * In case the message was sent as a byte array, the returned object is the byte array. 
+	 * 
+	 * @throws ClassNotFoundException  The Class of the serialized object cannot be found.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		Frame frame = takeFrame();
+		if (frame.type == RAW_FRAME){
+			return frame.data;
+		}
+		
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(frame.data));
+		return (Serializable) ois.readObject();
+	}
+	
+	/**
+	 * Receives a message that was sent by the other party as a byte array.
+	 * @return the received bytes.
+	 * @throws IOException In case the received message is not a byte array or any of the usual Input/Output related exceptions.
+	 */
+	public byte[] receiveBytes() throws IOException {
+		Frame frame = takeFrame();
+		if (frame.type != RAW_FRAME){
+			throw new IOException("the received message is not a raw message");
+		}
+		return frame.data;
+	}
+	
+	/**
+	 * Enable/disable the Nagle algorithm according to the given boolean.
+	 * @param enableNagle.
+	 */
+	void enableNagle(boolean enableNagle) {
+		try {
+			socket.socket().setTcpNoDelay(!enableNagle);
+		} catch (SocketException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+	}
+
+	/**
+	 * Closes the socket and releases the threads that wait on this channel.
+	 */
+	public void close() {
+		closed = true;
+		try {
+			socket.close();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+		incoming.add(CLOSED);
+		synchronized (writeLock) {
+			writeLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Checks if the channel is closed or not.
+	 * @return true if the channel is closed; False, otherwise.
+	 */
+	public boolean isClosed() {
+		return closed || !socket.isOpen() || !socket.isConnected();
+	}
+}
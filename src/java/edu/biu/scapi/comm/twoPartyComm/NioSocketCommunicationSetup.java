@@ -0,0 +1,406 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.exceptions.DuplicatePartyException;
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class implements a communication between two parties using non-blocking NIO sockets.<p>
+ * Each created channel is a {@link NioSocketChannel} that contains one {@link SocketChannel}, used both to send and 
+ * receive messages. All the created channels are served by the I/O threads of a {@link NioSelectorPool}, so the number of 
+ * threads does not grow with the number of connections. This makes it possible to run hundreds of parallel two party 
+ * protocols in one process.<p>
+ * 
+ * The connection stage is as follows:
+ * <ul>
+ * <li>The party with the smaller address (according to {@link SocketPartyData#compareTo(SocketPartyData)}) connects to 
+ * the other party, once for each requested channel, and sends the name of the channel over the created socket.</li>
+ * <li>The other party listens on its port, accepts the sockets and matches each one to the requested channel by the 
+ * received name.</li>
+ * <li>In the end, all the sockets are registered to the pool and the map of the connected channels is returned.</li>
+ * </ul>
+ * 
+ * The returned map has the same form as in the {@link SocketCommunicationSetup}, so protocols need no changes. 
+ * Both parties must use this communication setup in order to communicate.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class NioSocketCommunicationSetup implements TwoPartyCommunicationSetup{
+	
+	private static final long RETRY_INTERVAL = 100;		//The time (in milliseconds) to wait between two connection attempts.
+	
+	private SocketPartyData me;						//The data of the current application.
+	private SocketPartyData other;					//The data of the other application to communicate with.
+	private NioSelectorPool pool;					//The I/O threads that serve the created channels.
+	private boolean isAcceptor;						//Indicates whether this party accepts the connections or initiates them.
+	private ServerSocketChannel listener;			//Used by the accepting party to listen to the other party's connections.
+	private boolean enableNagle = false;			//Indicated whether or not to use Nagle optimization algorithm.
+	private int connectionsNumber;					//Holds the number of created connections. 
+	
+	/**
+	 * A constructor that set the given parties. The created channels are served by the default {@link NioSelectorPool}.
+	 * @param me The data of the current application.
+	 * @param party The data of the other application to communicate with.
+	 * @throws DuplicatePartyException 
+	 */
+	public NioSocketCommunicationSetup(PartyData me, PartyData party) throws DuplicatePartyException{
+		this(me, party, NioSelectorPool.getDefault());
+	}
+	
+	/**
+	 * A constructor that set the given parties and the pool that serves the created channels.
+	 * @param me The data of the current application.
+	 * @param party The data of the other application to communicate with.
+	 * @param pool The I/O threads that serve the created channels.
+	 * @throws DuplicatePartyException 
+	 */
+	public NioSocketCommunicationSetup(PartyData me, PartyData party, NioSelectorPool pool) throws DuplicatePartyException{
+		//Both parties should be instances of SocketPArty.
+		if (!(me instanceof SocketPartyData) || !(party instanceof SocketPartyData)){
+			throw new IllegalArgumentException("both parties should be instances of SocketParty");
+		}
+		this.me = (SocketPartyData) me;
+		this.other = (SocketPartyData) party;
+		
+		//Compare the two given parties. If they are the same, throw exception.
+		int partyCompare = this.me.compareTo(other);
+		if(partyCompare == 0){
+			throw new DuplicatePartyException("Another party with the same ip address and port");
+		}
+		//The party with the bigger address accepts the connections.
+		isAcceptor = partyCompare > 0;
+		this.pool = pool;
+		connectionsNumber = 0;
+	}
+	
+	/**  
+	 * Initiates the creation of the actual sockets connections between the parties. If this function succeeds, the 
+	 * application may use the send and receive functions of the created channels to pass messages.
+	 * @throws TimeoutException in case a timeout has occurred before all channels have been connected.
+	 */
+	@Override
+	public Map<String, Channel> prepareForCommunication(String[] connectionsIds, long timeOut) throws TimeoutException {
+		long deadline = System.currentTimeMillis() + timeOut;
+		
+		//Establish the sockets.
+		Map<String, SocketChannel> sockets = new HashMap<String, SocketChannel>();
+		try {
+			if (isAcceptor){
+				accept(connectionsIds, sockets, deadline);
+			} else{
+				connect(connectionsIds, sockets, deadline);
+			}
+		} catch (TimeoutException e) {
+			closeAll(sockets);
+			throw e;
+		} catch (IOException e) {
+			closeAll(sockets);
+			Logging.getLogger().log(Level.WARNING, e.toString());
+			throw new TimeoutException("the connection stage failed: " + e.getMessage());
+		}
+		
+		//Create the channels and register them to the pool.
+		Map<String, Channel> connections = new HashMap<String, Channel>();
+		try {
+			for (int i=0; i<connectionsIds.length; i++){
+				NioSocketChannel channel = new NioSocketChannel(sockets.get(connectionsIds[i]));
+				channel.enableNagle(enableNagle);
+				pool.register(channel);
+				connections.put(connectionsIds[i], channel);
+			}
+		} catch (IOException e) {
+			closeAll(sockets);
+			Logging.getLogger().log(Level.WARNING, e.toString());
+			throw new TimeoutException("the connection stage failed: " + e.getMessage());
+		}
+		
+		//Update the number of the created connections.
+		connectionsNumber += connections.size();
+		
+		return connections;
+	}
+	
+	@Override
+	public Map<String, Channel> prepareForCommunication(int connectionsNum, long timeOut) throws TimeoutException {
+		//Prepare the connections Ids using the default implementation, meaning the connections are numbered 
+		//according to their index. i.e the first connection's name is "1", the second is "2" and so on.
+		String[] names = new String[connectionsNum];
+		for (int i=0; i<connectionsNum; i++){
+			names[i] = Integer.toString(connectionsNumber + i);
+		}
+		
+		//Call the other prepareForCommunication function with the created ids.
+		return prepareForCommunication(names, timeOut);
+	}
+	
+	/**
+	 * Connects to the other party once for each requested connection and sends the connection's name.
+	 * In case the other party does not listen yet, waits a while and tries again until the deadline has passed.
+	 */
+	private void connect(String[] connectionsIds, Map<String, SocketChannel> sockets, long deadline) throws TimeoutException, IOException {
+		InetSocketAddress address = new InetSocketAddress(other.getIpAddress(), other.getPort());
+		
+		Selector selector = Selector.open();
+		try {
+			for (int i=0; i<connectionsIds.length; i++){
+				SocketChannel socket = null;
+				while (socket == null){
+					if (System.currentTimeMillis() > deadline){
+						throw new TimeoutException("timeout has occurred");
+					}
+					Logging.getLogger().log(Level.INFO, "Trying to connect to " + address.getAddress() + " on port " + address.getPort());
+					try {
+						socket = connect(address, selector, deadline);
+					} catch (IOException e) {
+						//The other party is not listening yet.
+						Logging.getLogger().log(Level.FINEST, e.toString());
+						sleep();
+					}
+				}
+				
+				sockets.put(connectionsIds[i], socket);
+				writeName(socket, connectionsIds[i]);
+			}
+		} finally {
+			selector.close();
+		}
+	}
+	
+	/**
+	 * Connects a new socket to the given address. The socket connects in non-blocking mode using the given selector, so that 
+	 * a connection attempt that the other side does not answer cannot block the connection stage after the deadline.
+	 * @return the connected socket, in blocking mode.
+	 */
+	private SocketChannel connect(InetSocketAddress address, Selector selector, long deadline) throws IOException, TimeoutException {
+		SocketChannel socket = SocketChannel.open();
+		try {
+			socket.configureBlocking(false);
+			if (!socket.connect(address)){
+				SelectionKey key = socket.register(selector, SelectionKey.OP_CONNECT);
+				while (!socket.finishConnect()){
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0){
+						throw new TimeoutException("timeout has occurred");
+					}
+					selector.select(remaining);
+					selector.selectedKeys().clear();
+				}
+				//The socket can be put in blocking mode only after the canceled key was removed from the selector.
+				key.cancel();
+				selector.selectNow();
+			}
+			socket.configureBlocking(true);
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		} catch (TimeoutException e) {
+			socket.close();
+			throw e;
+		}
+		return socket;
+	}
+	
+	/**
+	 * Accepts the connections of the other party until all the requested connections have been received or the deadline has passed.
+	 * Each accepted socket is matched to a connection by the name that the other party sends over it.
+	 */
+	private void accept(String[] connectionsIds, Map<String, SocketChannel> sockets, long deadline) throws TimeoutException, IOException {
+		if (listener == null){
+			listener = ServerSocketChannel.open();
+			listener.socket().setReuseAddress(true);
+			listener.socket().bind(new InetSocketAddress(me.getIpAddress(), me.getPort()));
+			listener.configureBlocking(false);
+		}
+		
+		Map<String, Boolean> requested = new HashMap<String, Boolean>();
+		for (int i=0; i<connectionsIds.length; i++){
+			requested.put(connectionsIds[i], Boolean.TRUE);
+		}
+		
+		Selector selector = Selector.open();
+		Selector nameSelector = null;
+		try {
+			nameSelector = Selector.open();
+			listener.register(selector, SelectionKey.OP_ACCEPT);
+			
+			while (sockets.size() < connectionsIds.length){
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0){
+					throw new TimeoutException("timeout has occurred");
+				}
+				Logging.getLogger().log(Level.INFO, "Trying to listen "+ me.getPort());
+				selector.select(remaining);
+				selector.selectedKeys().clear();
+				
+				SocketChannel socket;
+				while ((socket = listener.accept()) != null){
+					//An unauthorized ip tried to connect.
+					InetAddress inetAddr = socket.socket().getInetAddress();
+					if (!inetAddr.equals(other.getIpAddress())){
+						socket.close();
+						continue;
+					}
+					
+					String name;
+					try {
+						name = readName(socket, nameSelector, deadline);
+					} catch (IOException e) {
+						socket.close();
+						throw e;
+					} catch (TimeoutException e) {
+						socket.close();
+						throw e;
+					}
+					if (requested.containsKey(name) && !sockets.containsKey(name)){
+						sockets.put(name, socket);
+					} else{
+						Logging.getLogger().log(Level.WARNING, "received unexpected connection " + name);
+						socket.close();
+					}
+				}
+			}
+		} finally {
+			selector.close();
+			if (nameSelector != null){
+				nameSelector.close();
+			}
+		}
+	}
+	
+	/**
+	 * Writes the given connection name to the given (blocking) socket.
+	 */
+	private void writeName(SocketChannel socket, String name) throws IOException {
+		byte[] bytes = name.getBytes("UTF-8");
+		ByteBuffer buffer = ByteBuffer.allocate(4 + bytes.length);
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+		buffer.flip();
+		while (buffer.hasRemaining()){
+			socket.write(buffer);
+		}
+	}
+	
+	/**
+	 * Reads a connection name from the given accepted socket.
+	 * The socket is read in non-blocking mode using the given selector, so that a peer that does not send the name 
+	 * cannot block the connection stage after the deadline.
+	 */
+	private String readName(SocketChannel socket, Selector selector, long deadline) throws IOException, TimeoutException {
+		socket.configureBlocking(false);
+		SelectionKey key = socket.register(selector, SelectionKey.OP_READ);
+		try {
+			ByteBuffer size = ByteBuffer.allocate(4);
+			readFully(socket, size, selector, deadline);
+			int length = size.getInt();
+			if (length < 0 || length > 1024){
+				throw new IOException("illegal connection name length " + length);
+			}
+			ByteBuffer name = ByteBuffer.allocate(length);
+			readFully(socket, name, selector, deadline);
+			return new String(name.array(), "UTF-8");
+		} finally {
+			key.cancel();
+			//Deregister the cancelled key so the selector will be ready for the next socket.
+			selector.selectNow();
+		}
+	}
+	
+	private void readFully(SocketChannel socket, ByteBuffer buffer, Selector selector, long deadline) throws IOException, TimeoutException {
+		while (buffer.hasRemaining()){
+			int read = socket.read(buffer);
+			if (read < 0){
+				throw new IOException("the socket was closed during the connection stage");
+			}
+			if (read == 0){
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0){
+					throw new TimeoutException("timeout has occurred");
+				}
+				selector.select(remaining);
+				selector.selectedKeys().clear();
+			}
+		}
+		buffer.flip();
+	}
+	
+	private void sleep(){
+		try {
+			Thread.sleep(RETRY_INTERVAL);
+		} catch (InterruptedException e) {
+			Logging.getLogger().log(Level.INFO, e.toString());
+		}
+	}
+	
+	private void closeAll(Map<String, SocketChannel> sockets){
+		Iterator<SocketChannel> itr = sockets.values().iterator();
+		while (itr.hasNext()){
+			try {
+				itr.next().close();
+			} catch (IOException e) {
+				Logging.getLogger().log(Level.WARNING, e.toString());
+			}
+		}
+	}
+
+	@Override
+	public void enableNagle(){
+		//Set to true the boolean indicates whether or not to use the Nagle optimization algorithm. 
+		//For Cryptographic algorithms is better to have it disabled.
+		this.enableNagle  = true;
+	}
+
+	/**
+	 * Closes the listening socket. The channels are closed by the user, and the pool may be shared by other setups.
+	 */
+	@Override
+	public void close() {
+		if (listener != null){
+			try {
+				listener.close();
+			} catch (IOException e) {
+				Logging.getLogger().log(Level.WARNING, e.toString());
+			}
+			listener = null;
+		}
+	}
+}
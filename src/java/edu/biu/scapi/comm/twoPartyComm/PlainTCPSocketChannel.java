@@ -93,7 +93,7 @@ public class PlainTCPSocketChannel implements Channel{
 	
 	private State state;						// The state of the channel.
 	protected Socket sendSocket;				//A socket used to send messages.
-	private Socket receiveSocket;				//A socket used to receive messages.
+	protected Socket receiveSocket;				//A socket used to receive messages.
 	protected ObjectOutputStream outStream;		//Used to send a message
 	private ObjectInputStream inStream;			//Used to receive a message.
 	protected InetSocketAddress socketAddress;	//The address of the other party.
@@ -246,7 +246,7 @@ public class PlainTCPSocketChannel implements Channel{
 				}
 				
 				Logging.getLogger().log(Level.INFO, "Socket connected");
-				outStream = new ObjectOutputStream(sendSocket.getOutputStream());
+				initOutputStream();
 					
 				//After the send socket is connected, need to check if the receive socket is also connected.
 				//If so, set the channel state to READY.
@@ -258,6 +258,22 @@ public class PlainTCPSocketChannel implements Channel{
 		}
 	}
 
+	/**
+	 * Creates the stream used by the send function on top of the connected send socket.
+	 * @throws IOException
+	 */
+	protected void initOutputStream() throws IOException {
+		outStream = new ObjectOutputStream(sendSocket.getOutputStream());
+	}
+	
+	/**
+	 * Creates the stream used by the receive function on top of the accepted receive socket.
+	 * @throws IOException
+	 */
+	protected void initInputStream() throws IOException {
+		inStream = new ObjectInputStream(receiveSocket.getInputStream());
+	}
+	
 	protected void sendIdentity() throws IOException {
 		byte[] port = Integer.toString(me.getPort()).getBytes();
 		sendSocket.getOutputStream().write(port, 0, port.length);
@@ -287,7 +303,7 @@ public class PlainTCPSocketChannel implements Channel{
 		
 		try {
 			//set the input and output streams
-			inStream = new ObjectInputStream(socket.getInputStream());
+			initInputStream();
 			//After the receive socket is connected, need to check if the send socket is also connected.
 			//If so, set the channel state to READY.
 			setReady();
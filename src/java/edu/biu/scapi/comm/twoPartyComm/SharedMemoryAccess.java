@@ -0,0 +1,116 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Gives ordered (volatile) access to the counters and flags in a memory mapped file that is shared by two processes.<p>
+ * 
+ * The accessors of {@link MappedByteBuffer} are plain reads and writes, which the JIT may reorder or hoist out of a loop. 
+ * The other process does not access the fields of this process, so a volatile field cannot hold the shared values. Instead, 
+ * the values are accessed by the absolute accessors of the buffer, between accesses to a volatile field of this object that 
+ * serve as fences: the read of the field after reading a value acquires the writes that the other side did before it published 
+ * that value, and the write of the field before writing a value releases the writes that this side did before it.<p>
+ * 
+ * The absolute accessors do not change the position of the buffer, so one instance can be used by several threads.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+final class SharedMemoryAccess {
+	
+	private ByteBuffer map;					//A view of the mapped file. Keeps the memory mapped as long as this object is used.
+	private volatile int fence;				//Accessed only for its ordering.
+	
+	/**
+	 * @param map the mapped file.
+	 */
+	SharedMemoryAccess(MappedByteBuffer map){
+		this.map = map.duplicate();
+	}
+	
+	long getLongVolatile(int offset){
+		checkAlignment(offset, 8);
+		long value = map.getLong(offset);
+		acquireFence();
+		return value;
+	}
+	
+	void putLongVolatile(int offset, long value){
+		checkAlignment(offset, 8);
+		releaseFence();
+		map.putLong(offset, value);
+		releaseFence();
+	}
+	
+	/**
+	 * Writes the given value after all the previous writes of this thread, without waiting for the write to be flushed. 
+	 * Used to publish a counter.
+	 */
+	void putLongOrdered(int offset, long value){
+		checkAlignment(offset, 8);
+		releaseFence();
+		map.putLong(offset, value);
+	}
+	
+	int getIntVolatile(int offset){
+		checkAlignment(offset, 4);
+		int value = map.getInt(offset);
+		acquireFence();
+		return value;
+	}
+	
+	void putIntVolatile(int offset, int value){
+		checkAlignment(offset, 4);
+		releaseFence();
+		map.putInt(offset, value);
+		releaseFence();
+	}
+	
+	/**
+	 * Keeps the following reads and writes after the previous reads. 
+	 */
+	private int acquireFence(){
+		return fence;
+	}
+	
+	/**
+	 * An unaligned value may be read while the other side writes only a part of it, so the offsets are checked.
+	 */
+	private void checkAlignment(int offset, int length){
+		if ((offset & (length - 1)) != 0){
+			throw new IllegalArgumentException("illegal offset " + offset + " in the shared memory");
+		}
+	}
+	
+	/**
+	 * Keeps the previous reads and writes before the following writes.
+	 */
+	private void releaseFence(){
+		fence = 0;
+	}
+}
@@ -0,0 +1,261 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.logging.Level;
+
+import edu.biu.scapi.comm.RawChannel;
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class represents a concrete channel between two processes on the same host, using a memory mapped file.<p>
+ * 
+ * The file contains two {@link SharedMemoryRing}s, one for each direction. Sending a message copies it into the ring of 
+ * this side and receiving copies it out of the ring of the other side, so large messages such as garbled tables and OT 
+ * matrices are passed at memory bandwidth without any socket or system call. 
+ * Each message is written with an eight bytes header: the length of the message and its type (raw bytes or a serialized 
+ * object). Messages that are bigger than the ring are streamed through it.<p>
+ * 
+ * A process cannot tell whether the other process is still alive, so the send and receive functions fail with an 
+ * {@link IOException} in case the other side does not read or write for longer than the timeout (see {@link #setTimeout(long)}).<p>
+ * 
+ * The file is created and mapped by the {@link SharedMemoryCommunicationSetup}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class SharedMemoryChannel implements RawChannel{
+	
+	/**
+	 * The default time (in milliseconds) to wait for the other side to read or write.
+	 */
+	public static final long DEFAULT_TIMEOUT = 5 * 60 * 1000;
+	
+	private static final int RAW_FRAME = 0;			//Indicates that the message is a byte array.
+	private static final int OBJECT_FRAME = 1;		//Indicates that the message is a serialized object.
+	private static final int FRAME_HEADER_SIZE = 8;
+	
+	private SharedMemoryAccess memory;				//Gives ordered access to the header of the mapped file.
+	private int attachOffset;						//The offset of the nonce that the attaching side writes in the file.
+	private int ackOffset;							//The offset of the nonce that the creating side echoes in the file.
+	private SharedMemoryRing out;					//The ring this side writes to.
+	private SharedMemoryRing in;					//The ring this side reads from.
+	private RandomAccessFile file;					//The mapped file.
+	private File path;								//The path of the mapped file. Deleted on close by the side that created it.
+	private boolean isOwner;						//Indicates whether this side created the file.
+	private byte[] sendHeader;						//Guarded by the sendLock.
+	private byte[] receiveHeader;					//Guarded by the receiveLock.
+	private Object sendLock = new Object();			//The rings have a single producer and a single consumer.
+	private Object receiveLock = new Object();
+	private volatile boolean closed;
+	
+	/**
+	 * @param memory gives ordered access to the header of the mapped file.
+	 * @param attachOffset the offset of the nonce that the attaching side writes in the file.
+	 * @param ackOffset the offset of the nonce that the creating side echoes in the file.
+	 * @param out the ring this side writes to.
+	 * @param in the ring this side reads from.
+	 * @param file the mapped file.
+	 * @param path the path of the mapped file.
+	 * @param isOwner indicates whether this side created the file.
+	 */
+	SharedMemoryChannel(SharedMemoryAccess memory, int attachOffset, int ackOffset, SharedMemoryRing out, SharedMemoryRing in, 
+			RandomAccessFile file, File path, boolean isOwner){
+		this.memory = memory;
+		this.attachOffset = attachOffset;
+		this.ackOffset = ackOffset;
+		this.out = out;
+		this.in = in;
+		this.file = file;
+		this.path = path;
+		this.isOwner = isOwner;
+		sendHeader = new byte[FRAME_HEADER_SIZE];
+		receiveHeader = new byte[FRAME_HEADER_SIZE];
+	}
+	
+	/**
+	 * Sets the maximal time to wait for the other side to write the message that this side receives, or to make room for 
+	 * the message that this side sends.
+	 * @param timeout the time in milliseconds. Zero means waiting forever.
+	 */
+	public void setTimeout(long timeout){
+		if (timeout < 0){
+			throw new IllegalArgumentException("timeout should not be negative");
+		}
+		out.setTimeout(timeout);
+		in.setTimeout(timeout);
+	}
+	
+	/** 
+	 * Sends the message to the other user of the channel.<p>
+	 * In case the message is a byte array, it is sent as is. Otherwise, the message is serialized once and the 
+	 * serialized bytes are sent.
+	 *  
+	 * @param msg the object to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.  
+	 */
+	public void send(Serializable msg) throws IOException {
+		if (msg instanceof byte[]){
+			send((byte[]) msg);
+			return;
+		}
+		
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+		ObjectOutputStream oOut = new ObjectOutputStream(bOut);
+		oOut.writeObject(msg);
+		oOut.close();
+		writeFrame(OBJECT_FRAME, bOut.toByteArray());
+	}
+	
+	/**
+	 * Sends the given bytes to the other party as is, without serializing them.
+	 * @param data the bytes to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public void send(byte[] data) throws IOException {
+		writeFrame(RAW_FRAME, data);
+	}
+	
+	private void writeFrame(int type, byte[] data) throws IOException {
+		synchronized (sendLock) {
+			writeInt(sendHeader, 0, data.length);
+			writeInt(sendHeader, 4, type);
+			out.write(sendHeader, 0, FRAME_HEADER_SIZE);
+			out.write(data, 0, data.length);
+		}
+	}
+	
+	/**
+	 * Reads the header of the next message and then the message itself. 
+	 * @param isRaw an array of size one that is filled with the type of the message.
+	 */
+	private byte[] readFrame(boolean[] isRaw) throws IOException {
+		synchronized (receiveLock) {
+			in.read(receiveHeader, 0, FRAME_HEADER_SIZE);
+			int length = readInt(receiveHeader, 0);
+			if (length < 0){
+				throw new IOException("illegal message size " + length);
+			}
+			isRaw[0] = (readInt(receiveHeader, 4) == RAW_FRAME);
+			
+			byte[] data = new byte[length];
+			in.read(data, 0, length);
+			return data;
+		}
+	}
+
+	/** 
+	 * Receives the message sent by the other user of the channel.<p>
+	 * In case the message was sent as a byte array, the returned object is the byte array. 
+	 * 
+	 * @throws ClassNotFoundException  The Class of the serialized object cannot be found.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		boolean[] isRaw = new boolean[1];
+		byte[] data = readFrame(isRaw);
+		if (isRaw[0]){
+			return data;
+		}
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+		return (Serializable) ois.readObject();
+	}
+
+	/**
+	 * Receives a message that was sent by the other party as a byte array.
+	 * @return the received bytes.
+	 * @throws IOException In case the received message is not a byte array or any of the usual Input/Output related exceptions.
+	 */
+	public byte[] receiveBytes() throws IOException {
+		boolean[] isRaw = new boolean[1];
+		byte[] data = readFrame(isRaw);
+		if (!isRaw[0]){
+			throw new IOException("the received message is not a raw message");
+		}
+		return data;
+	}
+	
+	/**
+	 * Checks whether the other side has already mapped the file, and if so, echoes the nonce it wrote so it will know that 
+	 * it mapped the file of this connection and not a file left by a previous execution. 
+	 * Used by the creating side during the connection stage.
+	 * @return true if the other side has mapped the file; false, otherwise.
+	 */
+	boolean acknowledgeAttach(){
+		long nonce = memory.getLongVolatile(attachOffset);
+		if (nonce == 0){
+			return false;
+		}
+		memory.putLongVolatile(ackOffset, nonce);
+		return true;
+	}
+	
+	private static void writeInt(byte[] array, int offset, int value){
+		array[offset] = (byte) (value >>> 24);
+		array[offset + 1] = (byte) (value >>> 16);
+		array[offset + 2] = (byte) (value >>> 8);
+		array[offset + 3] = (byte) value;
+	}
+	
+	private static int readInt(byte[] array, int offset){
+		return ((array[offset] & 0xFF) << 24) | ((array[offset + 1] & 0xFF) << 16) | 
+				((array[offset + 2] & 0xFF) << 8) | (array[offset + 3] & 0xFF);
+	}
+
+	/**
+	 * Marks the channel as closed for both sides and releases the file. The side that created the file also deletes it.
+	 */
+	public synchronized void close() {
+		if (closed){
+			return;
+		}
+		closed = true;
+		out.close();
+		try {
+			file.close();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+		if (isOwner && !path.delete()){
+			Logging.getLogger().log(Level.WARNING, "cannot delete " + path);
+		}
+	}
+
+	/**
+	 * Checks if the channel is closed or not.
+	 * @return true if the channel was closed by one of the sides; False, otherwise.
+	 */
+	public boolean isClosed() {
+		return closed || out.isClosed();
+	}
+}
@@ -0,0 +1,354 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.exceptions.DuplicatePartyException;
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class implements a communication between two parties that run in different processes on the same host, using 
+ * {@link SharedMemoryChannel}s.<p>
+ * 
+ * Each requested channel is a file in the given directory, which both parties map into memory. The name of the file is 
+ * derived from the ports of the two parties and the name of the channel, so the parties need only agree on the directory 
+ * (typically a tmpfs directory such as /dev/shm).<p>
+ * 
+ * The connection stage is as follows:
+ * <ul>
+ * <li>The party with the smaller address (according to {@link SocketPartyData#compareTo(SocketPartyData)}) creates each 
+ * file under a temporary name, initializes its header and renames it to the final name.</li>
+ * <li>The other party waits until each file exists, maps it, checks its header and writes a random nonce in it.</li>
+ * <li>The first party waits until all the files were attached and echoes the nonce of each file. The other party uses 
+ * the file only after its nonce was echoed. A file that was left by a previous execution is never acknowledged, so in 
+ * this case the other party maps the path again after a while, until it gets the file that the first party created.</li>
+ * </ul>
+ * 
+ * The returned map has the same form as in the {@link SocketCommunicationSetup}, so protocols need no changes.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class SharedMemoryCommunicationSetup implements TwoPartyCommunicationSetup{
+	
+	/**
+	 * The default size of the ring of each direction.
+	 */
+	public static final int DEFAULT_CAPACITY = 16 * 1024 * 1024;
+	
+	//The header of the file.
+	private static final int MAGIC = 0x5343534D;		//"SCSM"
+	private static final int VERSION = 3;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int CAPACITY_OFFSET = 8;
+	private static final int CLOSED_OFFSET = 16;
+	private static final int ATTACH_OFFSET = 24;		//The nonce written by the attaching party.
+	private static final int ACK_OFFSET = 32;			//The nonce echoed by the creating party.
+	private static final int FILE_HEADER_SIZE = 64;
+	
+	private static final int MIN_CAPACITY = 64;			//Keeps the counters of the second ring aligned.
+	private static final long RETRY_INTERVAL = 10;		//The time (in milliseconds) to wait between two checks of the other party.
+	private static final long ACK_TIMEOUT = 1000;		//The time (in milliseconds) to wait for the acknowledgment before mapping the file again.
+	
+	private SocketPartyData me;						//The data of the current application.
+	private SocketPartyData other;					//The data of the other application to communicate with.
+	private File directory;							//The directory of the shared files.
+	private int capacity;							//The size of the ring of each direction.
+	private boolean isCreator;						//Indicates whether this party creates the files.
+	private int connectionsNumber;					//Holds the number of created connections.
+	private SecureRandom random;					//Used to choose the attach nonces.
+	
+	/**
+	 * A constructor that sets the given parties and directory, with the default ring size.
+	 * @param me The data of the current application.
+	 * @param party The data of the other application to communicate with.
+	 * @param directory The directory of the shared files. Both parties should use the same directory.
+	 * @throws DuplicatePartyException 
+	 */
+	public SharedMemoryCommunicationSetup(PartyData me, PartyData party, File directory) throws DuplicatePartyException{
+		this(me, party, directory, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * A constructor that sets the given parties, directory and ring size.
+	 * @param me The data of the current application.
+	 * @param party The data of the other application to communicate with.
+	 * @param directory The directory of the shared files. Both parties should use the same directory.
+	 * @param capacity The size of the ring of each direction. Rounded up to a power of two that is at least 64. 
+	 * Both parties should use the same size.
+	 * @throws DuplicatePartyException 
+	 */
+	public SharedMemoryCommunicationSetup(PartyData me, PartyData party, File directory, int capacity) throws DuplicatePartyException{
+		//Both parties should be instances of SocketPArty.
+		if (!(me instanceof SocketPartyData) || !(party instanceof SocketPartyData)){
+			throw new IllegalArgumentException("both parties should be instances of SocketParty");
+		}
+		if (capacity <= 0 || capacity > (1 << 30)){
+			throw new IllegalArgumentException("capacity should be positive and at most 2^30");
+		}
+		this.me = (SocketPartyData) me;
+		this.other = (SocketPartyData) party;
+		
+		//Compare the two given parties. If they are the same, throw exception.
+		int partyCompare = this.me.compareTo(other);
+		if(partyCompare == 0){
+			throw new DuplicatePartyException("Another party with the same ip address and port");
+		}
+		isCreator = partyCompare < 0;
+		this.directory = directory;
+		
+		this.capacity = MIN_CAPACITY;
+		while (this.capacity < capacity){
+			this.capacity <<= 1;
+		}
+		connectionsNumber = 0;
+		random = new SecureRandom();
+	}
+	
+	/**  
+	 * Creates or attaches the shared files of the requested connections. 
+	 * @throws TimeoutException in case a timeout has occurred before the other party created or attached all the files.
+	 */
+	@Override
+	public Map<String, Channel> prepareForCommunication(String[] connectionsIds, long timeOut) throws TimeoutException {
+		long deadline = System.currentTimeMillis() + timeOut;
+		
+		Map<String, Channel> connections = new HashMap<String, Channel>();
+		try {
+			for (int i=0; i<connectionsIds.length; i++){
+				File path = getPath(connectionsIds[i]);
+				connections.put(connectionsIds[i], isCreator ? create(path) : attach(path, deadline));
+			}
+			if (isCreator){
+				waitForAttach(connections, deadline);
+			}
+		} catch (IOException e) {
+			closeAll(connections);
+			Logging.getLogger().log(Level.WARNING, e.toString());
+			throw new TimeoutException("the connection stage failed: " + e.getMessage());
+		} catch (TimeoutException e) {
+			closeAll(connections);
+			throw e;
+		}
+		
+		//Update the number of the created connections.
+		connectionsNumber += connections.size();
+		
+		return connections;
+	}
+
+	@Override
+	public Map<String, Channel> prepareForCommunication(int connectionsNum, long timeOut) throws TimeoutException {
+		//Prepare the connections Ids using the default implementation, meaning the connections are numbered 
+		//according to their index. i.e the first connection's name is "1", the second is "2" and so on.
+		String[] names = new String[connectionsNum];
+		for (int i=0; i<connectionsNum; i++){
+			names[i] = Integer.toString(connectionsNumber + i);
+		}
+		
+		//Call the other prepareForCommunication function with the created ids.
+		return prepareForCommunication(names, timeOut);
+	}
+	
+	/**
+	 * Returns the path of the shared file of the given connection.
+	 */
+	private File getPath(String connectionId){
+		int creatorPort = isCreator ? me.getPort() : other.getPort();
+		int attacherPort = isCreator ? other.getPort() : me.getPort();
+		return new File(directory, "scapi-" + creatorPort + "-" + attacherPort + "-" + connectionId + ".shm");
+	}
+	
+	private int getFileSize(){
+		return FILE_HEADER_SIZE + 2 * SharedMemoryRing.size(capacity);
+	}
+	
+	/**
+	 * Creates the file in the given path and returns the creator side of the channel.
+	 */
+	private SharedMemoryChannel create(File path) throws IOException {
+		//Remove a file that was left by a previous execution.
+		if (path.exists() && !path.delete()){
+			throw new IOException("cannot delete the old file " + path);
+		}
+		
+		//Initialize the file under a temporary name, so that the other party will not map a partial file.
+		File temp = new File(path.getPath() + ".tmp");
+		RandomAccessFile file = new RandomAccessFile(temp, "rw");
+		file.setLength(getFileSize());
+		MappedByteBuffer map;
+		SharedMemoryAccess memory;
+		try {
+			map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, getFileSize());
+			memory = new SharedMemoryAccess(map);
+		} catch (IOException e) {
+			file.close();
+			temp.delete();
+			throw e;
+		}
+		map.putInt(VERSION_OFFSET, VERSION);
+		map.putInt(CAPACITY_OFFSET, capacity);
+		map.putInt(CLOSED_OFFSET, 0);
+		map.putLong(ATTACH_OFFSET, 0);
+		map.putLong(ACK_OFFSET, 0);
+		map.putInt(MAGIC_OFFSET, MAGIC);
+		
+		if (!temp.renameTo(path)){
+			file.close();
+			temp.delete();
+			throw new IOException("cannot create the file " + path);
+		}
+		
+		return createChannel(map, memory, file, path, true);
+	}
+	
+	/**
+	 * Waits until the file in the given path exists, maps it and returns the attacher side of the channel.<p>
+	 * The file is used only after the creating party echoed the nonce that was written in it. In case there is no 
+	 * acknowledgment, the file may have been left by a previous execution, so it is unmapped and the path is mapped again.
+	 */
+	private SharedMemoryChannel attach(File path, long deadline) throws IOException, TimeoutException {
+		Set<Long> nonces = new HashSet<Long>();		//All the nonces that were written by this party.
+		while (true){
+			while (!path.exists()){
+				sleep(deadline);
+			}
+			
+			RandomAccessFile file = new RandomAccessFile(path, "rw");
+			try {
+				//A file of a previous execution may have a different size or header. Wait until it is replaced.
+				if (file.length() != getFileSize()){
+					Logging.getLogger().log(Level.FINE, "the size of " + path + " does not match the expected capacity");
+				} else{
+					MappedByteBuffer map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, getFileSize());
+					SharedMemoryAccess memory = new SharedMemoryAccess(map);
+					if (map.getInt(MAGIC_OFFSET) != MAGIC || map.getInt(VERSION_OFFSET) != VERSION || map.getInt(CAPACITY_OFFSET) != capacity){
+						Logging.getLogger().log(Level.FINE, "illegal header in " + path);
+					} else if (awaitAcknowledgment(memory, nonces, deadline)){
+						SharedMemoryChannel channel = createChannel(map, memory, file, path, false);
+						file = null;
+						return channel;
+					}
+				}
+			} finally {
+				if (file != null){
+					file.close();
+				}
+			}
+			sleep(deadline);
+		}
+	}
+	
+	/**
+	 * Writes a new nonce in the attach field and waits until the creating party echoes one of the nonces of this party.
+	 * @return true if the nonce was echoed; false in case the acknowledgment timeout has passed.
+	 */
+	private boolean awaitAcknowledgment(SharedMemoryAccess memory, Set<Long> nonces, long deadline) throws TimeoutException {
+		long nonce = 0;
+		while (nonce == 0){
+			nonce = random.nextLong();
+		}
+		nonces.add(Long.valueOf(nonce));
+		memory.putLongVolatile(ATTACH_OFFSET, nonce);
+		
+		long retry = System.currentTimeMillis() + ACK_TIMEOUT;
+		while (System.currentTimeMillis() < retry){
+			if (nonces.contains(Long.valueOf(memory.getLongVolatile(ACK_OFFSET)))){
+				return true;
+			}
+			sleep(deadline);
+		}
+		return false;
+	}
+	
+	/**
+	 * Creates the channel of one side. The creator writes to the first ring and reads from the second; the attacher does the opposite.
+	 */
+	private SharedMemoryChannel createChannel(MappedByteBuffer map, SharedMemoryAccess memory, RandomAccessFile file, File path, boolean isOwner){
+		SharedMemoryRing first = new SharedMemoryRing(map, memory, FILE_HEADER_SIZE, capacity, CLOSED_OFFSET);
+		SharedMemoryRing second = new SharedMemoryRing(map, memory, FILE_HEADER_SIZE + SharedMemoryRing.size(capacity), capacity, CLOSED_OFFSET);
+		
+		if (isOwner){
+			return new SharedMemoryChannel(memory, ATTACH_OFFSET, ACK_OFFSET, first, second, file, path, true);
+		}
+		return new SharedMemoryChannel(memory, ATTACH_OFFSET, ACK_OFFSET, second, first, file, path, false);
+	}
+	
+	/**
+	 * Waits until the other party attached all the files and acknowledges each attachment.
+	 */
+	private void waitForAttach(Map<String, Channel> connections, long deadline) throws TimeoutException {
+		Channel[] channels = connections.values().toArray(new Channel[0]);
+		for (int i=0; i<channels.length; i++){
+			while (!((SharedMemoryChannel) channels[i]).acknowledgeAttach()){
+				sleep(deadline);
+			}
+		}
+	}
+	
+	private void sleep(long deadline) throws TimeoutException {
+		if (System.currentTimeMillis() > deadline){
+			throw new TimeoutException("timeout has occurred");
+		}
+		try {
+			Thread.sleep(RETRY_INTERVAL);
+		} catch (InterruptedException e) {
+			Logging.getLogger().log(Level.INFO, e.toString());
+		}
+	}
+	
+	private void closeAll(Map<String, Channel> connections){
+		Channel[] channels = connections.values().toArray(new Channel[0]);
+		for (int i=0; i<channels.length; i++){
+			channels[i].close();
+		}
+	}
+	
+	/**
+	 * Shared memory has no Nagle algorithm.
+	 */
+	@Override
+	public void enableNagle() {}
+
+	/**
+	 * This implementation has nothing to close besides the channels (which are being closed by the user).
+	 */
+	@Override
+	public void close() {}
+}
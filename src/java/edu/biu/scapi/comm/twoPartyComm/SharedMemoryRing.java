@@ -0,0 +1,220 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * One direction of a {@link SharedMemoryChannel}: a ring of bytes in a memory mapped file that is shared by two processes.<p>
+ * 
+ * The ring starts with two counters, each in its own cache line: the total number of bytes written (the tail), which is 
+ * changed only by the producer, and the total number of bytes read (the head), which is changed only by the consumer. 
+ * The data follows the counters. The producer copies bytes to the free part of the ring and then publishes the new tail; 
+ * the consumer copies the available bytes and then publishes the new head. A waiting side spins, yields and then parks 
+ * for short periods (see {@link SpscQueue}). A side that waits longer than the timeout fails, so that a process whose 
+ * peer died without closing the channel does not wait forever.<p>
+ * 
+ * The mapped buffer has no volatile accessors, so the counters and the closed flag are accessed through a 
+ * {@link SharedMemoryAccess}. The counters are published by ordered writes, which keep the data copies before them, 
+ * and read by volatile reads, which cannot be hoisted out of the waiting loops.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+class SharedMemoryRing {
+	
+	static final int COUNTERS_SIZE = 128;		//The size of the counters area, two cache lines.
+	private static final int TAIL = 0;			//The offset of the tail counter.
+	private static final int HEAD = 64;			//The offset of the head counter.
+	
+	private SharedMemoryAccess memory;			//Used for the ordered accesses to the counters and the closed flag.
+	private ByteBuffer data;					//A view of the map used to copy the data. Used only by one side.
+	private int base;							//The offset of this ring in the file.
+	private int capacity;						//The size of the data area. A power of two.
+	private int mask;
+	private int closedOffset;					//The offset of the closed flag in the file.
+	private volatile long timeout = SharedMemoryChannel.DEFAULT_TIMEOUT;	//The maximal time (in milliseconds) to wait for the other side.
+	
+	/**
+	 * @param map the mapped file.
+	 * @param memory gives ordered access to the mapped file.
+	 * @param base the offset of the ring in the file.
+	 * @param capacity the size of the data area. Should be a power of two.
+	 * @param closedOffset the offset of the closed flag of the channel in the file.
+	 */
+	SharedMemoryRing(MappedByteBuffer map, SharedMemoryAccess memory, int base, int capacity, int closedOffset){
+		this.memory = memory;
+		this.data = map.duplicate();
+		this.base = base;
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.closedOffset = closedOffset;
+	}
+	
+	/**
+	 * Returns the size of the ring in the file, given the capacity of its data area.
+	 */
+	static int size(int capacity){
+		return COUNTERS_SIZE + capacity;
+	}
+	
+	/**
+	 * Reads a counter. The volatile read makes the data that the other side wrote before publishing the counter visible.
+	 */
+	private long readCounter(int offset){
+		return memory.getLongVolatile(base + offset);
+	}
+	
+	/**
+	 * Publishes a counter of this side. The ordered write keeps the data copies of this side before the counter write.
+	 */
+	private void publishCounter(int offset, long value){
+		memory.putLongOrdered(base + offset, value);
+	}
+	
+	/**
+	 * Sets the maximal time (in milliseconds) to wait for the other side to read or write. Zero means waiting forever.
+	 */
+	void setTimeout(long timeout){
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Checks the closed flag of the channel.
+	 */
+	boolean isClosed(){
+		return memory.getIntVolatile(closedOffset) != 0;
+	}
+	
+	/**
+	 * Sets the closed flag of the channel. Both sides see it.
+	 */
+	void close(){
+		memory.putIntVolatile(closedOffset, 1);
+	}
+	
+	/**
+	 * Writes the given bytes to the ring, waiting for free space as needed. Called only by the producer.
+	 * @throws EOFException in case the channel was closed.
+	 * @throws IOException in case the other side did not read for longer than the timeout.
+	 */
+	void write(byte[] src, int offset, int length) throws IOException{
+		long tail = readCounter(TAIL);
+		int idle = 0;
+		long waitStart = 0;
+		while (length > 0){
+			int free = capacity - (int) (tail - readCounter(HEAD));
+			if (free == 0){
+				if (isClosed()){
+					throw new EOFException("the channel is closed");
+				}
+				if (idle == 0){
+					waitStart = System.currentTimeMillis();
+				}
+				idle = SpscQueue.backOff(idle);
+				checkTimeout(idle, waitStart);
+				continue;
+			}
+			idle = 0;
+			
+			int n = Math.min(length, free);
+			copy(tail, src, offset, n, true);
+			tail += n;
+			offset += n;
+			length -= n;
+			publishCounter(TAIL, tail);
+		}
+	}
+	
+	/**
+	 * Reads exactly the given number of bytes from the ring, waiting for them as needed. Called only by the consumer.
+	 * @throws EOFException in case the channel was closed before all the bytes were written.
+	 * @throws IOException in case the other side did not write for longer than the timeout.
+	 */
+	void read(byte[] dst, int offset, int length) throws IOException{
+		long head = readCounter(HEAD);
+		int idle = 0;
+		long waitStart = 0;
+		while (length > 0){
+			int available = (int) (readCounter(TAIL) - head);
+			if (available == 0){
+				if (isClosed()){
+					throw new EOFException("the channel is closed");
+				}
+				if (idle == 0){
+					waitStart = System.currentTimeMillis();
+				}
+				idle = SpscQueue.backOff(idle);
+				checkTimeout(idle, waitStart);
+				continue;
+			}
+			idle = 0;
+			
+			int n = Math.min(length, available);
+			copy(head, dst, offset, n, false);
+			head += n;
+			offset += n;
+			length -= n;
+			publishCounter(HEAD, head);
+		}
+	}
+	
+	/**
+	 * Fails in case the current wait started more than the timeout ago. The time is checked only once the waiting thread 
+	 * parks, so the spinning is not slowed down.
+	 */
+	private void checkTimeout(int idle, long waitStart) throws IOException{
+		if (timeout > 0 && idle >= SpscQueue.PARKING && System.currentTimeMillis() - waitStart > timeout){
+			throw new IOException("the other side did not respond for " + timeout + " milliseconds");
+		}
+	}
+	
+	/**
+	 * Copies bytes between the given array and the ring, starting at the given counter and wrapping around the end of the ring.
+	 */
+	private void copy(long counter, byte[] array, int offset, int length, boolean toRing){
+		int position = (int) (counter & mask);
+		int first = Math.min(length, capacity - position);
+		
+		data.position(base + COUNTERS_SIZE + position);
+		if (toRing){
+			data.put(array, offset, first);
+		} else{
+			data.get(array, offset, first);
+		}
+		
+		if (first < length){
+			data.position(base + COUNTERS_SIZE);
+			if (toRing){
+				data.put(array, offset + first, length - first);
+			} else{
+				data.get(array, offset + first, length - first);
+			}
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded lock-free queue for exactly one producer thread and one consumer thread.<p>
+ * 
+ * The elements are kept in a ring whose size is a power of two. The producer is the only one that advances the tail and the 
+ * consumer is the only one that advances the head, so no locks or compare-and-set operations are needed; the ordered 
+ * (lazy) writes of the counters publish the elements to the other thread.<p>
+ * 
+ * The blocking functions first spin, then yield and finally park for short periods, so a busy pair of threads exchanges 
+ * messages without any system call while an idle thread does not burn a core.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+class SpscQueue<E> {
+	
+	private static final int SPINS = 1000;				//The number of busy-wait iterations before yielding.
+	private static final int YIELDS = 100;				//The number of yields before parking.
+	private static final long PARK_NANOS = 50000;		//The park period once the thread stopped spinning.
+	
+	/**
+	 * The value that {@link #backOff(int)} returns once the waiting thread parks.
+	 */
+	static final int PARKING = SPINS + YIELDS;
+	
+	private final Object[] ring;
+	private final int mask;
+	private final AtomicLong head = new AtomicLong(0);	//The index of the next element to take. Advanced only by the consumer.
+	private final AtomicLong tail = new AtomicLong(0);	//The index of the next free place. Advanced only by the producer.
+	private long cachedHead;							//The producer's last read of the head.
+	private long cachedTail;							//The consumer's last read of the tail.
+	private volatile boolean closed;					//Once set, the blocking functions do not wait anymore.
+	
+	/**
+	 * Creates a queue that can hold at least the given number of elements.
+	 * @param capacity the minimal capacity. Rounded up to a power of two.
+	 */
+	SpscQueue(int capacity){
+		int size = 1;
+		while (size < capacity){
+			size <<= 1;
+		}
+		ring = new Object[size];
+		mask = size - 1;
+	}
+	
+	/**
+	 * Adds the given element in case there is a free place. Should be called only by the producer thread.
+	 * @return true if the element was added; false if the queue is full.
+	 */
+	boolean offer(E element){
+		long t = tail.get();
+		if (t - cachedHead >= ring.length){
+			cachedHead = head.get();
+			if (t - cachedHead >= ring.length){
+				return false;
+			}
+		}
+		ring[(int) t & mask] = element;
+		tail.lazySet(t + 1);
+		return true;
+	}
+	
+	/**
+	 * Takes the first element in case there is one. Should be called only by the consumer thread.
+	 * @return the first element or null if the queue is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	E poll(){
+		long h = head.get();
+		if (h >= cachedTail){
+			cachedTail = tail.get();
+			if (h >= cachedTail){
+				return null;
+			}
+		}
+		int index = (int) h & mask;
+		E element = (E) ring[index];
+		ring[index] = null;
+		head.lazySet(h + 1);
+		return element;
+	}
+	
+	/**
+	 * Adds the given element, waiting for a free place if necessary. Should be called only by the producer thread.
+	 * @throws EOFException in case the queue was closed.
+	 * @throws InterruptedIOException in case the thread was interrupted while waiting.
+	 */
+	void put(E element) throws IOException{
+		if (closed){
+			throw new EOFException("the queue is closed");
+		}
+		int idle = 0;
+		while (!offer(element)){
+			if (closed){
+				throw new EOFException("the queue is closed");
+			}
+			idle = backOff(idle);
+		}
+	}
+	
+	/**
+	 * Takes the first element, waiting for one if necessary. Should be called only by the consumer thread.<p>
+	 * The elements that were added before the queue was closed can still be taken.
+	 * @throws EOFException in case the queue is empty and was closed.
+	 * @throws InterruptedIOException in case the thread was interrupted while waiting.
+	 */
+	E take() throws IOException{
+		int idle = 0;
+		E element;
+		while ((element = poll()) == null){
+			if (closed){
+				//An element may have been added just before the queue was closed, after the last poll.
+				element = poll();
+				if (element == null){
+					throw new EOFException("the queue is closed");
+				}
+				return element;
+			}
+			idle = backOff(idle);
+		}
+		return element;
+	}
+	
+	/**
+	 * Closes the queue. Can be called by any thread.
+	 */
+	void close(){
+		closed = true;
+	}
+	
+	boolean isClosed(){
+		return closed;
+	}
+	
+	/**
+	 * Waits a little, according to the number of times the calling thread has already waited.
+	 * @return the updated number of times.
+	 */
+	static int backOff(int idle) throws InterruptedIOException{
+		if (idle < SPINS){
+			//busy wait.
+		} else if (idle < SPINS + YIELDS){
+			Thread.yield();
+		} else{
+			LockSupport.parkNanos(PARK_NANOS);
+			if (Thread.interrupted()){
+				throw new InterruptedIOException("interrupted while waiting on the queue");
+			}
+		}
+		return (idle < SPINS + YIELDS) ? idle + 1 : idle;
+	}
+}
@@ -28,6 +28,7 @@ public class TwoPartySocketConnector {
 	private SocketPartyData other;					//The data of the other application to communicate with.
 	private boolean bStopped = false;				//A flag that indicates if to keep on listening or stop.
 	private boolean isSecure;						// A flag that indicates to use SSL or not.
+	private boolean isBinary;						// A flag that indicates to use binary framing or not.
 	private SSLSocketFactory factory;				//In case of SSL communication, the sockets are created via this factory.
 	private Map<String, Channel> connectionsMap;
 	
@@ -43,6 +44,20 @@ public class TwoPartySocketConnector {
 		this.me = (SocketPartyData) me;
 		this.other = (SocketPartyData) party;
 		this.isSecure = false;
+		this.isBinary = false;
+	}
+	
+	/**
+	 * A constructor that set the parties and the framing of the created channels.<p>
+	 * In case binaryFraming is true, the created channels will be {@link BinaryTCPSocketChannel}s. Otherwise, they will be plain.
+	 * 
+	 * @param me The data of the current application
+	 * @param party The data of the other application to communicate with.
+	 * @param binaryFraming indicates whether or not to create channels that use binary length-prefixed framing.
+	 */
+	public TwoPartySocketConnector(PartyData me, PartyData party, boolean binaryFraming){
+		this (me, party);
+		this.isBinary = binaryFraming;
 	}
 	
 	/**
@@ -81,6 +96,8 @@ public class TwoPartySocketConnector {
 			//Create a channel.
 			if (isSecure){ //In case of secure channel, create an SSLSocketChannel.
 				channels[i] = new SSLSocketChannel(inetSocketAdd, factory, checkIdentity, me);
+			} else if (isBinary){ //In case of binary framing, create a BinaryTCPSocketChannel.
+				channels[i] = new BinaryTCPSocketChannel(inetSocketAdd, checkIdentity, me);
 			} else { //In case of plain channel, create an PlainTCPSocketChannel.
 				channels[i] = new PlainTCPSocketChannel(inetSocketAdd, checkIdentity, me);
 			}
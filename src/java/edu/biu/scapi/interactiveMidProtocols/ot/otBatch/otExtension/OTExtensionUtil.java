@@ -0,0 +1,295 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.spec.SecretKeySpec;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.RawChannel;
+import edu.biu.scapi.primitives.prf.AES;
+import edu.biu.scapi.primitives.prf.bc.BcAES;
+
+/**
+ * Shared building blocks of the pure-Java IKNP OT extension: packing of the bit matrices into {@code long} arrays, 
+ * the 128x128 bit-matrix transposition, the AES counter mode PRG that expands the base OT seeds and the fixed-key AES 
+ * hash that breaks the correlation between the rows of the transposed matrix. <p>
+ * 
+ * All the matrices are kept in {@code long[]} arrays. A matrix of {@link #KAPPA} rows and m columns is stored row after row, 
+ * each row holding m/64 longs where bit k of long w is column 64w+k. After the transposition every column of the original matrix 
+ * is held in two longs where bit i of long h is row 64h+i.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+final class OTExtensionUtil {
+
+	//The security parameter; this is the number of base OTs and the number of rows in the extension matrix.
+	static final int KAPPA = 128;
+	
+	//A 128 bit key that was generated once and hardcoded in; used by the fixed-key AES hash.
+	private static final SecretKeySpec FIXED_KEY = new SecretKeySpec(new byte[]{ 57, -121, 10, -34, 99, 5, -77, 118, -8, 43, -60, 21, 112, -93, 78, -2 }, "AES");
+	
+	private OTExtensionUtil(){}
+	
+	/**
+	 * Sets the fixed key of the hash to the given AES.
+	 * @param aes the AES object to use as the fixed-key hash.
+	 */
+	static void setFixedKey(AES aes){
+		try {
+			aes.setKey(FIXED_KEY);
+		} catch (InvalidKeyException e) {
+			// This should not occur since the fixed key is a valid AES key.
+		}
+	}
+	
+	/**
+	 * @param numOfOts the number of OTs in the extension.
+	 * @return the number of longs in each row of the extension matrix. The number of columns is padded to a multiple of {@link #KAPPA}.
+	 */
+	static int rowLength(int numOfOts){
+		return ((numOfOts + KAPPA - 1) / KAPPA) * (KAPPA / 64);
+	}
+	
+	/**
+	 * Returns the size of each element, given the total length of the elements of all the OTs.
+	 * @param length the total length of the elements, in bytes.
+	 * @param numOfOts the number of OTs in the extension.
+	 * @return the size of each element, in bytes.
+	 * @throws IllegalArgumentException if the number of OTs is not positive or the length is not a positive multiple of it.
+	 */
+	static int elementSize(int length, int numOfOts){
+		if (numOfOts < 1){
+			throw new IllegalArgumentException("the number of OTs should be positive");
+		}
+		if (length < numOfOts || length % numOfOts != 0){
+			throw new IllegalArgumentException("the length of the inputs should be a multiple of the number of OTs");
+		}
+		return length / numOfOts;
+	}
+	
+	/**
+	 * Returns the size of each element in bytes, given its size in bits.
+	 * @throws IllegalArgumentException if the size is not a positive multiple of 8.
+	 */
+	static int elementSize(int bitLength){
+		if (bitLength < 8 || bitLength % 8 != 0){
+			throw new IllegalArgumentException("the size of the elements should be a positive multiple of 8 bits");
+		}
+		return bitLength / 8;
+	}
+	
+	/**
+	 * Packs the given sigma array, that holds a single bit in each byte, into a row of the extension matrix.
+	 * @param sigmaArr the sigma bits. Each byte should be 0 or 1.
+	 * @param rowLength the number of longs in the row.
+	 * @return the packed row.
+	 */
+	static long[] packBits(byte[] sigmaArr, int rowLength){
+		long[] row = new long[rowLength];
+		for (int i=0; i<sigmaArr.length; i++){
+			if ((sigmaArr[i] != 0) && (sigmaArr[i] != 1)){
+				throw new IllegalArgumentException("Sigma should be 0 or 1");
+			}
+			row[i >>> 6] |= ((long) sigmaArr[i]) << (i & 63);
+		}
+		return row;
+	}
+	
+	/**
+	 * Transposes the given matrix of {@link #KAPPA} rows. 
+	 * @param matrix holds the rows of the matrix one after the other.
+	 * @param rowLength the number of longs in each row.
+	 * @return the columns of the given matrix, two longs for each column.
+	 */
+	static long[] transpose(long[] matrix, int rowLength){
+		long[] columns = new long[rowLength * 64 * 2];
+		long[] block = new long[64];
+		//Transpose each 64x64 block separately and put it in its place.
+		for (int half=0; half<2; half++){
+			for (int w=0; w<rowLength; w++){
+				for (int i=0; i<64; i++){
+					block[i] = matrix[(half * 64 + i) * rowLength + w];
+				}
+				transpose64(block);
+				for (int i=0; i<64; i++){
+					columns[(w * 64 + i) * 2 + half] = block[i];
+				}
+			}
+		}
+		return columns;
+	}
+	
+	/**
+	 * Transposes in place a 64x64 bit matrix, such that bit j of a[i] is swapped with bit i of a[j].<p>
+	 * Each round swaps the off-diagonal sub-blocks of half the size of the previous round.
+	 * @param a the matrix to transpose.
+	 */
+	static void transpose64(long[] a){
+		long mask = 0x00000000FFFFFFFFL;
+		for (int j=32; j!=0; j >>>= 1, mask ^= (mask << j)){
+			for (int k=0; k<64; k = ((k | j) + 1) & ~j){
+				long t = ((a[k] >>> j) ^ a[k | j]) & mask;
+				a[k] ^= t << j;
+				a[k | j] ^= t;
+			}
+		}
+	}
+	
+	/**
+	 * Converts the given longs to a byte array in order to send them.
+	 */
+	static byte[] toBytes(long[] longs){
+		byte[] bytes = new byte[longs.length * 8];
+		ByteBuffer.wrap(bytes).asLongBuffer().put(longs);
+		return bytes;
+	}
+	
+	/**
+	 * Converts the given bytes back to a long array.
+	 * @throws IllegalArgumentException if the number of bytes does not match the expected number of longs.
+	 */
+	static long[] toLongs(byte[] bytes, int numOfLongs){
+		if (bytes.length != numOfLongs * 8){
+			throw new IllegalArgumentException("the received matrix does not match the number of OTs");
+		}
+		long[] longs = new long[numOfLongs];
+		ByteBuffer.wrap(bytes).asLongBuffer().get(longs);
+		return longs;
+	}
+	
+	/**
+	 * Sends the given bytes to the other party. If the channel supports raw bytes the serialization is skipped.
+	 */
+	static void send(Channel channel, byte[] data) throws IOException {
+		if (channel instanceof RawChannel){
+			((RawChannel) channel).send(data);
+		} else {
+			channel.send(data);
+		}
+	}
+	
+	/**
+	 * Receives a byte array sent by {@link #send(Channel, byte[])} on the other side.
+	 */
+	static byte[] receive(Channel channel) throws IOException, ClassNotFoundException {
+		if (channel instanceof RawChannel){
+			return ((RawChannel) channel).receiveBytes();
+		} 
+		Serializable message = channel.receive();
+		if (!(message instanceof byte[])){
+			throw new IllegalArgumentException("the given message should be a byte array");
+		}
+		return (byte[]) message;
+	}
+	
+	/**
+	 * A pseudorandom generator that expands a base OT seed using AES in counter mode keyed with the seed. <p>
+	 * The generator keeps its counter between calls, so both parties have to expand the same number of bits in the same order.
+	 */
+	static final class AesCtrPrg {
+		private AES aes;
+		private long counter;
+		private byte[] in = new byte[16];
+		private byte[] out = new byte[16];
+		
+		AesCtrPrg(byte[] seed) {
+			aes = new BcAES();
+			try {
+				aes.setKey(new SecretKeySpec(seed, "AES"));
+			} catch (InvalidKeyException e) {
+				throw new IllegalArgumentException("the base OT seed should be a 128 bit key");
+			}
+		}
+		
+		/**
+		 * Xors the next rowLength longs of the stream into dest, starting at the given offset.
+		 */
+		void xorInto(long[] dest, int offset, int rowLength){
+			ByteBuffer inBuf = ByteBuffer.wrap(in);
+			ByteBuffer outBuf = ByteBuffer.wrap(out);
+			for (int w=0; w<rowLength; w+=2){
+				inBuf.putLong(8, counter++);
+				computeBlock(aes, in, out);
+				dest[offset + w] ^= outBuf.getLong(0);
+				dest[offset + w + 1] ^= outBuf.getLong(8);
+			}
+		}
+	}
+	
+	/**
+	 * The hash H(j, x) that is used to derive the OT outputs from the rows of the transposed matrix. <p>
+	 * H(j, x) = AES(AES(x) XOR j) XOR AES(x) where AES is keyed with a fixed key. Outputs longer than 128 bits 
+	 * are generated by xoring a block counter to the second half of x.
+	 */
+	static final class FixedKeyHash {
+		private AES aes;
+		private byte[] in = new byte[16];
+		private byte[] permuted = new byte[16];
+		private byte[] out = new byte[16];
+		private ByteBuffer inBuf = ByteBuffer.wrap(in);
+		private ByteBuffer permutedBuf = ByteBuffer.wrap(permuted);
+		
+		FixedKeyHash(AES aes){
+			this.aes = aes;
+		}
+		
+		/**
+		 * Xors H(index, (x0,x1)) into len bytes of dest, starting at the given offset.
+		 */
+		void xorInto(long x0, long x1, long index, byte[] dest, int offset, int len){
+			for (int block=0; len > 0; block++){
+				//Compute AES(x).
+				inBuf.putLong(0, x0);
+				inBuf.putLong(8, x1 ^ block);
+				computeBlock(aes, in, permuted);
+				//Compute AES(AES(x) XOR j).
+				inBuf.putLong(0, permutedBuf.getLong(0) ^ index);
+				inBuf.putLong(8, permutedBuf.getLong(8));
+				computeBlock(aes, in, out);
+				int size = Math.min(len, 16);
+				for (int i=0; i<size; i++){
+					dest[offset + i] ^= out[i] ^ permuted[i];
+				}
+				offset += size;
+				len -= size;
+			}
+		}
+	}
+	
+	private static void computeBlock(AES aes, byte[] in, byte[] out){
+		try {
+			aes.computeBlock(in, 0, out, 0);
+		} catch (IllegalBlockSizeException e) {
+			// Should not occur since the input is a single block.
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.exceptions.CheatAttemptException;
+import edu.biu.scapi.interactiveMidProtocols.ot.OTOnByteArrayROutput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchRInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchROutput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchReceiver;
+import edu.biu.scapi.securityLevel.SemiHonest;
+
+/**
+ * OT extension receiver with an offline/online split. <p>
+ * 
+ * In the offline phase, {@link #precompute(Channel, int)} runs random OT extension with random choice bits c using the 
+ * underlying OT extension receiver, and keeps (c, r_c) in a bounded pool. <p>
+ * 
+ * In the online phase, the transfer function takes OTs from the pool and sends the correction bits e = sigma XOR c to the sender. 
+ * The output is x_sigma = y_sigma XOR r_c. See {@link OTPrecomputedExtensionSender} for the details of the protocol.<p>
+ * 
+ * The pool can be saved to a file with {@link #save(File)} and loaded in a later session with {@link #load(File)}. The sender should 
+ * save and load its pool at the same points, since the two pools must hold the same OTs.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class OTPrecomputedExtensionReceiver implements SemiHonest, OTBatchReceiver{
+	
+	private OTBatchReceiver otExtension;	//Used to precompute the random OTs.
+	private int elementSize;				//The size of each OT element in bytes.
+	private RandomOTPool pool;				//Holds (c, r_c) for each precomputed OT.
+	private SecureRandom random;			//Used to choose the random choice bits.
+	
+	/**
+	 * Constructor that sets the underlying OT extension and the size of the pool.
+	 * @param otExtension used to precompute the OTs. Should support OTExtensionRandomRInput and return OTOnByteArrayROutput.
+	 * @param elementSize the size of each OT element, in bits. Should be a multiple of 8.
+	 * @param capacity the maximal number of precomputed OTs.
+	 * @param random used to choose the choice bits of the precomputed OTs.
+	 */
+	public OTPrecomputedExtensionReceiver(OTBatchReceiver otExtension, int elementSize, int capacity, SecureRandom random){
+		if ((elementSize <= 0) || (elementSize % 8 != 0)){
+			throw new IllegalArgumentException("the element size should be a positive multiple of 8");
+		}
+		this.otExtension = otExtension;
+		this.elementSize = elementSize / 8;
+		this.random = random;
+		pool = new RandomOTPool(1 + this.elementSize, capacity);
+	}
+	
+	/**
+	 * Constructor that sets the underlying OT extension and the size of the pool, and uses a default SecureRandom.
+	 */
+	public OTPrecomputedExtensionReceiver(OTBatchReceiver otExtension, int elementSize, int capacity){
+		this(otExtension, elementSize, capacity, new SecureRandom());
+	}
+	
+	/**
+	 * Runs numOfOts random OTs with random choice bits and adds them to the pool.<p>
+	 * Should be called together with the precompute function of the sender, with the same number of OTs.
+	 * @param channel used to communicate with the sender.
+	 * @param numOfOts the number of OTs to precompute. Should not exceed {@link #getFree()}.
+	 */
+	public synchronized void precompute(Channel channel, int numOfOts) throws CheatAttemptException, IOException, ClassNotFoundException {
+		if (numOfOts > pool.free()){
+			throw new IllegalStateException("there is no room for " + numOfOts + " OTs in the pool");
+		}
+		byte[] c = new byte[numOfOts];
+		byte[] randomBytes = new byte[(numOfOts + 7) / 8];
+		random.nextBytes(randomBytes);
+		for (int j=0; j<numOfOts; j++){
+			c[j] = (byte) ((randomBytes[j >>> 3] >>> (j & 7)) & 1);
+		}
+		
+		OTBatchROutput output = otExtension.transfer(channel, new OTExtensionRandomRInput(c, elementSize * 8));
+		if (!(output instanceof OTOnByteArrayROutput)){
+			throw new IllegalArgumentException("the output of the OT extension should be an instance of OTOnByteArrayROutput");
+		}
+		byte[] rc = ((OTOnByteArrayROutput) output).getXSigma();
+		
+		//Put c and r_c of each OT in a single record.
+		int recordSize = 1 + elementSize;
+		byte[] records = new byte[numOfOts * recordSize];
+		for (int j=0; j<numOfOts; j++){
+			records[j * recordSize] = c[j];
+			System.arraycopy(rc, j * elementSize, records, j * recordSize + 1, elementSize);
+		}
+		pool.add(records, numOfOts);
+	}
+	
+	/**
+	 * @return the number of precomputed OTs in the pool.
+	 */
+	public synchronized int getAvailable(){
+		return pool.available();
+	}
+	
+	/**
+	 * @return the number of OTs that can be added to the pool.
+	 */
+	public synchronized int getFree(){
+		return pool.free();
+	}
+	
+	/**
+	 * Saves the precomputed OTs to the given file.
+	 */
+	public synchronized void save(File file) throws IOException {
+		pool.save(file);
+	}
+	
+	/**
+	 * Replaces the content of the pool with the OTs saved in the given file.
+	 */
+	public synchronized void load(File file) throws IOException {
+		pool.load(file);
+	}
+	
+	/**
+	 * Runs the online phase using OTs from the pool.
+	 * @param channel used to communicate with the sender.
+	 * @param input OTExtensionGeneralRInput, OTExtensionCorrelatedRInput or OTExtensionRandomRInput. 
+	 * The element size should be the one given in construction time.
+	 * @return OTOnByteArrayROutput that holds all the x sigma values serially.
+	 * @throws IllegalStateException if there are not enough OTs in the pool.
+	 */
+	public synchronized OTBatchROutput transfer(Channel channel, OTBatchRInput input) throws CheatAttemptException, IOException, ClassNotFoundException{
+		
+		//Check if the input is valid. If input is not instance of OTExtensionRInput, throw Exception.
+		if (!(input instanceof OTExtensionRInput)){
+			throw new IllegalArgumentException("input should be an instance of OTExtensionRInput.");
+		}
+		if (((OTExtensionRInput) input).getElementSize() != elementSize * 8){
+			throw new IllegalArgumentException("the elements should be of " + elementSize * 8 + " bits");
+		}
+		byte[] sigmaArr = ((OTExtensionRInput) input).getSigmaArr();
+		int numOfOts = sigmaArr.length;
+		int recordSize = 1 + elementSize;
+		for (int j=0; j<numOfOts; j++){
+			if ((sigmaArr[j] != 0) && (sigmaArr[j] != 1)){
+				throw new IllegalArgumentException("Sigma should be 0 or 1");
+			}
+		}
+		
+		long position = pool.getPosition();
+		byte[] records = pool.take(numOfOts);
+		
+		//Send the position of the pool and the correction bits e = sigma XOR c.
+		byte[] message = new byte[8 + (numOfOts + 7) / 8];
+		ByteBuffer.wrap(message).putLong(0, position);
+		for (int j=0; j<numOfOts; j++){
+			message[8 + (j >>> 3)] |= (sigmaArr[j] ^ records[j * recordSize]) << (j & 7);
+		}
+		OTExtensionUtil.send(channel, message);
+		
+		//Get the values to unmask. In the general version y_sigma, in the correlated version y if sigma is 1.
+		byte[] output = new byte[numOfOts * elementSize];
+		if (input instanceof OTExtensionGeneralRInput){
+			byte[] y = OTExtensionUtil.receive(channel);
+			if (y.length != 2 * output.length){
+				throw new IllegalArgumentException("the sender's message does not match the number of OTs");
+			}
+			for (int j=0; j<numOfOts; j++){
+				System.arraycopy(y, sigmaArr[j] * output.length + j * elementSize, output, j * elementSize, elementSize);
+			}
+		} else if (input instanceof OTExtensionCorrelatedRInput){
+			byte[] y = OTExtensionUtil.receive(channel);
+			if (y.length != output.length){
+				throw new IllegalArgumentException("the sender's message does not match the number of OTs");
+			}
+			for (int j=0; j<numOfOts; j++){
+				if (sigmaArr[j] == 1){
+					System.arraycopy(y, j * elementSize, output, j * elementSize, elementSize);
+				}
+			}
+		}
+		
+		//x_sigma = y_sigma XOR r_c.
+		for (int j=0; j<numOfOts; j++){
+			for (int i=0; i<elementSize; i++){
+				output[j * elementSize + i] ^= records[j * recordSize + 1 + i];
+			}
+		}
+		return new OTOnByteArrayROutput(output);
+	}
+}
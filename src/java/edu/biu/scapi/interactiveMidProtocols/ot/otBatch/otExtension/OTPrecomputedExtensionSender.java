@@ -0,0 +1,235 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.exceptions.CheatAttemptException;
+import edu.biu.scapi.exceptions.InvalidDlogGroupException;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchSInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchSOutput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchSender;
+import edu.biu.scapi.securityLevel.SemiHonest;
+
+/**
+ * OT extension sender with an offline/online split. <p>
+ * 
+ * In the offline phase, {@link #precompute(Channel, int)} runs random OT extension using the underlying OT extension sender and 
+ * keeps the random pairs (r0, r1) in a bounded pool. The offline phase does not depend on the inputs and can run ahead of time. <p>
+ * 
+ * In the online phase, the transfer function takes OTs from the pool and derandomizes them: the receiver sends the correction bits 
+ * e = sigma XOR c, where c is the random choice of the precomputed OT, and the sender answers with y_b = x_b XOR r_(b XOR e). 
+ * This takes a single round and only symmetric operations, no matter which underlying OT extension is used. <p>
+ * 
+ * The general, correlated and random versions are supported in the online phase, with the same inputs and outputs as in 
+ * {@link OTSemiHonestJavaExtensionSender}. All the OTs in the pool have the same element size, given in construction time.<p>
+ * 
+ * The pool can be saved to a file with {@link #save(File)} and loaded in a later session with {@link #load(File)}. The receiver should 
+ * save and load its pool at the same points, since the two pools must hold the same OTs.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class OTPrecomputedExtensionSender implements SemiHonest, OTBatchSender{
+	
+	private OTBatchSender otExtension;	//Used to precompute the random OTs.
+	private int elementSize;			//The size of each OT element in bytes.
+	private RandomOTPool pool;			//Holds (r0, r1) for each precomputed OT.
+	
+	/**
+	 * Constructor that sets the underlying OT extension and the size of the pool.
+	 * @param otExtension used to precompute the OTs. Should support OTExtensionRandomSInput and return OTExtensionSOutput.
+	 * @param elementSize the size of each OT element, in bits. Should be a multiple of 8.
+	 * @param capacity the maximal number of precomputed OTs.
+	 */
+	public OTPrecomputedExtensionSender(OTBatchSender otExtension, int elementSize, int capacity){
+		if ((elementSize <= 0) || (elementSize % 8 != 0)){
+			throw new IllegalArgumentException("the element size should be a positive multiple of 8");
+		}
+		this.otExtension = otExtension;
+		this.elementSize = elementSize / 8;
+		pool = new RandomOTPool(2 * this.elementSize, capacity);
+	}
+	
+	/**
+	 * Runs numOfOts random OTs and adds them to the pool.<p>
+	 * Should be called together with the precompute function of the receiver, with the same number of OTs.
+	 * @param channel used to communicate with the receiver.
+	 * @param numOfOts the number of OTs to precompute. Should not exceed {@link #getFree()}.
+	 */
+	public synchronized void precompute(Channel channel, int numOfOts) throws ClassNotFoundException, IOException, CheatAttemptException, InvalidDlogGroupException {
+		if (numOfOts > pool.free()){
+			throw new IllegalStateException("there is no room for " + numOfOts + " OTs in the pool");
+		}
+		OTBatchSOutput output = otExtension.transfer(channel, new OTExtensionRandomSInput(numOfOts, elementSize * 8));
+		if (!(output instanceof OTExtensionSOutput)){
+			throw new IllegalArgumentException("the output of the OT extension should be an instance of OTExtensionSOutput");
+		}
+		byte[] r0 = ((OTExtensionSOutput) output).getX0Arr();
+		byte[] r1 = ((OTExtensionSOutput) output).getX1Arr();
+		
+		//Interleave r0 and r1 of each OT into a single record.
+		byte[] records = new byte[numOfOts * 2 * elementSize];
+		for (int j=0; j<numOfOts; j++){
+			System.arraycopy(r0, j * elementSize, records, 2 * j * elementSize, elementSize);
+			System.arraycopy(r1, j * elementSize, records, (2 * j + 1) * elementSize, elementSize);
+		}
+		pool.add(records, numOfOts);
+	}
+	
+	/**
+	 * @return the number of precomputed OTs in the pool.
+	 */
+	public synchronized int getAvailable(){
+		return pool.available();
+	}
+	
+	/**
+	 * @return the number of OTs that can be added to the pool.
+	 */
+	public synchronized int getFree(){
+		return pool.free();
+	}
+	
+	/**
+	 * Saves the precomputed OTs to the given file.
+	 */
+	public synchronized void save(File file) throws IOException {
+		pool.save(file);
+	}
+	
+	/**
+	 * Replaces the content of the pool with the OTs saved in the given file.
+	 */
+	public synchronized void load(File file) throws IOException {
+		pool.load(file);
+	}
+	
+	/**
+	 * Runs the online phase using OTs from the pool.
+	 * @param channel used to communicate with the receiver.
+	 * @param input OTExtensionGeneralSInput, OTExtensionCorrelatedSInput or OTExtensionRandomSInput. 
+	 * The elements should be of the size given in construction time.
+	 * @return OTExtensionSOutput with x0, x1 in the correlated and random versions; null in the general version.
+	 * @throws IllegalStateException if there are not enough OTs in the pool.
+	 * @throws CheatAttemptException if the receiver uses different OTs from the pool.
+	 */
+	public synchronized OTBatchSOutput transfer(Channel channel, OTBatchSInput input) throws ClassNotFoundException, IOException, CheatAttemptException, InvalidDlogGroupException{
+		byte[] x0 = null;
+		byte[] x1 = null;
+		byte[] delta = null;
+		int numOfOts;
+		
+		//Retrieve the values from the input object.
+		if (input instanceof OTExtensionGeneralSInput){
+			x0 = ((OTExtensionGeneralSInput) input).getX0Arr();
+			x1 = ((OTExtensionGeneralSInput) input).getX1Arr();
+			numOfOts = ((OTExtensionGeneralSInput) input).getNumOfOts();
+			checkSize(x0.length, numOfOts);
+			checkSize(x1.length, numOfOts);
+		} else if (input instanceof OTExtensionCorrelatedSInput){
+			delta = ((OTExtensionCorrelatedSInput) input).getDelta();
+			numOfOts = ((OTExtensionCorrelatedSInput) input).getNumOfOts();
+			checkSize(delta.length, numOfOts);
+		} else if (input instanceof OTExtensionRandomSInput){
+			numOfOts = ((OTExtensionRandomSInput) input).getNumOfOts();
+			checkSize(((OTExtensionRandomSInput) input).getBitLength() / 8 * numOfOts, numOfOts);
+		} else {
+			throw new IllegalArgumentException("input should be an instance of OTExtensionGeneralSInput, OTExtensionCorrelatedSInput or OTExtensionRandomSInput.");
+		}
+		
+		long position = pool.getPosition();
+		byte[] records = pool.take(numOfOts);
+		
+		//Receive the position of the receiver's pool and the correction bits.
+		byte[] message = OTExtensionUtil.receive(channel);
+		if (message.length != 8 + (numOfOts + 7) / 8){
+			throw new IllegalArgumentException("the correction bits do not match the number of OTs");
+		}
+		if (ByteBuffer.wrap(message).getLong(0) != position){
+			throw new CheatAttemptException("the receiver uses different precomputed OTs");
+		}
+		
+		OTBatchSOutput output = null;
+		if (x0 != null){
+			//General: y_b = x_b XOR r_(b XOR e).
+			byte[] y = new byte[2 * numOfOts * elementSize];
+			for (int j=0; j<numOfOts; j++){
+				int e = correctionBit(message, j);
+				xor(x0, j * elementSize, records, (2 * j + e) * elementSize, y, j * elementSize);
+				xor(x1, j * elementSize, records, (2 * j + 1 - e) * elementSize, y, (numOfOts + j) * elementSize);
+			}
+			OTExtensionUtil.send(channel, y);
+			
+		} else {
+			//Correlated and random: x_b = r_(b XOR e). In the correlated version x1 = x0 XOR delta and the receiver gets y = x1 XOR r_(1 XOR e).
+			x0 = new byte[numOfOts * elementSize];
+			x1 = new byte[numOfOts * elementSize];
+			for (int j=0; j<numOfOts; j++){
+				int e = correctionBit(message, j);
+				System.arraycopy(records, (2 * j + e) * elementSize, x0, j * elementSize, elementSize);
+				if (delta == null){
+					System.arraycopy(records, (2 * j + 1 - e) * elementSize, x1, j * elementSize, elementSize);
+				}
+			}
+			if (delta != null){
+				byte[] y = new byte[numOfOts * elementSize];
+				for (int j=0; j<numOfOts; j++){
+					int e = correctionBit(message, j);
+					xor(x0, j * elementSize, delta, j * elementSize, x1, j * elementSize);
+					xor(x1, j * elementSize, records, (2 * j + 1 - e) * elementSize, y, j * elementSize);
+				}
+				OTExtensionUtil.send(channel, y);
+			}
+			output = new OTExtensionSOutput(x0, x1);
+		}
+		return output;
+	}
+	
+	private void checkSize(int length, int numOfOts){
+		if (length != numOfOts * elementSize){
+			throw new IllegalArgumentException("the elements should be of " + elementSize * 8 + " bits");
+		}
+	}
+	
+	/**
+	 * Returns the correction bit of the j-th OT from the receiver's message.
+	 */
+	private static int correctionBit(byte[] message, int j){
+		return (message[8 + (j >>> 3)] >>> (j & 7)) & 1;
+	}
+	
+	/**
+	 * Puts a XOR b in out, for elementSize bytes starting at the given offsets.
+	 */
+	private void xor(byte[] a, int aOff, byte[] b, int bOff, byte[] out, int outOff){
+		for (int i=0; i<elementSize; i++){
+			out[outOff + i] = (byte) (a[aOff + i] ^ b[bOff + i]);
+		}
+	}
+}
@@ -0,0 +1,218 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.exceptions.CheatAttemptException;
+import edu.biu.scapi.exceptions.FactoriesException;
+import edu.biu.scapi.exceptions.InvalidDlogGroupException;
+import edu.biu.scapi.exceptions.ScapiRuntimeException;
+import edu.biu.scapi.exceptions.SecurityLevelException;
+import edu.biu.scapi.interactiveMidProtocols.ot.OTOnByteArrayROutput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchOnByteArraySInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchRInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchROutput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchReceiver;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchSender;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension.OTExtensionUtil.AesCtrPrg;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension.OTExtensionUtil.FixedKeyHash;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.semiHonest.OTSemiHonestDDHBatchOnByteArraySender;
+import edu.biu.scapi.primitives.dlog.bc.BcDlogECF2m;
+import edu.biu.scapi.primitives.hash.bc.BcSHA256;
+import edu.biu.scapi.primitives.kdf.HKDF;
+import edu.biu.scapi.primitives.prf.AES;
+import edu.biu.scapi.primitives.prf.bc.BcAES;
+import edu.biu.scapi.primitives.prf.bc.BcHMAC;
+import edu.biu.scapi.securityLevel.SemiHonest;
+
+/**
+ * A concrete class for Semi-Honest OT extension receiver, implemented in Java on top of the given channel. <P>
+ * 
+ * The protocol is the OT extension of Ishai, Kilian, Nissim and Petrank: <p>
+ * "Y. Ishai, J. Kilian, K. Nissim and E. Petrank. Extending Oblivious Transfers Efficiently. CRYPTO 2003." <p>
+ * 
+ * The base OT phase runs 128 semi-honest batch OTs in which this party plays the sender. It is executed once, 
+ * in the first call to the transfer function, over the channel given to that call. <p>
+ * 
+ * The version of the OT extension (General, Correlated or Random) is chosen according to the given input instance 
+ * and should match the input given to the sender.<p>
+ * 
+ * NOTE: Since the PRGs of the base OT seeds are shared between the calls, calls to the transfer function are serialized and 
+ * should be made in the same order as the calls of the sender.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class OTSemiHonestJavaExtensionReceiver implements SemiHonest, OTBatchReceiver{
+	
+	private OTBatchSender baseOT;		//Used to run the base OTs.
+	private FixedKeyHash hash;			//The hash used to derive the outputs.
+	private SecureRandom random;
+	
+	private AesCtrPrg[] prgs0;			//A PRG for each of the k0 seeds of the base OTs.
+	private AesCtrPrg[] prgs1;			//A PRG for each of the k1 seeds of the base OTs.
+	private long otIndex;				//The number of OTs executed so far. Used as the index of the hash.
+	
+	/**
+	 * Default constructor. Uses the semi-honest DDH batch OT over BC's K-233 curve for the base OTs and BC's AES as the fixed-key hash, 
+	 * so no native library is needed.
+	 */
+	public OTSemiHonestJavaExtensionReceiver(){
+		this(createBaseOT(), new BcAES(), new SecureRandom());
+	}
+	
+	/**
+	 * Constructor that sets the given base OT, AES and random.
+	 * @param baseOT the base OT sender. Should accept an OTBatchOnByteArraySInput.
+	 * @param aes the AES to use as the fixed-key hash. Its key is set by this constructor.
+	 * @param random used to choose the seeds of the base OTs.
+	 */
+	public OTSemiHonestJavaExtensionReceiver(OTBatchSender baseOT, AES aes, SecureRandom random){
+		this.baseOT = baseOT;
+		OTExtensionUtil.setFixedKey(aes);
+		this.hash = new FixedKeyHash(aes);
+		this.random = random;
+	}
+	
+	/**
+	 * Creates the default base OT using only Java implementations of the dlog group and KDF.
+	 */
+	private static OTSemiHonestDDHBatchOnByteArraySender createBaseOT(){
+		try {
+			return new OTSemiHonestDDHBatchOnByteArraySender(new BcDlogECF2m("K-233"), new HKDF(new BcHMAC(new BcSHA256())), new SecureRandom());
+		} catch (IOException e) {
+			throw new ScapiRuntimeException("failed to create the base OT dlog group. The thrown message is: " + e.getMessage());
+		} catch (SecurityLevelException e) {
+			// Should not occur since the BC dlog group is DDH secure.
+			throw new ScapiRuntimeException(e.getMessage());
+		} catch (FactoriesException e) {
+			// Should not occur since the hash is given as an object.
+			throw new ScapiRuntimeException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Runs the base OTs as the sender, using random pairs of seeds (k0, k1). <p>
+	 * The seeds are used to initialize the PRGs.
+	 */
+	private void runBaseOT(Channel channel) throws CheatAttemptException, IOException, ClassNotFoundException {
+		ArrayList<byte[]> k0Arr = new ArrayList<byte[]>();
+		ArrayList<byte[]> k1Arr = new ArrayList<byte[]>();
+		prgs0 = new AesCtrPrg[OTExtensionUtil.KAPPA];
+		prgs1 = new AesCtrPrg[OTExtensionUtil.KAPPA];
+		for (int i=0; i<OTExtensionUtil.KAPPA; i++){
+			byte[] k0 = new byte[16];
+			byte[] k1 = new byte[16];
+			random.nextBytes(k0);
+			random.nextBytes(k1);
+			k0Arr.add(k0);
+			k1Arr.add(k1);
+			prgs0[i] = new AesCtrPrg(k0);
+			prgs1[i] = new AesCtrPrg(k1);
+		}
+		
+		try {
+			baseOT.transfer(channel, new OTBatchOnByteArraySInput(k0Arr, k1Arr));
+		} catch (InvalidDlogGroupException e) {
+			throw new ScapiRuntimeException("the base OT failed. The thrown message is: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * The overloaded function that runs the protocol.<p>
+	 * The first call also runs the base OTs over the given channel.
+	 * @param channel used to communicate with the sender.
+	 * @param input The input for the receiver specifying the version of the OT extension to run. 
+	 * @return OTOnByteArrayROutput that holds all the x sigma values serially.
+	 */
+	public synchronized OTBatchROutput transfer(Channel channel, OTBatchRInput input) throws CheatAttemptException, IOException, ClassNotFoundException{
+		
+		//Check if the input is valid. If input is not instance of OTExtensionRInput, throw Exception.
+		if (!(input instanceof OTExtensionRInput)){
+			throw new IllegalArgumentException("input should be an instance of OTExtensionRInput.");
+		}
+		byte[] sigmaArr = ((OTExtensionRInput) input).getSigmaArr();
+		int numOfOts = sigmaArr.length;
+		if (numOfOts < 1){
+			throw new IllegalArgumentException("the number of OTs should be positive");
+		}
+		int elementSize = OTExtensionUtil.elementSize(((OTExtensionRInput) input).getElementSize());
+		int rowLength = OTExtensionUtil.rowLength(numOfOts);
+		long[] r = OTExtensionUtil.packBits(sigmaArr, rowLength);
+		
+		if (prgs0 == null){
+			runBaseOT(channel);
+		}
+		
+		//For each row compute t_i = G(k0_i) and send u_i = t_i XOR G(k1_i) XOR r.
+		long[] t = new long[OTExtensionUtil.KAPPA * rowLength];
+		long[] u = new long[OTExtensionUtil.KAPPA * rowLength];
+		for (int i=0; i<OTExtensionUtil.KAPPA; i++){
+			int offset = i * rowLength;
+			prgs0[i].xorInto(t, offset, rowLength);
+			for (int w=0; w<rowLength; w++){
+				u[offset + w] = t[offset + w] ^ r[w];
+			}
+			prgs1[i].xorInto(u, offset, rowLength);
+		}
+		OTExtensionUtil.send(channel, OTExtensionUtil.toBytes(u));
+		
+		long[] columns = OTExtensionUtil.transpose(t, rowLength);
+		
+		//Get the values to unmask. In the general version y_sigma, in the correlated version y if sigma is 1.
+		byte[] output = new byte[numOfOts * elementSize];
+		if (input instanceof OTExtensionGeneralRInput){
+			byte[] y = OTExtensionUtil.receive(channel);
+			if (y.length != 2 * output.length){
+				throw new IllegalArgumentException("the sender's message does not match the number of OTs");
+			}
+			for (int j=0; j<numOfOts; j++){
+				System.arraycopy(y, sigmaArr[j] * output.length + j * elementSize, output, j * elementSize, elementSize);
+			}
+		} else if (input instanceof OTExtensionCorrelatedRInput){
+			byte[] y = OTExtensionUtil.receive(channel);
+			if (y.length != output.length){
+				throw new IllegalArgumentException("the sender's message does not match the number of OTs");
+			}
+			for (int j=0; j<numOfOts; j++){
+				if (sigmaArr[j] == 1){
+					System.arraycopy(y, j * elementSize, output, j * elementSize, elementSize);
+				}
+			}
+		}
+		
+		//x_sigma = y_sigma XOR H(j, t_j).
+		for (int j=0; j<numOfOts; j++){
+			hash.xorInto(columns[2 * j], columns[2 * j + 1], otIndex + j, output, j * elementSize, elementSize);
+		}
+		
+		otIndex += numOfOts;
+		return new OTOnByteArrayROutput(output);
+	}
+}
@@ -0,0 +1,247 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.exceptions.CheatAttemptException;
+import edu.biu.scapi.exceptions.FactoriesException;
+import edu.biu.scapi.exceptions.InvalidDlogGroupException;
+import edu.biu.scapi.exceptions.ScapiRuntimeException;
+import edu.biu.scapi.exceptions.SecurityLevelException;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchOnByteArrayROutput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchRBasicInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchROutput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchReceiver;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchSInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchSOutput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchSender;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension.OTExtensionUtil.AesCtrPrg;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension.OTExtensionUtil.FixedKeyHash;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.semiHonest.OTSemiHonestDDHBatchOnByteArrayReceiver;
+import edu.biu.scapi.primitives.dlog.bc.BcDlogECF2m;
+import edu.biu.scapi.primitives.hash.bc.BcSHA256;
+import edu.biu.scapi.primitives.kdf.HKDF;
+import edu.biu.scapi.primitives.prf.AES;
+import edu.biu.scapi.primitives.prf.bc.BcAES;
+import edu.biu.scapi.primitives.prf.bc.BcHMAC;
+import edu.biu.scapi.securityLevel.SemiHonest;
+
+/**
+ * A concrete class for Semi-Honest OT extension sender, implemented in Java on top of the given channel. <P>
+ * 
+ * The protocol is the OT extension of Ishai, Kilian, Nissim and Petrank: <p>
+ * "Y. Ishai, J. Kilian, K. Nissim and E. Petrank. Extending Oblivious Transfers Efficiently. CRYPTO 2003." <p>
+ * 
+ * The base OT phase runs 128 semi-honest batch OTs in which this party plays the receiver. It is executed once, 
+ * in the first call to the transfer function, over the channel given to that call. Further calls only use symmetric operations: 
+ * the base OT seeds are expanded using AES in counter mode and the OT outputs are derived using a fixed-key AES hash. <p>
+ * 
+ * As in {@link OTSemiHonestExtensionSender}, there are three versions of OT extension: General, Correlated and Random, 
+ * and the version that is executed is chosen according to the given input instance.<p>
+ * 
+ * NOTE: Since the PRGs of the base OT seeds are shared between the calls, calls to the transfer function are serialized and 
+ * should be made in the same order as the calls of the receiver.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class OTSemiHonestJavaExtensionSender implements SemiHonest, OTBatchSender{
+	
+	private OTBatchReceiver baseOT;		//Used to run the base OTs.
+	private FixedKeyHash hash;			//The hash used to derive the outputs.
+	private SecureRandom random;
+	
+	private long[] s;					//The choice bits of the base OTs, packed into two longs.
+	private AesCtrPrg[] prgs;			//A PRG for each of the seeds that were received in the base OTs.
+	private long otIndex;				//The number of OTs executed so far. Used as the index of the hash.
+	
+	/**
+	 * Default constructor. Uses the semi-honest DDH batch OT over BC's K-233 curve for the base OTs and BC's AES as the fixed-key hash, 
+	 * so no native library is needed.
+	 */
+	public OTSemiHonestJavaExtensionSender(){
+		this(createBaseOT(), new BcAES(), new SecureRandom());
+	}
+	
+	/**
+	 * Constructor that sets the given base OT, AES and random.
+	 * @param baseOT the base OT receiver. Should accept an OTBatchRBasicInput and output an OTBatchOnByteArrayROutput.
+	 * @param aes the AES to use as the fixed-key hash. Its key is set by this constructor.
+	 * @param random used to choose the choice bits of the base OTs.
+	 */
+	public OTSemiHonestJavaExtensionSender(OTBatchReceiver baseOT, AES aes, SecureRandom random){
+		this.baseOT = baseOT;
+		OTExtensionUtil.setFixedKey(aes);
+		this.hash = new FixedKeyHash(aes);
+		this.random = random;
+	}
+	
+	/**
+	 * Creates the default base OT using only Java implementations of the dlog group and KDF.
+	 */
+	private static OTSemiHonestDDHBatchOnByteArrayReceiver createBaseOT(){
+		try {
+			return new OTSemiHonestDDHBatchOnByteArrayReceiver(new BcDlogECF2m("K-233"), new HKDF(new BcHMAC(new BcSHA256())), new SecureRandom());
+		} catch (IOException e) {
+			throw new ScapiRuntimeException("failed to create the base OT dlog group. The thrown message is: " + e.getMessage());
+		} catch (SecurityLevelException e) {
+			// Should not occur since the BC dlog group is DDH secure.
+			throw new ScapiRuntimeException(e.getMessage());
+		} catch (FactoriesException e) {
+			// Should not occur since the hash is given as an object.
+			throw new ScapiRuntimeException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Runs the base OTs as the receiver, using random choice bits s. <p>
+	 * The received seeds are used to initialize the PRGs.
+	 */
+	private void runBaseOT(Channel channel) throws CheatAttemptException, IOException, ClassNotFoundException {
+		s = new long[2];
+		s[0] = random.nextLong();
+		s[1] = random.nextLong();
+		
+		ArrayList<Byte> sigmaArr = new ArrayList<Byte>();
+		for (int i=0; i<OTExtensionUtil.KAPPA; i++){
+			sigmaArr.add((byte) ((s[i >>> 6] >>> (i & 63)) & 1));
+		}
+		OTBatchROutput output = baseOT.transfer(channel, new OTBatchRBasicInput(sigmaArr));
+		if (!(output instanceof OTBatchOnByteArrayROutput)){
+			throw new IllegalArgumentException("the base OT output should be an instance of OTBatchOnByteArrayROutput");
+		}
+		ArrayList<byte[]> seeds = ((OTBatchOnByteArrayROutput) output).getXSigmaArr();
+		
+		prgs = new AesCtrPrg[OTExtensionUtil.KAPPA];
+		for (int i=0; i<OTExtensionUtil.KAPPA; i++){
+			prgs[i] = new AesCtrPrg(seeds.get(i));
+		}
+	}
+	
+	/**
+	 * The overloaded function that runs the protocol.<p>
+	 * The first call also runs the base OTs over the given channel.
+	 * @param channel used to communicate with the receiver.
+	 * @param input The input for the sender specifying the version of the OT extension to run. 
+	 * Every call to the transfer function can run a different OT extension version.
+	 * @return OTExtensionSOutput with the chosen x0, x1 in the correlated and random versions; null in the general version.
+	 */
+	public synchronized OTBatchSOutput transfer(Channel channel, OTBatchSInput input) throws ClassNotFoundException, IOException, CheatAttemptException, InvalidDlogGroupException{
+		byte[] x0 = null;
+		byte[] x1 = null;
+		byte[] delta = null;
+		int numOfOts;
+		int elementSize;	//In bytes.
+		
+		//Retrieve the values from the input object.
+		if (input instanceof OTExtensionGeneralSInput){
+			x0 = ((OTExtensionGeneralSInput) input).getX0Arr();
+			x1 = ((OTExtensionGeneralSInput) input).getX1Arr();
+			numOfOts = ((OTExtensionGeneralSInput) input).getNumOfOts();
+			if (x0.length != x1.length){
+				throw new IllegalArgumentException("x0 and x1 should be of the same length.");
+			}
+			elementSize = OTExtensionUtil.elementSize(x0.length, numOfOts);
+		} else if (input instanceof OTExtensionCorrelatedSInput){
+			delta = ((OTExtensionCorrelatedSInput) input).getDelta();
+			numOfOts = ((OTExtensionCorrelatedSInput) input).getNumOfOts();
+			elementSize = OTExtensionUtil.elementSize(delta.length, numOfOts);
+		} else if (input instanceof OTExtensionRandomSInput){
+			numOfOts = ((OTExtensionRandomSInput) input).getNumOfOts();
+			if (numOfOts < 1){
+				throw new IllegalArgumentException("the number of OTs should be positive");
+			}
+			elementSize = OTExtensionUtil.elementSize(((OTExtensionRandomSInput) input).getBitLength());
+		} else {
+			throw new IllegalArgumentException("input should be an instance of OTExtensionGeneralSInput, OTExtensionCorrelatedSInput or OTExtensionRandomSInput.");
+		}
+		
+		if (prgs == null){
+			runBaseOT(channel);
+		}
+		
+		//Receive the matrix u and compute q_i = G(k_si) XOR (s_i * u_i) for each row.
+		int rowLength = OTExtensionUtil.rowLength(numOfOts);
+		long[] q = OTExtensionUtil.toLongs(OTExtensionUtil.receive(channel), OTExtensionUtil.KAPPA * rowLength);
+		for (int i=0; i<OTExtensionUtil.KAPPA; i++){
+			if (((s[i >>> 6] >>> (i & 63)) & 1) == 0){
+				Arrays.fill(q, i * rowLength, (i + 1) * rowLength, 0);
+			}
+			prgs[i].xorInto(q, i * rowLength, rowLength);
+		}
+		
+		//After the transposition q_j = t_j XOR (r_j * s).
+		long[] columns = OTExtensionUtil.transpose(q, rowLength);
+		
+		OTBatchSOutput output = null;
+		if (x0 != null){
+			//General: send y0 = x0 XOR H(j, q_j), y1 = x1 XOR H(j, q_j XOR s).
+			byte[] y = new byte[2 * x0.length];
+			System.arraycopy(x0, 0, y, 0, x0.length);
+			System.arraycopy(x1, 0, y, x0.length, x1.length);
+			for (int j=0; j<numOfOts; j++){
+				long q0 = columns[2 * j];
+				long q1 = columns[2 * j + 1];
+				hash.xorInto(q0, q1, otIndex + j, y, j * elementSize, elementSize);
+				hash.xorInto(q0 ^ s[0], q1 ^ s[1], otIndex + j, y, x0.length + j * elementSize, elementSize);
+			}
+			OTExtensionUtil.send(channel, y);
+			
+		} else {
+			//Correlated and random: x0 = H(j, q_j). In the random version x1 = H(j, q_j XOR s). 
+			//In the correlated version x1 = x0 XOR delta and the receiver gets y = x1 XOR H(j, q_j XOR s).
+			x0 = new byte[numOfOts * elementSize];
+			x1 = new byte[numOfOts * elementSize];
+			for (int j=0; j<numOfOts; j++){
+				long q0 = columns[2 * j];
+				long q1 = columns[2 * j + 1];
+				hash.xorInto(q0, q1, otIndex + j, x0, j * elementSize, elementSize);
+				if (delta == null){
+					hash.xorInto(q0 ^ s[0], q1 ^ s[1], otIndex + j, x1, j * elementSize, elementSize);
+				}
+			}
+			if (delta != null){
+				byte[] y = new byte[x1.length];
+				for (int i=0; i<x1.length; i++){
+					x1[i] = (byte) (x0[i] ^ delta[i]);
+					y[i] = x1[i];
+				}
+				for (int j=0; j<numOfOts; j++){
+					hash.xorInto(columns[2 * j] ^ s[0], columns[2 * j + 1] ^ s[1], otIndex + j, y, j * elementSize, elementSize);
+				}
+				OTExtensionUtil.send(channel, y);
+			}
+			output = new OTExtensionSOutput(x0, x1);
+		}
+		
+		otIndex += numOfOts;
+		return output;
+	}
+}
@@ -0,0 +1,162 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A bounded FIFO pool of precomputed random OTs. <p>
+ * Each OT is kept as a record of a fixed number of bytes in a circular buffer that is allocated once, in construction time. 
+ * The pool counts the OTs that were taken from it since it was first filled, so that the two parties can verify that they 
+ * consume the same OTs. <p>
+ * The content of the pool can be saved to a file and loaded back in a later session.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+class RandomOTPool {
+	
+	private static final int MAGIC = 0x4F54504C;	//"OTPL", written at the beginning of a saved pool.
+	
+	private byte[] buffer;		//Holds the records.
+	private int recordSize;		//The size of each record in bytes.
+	private int capacity;		//The maximal number of records.
+	private int head;			//The index of the first record.
+	private int count;			//The number of records currently in the pool.
+	private long position;		//The number of records taken from the pool so far.
+	
+	/**
+	 * @param recordSize the size of each record in bytes.
+	 * @param capacity the maximal number of records in the pool.
+	 */
+	RandomOTPool(int recordSize, int capacity){
+		if (recordSize <= 0 || capacity <= 0){
+			throw new IllegalArgumentException("record size and capacity should be positive");
+		}
+		this.recordSize = recordSize;
+		this.capacity = capacity;
+		buffer = new byte[recordSize * capacity];
+	}
+	
+	int available(){
+		return count;
+	}
+	
+	int free(){
+		return capacity - count;
+	}
+	
+	long getPosition(){
+		return position;
+	}
+	
+	/**
+	 * Adds numOfRecords records, that are held serially in the given array, to the end of the pool.
+	 * @throws IllegalStateException if there is not enough free space in the pool.
+	 */
+	void add(byte[] records, int numOfRecords){
+		if (numOfRecords > free()){
+			throw new IllegalStateException("there is no room for " + numOfRecords + " OTs in the pool");
+		}
+		int tail = (head + count) % capacity;
+		int first = Math.min(numOfRecords, capacity - tail);
+		System.arraycopy(records, 0, buffer, tail * recordSize, first * recordSize);
+		System.arraycopy(records, first * recordSize, buffer, 0, (numOfRecords - first) * recordSize);
+		count += numOfRecords;
+	}
+	
+	/**
+	 * Removes the first numOfRecords records from the pool.
+	 * @return the removed records, serially.
+	 * @throws IllegalStateException if there are not enough records in the pool.
+	 */
+	byte[] take(int numOfRecords){
+		if (numOfRecords > count){
+			throw new IllegalStateException("the pool holds only " + count + " OTs while " + numOfRecords + " are required");
+		}
+		byte[] records = new byte[numOfRecords * recordSize];
+		int first = Math.min(numOfRecords, capacity - head);
+		System.arraycopy(buffer, head * recordSize, records, 0, first * recordSize);
+		System.arraycopy(buffer, 0, records, first * recordSize, (numOfRecords - first) * recordSize);
+		head = (head + numOfRecords) % capacity;
+		count -= numOfRecords;
+		position += numOfRecords;
+		return records;
+	}
+	
+	/**
+	 * Writes the records of the pool and its position to the given file.
+	 */
+	void save(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(recordSize);
+			out.writeLong(position);
+			out.writeInt(count);
+			int first = Math.min(count, capacity - head);
+			out.write(buffer, head * recordSize, first * recordSize);
+			out.write(buffer, 0, (count - first) * recordSize);
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Replaces the content of the pool with the records saved in the given file.
+	 * @throws IOException if the file is not a saved pool with the same record size or it holds more records than the capacity.
+	 */
+	void load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC){
+				throw new IOException(file + " is not a saved OT pool");
+			}
+			if (in.readInt() != recordSize){
+				throw new IOException("the OTs in " + file + " are of a different size");
+			}
+			long savedPosition = in.readLong();
+			int savedCount = in.readInt();
+			if (savedCount < 0 || savedCount > capacity){
+				throw new IOException("the pool in " + file + " holds more OTs than the capacity");
+			}
+			byte[] records = new byte[savedCount * recordSize];
+			in.readFully(records);
+			System.arraycopy(records, 0, buffer, 0, records.length);
+			position = savedPosition;
+			count = savedCount;
+			head = 0;
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -85,31 +85,33 @@ public class OTSemiHonestDDHBatchOnGroupElementReceiver extends OTSemiHonestDDHB
 		OTSemiHonestDDHBatchOnGroupElementSenderMsg msg = (OTSemiHonestDDHBatchOnGroupElementSenderMsg)message;
 		int size = sigmaArr.size();
 		ArrayList<GroupElement> xSigmaArr = new ArrayList<GroupElement>();
-		GroupElement u, kSigma, vSigma;
-		BigInteger beta;
+		GroupElement[] uArr = new GroupElement[size];
+		BigInteger[] betaArr = new BigInteger[size];
+		GroupElement[] vSigmaArr = new GroupElement[size];
 
 		for (int i=0; i<size; i++){
 			
 			OTSemiHonestDDHOnGroupElementSenderMsg tuple = msg.getTuples().get(i);
-			//Compute (kSigma)^(-1) = u^(-alpha):
-			u = dlog.reconstructElement(true, tuple.getU());	//Get u
-			beta = dlog.getOrder().subtract(alphaArr.get(i));	//Get -alpha
-			kSigma = dlog.exponentiate(u, beta);
-			
+			uArr[i] = dlog.reconstructElement(true, tuple.getU());	//Get u
+			betaArr[i] = dlog.getOrder().subtract(alphaArr.get(i));	//Get -alpha
 			
 			//Get v0 or v1 according to sigma.
-			vSigma = null;
 			if (sigmaArr.get(i) == 0){
-				vSigma = dlog.reconstructElement(true, tuple.getV0());
+				vSigmaArr[i] = dlog.reconstructElement(true, tuple.getV0());
 			} else {
-				vSigma = dlog.reconstructElement(true, tuple.getV1());
+				vSigmaArr[i] = dlog.reconstructElement(true, tuple.getV1());
 			}
-			
-			//Compue xSigma
-			GroupElement xSigma = dlog.multiplyGroupElements(vSigma, kSigma);
-			
-			//Create and return the output containing xSigma
-			xSigmaArr.add(i, xSigma);
+		}
+		
+		//Compute (kSigma)^(-1) = u^(-alpha) for every i in one batch.
+		GroupElement[] kSigmaArr = dlog.exponentiate(uArr, betaArr);
+		
+		//Compue xSigma for every i in one batch.
+		GroupElement[] xSigma = dlog.multiplyGroupElements(vSigmaArr, kSigmaArr);
+		
+		//Create and return the output containing xSigma
+		for (int i=0; i<size; i++){
+			xSigmaArr.add(i, xSigma[i]);
 		}
 		return new OTBatchOnGroupElementROutput(xSigmaArr);
 	
@@ -89,15 +89,13 @@ public class OTSemiHonestDDHBatchOnGroupElementSender extends OTSemiHonestDDHBat
 		
 		ArrayList<OTSemiHonestDDHOnGroupElementSenderMsg> tuples = new ArrayList<OTSemiHonestDDHOnGroupElementSenderMsg>();
 		
+		//Calculate v0 and v1 for every i in one batch each.
+		GroupElement[] v0 = dlog.multiplyGroupElements(x0Arr.toArray(new GroupElement[size]), k0Arr.toArray(new GroupElement[size]));
+		GroupElement[] v1 = dlog.multiplyGroupElements(x1Arr.toArray(new GroupElement[size]), k1Arr.toArray(new GroupElement[size]));
+		
 		for (int i=0; i<size; i++){
-			//Calculate v0:
-			GroupElement v0 = dlog.multiplyGroupElements(x0Arr.get(i), k0Arr.get(i));
-			
-			//Calculate v1:
-			GroupElement v1 = dlog.multiplyGroupElements(x1Arr.get(i), k1Arr.get(i));
-			
 			tuples.add(i, new OTSemiHonestDDHOnGroupElementSenderMsg(u.generateSendableData(), 
-								v0.generateSendableData(), v1.generateSendableData()));
+								v0[i].generateSendableData(), v1[i].generateSendableData()));
 		}
 		
 		//Create and return sender message.
@@ -29,6 +29,7 @@ import java.io.Serializable;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.bouncycastle.util.BigIntegers;
 
@@ -199,9 +200,14 @@ abstract class OTSemiHonestDDHBatchReceiverAbs implements OTBatchReceiver{
 		int size = alphaArr.size();
 		GroupElement g = dlog.getGenerator();
 		ArrayList<OTRGroupElementPairMsg> tuples = new ArrayList<OTRGroupElementPairMsg>();
+		
+		//Calculate g^alphaI for every i in one batch.
+		GroupElement[] bases = new GroupElement[size];
+		Arrays.fill(bases, g);
+		GroupElement[] gAlphaArr = dlog.exponentiate(bases, alphaArr.toArray(new BigInteger[size]));
+		
 		for (int i=0; i<size; i++){
-			//Calculate g^alphaI.
-			GroupElement gAlpha = dlog.exponentiate(g, alphaArr.get(i));
+			GroupElement gAlpha = gAlphaArr[i];
 					
 			GroupElement h0 = null;
 			GroupElement h1 = null;
@@ -167,21 +167,26 @@ abstract class OTSemiHonestDDHBatchSenderAbs implements OTBatchSender{
 		int size = tuples.size();
 		ArrayList<GroupElement> k0Array = new ArrayList<GroupElement>();
 		ArrayList<GroupElement> k1Array = new ArrayList<GroupElement>();
-		GroupElement h0, h1;
+		GroupElement[] bases = new GroupElement[2*size];
+		BigInteger[] exponents = new BigInteger[2*size];
 		OTRGroupElementPairMsg tuple;
 		
 		//For every i=1,...,m, COMPUTE:
 		//	ki0 = (hi0)^r
 		//	ki1 = (hi1)^r
+		//All the exponentiations are computed in one batch: hi0 is in index i and hi1 is in index m+i.
 		for (int i=0; i<size; i++){
 			tuple = tuples.get(i);
-			//Recreate h0 from the data in the received message.
-			h0 = dlog.reconstructElement(true, tuple.getFirstGE());
-			h1 = dlog.reconstructElement(true, tuple.getSecondGE());
-			
-			//Calculate k0 = h0^r.
-			k0Array.add(i, dlog.exponentiate(h0, r));
-			k1Array.add(i, dlog.exponentiate(h1, r));
+			//Recreate h0 and h1 from the data in the received message.
+			bases[i] = dlog.reconstructElement(true, tuple.getFirstGE());
+			bases[size + i] = dlog.reconstructElement(true, tuple.getSecondGE());
+			exponents[i] = r;
+			exponents[size + i] = r;
+		}
+		GroupElement[] k = dlog.exponentiate(bases, exponents);
+		for (int i=0; i<size; i++){
+			k0Array.add(i, k[i]);
+			k1Array.add(i, k[size + i]);
 		}
 		
 		OTSMsg messageToSend = computeMsg(input, u, k0Array, k1Array);
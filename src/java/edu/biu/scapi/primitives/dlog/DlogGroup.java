@@ -98,6 +98,16 @@ public interface DlogGroup {
 	 */
 	public boolean isMember(GroupElement element) throws IllegalArgumentException;
 	
+	/**
+	 * Checks if each of the given elements is a member of this Dlog group.<p>
+	 * This is equivalent to calling {@link #isMember(GroupElement)} on each element, but implementations may check all the 
+	 * elements at once, for example with a single call to the native library.
+	 * @param elements possible group elements for which to check that they are members of this group
+	 * @return an array that holds in index i whether elements[i] is a member of this group.
+	 * @throws IllegalArgumentException
+	 */
+	public boolean[] isMember(GroupElement[] elements) throws IllegalArgumentException;
+	
 	/**
 	 * Checks if the order is a prime number
 	 * @return <code>true<code> if the order is a prime number; <p>
@@ -145,6 +155,17 @@ public interface DlogGroup {
 	 */
 	public GroupElement exponentiate(GroupElement base, BigInteger exponent) throws IllegalArgumentException;
 	
+	/**
+	 * Raises each base to the corresponding exponent.<p>
+	 * This is equivalent to calling {@link #exponentiate(GroupElement, BigInteger)} on each pair, but implementations may compute 
+	 * all the exponentiations at once, for example with a single call to the native library.
+	 * @param bases
+	 * @param exponents
+	 * @return an array that holds in index i the result of raising bases[i] to exponents[i].
+	 * @throws IllegalArgumentException if the arrays are not of the same length or one of the bases doesn't match the group.
+	 */
+	public GroupElement[] exponentiate(GroupElement[] bases, BigInteger[] exponents) throws IllegalArgumentException;
+	
 	/**
 	 * Multiplies two GroupElements
 	 * @param groupElement1
@@ -154,6 +175,17 @@ public interface DlogGroup {
 	 */
 	public GroupElement multiplyGroupElements(GroupElement groupElement1, GroupElement groupElement2) throws IllegalArgumentException;
 	
+	/**
+	 * Multiplies each pair of GroupElements with the same index.<p>
+	 * This is equivalent to calling {@link #multiplyGroupElements(GroupElement, GroupElement)} on each pair, but implementations 
+	 * may compute all the multiplications at once, for example with a single call to the native library.
+	 * @param groupElements1
+	 * @param groupElements2
+	 * @return an array that holds in index i the multiplication of groupElements1[i] and groupElements2[i].
+	 * @throws IllegalArgumentException if the arrays are not of the same length or one of the elements doesn't match the group.
+	 */
+	public GroupElement[] multiplyGroupElements(GroupElement[] groupElements1, GroupElement[] groupElements2) throws IllegalArgumentException;
+	
 	/**
 	 * Creates a random member of this Dlog group
 	 * @return the random element 
@@ -26,13 +26,21 @@
 
 package edu.biu.scapi.primitives.dlog;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.security.SecureRandom;
-import java.util.HashMap;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.bouncycastle.util.BigIntegers;
 
+import edu.biu.scapi.exceptions.InvalidDlogGroupException;
+import edu.biu.scapi.exceptions.ScapiRuntimeException;
 import edu.biu.scapi.primitives.dlog.groupParams.GroupParams;
 
 /**
@@ -44,8 +52,13 @@ public abstract class DlogGroupAbs implements primeOrderSubGroup{
 
 	protected GroupParams groupParams;			//group parameters
 	protected GroupElement generator;			//generator of the group
-	//map for multExponentiationsWithSameBase calculations
-	private HashMap<GroupElement, GroupElementsExponentiations> exponentiationsMap = new HashMap<GroupElement, GroupElementsExponentiations>();
+	//cache of the tables for exponentiateWithPreComputedValues calculations
+	private FixedBaseTableCache exponentiationsCache = new FixedBaseTableCache(this);
+	//The parameters of the fixed base tables. Each base has preComputationTables tables of 2^preComputationWindow elements.
+	private volatile int preComputationWindow = 6;
+	private volatile int preComputationTables = 2;
+	private ExecutorService executor;			//Runs the windows of computePippenger and the batch operations in parallel, if set.
+	private static final int MIN_PARALLEL_BATCH = 16;	//Smaller batches are computed by the calling thread.
 	protected SecureRandom random;				//Source of randomness to use.
 	//k is the maximum length of a string to be converted to a Group Element of this group. If a string exceeds the k length it cannot be converted.
  	protected int k;
@@ -219,6 +232,237 @@ public abstract class DlogGroupAbs implements primeOrderSubGroup{
 		return result;
 	}
 	
+	/**
+	 * Sets an executor that is used to compute the windows of the bucket multi exponentiation and the batch operations 
+	 * (such as {@link #exponentiate(GroupElement[], BigInteger[])}) in parallel.<p>
+	 * The group operations are then called from several threads at once, so this should only be set if the group elements and 
+	 * operations of this group are thread safe (as in the BC groups).
+	 * @param executor Runs the work in parallel. If null, the work is done by the calling thread.
+	 */
+	public void setParallelExecution(ExecutorService executor){
+		this.executor = executor;
+	}
+	
+	/*
+	 * Runs the given tasks using the executor and returns their results.
+	 */
+	private <T> List<T> runTasks(List<Callable<T>> tasks){
+		List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			for (Future<T> result : executor.invokeAll(tasks)){
+				results.add(result.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ScapiRuntimeException("interrupted while waiting for the tasks to be done");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException){
+				throw (RuntimeException) e.getCause();
+			}
+			throw new ScapiRuntimeException("a task failed. The error is: " + e.getCause());
+		}
+		return results;
+	}
+	
+	/*
+	 * An operation that is done on each index of a batch.
+	 */
+	private abstract class BatchOperation {
+		abstract void process(int i);
+	}
+	
+	/*
+	 * Runs the given operation on the indices 0, ..., size-1. If an executor was set, the indices are split between 
+	 * parallel tasks.
+	 */
+	private void runBatch(int size, final BatchOperation operation){
+		if (executor == null || size < MIN_PARALLEL_BATCH){
+			for (int i=0; i<size; i++){
+				operation.process(i);
+			}
+			return;
+		}
+		int numTasks = Math.min(size, Runtime.getRuntime().availableProcessors());
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(numTasks);
+		for (int t=0; t<numTasks; t++){
+			final int from = (int) ((long) size * t / numTasks);
+			final int to = (int) ((long) size * (t + 1) / numTasks);
+			tasks.add(new Callable<Object>(){
+				@Override
+				public Object call() {
+					for (int i=from; i<to; i++){
+						operation.process(i);
+					}
+					return null;
+				}
+			});
+		}
+		runTasks(tasks);
+	}
+	
+	/**
+	 * Checks if each of the given elements is a member of this Dlog group, by calling {@link #isMember(GroupElement)} on each 
+	 * element. The elements are checked in parallel if an executor was set by {@link #setParallelExecution(ExecutorService)}.
+	 */
+	public boolean[] isMember(final GroupElement[] elements) throws IllegalArgumentException {
+		final boolean[] results = new boolean[elements.length];
+		runBatch(elements.length, new BatchOperation(){
+			@Override
+			void process(int i){
+				results[i] = isMember(elements[i]);
+			}
+		});
+		return results;
+	}
+	
+	/**
+	 * Raises each base to the corresponding exponent, by calling {@link #exponentiate(GroupElement, BigInteger)} on each pair. 
+	 * The exponentiations are computed in parallel if an executor was set by {@link #setParallelExecution(ExecutorService)}.
+	 */
+	public GroupElement[] exponentiate(final GroupElement[] bases, final BigInteger[] exponents) throws IllegalArgumentException {
+		if (bases.length != exponents.length){
+			throw new IllegalArgumentException("the number of bases and exponents should be equal");
+		}
+		final GroupElement[] results = new GroupElement[bases.length];
+		runBatch(bases.length, new BatchOperation(){
+			@Override
+			void process(int i){
+				results[i] = exponentiate(bases[i], exponents[i]);
+			}
+		});
+		return results;
+	}
+	
+	/**
+	 * Multiplies each pair of elements, by calling {@link #multiplyGroupElements(GroupElement, GroupElement)} on each pair. 
+	 * The multiplications are computed in parallel if an executor was set by {@link #setParallelExecution(ExecutorService)}.
+	 */
+	public GroupElement[] multiplyGroupElements(final GroupElement[] groupElements1, final GroupElement[] groupElements2) 
+			throws IllegalArgumentException {
+		if (groupElements1.length != groupElements2.length){
+			throw new IllegalArgumentException("the number of elements should be equal");
+		}
+		final GroupElement[] results = new GroupElement[groupElements1.length];
+		runBatch(groupElements1.length, new BatchOperation(){
+			@Override
+			void process(int i){
+				results[i] = multiplyGroupElements(groupElements1[i], groupElements2[i]);
+			}
+		});
+		return results;
+	}
+	
+	/*
+	 * Computes the simultaneousMultiplyExponentiate by the bucket method of Pippenger.
+	 * The exponents are split into windows of c bits. For each window, each base is multiplied into the bucket of its exponent's 
+	 * digit, and the buckets are then summed by weight using running products: sum_d d*B_d = sum_d (B_d * ... * B_max).
+	 * This takes about (t/c)*(n + 2^(c+1)) multiplications, which for many bases is much less than the other algorithms. 
+	 * The windows are independent and are computed in parallel if an executor was set.
+	 * Only the BC groups use it. In the groups of the native libraries each of its multiplications would be a separate JNI call, 
+	 * so these groups either compute the whole product in one native call (Miracl, OpenSSL Fp) or use the naive algorithm, which 
+	 * makes the fewest JNI calls (Crypto++ and OpenSSL Zp, OpenSSL F2m).
+	 */
+	protected GroupElement computePippenger(final GroupElement[] groupElements, final BigInteger[] exponentiations){
+		int n = groupElements.length; //number of bases and exponents
+		
+		int t = 0; //num bits of the biggest exponent.
+		for (int i=0; i<n; i++){
+			if (exponentiations[i].signum() < 0){
+				//The digits of a negative exponent are not defined. This is rare, so use the naive algorithm.
+				return computeNaive(groupElements, exponentiations);
+			}
+			t = Math.max(t, exponentiations[i].bitLength());
+		}
+		if (t == 0){
+			return getIdentity();
+		}
+		
+		final int c = getPippengerWindow(n, t);
+		int numWindows = (t + c - 1) / c;
+		
+		//Computes the window results.
+		GroupElement[] windows = new GroupElement[numWindows];
+		if (executor == null){
+			for (int j=0; j<numWindows; j++){
+				windows[j] = computePippengerWindow(groupElements, exponentiations, c, j);
+			}
+		} else {
+			List<Callable<GroupElement>> tasks = new ArrayList<Callable<GroupElement>>(numWindows);
+			for (int j=0; j<numWindows; j++){
+				final int window = j;
+				tasks.add(new Callable<GroupElement>(){
+					@Override
+					public GroupElement call() {
+						return computePippengerWindow(groupElements, exponentiations, c, window);
+					}
+				});
+			}
+			windows = runTasks(tasks).toArray(windows);
+		}
+		
+		//result = prod_j windows[j]^(2^(jc)), computed from the highest window down.
+		GroupElement result = null;
+		for (int j=numWindows-1; j>=0; j--){
+			if (result != null){
+				for (int i=0; i<c; i++){
+					result = multiplyGroupElements(result, result);
+				}
+			}
+			if (windows[j] != null){
+				result = (result == null) ? windows[j] : multiplyGroupElements(result, windows[j]);
+			}
+		}
+		return (result == null) ? getIdentity() : result;
+	}
+	
+	/*
+	 * Computes prod_i groupElements[i]^(digit j of exponentiations[i]), where the digits are of c bits.
+	 * Returns null if the result is the identity because all the digits are zero.
+	 */
+	private GroupElement computePippengerWindow(GroupElement[] groupElements, BigInteger[] exponentiations, int c, int window){
+		GroupElement[] buckets = new GroupElement[1 << c];
+		for (int i=0; i<groupElements.length; i++){
+			int digit = 0;
+			for (int b=0; b<c; b++){
+				if (exponentiations[i].testBit(window * c + b)){
+					digit |= 1 << b;
+				}
+			}
+			if (digit != 0){
+				buckets[digit] = (buckets[digit] == null) ? groupElements[i] : multiplyGroupElements(buckets[digit], groupElements[i]);
+			}
+		}
+		
+		//sum = B_d * ... * B_max holds the buckets of digit d and above, and the result is the product of all the sums.
+		GroupElement sum = null;
+		GroupElement result = null;
+		for (int d=buckets.length-1; d>0; d--){
+			if (buckets[d] != null){
+				sum = (sum == null) ? buckets[d] : multiplyGroupElements(sum, buckets[d]);
+			}
+			if (sum != null){
+				result = (result == null) ? sum : multiplyGroupElements(result, sum);
+			}
+		}
+		return result;
+	}
+	
+	/*
+	 * Returns the window size c that minimizes the estimated number of multiplications (t/c)*(n + 2^(c+1)).
+	 */
+	private int getPippengerWindow(int n, int t){
+		int bestC = 1;
+		long bestCost = Long.MAX_VALUE;
+		for (int c=1; c<=16; c++){
+			long cost = (long) ((t + c - 1) / c) * (n + (1L << (c + 1)));
+			if (cost < bestCost){
+				bestCost = cost;
+				bestC = c;
+			}
+		}
+		return bestC;
+	}
+	
 	/*
 	 * Computes the loop the repeats in the algorithm.
 	 * for k=0 to h-1
@@ -309,11 +553,32 @@ public abstract class DlogGroupAbs implements primeOrderSubGroup{
 		return w;
 	}
 
+	/**
+	 * Sets the size of the tables that {@link #exponentiateWithPreComputedValues(GroupElement, BigInteger)} keeps for each base.<p>
+	 * The tables of a base hold numberOfTables * 2^window group elements. An exponentiation of a t-bit exponent takes about 
+	 * t/(window*numberOfTables) squarings and t/window multiplications. Thus, larger tables give faster exponentiations but take 
+	 * more memory and more time to build. <p>
+	 * The new size applies to bases whose tables are built after this call.
+	 * @param window The number of exponent bits that are handled by a single multiplication. Should be between 1 and 16.
+	 * @param numberOfTables The number of tables. Should be positive.
+	 * @throws IllegalArgumentException if one of the parameters is out of range.
+	 */
+	public void setPreComputationParameters(int window, int numberOfTables){
+		if (window < 1 || window > 16){
+			throw new IllegalArgumentException("window should be between 1 and 16");
+		}
+		if (numberOfTables < 1){
+			throw new IllegalArgumentException("number of tables should be positive");
+		}
+		preComputationWindow = window;
+		preComputationTables = numberOfTables;
+	}
+	
 	/*
 	 * Computes the product of several exponentiations of the same base and
 	 * distinct exponents. An optimization is used to compute it more quickly by
-	 * keeping in memory the result of h1, h2, h4,h8,... and using it in the
-	 * calculation.<p> Note that if we want a one-time exponentiation of h it is
+	 * keeping in memory tables of products of powers of the base (see FixedBaseCombTable) 
+	 * and using them in the calculation.<p> Note that if we want a one-time exponentiation of h it is
 	 * preferable to use the basic exponentiation function since there is no
 	 * point to keep anything in memory if we have no intention to use it.
 	 * 
@@ -322,16 +587,15 @@ public abstract class DlogGroupAbs implements primeOrderSubGroup{
 	 * @return the exponentiation result
 	 */
 	public GroupElement exponentiateWithPreComputedValues(GroupElement groupElement, BigInteger exponent) {
-		//extracts from the map the GroupElementsExponentiations object corresponding to the accepted base
-		GroupElementsExponentiations exponentiations = exponentiationsMap.get(groupElement);
-	
-		// if there is no object that matches this base - create it and add it to the map
-		if (exponentiations == null) {
-			exponentiations = new GroupElementsExponentiations(groupElement);
-			exponentiationsMap.put(groupElement, exponentiations);
+		//extracts from the cache the tables corresponding to the accepted base. If there are no tables for this base, the cache builds them.
+		FixedBaseCombTable table = exponentiationsCache.get(groupElement, getOrder().bitLength(), preComputationWindow, preComputationTables);
+		
+		//The tables support exponents smaller than 2^(bit length of the order). Other exponents are computed directly.
+		if (exponent.signum() < 0 || exponent.bitLength() > table.getNumberOfBits()){
+			return exponentiate(groupElement, exponent);
 		}
 		// calculates the required exponent
-		return exponentiations.getExponentiation(exponent);
+		return table.exponentiate(exponent);
 		
 	}
 	
@@ -340,93 +604,48 @@ public abstract class DlogGroupAbs implements primeOrderSubGroup{
 	 */
 	@Override
 	public void endExponentiateWithPreComputedValues(GroupElement base) {
-		exponentiationsMap.remove(base);
+		exponentiationsCache.remove(base);
 	}
 	
 	/**
-	 * The class GroupElementExponentiations is a nested class of DlogGroupAbs.<p>
-	 * It performs the actual work of pre-computation of the exponentiations for one base.
-	 * It is composed of two main elements. The group element for which the optimized computations 
-	 * are built for, called the base and a vector of group elements that are the result of 
-	 * exponentiations of order 1,2,4,8, 
+	 * Returns the cache of the tables that are kept for {@link #exponentiateWithPreComputedValues(GroupElement, BigInteger)}.<p>
+	 * The cache can be used to set its bounds and to read its hit, miss and eviction counters.
 	 */
-	private class GroupElementsExponentiations {
-		private Vector<GroupElement> exponentiations; //vector of group elements that are the result of exponentiations
-		private GroupElement base;  //group element for which the optimized computations are built for
-		
-		/**
-		 * The constructor creates a map structure in memory. 
-		 * Then calculates the exponentiations of order 1,2,4,8 for the given base and save them in the map.
-		 * @param base
-		 * @throws IllegalArgumentException
-		 */
-		public GroupElementsExponentiations(GroupElement base) {
-			this.base = base;
-			// build new vector of exponentiations
-			exponentiations = new Vector<GroupElement>();
-			exponentiations.add(0, this.base); // add the base - base^1
-			
-			BigInteger two = new BigInteger("2");
-			for (int i=1; i<4; i++) {
-				GroupElement multI;
-				multI = exponentiate(exponentiations.get(i-1), two);
-					
-				exponentiations.add(i, multI);
-			}
-		}
-		
-		/**
-		 * Calculates the necessary additional exponentiations and fills the exponentiations vector with them.
-		 * @param size - the required exponent
-		 * @throws IllegalArgumentException
-		 */
-		private void prepareExponentiations(BigInteger size) {
-			//find log of the number - this is the index of the size-exponent in the exponentiation array 
-			int index = size.bitLength()-1; 
-			
-			/* calculates the necessary exponentiations and put them in the exponentiations vector */
-			for (int i=exponentiations.size(); i<=index; i++){
-				GroupElement multI;
-				multI = exponentiate(exponentiations.get(i-1), new BigInteger("2"));
-					
-				exponentiations.add(i, multI);	
-			}
-		}
-		
-		
-		/**
-		 * Checks if the exponentiations had already been calculated for the required size. 
-		 * If so, returns them, else it calls the private function prepareExponentiations with the given size.
-		 * @param size - the required exponent
-		 * @return groupElement - the exponentiate result
-		 */
-		public GroupElement getExponentiation(BigInteger size) {
-			/**
-			 * The exponents in the exponents vector are all power of 2.
-			 * In order to achieve the exponent size, we calculate its closest power 2 in the exponents vector 
-			 * and continue the calculations from there.
-			 */
-			// find the the closest power 2 exponent
-			int index = size.bitLength()-1;
-			
-			GroupElement exponent = null;
-			/* if the requested index out of the vector bounds, the exponents have not been calculated yet, so calculates them.*/
-			if (exponentiations.size() <= index)
-				prepareExponentiations(size);
-			
-			exponent = exponentiations.get(index); //get the closest exponent in the exponentiations vector
-			/* if size is not power 2, calculates the additional multiplications */
-			BigInteger lastExp = new BigInteger("2").pow(index);
-			BigInteger difference = size.subtract(lastExp);
-			if (difference.compareTo(BigInteger.ZERO) > 0) {
-				GroupElement diff = getExponentiation(size.subtract(lastExp));
-				exponent = multiplyGroupElements(diff, exponent);
-			}
-			
-			return exponent;
+	public FixedBaseTableCache getPreComputationCache() {
+		return exponentiationsCache;
+	}
+	
+	/**
+	 * Writes the tables that {@link #exponentiateWithPreComputedValues(GroupElement, BigInteger)} uses for the given bases to 
+	 * a file, building the tables that do not exist yet. <p>
+	 * The file can later be loaded by {@link #importPreComputedValues(File, boolean)} of any instance of a group with the same 
+	 * parameters, instead of building the tables again.
+	 * @param f The file to write to.
+	 * @param bases The bases whose tables should be written, for example the generator and long term public keys.
+	 * @throws IOException if the writing failed.
+	 * @throws IllegalArgumentException if the elements of this group can not be written.
+	 */
+	public void exportPreComputedValues(File f, GroupElement... bases) throws IOException {
+		FixedBaseCombTable[] tables = new FixedBaseCombTable[bases.length];
+		for (int i = 0; i < bases.length; i++){
+			tables[i] = exponentiationsCache.get(bases[i], getOrder().bitLength(), preComputationWindow, preComputationTables);
 		}
+		FixedBaseTableFile.write(this, tables, f);
 	}
 	
+	/**
+	 * Loads the tables in the given file, which was written by {@link #exportPreComputedValues(File, GroupElement...)}. <p>
+	 * The file is memory mapped, so processes that load the same file share its memory. The tables are read from the mapping when 
+	 * they are first used by {@link #exponentiateWithPreComputedValues(GroupElement, BigInteger)}, instead of being built.
+	 * @param f The file to load.
+	 * @param checkMembership Whether to check that the elements in the file are members of this group when they are read. 
+	 * This may be expensive and can be skipped if the file is trusted.
+	 * @throws IOException if the file is not a valid tables file or the reading failed.
+	 * @throws InvalidDlogGroupException if the file was written by a group with a different order.
+	 */
+	public void importPreComputedValues(File f, boolean checkMembership) throws IOException, InvalidDlogGroupException {
+		FixedBaseTableFile.read(this, f, checkMembership, exponentiationsCache);
+	}
 	
 	/**
 	 * @return the maximum length of a string to be converted to a Group Element of this group. If a string exceeds this length it cannot be converted.
@@ -0,0 +1,162 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.primitives.dlog;
+
+import java.math.BigInteger;
+
+/**
+ * Pre computed values for fast exponentiations of a fixed base, using the comb method of Lim and Lee. <p>
+ * 
+ * Exponents of up to t bits are written as a matrix of h rows (the window) and a = ceil(t/h) columns, where row i holds the bits 
+ * i*a, ..., i*a+a-1 of the exponent. The columns are split into v blocks (the number of tables) of b = ceil(a/v) columns each. 
+ * Table s holds, for each h-bit value e, the product of base^(2^(i*a + s*b)) over the bits i that are set in e. <p>
+ * An exponentiation then takes b-1 squarings and at most a multiplications, instead of t squarings and about t/2 multiplications. 
+ * Building the tables takes about t squarings and v*2^h multiplications, and the tables hold v*2^h group elements.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+class FixedBaseCombTable {
+	
+	private DlogGroup dlog;
+	private int numberOfBits;		//t - the maximal bit length of the exponents.
+	private int window;				//h - the number of rows.
+	private int columns;			//a - the number of columns.
+	private int columnsPerTable;	//b - the number of columns in each block.
+	private GroupElement[][] tables;
+	
+	/**
+	 * Builds the tables for the given base.
+	 * @param dlog The group of the base.
+	 * @param base The base to exponentiate.
+	 * @param numberOfBits The maximal bit length of the exponents.
+	 * @param window The number of rows of the comb. Each table holds 2^window elements.
+	 * @param numberOfTables The number of tables.
+	 */
+	FixedBaseCombTable(DlogGroup dlog, GroupElement base, int numberOfBits, int window, int numberOfTables){
+		this.dlog = dlog;
+		this.numberOfBits = numberOfBits;
+		this.window = window;
+		columns = (numberOfBits + window - 1) / window;
+		columnsPerTable = (columns + numberOfTables - 1) / numberOfTables;
+		//Rounding b up may leave the last tables without columns.
+		numberOfTables = (columns + columnsPerTable - 1) / columnsPerTable;
+		
+		//Compute base^(2^j) for j = 0, ..., h*a-1.
+		GroupElement[] powers = new GroupElement[window * columns];
+		powers[0] = base;
+		for (int j = 1; j < powers.length; j++){
+			powers[j] = dlog.multiplyGroupElements(powers[j - 1], powers[j - 1]);
+		}
+		
+		//Table s is built from base^(2^(i*a + s*b)). Each entry is a previous entry multiplied by one of them.
+		tables = new GroupElement[numberOfTables][1 << window];
+		for (int s = 0; s < numberOfTables; s++){
+			tables[s][0] = dlog.getIdentity();
+			for (int e = 1; e < (1 << window); e++){
+				int i = 31 - Integer.numberOfLeadingZeros(e);	//The highest bit of e.
+				int rest = e ^ (1 << i);
+				GroupElement power = powers[i * columns + s * columnsPerTable];
+				tables[s][e] = (rest == 0) ? power : dlog.multiplyGroupElements(tables[s][rest], power);
+			}
+		}
+	}
+	
+	/**
+	 * Creates a table from tables that were built before, for example by {@link FixedBaseTableFile}.
+	 * @param dlog The group of the base.
+	 * @param numberOfBits The maximal bit length of the exponents.
+	 * @param window The number of rows of the comb.
+	 * @param columnsPerTable The number of columns in each table.
+	 * @param tables The tables. Table s should hold 2^window elements.
+	 */
+	FixedBaseCombTable(DlogGroup dlog, int numberOfBits, int window, int columnsPerTable, GroupElement[][] tables){
+		this.dlog = dlog;
+		this.numberOfBits = numberOfBits;
+		this.window = window;
+		this.columnsPerTable = columnsPerTable;
+		this.tables = tables;
+		columns = (numberOfBits + window - 1) / window;
+	}
+	
+	/**
+	 * Returns the number of group elements in the tables that are built with the given parameters.
+	 */
+	static int getNumberOfElements(int numberOfBits, int window, int numberOfTables){
+		int columns = (numberOfBits + window - 1) / window;
+		int columnsPerTable = (columns + numberOfTables - 1) / numberOfTables;
+		return ((columns + columnsPerTable - 1) / columnsPerTable) << window;
+	}
+	
+	/**
+	 * Returns the maximal bit length of the exponents that this table supports.
+	 */
+	int getNumberOfBits(){
+		return numberOfBits;
+	}
+	
+	int getWindow(){
+		return window;
+	}
+	
+	int getColumnsPerTable(){
+		return columnsPerTable;
+	}
+	
+	GroupElement[][] getTables(){
+		return tables;
+	}
+	
+	/**
+	 * Raises the base to the given exponent.
+	 * @param exponent A non negative number of at most {@link #getNumberOfBits()} bits.
+	 * @return the exponentiation result.
+	 */
+	GroupElement exponentiate(BigInteger exponent){
+		GroupElement result = null;
+		for (int k = columnsPerTable - 1; k >= 0; k--){
+			if (result != null){
+				result = dlog.multiplyGroupElements(result, result);
+			}
+			for (int s = 0; s < tables.length; s++){
+				int column = s * columnsPerTable + k;
+				if (column >= columns){
+					continue;
+				}
+				//Collect bit i*a+column of the exponent for each row i.
+				int e = 0;
+				for (int i = 0; i < window; i++){
+					if (exponent.testBit(i * columns + column)){
+						e |= 1 << i;
+					}
+				}
+				if (e != 0){
+					result = (result == null) ? tables[s][e] : dlog.multiplyGroupElements(result, tables[s][e]);
+				}
+			}
+		}
+		return (result == null) ? dlog.getIdentity() : result;
+	}
+}
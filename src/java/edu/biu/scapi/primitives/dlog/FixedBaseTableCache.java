@@ -0,0 +1,338 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.primitives.dlog;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.biu.scapi.exceptions.ScapiRuntimeException;
+
+/**
+ * A thread safe cache of the fixed base tables that a {@link DlogGroupAbs} keeps for exponentiateWithPreComputedValues. <p>
+ * 
+ * The cache is bounded both by the number of bases and by the total number of group elements in their tables. When a new table 
+ * exceeds one of the bounds, the least recently used tables are evicted. Hence, frequently used bases (such as the generator and 
+ * long term public keys) stay in the cache, while bases that were used once are eventually dropped, even if 
+ * endExponentiateWithPreComputedValues was never called for them. <p>
+ * 
+ * A table is built by the first thread that asks for its base, outside the cache's lock. Other threads that ask for the same base 
+ * in the meantime wait for that table instead of building another one. <p>
+ * 
+ * Tables can also be imported from a file (see {@link DlogGroupAbs#importPreComputedValues(java.io.File, boolean)}). An imported 
+ * table is read from the file instead of being built, on its first use and after it was evicted. <p>
+ * 
+ * The cache counts hits, misses and evictions, so that the bounds can be tuned.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class FixedBaseTableCache {
+	
+	/**
+	 * A cached table and the number of group elements it holds.
+	 */
+	private static class Entry {
+		FutureTask<FixedBaseCombTable> table;
+		int numberOfElements;
+		
+		Entry(FutureTask<FixedBaseCombTable> table, int numberOfElements){
+			this.table = table;
+			this.numberOfElements = numberOfElements;
+		}
+	}
+	
+	/**
+	 * A table that was loaded from a file by {@link FixedBaseTableFile}, and is read from the file when it is needed.
+	 */
+	private static class ImportedTable {
+		ByteBuffer table;
+		int numberOfElements;
+		boolean checkMembership;
+		
+		ImportedTable(ByteBuffer table, int numberOfElements, boolean checkMembership){
+			this.table = table;
+			this.numberOfElements = numberOfElements;
+			this.checkMembership = checkMembership;
+		}
+	}
+	
+	/**
+	 * The key of a table in the cache. Most group elements do not define hashCode, so equal elements that are different objects 
+	 * (for example, a public key that was received again in a new session) would not be found by their own hash codes. 
+	 * The key holds the coordinates of the base instead, along with the parameters the table was built with. 
+	 * Imported tables are keyed by their base only, and their parameters are zero.
+	 */
+	private static class Key {
+		BigInteger[] coordinates;
+		int numberOfBits;
+		int window;
+		int numberOfTables;
+		int hash;
+		
+		Key(BigInteger[] coordinates, int numberOfBits, int window, int numberOfTables){
+			this.coordinates = coordinates;
+			this.numberOfBits = numberOfBits;
+			this.window = window;
+			this.numberOfTables = numberOfTables;
+			hash = ((Arrays.hashCode(coordinates) * 31 + numberOfBits) * 31 + window) * 31 + numberOfTables;
+		}
+		
+		Key(BigInteger[] coordinates){
+			this(coordinates, 0, 0, 0);
+		}
+		
+		@Override
+		public int hashCode(){
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj){
+			if (!(obj instanceof Key)){
+				return false;
+			}
+			Key other = (Key) obj;
+			return numberOfBits == other.numberOfBits && window == other.window && numberOfTables == other.numberOfTables && 
+					Arrays.equals(coordinates, other.coordinates);
+		}
+	}
+	
+	private DlogGroup dlog;
+	//The coordinates of the recently used bases, so that they are not computed again on each use of the same element.
+	private Map<GroupElement, BigInteger[]> coordinates = Collections.synchronizedMap(new WeakHashMap<GroupElement, BigInteger[]>());
+	private HashMap<Key, ImportedTable> importedTables = new HashMap<Key, ImportedTable>();
+	//Ordered from the least recently used base to the most recently used one.
+	private LinkedHashMap<Key, Entry> tables = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	private int maxBases = 100;
+	private long maxElements = 1 << 16;
+	private long numberOfElements = 0;	//The number of group elements in all the cached tables.
+	
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+	private AtomicLong evictions = new AtomicLong();
+	
+	/**
+	 * Creates an empty cache for tables of elements of the given group.
+	 */
+	FixedBaseTableCache(DlogGroup dlog){
+		this.dlog = dlog;
+	}
+	
+	/**
+	 * Sets the bounds of the cache. If the cache currently exceeds the new bounds, the least recently used tables are evicted.
+	 * @param maxBases The maximal number of bases whose tables are cached.
+	 * @param maxElements The maximal number of group elements in all the cached tables. The size of each table is determined by 
+	 * {@link DlogGroupAbs#setPreComputationParameters(int, int)}. A single table is cached even if it is larger than this bound.
+	 * @throws IllegalArgumentException if one of the bounds is not positive.
+	 */
+	public synchronized void setLimits(int maxBases, long maxElements){
+		if (maxBases < 1 || maxElements < 1){
+			throw new IllegalArgumentException("the bounds of the cache should be positive");
+		}
+		this.maxBases = maxBases;
+		this.maxElements = maxElements;
+		evict();
+	}
+	
+	/**
+	 * Returns the number of times that a table was found in the cache.
+	 */
+	public long getHits(){
+		return hits.get();
+	}
+	
+	/**
+	 * Returns the number of times that a table was not found in the cache and had to be built.
+	 */
+	public long getMisses(){
+		return misses.get();
+	}
+	
+	/**
+	 * Returns the number of tables that were removed from the cache because it exceeded its bounds.
+	 */
+	public long getEvictions(){
+		return evictions.get();
+	}
+	
+	/**
+	 * Returns the number of bases whose tables are cached.
+	 */
+	public synchronized int size(){
+		return tables.size();
+	}
+	
+	/**
+	 * Returns the number of group elements in all the cached tables.
+	 */
+	public synchronized long getNumberOfElements(){
+		return numberOfElements;
+	}
+	
+	/**
+	 * Removes all the tables from the cache. Imported tables are read again from their file when they are needed.
+	 */
+	public synchronized void clear(){
+		tables.clear();
+		numberOfElements = 0;
+	}
+	
+	/**
+	 * Returns the coordinates of the given base. They are computed once for each element object.
+	 */
+	private BigInteger[] getCoordinates(GroupElement base){
+		BigInteger[] result = coordinates.get(base);
+		if (result == null){
+			result = FixedBaseTableFile.getCoordinates(base);
+			coordinates.put(base, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Removes the tables of the given base, if they are cached or imported.
+	 */
+	synchronized void remove(GroupElement base){
+		BigInteger[] baseCoordinates = getCoordinates(base);
+		importedTables.remove(new Key(baseCoordinates));
+		Iterator<Map.Entry<Key, Entry>> it = tables.entrySet().iterator();
+		while (it.hasNext()){
+			Map.Entry<Key, Entry> entry = it.next();
+			if (Arrays.equals(entry.getKey().coordinates, baseCoordinates)){
+				it.remove();
+				numberOfElements -= entry.getValue().numberOfElements;
+			}
+		}
+	}
+	
+	private void removeEntry(Key key){
+		Entry entry = tables.remove(key);
+		if (entry != null){
+			numberOfElements -= entry.numberOfElements;
+		}
+	}
+	
+	/**
+	 * Adds a table that was written to a file. The table is read from the file when it is needed.
+	 * @param base The base of the table.
+	 * @param table The table's part of the file.
+	 * @param numberOfElements The number of group elements in the table.
+	 * @param checkMembership Whether to check that the elements are members of the group when they are read.
+	 */
+	synchronized void addImported(GroupElement base, ByteBuffer table, int numberOfElements, boolean checkMembership){
+		importedTables.put(new Key(getCoordinates(base)), new ImportedTable(table, numberOfElements, checkMembership));
+	}
+	
+	/**
+	 * Returns the table of the given base. If it is not cached, it is read from its file if it was imported, and otherwise it is 
+	 * built with the given parameters. An imported table is used whatever its parameters are.
+	 * @param base The base of the table.
+	 * @param numberOfBits The maximal bit length of the exponents.
+	 * @param window The number of rows of the comb.
+	 * @param numberOfTables The number of tables.
+	 */
+	FixedBaseCombTable get(final GroupElement base, final int numberOfBits, final int window, final int numberOfTables){
+		BigInteger[] baseCoordinates = getCoordinates(base);
+		Key key;
+		Entry entry;
+		boolean isNew = false;
+		synchronized (this){
+			final ImportedTable imported = importedTables.get(new Key(baseCoordinates));
+			key = (imported != null) ? new Key(baseCoordinates) : new Key(baseCoordinates, numberOfBits, window, numberOfTables);
+			entry = tables.get(key);
+			if (entry == null){
+				FutureTask<FixedBaseCombTable> table = new FutureTask<FixedBaseCombTable>(new Callable<FixedBaseCombTable>(){
+					@Override
+					public FixedBaseCombTable call() throws IOException {
+						if (imported != null){
+							return FixedBaseTableFile.readTable(dlog, imported.table, imported.checkMembership);
+						}
+						return new FixedBaseCombTable(dlog, base, numberOfBits, window, numberOfTables);
+					}
+				});
+				int size = (imported != null) ? imported.numberOfElements : FixedBaseCombTable.getNumberOfElements(numberOfBits, window, numberOfTables);
+				entry = new Entry(table, size);
+				tables.put(key, entry);
+				numberOfElements += entry.numberOfElements;
+				evict();
+				isNew = true;
+			}
+		}
+		
+		if (isNew){
+			misses.incrementAndGet();
+			//Build the table in the calling thread, outside the lock.
+			entry.table.run();
+		} else {
+			hits.incrementAndGet();
+		}
+		
+		try {
+			return entry.table.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ScapiRuntimeException("interrupted while waiting for the table to be built");
+		} catch (ExecutionException e) {
+			//Do not keep the failed table, so that the next call tries again.
+			synchronized (this){
+				if (tables.get(key) == entry){
+					removeEntry(key);
+				}
+			}
+			if (e.getCause() instanceof RuntimeException){
+				throw (RuntimeException) e.getCause();
+			}
+			throw new ScapiRuntimeException("failed to build the table. The error is: " + e.getCause());
+		}
+	}
+	
+	/**
+	 * Removes the least recently used tables until the cache is within its bounds. The most recently used table is never removed.
+	 */
+	private void evict(){
+		Iterator<Map.Entry<Key, Entry>> it = tables.entrySet().iterator();
+		while ((tables.size() > maxBases || numberOfElements > maxElements) && it.hasNext()){
+			Map.Entry<Key, Entry> eldest = it.next();
+			if (tables.size() == 1){
+				break;
+			}
+			it.remove();
+			numberOfElements -= eldest.getValue().numberOfElements;
+			evictions.incrementAndGet();
+		}
+	}
+}
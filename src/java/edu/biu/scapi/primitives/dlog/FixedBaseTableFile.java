@@ -0,0 +1,286 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.primitives.dlog;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.bouncycastle.util.BigIntegers;
+
+import edu.biu.scapi.exceptions.InvalidDlogGroupException;
+
+/**
+ * Reads and writes the fixed base tables of {@link FixedBaseCombTable} in a binary file, so that they can be built once and 
+ * loaded by any number of processes. <p>
+ * 
+ * The file is memory mapped when it is loaded. Only the headers and the base of each table are read at that time; the rest of a 
+ * table is read from the mapping when the table is first used, and again if it was evicted from the {@link FixedBaseTableCache}. 
+ * Thus, processes that load the same file share its pages and do not build the tables. <p>
+ * 
+ * All numbers are big endian:
+ * <ul>
+ * <li> Header: the magic number 0x53434654 ("SCFT"), the format version, the length of the group order followed by its 
+ * unsigned bytes, and the number of bases. </li>
+ * <li> For each base: the maximal bit length of the exponents, the window, the number of columns in each table, the number of 
+ * tables, the number of coordinates of each element (1 for Zp groups and 2 for elliptic curves) and the length of each 
+ * coordinate. Then, for each table and each of its 2^window entries, a byte that is 0 for the identity and 1 otherwise, 
+ * followed by the unsigned coordinates of the element (zeros for the identity). </li>
+ * </ul>
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+final class FixedBaseTableFile {
+	
+	private static final int MAGIC = 0x53434654;
+	private static final int VERSION = 1;
+	private static final int TABLE_HEADER_SIZE = 6 * 4;
+	
+	private FixedBaseTableFile(){}
+	
+	/**
+	 * Writes the given tables to the given file.
+	 * @param dlog The group of the tables.
+	 * @param tables The tables to write.
+	 * @param f The file to write to.
+	 * @throws IOException if the writing failed.
+	 */
+	static void write(DlogGroup dlog, FixedBaseCombTable[] tables, File f) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			byte[] order = BigIntegers.asUnsignedByteArray(dlog.getOrder());
+			out.writeInt(order.length);
+			out.write(order);
+			out.writeInt(tables.length);
+			
+			for (FixedBaseCombTable table : tables){
+				GroupElement[][] elements = table.getTables();
+				
+				//All the coordinates of a table are written in the same length, so that each entry can be found directly.
+				int numberOfCoordinates = 0;
+				int coordinateLength = 0;
+				for (GroupElement[] row : elements){
+					for (GroupElement element : row){
+						BigInteger[] coordinates = getCoordinates(element);
+						numberOfCoordinates = Math.max(numberOfCoordinates, coordinates.length);
+						for (BigInteger coordinate : coordinates){
+							coordinateLength = Math.max(coordinateLength, BigIntegers.asUnsignedByteArray(coordinate).length);
+						}
+					}
+				}
+				
+				out.writeInt(table.getNumberOfBits());
+				out.writeInt(table.getWindow());
+				out.writeInt(table.getColumnsPerTable());
+				out.writeInt(elements.length);
+				out.writeInt(numberOfCoordinates);
+				out.writeInt(coordinateLength);
+				for (GroupElement[] row : elements){
+					for (GroupElement element : row){
+						BigInteger[] coordinates = getCoordinates(element);
+						out.writeByte(element.isIdentity() ? 0 : 1);
+						for (int i = 0; i < numberOfCoordinates; i++){
+							if (i < coordinates.length){
+								out.write(BigIntegers.asUnsignedByteArray(coordinateLength, coordinates[i]));
+							} else {
+								out.write(new byte[coordinateLength]);
+							}
+						}
+					}
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Returns the coordinates of the given element, or no coordinates if it is the identity.
+	 */
+	static BigInteger[] getCoordinates(GroupElement element){
+		if (element.isIdentity()){
+			return new BigInteger[0];
+		}
+		GroupElementSendableData data = element.generateSendableData();
+		if (data instanceof ZpElementSendableData){
+			return new BigInteger[]{((ZpElementSendableData) data).getX()};
+		}
+		if (data instanceof ECElementSendableData){
+			return new BigInteger[]{((ECElementSendableData) data).getX(), ((ECElementSendableData) data).getY()};
+		}
+		throw new IllegalArgumentException("elements of this group can not be written");
+	}
+	
+	/**
+	 * Maps the given file and adds its tables to the given cache. The tables themselves are read when they are first used.
+	 * @param dlog The group of the tables.
+	 * @param f The file to read.
+	 * @param checkMembership Whether to check that the elements of the tables are members of the group when they are read.
+	 * @param cache The cache to add the tables to.
+	 * @throws FileNotFoundException if f is not found.
+	 * @throws InvalidDlogGroupException if the tables were written for a group with a different order.
+	 * @throws IOException if the file is not a valid tables file or the reading failed.
+	 */
+	static void read(DlogGroup dlog, File f, boolean checkMembership, FixedBaseTableCache cache) throws FileNotFoundException, 
+			InvalidDlogGroupException, IOException {
+		RandomAccessFile file = new RandomAccessFile(f, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			try {
+				read(dlog, buffer, checkMembership, cache);
+			} catch (BufferUnderflowException e) {
+				//The file is shorter than its header declares.
+				throw new IOException("the tables file is truncated");
+			} catch (IllegalArgumentException e) {
+				//A slice or position is out of the file.
+				throw new IOException("the tables file is truncated");
+			}
+		} finally {
+			//The mapping stays valid after the file is closed.
+			file.close();
+		}
+	}
+	
+	private static void read(DlogGroup dlog, ByteBuffer buffer, boolean checkMembership, FixedBaseTableCache cache) throws 
+			InvalidDlogGroupException, IOException {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION){
+			throw new IOException("not a tables file of a supported version");
+		}
+		byte[] order = new byte[buffer.getInt()];
+		buffer.get(order);
+		if (!new BigInteger(1, order).equals(dlog.getOrder())){
+			throw new InvalidDlogGroupException("the tables were computed in a group with a different order");
+		}
+		
+		int numberOfBases = buffer.getInt();
+		for (int i = 0; i < numberOfBases; i++){
+			//Read the header to find the length of the table.
+			int start = buffer.position();
+			buffer.position(start + 3 * 4);
+			long numberOfElements = (long) buffer.getInt() << buffer.getInt(start + 4);
+			long entrySize = 1 + (long) buffer.getInt() * buffer.getInt();
+			long end = start + TABLE_HEADER_SIZE + numberOfElements * entrySize;
+			if (numberOfElements < 0 || entrySize < 1 || end > buffer.limit()){
+				throw new IOException("the tables file is truncated");
+			}
+			buffer.limit((int) end);
+			buffer.position(start);
+			ByteBuffer table = buffer.slice();
+			buffer.limit(buffer.capacity());
+			buffer.position((int) end);
+			
+			//Entry 1 of the first table is the base itself.
+			FixedBaseCombTable header = readHeader(dlog, table.duplicate());
+			GroupElement base = readElement(dlog, table, 1, checkMembership);
+			cache.addImported(base, table, header.getTables().length << header.getWindow(), checkMembership);
+		}
+	}
+	
+	/**
+	 * Reads the header of the given table into a table with empty entries. Checks that the parameters are valid.
+	 */
+	private static FixedBaseCombTable readHeader(DlogGroup dlog, ByteBuffer table) throws IOException {
+		int numberOfBits = table.getInt();
+		int window = table.getInt();
+		int columnsPerTable = table.getInt();
+		int numberOfTables = table.getInt();
+		int numberOfCoordinates = table.getInt();
+		int coordinateLength = table.getInt();
+		if (numberOfBits < 1 || window < 1 || window > 16 || columnsPerTable < 1 || numberOfTables < 1 || numberOfCoordinates < 0 || 
+				numberOfCoordinates > 2 || coordinateLength < 0){
+			throw new IOException("invalid table parameters");
+		}
+		//The tables should cover all the columns.
+		int columns = (numberOfBits + window - 1) / window;
+		if ((long) columnsPerTable * numberOfTables < columns){
+			throw new IOException("invalid table parameters");
+		}
+		return new FixedBaseCombTable(dlog, numberOfBits, window, columnsPerTable, new GroupElement[numberOfTables][1 << window]);
+	}
+	
+	/**
+	 * Reads all the entries of a table that was added to the cache by {@link #read(DlogGroup, File, boolean, FixedBaseTableCache)}.
+	 * @param dlog The group of the table.
+	 * @param table The table's part of the file.
+	 * @param checkMembership Whether to check that the elements are members of the group.
+	 */
+	static FixedBaseCombTable readTable(DlogGroup dlog, ByteBuffer table, boolean checkMembership) throws IOException {
+		FixedBaseCombTable result = readHeader(dlog, table.duplicate());
+		GroupElement[][] elements = result.getTables();
+		int size = 1 << result.getWindow();
+		for (int s = 0; s < elements.length; s++){
+			for (int e = 0; e < size; e++){
+				elements[s][e] = readElement(dlog, table, s * size + e, checkMembership);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Reads the entry in the given index of the given table.
+	 */
+	private static GroupElement readElement(DlogGroup dlog, ByteBuffer table, int index, boolean checkMembership) throws IOException {
+		int numberOfCoordinates = table.getInt(4 * 4);
+		int coordinateLength = table.getInt(5 * 4);
+		ByteBuffer entry = table.duplicate();
+		entry.position(TABLE_HEADER_SIZE + index * (1 + numberOfCoordinates * coordinateLength));
+		if (entry.get() == 0){
+			return dlog.getIdentity();
+		}
+		BigInteger[] coordinates = new BigInteger[numberOfCoordinates];
+		byte[] bytes = new byte[coordinateLength];
+		for (int i = 0; i < numberOfCoordinates; i++){
+			entry.get(bytes);
+			coordinates[i] = new BigInteger(1, bytes);
+		}
+		
+		GroupElementSendableData data;
+		if (numberOfCoordinates == 1){
+			data = new ZpElementSendableData(coordinates[0]);
+		} else if (numberOfCoordinates == 2){
+			data = new ECElementSendableData(coordinates[0], coordinates[1]);
+		} else {
+			throw new IOException("an element without coordinates is not the identity");
+		}
+		try {
+			return dlog.reconstructElement(checkMembership, data);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("the tables file holds an element that is not a member of the group");
+		}
+	}
+}
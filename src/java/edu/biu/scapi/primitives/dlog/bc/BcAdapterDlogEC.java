@@ -45,6 +45,7 @@ import edu.biu.scapi.primitives.dlog.GroupElement;
 public abstract class BcAdapterDlogEC extends DlogGroupEC 
 							 implements DlogEllipticCurve{
 
+	private static final int PIPPENGER_THRESHOLD = 256; // From this number of bases, simultaneousMultipleExponentiations uses computePippenger
 	protected ECCurve curve; // BC elliptic curve
 	
 	protected BcAdapterDlogEC(){}
@@ -197,8 +198,12 @@ public abstract class BcAdapterDlogEC extends DlogGroupEC
 				throw new IllegalArgumentException("groupElement doesn't match the DlogGroup");
 			}
 		}
-		//Our test results show that for BC elliptic curve the LL algorithm always gives the best performances
-		return computeLL(groupElements, exponentiations);
+		//The LL algorithm is used for a small number of bases. The cost of the bucket algorithm of Pippenger grows more slowly with 
+		//the number of bases, but the point where it becomes faster depends on the curve, so the threshold is set high.
+		if (groupElements.length < PIPPENGER_THRESHOLD){
+			return computeLL(groupElements, exponentiations);
+		}
+		return computePippenger(groupElements, exponentiations);
 	}
 	
 	/*
@@ -28,8 +28,10 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 
+import edu.biu.scapi.exceptions.ScapiRuntimeException;
 import edu.biu.scapi.primitives.dlog.DlogGroupEC;
 import edu.biu.scapi.primitives.dlog.ECElement;
+import edu.biu.scapi.primitives.dlog.GroupElement;
 
 /**
  * An abstract class that implements some common functionalities for both elliptic curve types, Fp and F2m.
@@ -48,6 +50,9 @@ public abstract class OpenSSLAdapterDlogEC extends DlogGroupEC{
 	protected native long multiply(long curve, long point1, long point2);			//Multiplies the given points.
 	protected native boolean checkCurveMembership(long curve, long point);			//Checks if the given point is on the curve.
 	protected native long simultaneousMultiply(long curve, long[] nativePoints, byte[][] exponents);//Raises each base to the respective exponent and multiplies the results.
+	protected native long[] exponentiateBatch(long curve, long[] nativePoints, byte[][] exponents);//Raises each base to the respective exponent.
+	protected native long[] multiplyBatch(long curve, long[] nativePoints1, long[] nativePoints2);	//Multiplies each pair of points.
+	protected native boolean[] checkCurveMembershipBatch(long curve, long[] nativePoints);	//Checks if each of the given points is on the curve.
 	protected native boolean validate(long curve);									//Validates the curve.
 	protected native long exponentiateWithPreComputedValues(long curve, byte[] exponent);//Raise the given base to the given exponent, using pre computed values.
 	protected native void deleteDlog(long curve);									//Deletes the native curve.
@@ -102,6 +107,195 @@ public abstract class OpenSSLAdapterDlogEC extends DlogGroupEC{
 		return curve;
 	}
 	
+	/**
+	 * @param element The element to check.
+	 * @return true if the given element is a point of this DlogGroup's type; False, otherwise.
+	 */
+	protected abstract boolean isGroupPoint(GroupElement element);
+	
+	/**
+	 * @param element A point of this DlogGroup's type.
+	 * @return the pointer to the native point of the given element.
+	 */
+	protected abstract long getNativePoint(GroupElement element);
+	
+	/**
+	 * Creates a point of this DlogGroup's type from the given native point.
+	 * @param point The pointer to the native point.
+	 * @return the created point.
+	 */
+	protected abstract ECElement createPoint(long point);
+	
+	/**
+	 * Checks that the given point, which is on the curve, is in the q-order sub-group of the curve.
+	 * @param point A point of this DlogGroup's type.
+	 * @return true if the point is in the sub-group; False, otherwise.
+	 */
+	protected abstract boolean checkSubGroupMembership(ECElement point);
+	
+	/**
+	 * Raises each base to the respective exponent.<p>
+	 * All the exponentiations are computed by a single call to the native code, instead of a call for each exponentiation.
+	 */
+	@Override
+	public GroupElement[] exponentiate(GroupElement[] bases, BigInteger[] exponents) throws IllegalArgumentException {
+		if (bases.length != exponents.length){
+			throw new IllegalArgumentException("the number of bases and exponents should be equal");
+		}
+		
+		GroupElement[] results = new GroupElement[bases.length];
+		//Create arrays to hold the native points and the exponents' bytes.
+		//The infinity bases are not passed to the native code, since their exponentiation is the infinity.
+		int[] indices = new int[bases.length];
+		long[] nativePoints = new long[bases.length];
+		byte[][] exponentsBytes = new byte[bases.length][];
+		int len = 0;
+		for (int i = 0; i < bases.length; i++) {
+			// If the GroupElement doesn't match the DlogGroup, throw exception.
+			if (!isGroupPoint(bases[i])){
+				throw new IllegalArgumentException("the given base doesn't match the DlogGroup");
+			}
+			if (((ECElement) bases[i]).isInfinity()) {
+				results[i] = bases[i];
+				continue;
+			}
+			
+			BigInteger exponent = exponents[i];
+			//If the exponent is negative, convert it to be the exponent modulus q.
+			if (exponent.compareTo(BigInteger.ZERO) < 0){
+				exponent = exponent.mod(getOrder());
+			}
+			indices[len] = i;
+			nativePoints[len] = getNativePoint(bases[i]);
+			exponentsBytes[len] = exponent.toByteArray();
+			len++;
+		}
+		if (len == 0){
+			return results;
+		}
+		if (len < bases.length){
+			long[] points = new long[len];
+			byte[][] bytes = new byte[len][];
+			System.arraycopy(nativePoints, 0, points, 0, len);
+			System.arraycopy(exponentsBytes, 0, bytes, 0, len);
+			nativePoints = points;
+			exponentsBytes = bytes;
+		}
+		
+		// Call the native exponentiate function.
+		long[] nativeResults = exponentiateBatch(curve, nativePoints, exponentsBytes);
+		if (nativeResults == null){
+			throw new ScapiRuntimeException("the native exponentiation failed");
+		}
+		// Build the points from the results.
+		for (int j = 0; j < len; j++) {
+			results[indices[j]] = createPoint(nativeResults[j]);
+		}
+		return results;
+	}
+	
+	/**
+	 * Multiplies each pair of elements.<p>
+	 * All the multiplications are computed by a single call to the native code, instead of a call for each multiplication.
+	 */
+	@Override
+	public GroupElement[] multiplyGroupElements(GroupElement[] groupElements1, GroupElement[] groupElements2) throws IllegalArgumentException {
+		if (groupElements1.length != groupElements2.length){
+			throw new IllegalArgumentException("the number of elements should be equal");
+		}
+		
+		GroupElement[] results = new GroupElement[groupElements1.length];
+		//Create arrays to hold the native points.
+		//If one of the points is the infinity point, the second one is the multiplication result and the native code is not called.
+		int[] indices = new int[groupElements1.length];
+		long[] nativePoints1 = new long[groupElements1.length];
+		long[] nativePoints2 = new long[groupElements1.length];
+		int len = 0;
+		for (int i = 0; i < groupElements1.length; i++) {
+			// If the GroupElements don't match the DlogGroup, throw exception.
+			if (!isGroupPoint(groupElements1[i])) {
+				throw new IllegalArgumentException("the first group element doesn't match the DlogGroup");
+			}
+			if (!isGroupPoint(groupElements2[i])){
+				throw new IllegalArgumentException("the second group element doesn't match the DlogGroup");
+			}
+			if (((ECElement) groupElements1[i]).isInfinity()) {
+				results[i] = groupElements2[i];
+			} else if (((ECElement) groupElements2[i]).isInfinity()) {
+				results[i] = groupElements1[i];
+			} else {
+				indices[len] = i;
+				nativePoints1[len] = getNativePoint(groupElements1[i]);
+				nativePoints2[len] = getNativePoint(groupElements2[i]);
+				len++;
+			}
+		}
+		if (len == 0){
+			return results;
+		}
+		if (len < groupElements1.length){
+			long[] points1 = new long[len];
+			long[] points2 = new long[len];
+			System.arraycopy(nativePoints1, 0, points1, 0, len);
+			System.arraycopy(nativePoints2, 0, points2, 0, len);
+			nativePoints1 = points1;
+			nativePoints2 = points2;
+		}
+		
+		// Call the native multiply function.
+		long[] nativeResults = multiplyBatch(curve, nativePoints1, nativePoints2);
+		if (nativeResults == null){
+			throw new ScapiRuntimeException("the native multiplication failed");
+		}
+		// Build the points from the results.
+		for (int j = 0; j < len; j++) {
+			results[indices[j]] = createPoint(nativeResults[j]);
+		}
+		return results;
+	}
+	
+	/**
+	 * Checks if each of the given elements is a member of this Dlog group.<p>
+	 * The curve membership of all the points is checked by a single call to the native code. The sub-group membership is 
+	 * checked only for the points that are on the curve.
+	 */
+	@Override
+	public boolean[] isMember(GroupElement[] elements) throws IllegalArgumentException {
+		boolean[] results = new boolean[elements.length];
+		//The infinity point is a valid member and is not passed to the native code.
+		int[] indices = new int[elements.length];
+		long[] nativePoints = new long[elements.length];
+		int len = 0;
+		for (int i = 0; i < elements.length; i++) {
+			// Checks that the element is the correct object.
+			if (!isGroupPoint(elements[i])) {
+				throw new IllegalArgumentException("groupElement doesn't match the DlogGroup");
+			}
+			if (((ECElement) elements[i]).isInfinity()) {
+				results[i] = true;
+			} else {
+				indices[len] = i;
+				nativePoints[len] = getNativePoint(elements[i]);
+				len++;
+			}
+		}
+		if (len == 0){
+			return results;
+		}
+		if (len < elements.length){
+			long[] points = new long[len];
+			System.arraycopy(nativePoints, 0, points, 0, len);
+			nativePoints = points;
+		}
+		
+		// Call the native function that checks that the points are on the curve.
+		boolean[] onCurve = checkCurveMembershipBatch(curve, nativePoints);
+		for (int j = 0; j < len; j++) {
+			results[indices[j]] = onCurve[j] && checkSubGroupMembership((ECElement) elements[indices[j]]);
+		}
+		return results;
+	}
+	
 	@Override
 	@Deprecated
 	public ECElement generateElement(BigInteger x, BigInteger y) throws IllegalArgumentException {
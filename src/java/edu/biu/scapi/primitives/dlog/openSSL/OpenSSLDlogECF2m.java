@@ -231,6 +231,26 @@ public class OpenSSLDlogECF2m extends OpenSSLAdapterDlogEC implements DlogECF2m,
 
 	}
 
+	@Override
+	protected boolean isGroupPoint(GroupElement element) {
+		return element instanceof ECF2mPointOpenSSL;
+	}
+
+	@Override
+	protected long getNativePoint(GroupElement element) {
+		return ((ECF2mPointOpenSSL) element).getPoint();
+	}
+
+	@Override
+	protected ECElement createPoint(long point) {
+		return new ECF2mPointOpenSSL(curve, point);
+	}
+
+	@Override
+	protected boolean checkSubGroupMembership(ECElement point) {
+		return util.checkSubGroupMembership(this, (ECF2mPointOpenSSL) point);
+	}
+
 	@Override
 	public boolean isMember(GroupElement element) throws IllegalArgumentException {
 		// Checks that the element is the correct object.
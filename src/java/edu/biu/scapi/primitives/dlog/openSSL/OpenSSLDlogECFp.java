@@ -211,6 +211,26 @@ public class OpenSSLDlogECFp extends OpenSSLAdapterDlogEC implements DlogECFp, D
 
 	}
 
+	@Override
+	protected boolean isGroupPoint(GroupElement element) {
+		return element instanceof ECFpPointOpenSSL;
+	}
+
+	@Override
+	protected long getNativePoint(GroupElement element) {
+		return ((ECFpPointOpenSSL) element).getPoint();
+	}
+
+	@Override
+	protected ECElement createPoint(long point) {
+		return new ECFpPointOpenSSL(curve, point);
+	}
+
+	@Override
+	protected boolean checkSubGroupMembership(ECElement point) {
+		return util.checkSubGroupMembership(this, (ECFpPointOpenSSL) point);
+	}
+
 	@Override
 	public boolean isMember(GroupElement element) throws IllegalArgumentException {
 		// Checks that the element is the correct object.
@@ -37,6 +37,7 @@ import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 
 import edu.biu.scapi.primitives.prf.AES;
+import edu.biu.scapi.primitives.prf.PrpFixedBatch;
 
 /**
  * Concrete class of prf family for AES. This class wraps the implementation of Crypto++.
@@ -44,7 +45,7 @@ import edu.biu.scapi.primitives.prf.AES;
  * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University (Moriya Farbstein)
  *
  */
-public class CryptoPpAES implements AES{
+public class CryptoPpAES implements AES, PrpFixedBatch{
 
 	private boolean isKeySet;
 	private long aesCompute;		//native object used for compute blocks
@@ -56,6 +57,7 @@ public class CryptoPpAES implements AES{
 	private native void setNativeKey(long aesCompute, long aesInvert, byte[] key);
 	private native void computeBlock(long aesCompute, byte[] in, byte[] out, int outOffset, boolean forEncrypt);
 	private native void optimizedCompute(long aesCompute, byte[] in, byte[] out, boolean forEncrypt);
+	private native void doComputeBlocks(long aesCompute, byte[] in, int inOffset, byte[] out, int outOffset, int numBlocks);
 	private native String getName(long aes);
 	private native int getBlockSize(long aes);
 	private native void deleteAES(long aesCompute, long aesInvert);
@@ -222,6 +224,33 @@ public class CryptoPpAES implements AES{
 			
 		optimizedCompute(aesCompute, inBytes, outBytes, true);
 	}
+	
+	/** 
+	 * Computes the AES permutation on a number of consecutive blocks, using a single call to the native code.
+	 * 
+	 * @param inBytes input bytes to compute.
+	 * @param inOff the offset of the first block in the inBytes array.
+	 * @param outBytes output bytes. The resulted bytes of compute.
+	 * @param outOff the offset in the outBytes array to put the result of the first block in.
+	 * @param numBlocks the number of blocks to compute.
+	 */
+	@Override
+	public void computeBlocks(byte[] inBytes, int inOff, byte[] outBytes, int outOff, int numBlocks) {
+		if (!isKeySet()){
+			throw new IllegalStateException("secret key isn't set");
+		}
+		// Checks that the offsets and lengths are correct.
+		int len = numBlocks * getBlockSize();
+		if ((numBlocks < 0) || (inOff < 0) || (inOff + len > inBytes.length)){
+			throw new ArrayIndexOutOfBoundsException("wrong offset for the given input buffer");
+		}
+		if ((outOff < 0) || (outOff + len > outBytes.length)){
+			throw new ArrayIndexOutOfBoundsException("wrong offset for the given output buffer");
+		}
+		
+		//Call the native code to compute all the blocks.
+		doComputeBlocks(aesCompute, inBytes, inOff, outBytes, outOff, numBlocks);
+	}
 
 	/** 
 	 * This function is provided in the interface especially for the sub-family PrfVaryingIOLength, which may have variable input/output lengths.
@@ -35,9 +35,9 @@ import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
-import edu.biu.scapi.primitives.prf.PrpFixed;
+import edu.biu.scapi.primitives.prf.PrpFixedBatch;
 
-public abstract class OpenSSLPRP implements PrpFixed{
+public abstract class OpenSSLPRP implements PrpFixedBatch{
 	protected long computeP;	//Native object used to compute the prp.
 	protected long invertP;		//Native object used to invert the prp.
 	
@@ -49,6 +49,7 @@ public abstract class OpenSSLPRP implements PrpFixed{
 	private native void invertBlock(long invertP, byte[] in, byte[] out, int outOffset, int blockSize);		//Inverts the PRP on the given in block.
 	private native void doOptimizedCompute(long computeP, byte[] inBytes, byte[] outBytes, int blockSize);	//Computes the PRP on the given in array.
 	private native void doOptimizedInvert(long invertP, byte[] inBytes, byte[] outBytes, int blockSize);	//Inverts the PRP on the given in array.
+	private native void doComputeBlocks(long computeP, byte[] inBytes, int inOffset, byte[] outBytes, int outOffset, int numBlocks, int blockSize); //Computes the PRP on the given blocks.
 	private native void deleteNative(long computeP, long invertP);											//Deleted the native objects.
 	
 	/**
@@ -195,6 +196,33 @@ public abstract class OpenSSLPRP implements PrpFixed{
 			
 		doOptimizedCompute(computeP, inBytes, outBytes, getBlockSize());
 	}
+	
+	/** 
+	 * Computes the permutation on a number of consecutive blocks, using a single call to the native code.
+	 * 
+	 * @param inBytes input bytes to compute.
+	 * @param inOff the offset of the first block in the inBytes array.
+	 * @param outBytes output bytes. The resulted bytes of compute.
+	 * @param outOff the offset in the outBytes array to put the result of the first block in.
+	 * @param numBlocks the number of blocks to compute.
+	 */
+	@Override
+	public void computeBlocks(byte[] inBytes, int inOff, byte[] outBytes, int outOff, int numBlocks) {
+		if (!isKeySet()){
+			throw new IllegalStateException("secret key isn't set");
+		}
+		// Checks that the offsets and lengths are correct.
+		int len = numBlocks * getBlockSize();
+		if ((numBlocks < 0) || (inOff < 0) || (inOff + len > inBytes.length)){
+			throw new ArrayIndexOutOfBoundsException("wrong offset for the given input buffer");
+		}
+		if ((outOff < 0) || (outOff + len > outBytes.length)){
+			throw new ArrayIndexOutOfBoundsException("wrong offset for the given output buffer");
+		}
+		
+		//Call the native code to compute all the blocks.
+		doComputeBlocks(computeP, inBytes, inOff, outBytes, outOff, numBlocks, getBlockSize());
+	}
 
 	/** 
 	 * This function is provided in the interface especially for the sub-family PrfVaryingIOLength, which may have variable input/output lengths.
@@ -116,6 +116,25 @@ JNIEXPORT void JNICALL Java_edu_biu_scapi_primitives_prf_cryptopp_CryptoPpAES_op
 	  env->ReleaseByteArrayElements(inBytes,in,0);
 }
 
+JNIEXPORT void JNICALL Java_edu_biu_scapi_primitives_prf_cryptopp_CryptoPpAES_doComputeBlocks
+  (JNIEnv *env, jobject, jlong aes, jbyteArray inBytes, jint inOffset, jbyteArray outBytes, jint outOffset, jint numBlocks){
+
+	  int size = numBlocks * ((AESEncryption*)aes)->BlockSize();
+	  byte* in = new byte[size];
+	  byte* out = new byte[size];
+
+	  //copy only the blocks that should be computed.
+	  env->GetByteArrayRegion(inBytes, inOffset, size, (jbyte*)in);
+
+	  //compute all the blocks in one call, so that Crypto++ can process a number of blocks in parallel.
+	  ((AESEncryption*)aes)->AdvancedProcessBlocks(in, NULL, out, size, 0);
+	  env->SetByteArrayRegion(outBytes, outOffset, size, (jbyte*)out);
+
+	  //make sure to release the memory created in c++. The JVM will not release it automatically.
+	  delete [] in;
+	  delete [] out;
+}
+
 JNIEXPORT jstring JNICALL Java_edu_biu_scapi_primitives_prf_cryptopp_CryptoPpAES_getName
   (JNIEnv *env, jobject, jlong aes){
 	  string name = ((AESEncryption*)aes)->AlgorithmName();
@@ -72,6 +72,14 @@ JNIEXPORT void JNICALL Java_edu_biu_scapi_primitives_prf_cryptopp_CryptoPpAES_co
 JNIEXPORT void JNICALL Java_edu_biu_scapi_primitives_prf_cryptopp_CryptoPpAES_optimizedCompute
   (JNIEnv *, jobject, jlong, jbyteArray, jbyteArray, jboolean);
 
+/*
+ * Class:     edu_biu_scapi_primitives_prf_cryptopp_CryptoPpAES
+ * Method:    doComputeBlocks
+ * Signature: (J[BI[BII)V
+ */
+JNIEXPORT void JNICALL Java_edu_biu_scapi_primitives_prf_cryptopp_CryptoPpAES_doComputeBlocks
+  (JNIEnv *, jobject, jlong, jbyteArray, jint, jbyteArray, jint, jint);
+
 /*
  * Class:     edu_biu_scapi_primitives_prf_cryptopp_CryptoPpAES
  * Method:    getName
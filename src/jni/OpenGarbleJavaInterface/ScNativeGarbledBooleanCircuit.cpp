@@ -214,6 +214,29 @@ JNIEXPORT jbyteArray JNICALL Java_edu_biu_scapi_circuits_fastGarbledCircuit_ScNa
 	return result;
 
 }
+
+/* function getGarbleTablesBuffer : This function returns a direct byte buffer that wraps the garbled table array of the circuit.
+ * The buffer shares the memory of the native circuit, so the garbled tables are not copied. 
+ */
+JNIEXPORT jobject JNICALL Java_edu_biu_scapi_circuits_fastGarbledCircuit_ScNativeGarbledBooleanCircuit_getGarbleTablesBuffer
+  (JNIEnv *env, jobject, jlong gbcPtr){
+
+	 //get the garbled circuit
+	GarbledBooleanCircuit * garbledCircuit= (GarbledBooleanCircuit*) gbcPtr;
+
+	int mult = 4;//for a regular circuit we have 4 blocks for each gate
+
+	if(garbledCircuit->getIsRowReduction()==true){
+
+		mult = 3;//in row reduction we only have 3 rows
+	}
+
+	//get the size of the garbled table
+	jlong size= ((jlong)(garbledCircuit->getNumberOfGates() - garbledCircuit->getNumOfXorGates()) *mult * 16);
+
+	//wrap the garbled table of the native code without copying it
+	return env->NewDirectByteBuffer(garbledCircuit->getGarbledTables(), size);
+}
 /* function garble : This function calls the garble of the native code garbled circuit that garbles the circuit.
  * It creates aligned memory for the inputs and outputs, and memory for the translation table so the native garble can work properly and eventually copies back
  * the results to the input empty arrays
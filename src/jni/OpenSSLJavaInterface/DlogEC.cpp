@@ -164,6 +164,131 @@ JNIEXPORT jlong JNICALL JNICALL Java_edu_biu_scapi_primitives_dlog_openSSL_OpenS
 	  return (long) result;
 }
 
+/* 
+ * function exponentiateBatch		: Raises each base to the respective exponent.
+ * param dlog						: Pointer to the dlog group.
+ * param points						: Array of bases.
+ * params exponents					: Array of exponents.
+ * return							: Array of pointers to the results' points, or NULL if one of the exponentiations failed.
+ */
+JNIEXPORT jlongArray JNICALL Java_edu_biu_scapi_primitives_dlog_openSSL_OpenSSLAdapterDlogEC_exponentiateBatch
+  (JNIEnv *env, jobject, jlong dlog, jlongArray points, jobjectArray exponents){
+	
+	  int size = env->GetArrayLength(points); //Number of points.
+	  jlong* pointsArr  = env->GetLongArrayElements(points, 0); //Convert JllongArray to long array. 
+	  jlong* resultsArr = new jlong[size]; //Create an array to hold the results.
+	  int i;
+	  
+	  jbyteArray exponentBytes;
+	  BIGNUM *exponent;
+	  //Exponentiate each base.
+	  for(i=0; i<size; i++){
+		  //Get the exponent bytes and convert them to BIGNUM.
+		  exponentBytes = (jbyteArray) env->GetObjectArrayElement(exponents, i);
+		  jbyte* exponent_bytes  = (jbyte*) env->GetByteArrayElements(exponentBytes, 0);
+		  exponent = BN_bin2bn((unsigned char*)exponent_bytes, env->GetArrayLength(exponentBytes), NULL);
+		  env ->ReleaseByteArrayElements(exponentBytes, exponent_bytes, JNI_ABORT);
+		  env ->DeleteLocalRef(exponentBytes);
+		  if(NULL == exponent){
+			  break;
+		  }
+
+		  //Call the function in the Dlog group that exponentiates the base to the exponent
+		  resultsArr[i] = (jlong) ((DlogEC*)dlog)->exponentiate((EC_POINT*)pointsArr[i], exponent);
+		  BN_free(exponent);
+		  if(0 == resultsArr[i]){
+			  break;
+		  }
+	  }
+	  env ->ReleaseLongArrayElements(points, pointsArr, JNI_ABORT);
+	  
+	  //In case of a failure, delete the points that were already created and return NULL.
+	  if(i < size){
+		  for(int j=0; j<i; j++){
+			  EC_POINT_free((EC_POINT*)resultsArr[j]);
+		  }
+		  delete[] resultsArr;
+		  return NULL;
+	  }
+
+	  //Copy the results to a java array.
+	  jlongArray results = env->NewLongArray(size);
+	  env->SetLongArrayRegion(results, 0, size, resultsArr);
+	  delete[] resultsArr;
+	  
+	  return results;
+}
+
+/* 
+ * function multiplyBatch			: Multiplies each pair of points.
+ * param dlog						: Pointer to the dlog group.
+ * param points1					: Array of the first points to multiply.
+ * params points2					: Array of the second points to multiply.
+ * return							: Array of pointers to the results' points, or NULL if one of the multiplications failed.
+ */
+JNIEXPORT jlongArray JNICALL Java_edu_biu_scapi_primitives_dlog_openSSL_OpenSSLAdapterDlogEC_multiplyBatch
+  (JNIEnv *env, jobject, jlong dlog, jlongArray points1, jlongArray points2){
+	
+	  int size = env->GetArrayLength(points1); //Number of points.
+	  jlong* points1Arr  = env->GetLongArrayElements(points1, 0); //Convert JllongArray to long array. 
+	  jlong* points2Arr  = env->GetLongArrayElements(points2, 0);
+	  jlong* resultsArr = new jlong[size]; //Create an array to hold the results.
+	  
+	  //Call the function in the Dlog group that multiplies the points on each pair.
+	  int i;
+	  for(i=0; i<size; i++){
+		  resultsArr[i] = (jlong) ((DlogEC*)dlog)->multiply((EC_POINT*)points1Arr[i], (EC_POINT*)points2Arr[i]);
+		  if(0 == resultsArr[i]){
+			  break;
+		  }
+	  }
+	  env ->ReleaseLongArrayElements(points1, points1Arr, JNI_ABORT);
+	  env ->ReleaseLongArrayElements(points2, points2Arr, JNI_ABORT);
+	  
+	  //In case of a failure, delete the points that were already created and return NULL.
+	  if(i < size){
+		  for(int j=0; j<i; j++){
+			  EC_POINT_free((EC_POINT*)resultsArr[j]);
+		  }
+		  delete[] resultsArr;
+		  return NULL;
+	  }
+
+	  //Copy the results to a java array.
+	  jlongArray results = env->NewLongArray(size);
+	  env->SetLongArrayRegion(results, 0, size, resultsArr);
+	  delete[] resultsArr;
+	  
+	  return results;
+}
+
+/* 
+ * function checkCurveMembershipBatch	: Checks for each of the given points if it is on the curve.
+ * param dlog							: Pointer to the dlog group.
+ * param points							: Array of the points to check.
+ * return								: Array that holds for each point true if it is on the curve; False, otherwise.
+ */
+JNIEXPORT jbooleanArray JNICALL Java_edu_biu_scapi_primitives_dlog_openSSL_OpenSSLAdapterDlogEC_checkCurveMembershipBatch
+  (JNIEnv *env, jobject, jlong dlog, jlongArray points){
+	
+	  int size = env->GetArrayLength(points); //Number of points.
+	  jlong* pointsArr  = env->GetLongArrayElements(points, 0); //Convert JllongArray to long array. 
+	  jboolean* resultsArr = new jboolean[size]; //Create an array to hold the results.
+	  
+	  //Call the function in the Dlog group that checks membership on each point.
+	  for(int i=0; i<size; i++){
+		  resultsArr[i] = ((DlogEC*)dlog)->checkCurveMembership((EC_POINT*)pointsArr[i]) ? JNI_TRUE : JNI_FALSE;
+	  }
+	  env ->ReleaseLongArrayElements(points, pointsArr, JNI_ABORT);
+
+	  //Copy the results to a java array.
+	  jbooleanArray results = env->NewBooleanArray(size);
+	  env->SetBooleanArrayRegion(results, 0, size, resultsArr);
+	  delete[] resultsArr;
+	  
+	  return results;
+}
+
 /* 
  * function validate		: Validates the Dlog group
  * param dlog				: Pointer to the dlog group.
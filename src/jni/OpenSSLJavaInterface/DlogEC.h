@@ -81,6 +81,30 @@ JNIEXPORT jboolean JNICALL Java_edu_biu_scapi_primitives_dlog_openSSL_OpenSSLAda
 JNIEXPORT jlong JNICALL Java_edu_biu_scapi_primitives_dlog_openSSL_OpenSSLAdapterDlogEC_simultaneousMultiply
   (JNIEnv *, jobject, jlong, jlongArray, jobjectArray);
 
+/*
+ * Class:     edu_biu_scapi_primitives_dlog_openSSL_OpenSSLAdapterDlogEC
+ * Method:    exponentiateBatch
+ * Signature: (J[J[[B)[J
+ */
+JNIEXPORT jlongArray JNICALL Java_edu_biu_scapi_primitives_dlog_openSSL_OpenSSLAdapterDlogEC_exponentiateBatch
+  (JNIEnv *, jobject, jlong, jlongArray, jobjectArray);
+
+/*
+ * Class:     edu_biu_scapi_primitives_dlog_openSSL_OpenSSLAdapterDlogEC
+ * Method:    multiplyBatch
+ * Signature: (J[J[J)[J
+ */
+JNIEXPORT jlongArray JNICALL Java_edu_biu_scapi_primitives_dlog_openSSL_OpenSSLAdapterDlogEC_multiplyBatch
+  (JNIEnv *, jobject, jlong, jlongArray, jlongArray);
+
+/*
+ * Class:     edu_biu_scapi_primitives_dlog_openSSL_OpenSSLAdapterDlogEC
+ * Method:    checkCurveMembershipBatch
+ * Signature: (J[J)[Z
+ */
+JNIEXPORT jbooleanArray JNICALL Java_edu_biu_scapi_primitives_dlog_openSSL_OpenSSLAdapterDlogEC_checkCurveMembershipBatch
+  (JNIEnv *, jobject, jlong, jlongArray);
+
 /*
  * Class:     edu_biu_scapi_primitives_dlog_openSSL_OpenSSLAdapterDlogEC
  * Method:    validate
@@ -142,6 +142,34 @@ JNIEXPORT void JNICALL Java_edu_biu_scapi_primitives_prf_openSSL_OpenSSLPRP_doOp
 	  delete (outBlock);
 }
 
+/* 
+ * function doComputeBlocks			: Compute the PRP on a number of consecutive blocks of the given input array.
+ * param prp						: pointer to the PRP object.
+ * param inBytes					: The input array to cumpute the permutation on.
+ * param inOffset					: The offset of the first block within the input array.
+ * param outBytes					: The output array to hold the permutation result.
+ * param outOffset					: The offset within the output array to put the result from.
+ * param numBlocks					: The number of blocks to compute.
+ * param blockSize					: The block size of the given prp.
+ */
+JNIEXPORT void JNICALL Java_edu_biu_scapi_primitives_prf_openSSL_OpenSSLPRP_doComputeBlocks
+  (JNIEnv *env, jobject, jlong prp, jbyteArray inBytes, jint inOffset, jbyteArray outBytes, jint outOffset, jint numBlocks, jint blockSize){
+	  int size = numBlocks * blockSize;
+
+	  //Copy only the blocks that should be computed.
+	  unsigned char* in = new unsigned char[size];
+	  unsigned char* out = new unsigned char[size];
+	  env->GetByteArrayRegion(inBytes, inOffset, size, (jbyte*)in);
+	  
+	  //Compute the prp on all the blocks in one call and put the result in the output array.
+	  EVP_EncryptUpdate ((EVP_CIPHER_CTX*)prp, out, &size, in, size);
+	  env->SetByteArrayRegion(outBytes, outOffset, size, (jbyte*)out);
+
+	  //Make sure to release the dynamically allocated memory. Will not be deleted by the JVM.
+	  delete [] in;
+	  delete [] out;
+}
+
 /* 
  * function deleteNative		: Delete the native objects.
  * param computeP				: pointer to the PRP object that does encryption.
@@ -64,6 +64,14 @@ JNIEXPORT void JNICALL Java_edu_biu_scapi_primitives_prf_openSSL_OpenSSLPRP_doOp
 JNIEXPORT void JNICALL Java_edu_biu_scapi_primitives_prf_openSSL_OpenSSLPRP_doOptimizedInvert
   (JNIEnv *, jobject, jlong, jbyteArray, jbyteArray, jint);
 
+/*
+ * Class:     edu_biu_scapi_primitives_prf_openSSL_openSSLPRP
+ * Method:    doComputeBlocks
+ * Signature: (J[BI[BIII)V
+ */
+JNIEXPORT void JNICALL Java_edu_biu_scapi_primitives_prf_openSSL_OpenSSLPRP_doComputeBlocks
+  (JNIEnv *, jobject, jlong, jbyteArray, jint, jbyteArray, jint, jint, jint);
+
 /*
  * Class:     edu_biu_scapi_primitives_prf_openSSL_openSSLPRP
  * Method:    deleteNative
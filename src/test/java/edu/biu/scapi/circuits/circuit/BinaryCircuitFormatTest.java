@@ -0,0 +1,277 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.exceptions.CircuitFileFormatException;
+
+/**
+ * Tests that a circuit that is converted to the {@link BinaryCircuitFormat} and read back computes the same function as the 
+ * circuit that was read from the text format, and that invalid binary files are rejected.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class BinaryCircuitFormatTest extends TestCase {
+
+	private File textFile;
+	private File binaryFile;
+	private Random random;
+	
+	@Override
+	protected void setUp() throws Exception {
+		textFile = File.createTempFile("circuit", ".txt");
+		binaryFile = File.createTempFile("circuit", ".bin");
+		random = new Random(6);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		textFile.delete();
+		binaryFile.delete();
+	}
+	
+	public void testRoundTrip() throws Exception {
+		//Odd and even numbers of gates, since the truth tables of two gates are packed in a byte.
+		int[] sizes = {1, 2, 37, 500};
+		for (int s = 0; s < sizes.length; s++){
+			writeText(randomCircuit(sizes[s]), textFile);
+			BooleanCircuit original = new BooleanCircuit(textFile);
+			BinaryCircuitFormat.convert(textFile, binaryFile);
+			BooleanCircuit loaded = BinaryCircuitFormat.read(binaryFile);
+			
+			assertEquals(original.getNumberOfParties(), loaded.getNumberOfParties());
+			for (int party = 1; party <= original.getNumberOfParties(); party++){
+				assertEquals(original.getInputWireIndices(party), loaded.getInputWireIndices(party));
+			}
+			assertEquals(original.getOutputWireIndices().length, loaded.getOutputWireIndices().length);
+			
+			Gate[] originalGates = original.getGates();
+			Gate[] loadedGates = loaded.getGates();
+			assertEquals(originalGates.length, loadedGates.length);
+			for (int g = 0; g < originalGates.length; g++){
+				assertEquals("gate " + g, originalGates[g].getTruthTable(), loadedGates[g].getTruthTable());
+				assertEquals("gate " + g, originalGates[g].getInputWireIndices().length, loadedGates[g].getInputWireIndices().length);
+			}
+			
+			for (int i = 0; i < 10; i++){
+				assertSameOutputs(sizes[s] + " gates", original, loaded, randomInputs(original));
+			}
+		}
+	}
+	
+	public void testTruncatedFile() throws Exception {
+		BooleanCircuit circuit = randomCircuit(20);
+		BinaryCircuitFormat.write(circuit, binaryFile);
+		long length = binaryFile.length();
+		//Cut the file inside the header, the input wires, the gates and the truth tables.
+		long[] lengths = {0, 6, 20, length / 2, length - 1};
+		for (int i = 0; i < lengths.length; i++){
+			BinaryCircuitFormat.write(circuit, binaryFile);
+			RandomAccessFile file = new RandomAccessFile(binaryFile, "rw");
+			file.setLength(lengths[i]);
+			file.close();
+			try {
+				BinaryCircuitFormat.read(binaryFile);
+				fail("a file of " + lengths[i] + " bytes was read");
+			} catch (CircuitFileFormatException e) {
+				//expected
+			}
+		}
+	}
+	
+	public void testBadHeader() throws Exception {
+		//A wrong magic number, a wrong version and a negative number of gates.
+		int[] offsets = {0, 4, 8};
+		byte[] values = {0x12, 0x12, (byte) 0x80};
+		for (int i = 0; i < offsets.length; i++){
+			BinaryCircuitFormat.write(randomCircuit(4), binaryFile);
+			RandomAccessFile file = new RandomAccessFile(binaryFile, "rw");
+			file.seek(offsets[i]);
+			file.write(values[i]);
+			file.close();
+			try {
+				BinaryCircuitFormat.read(binaryFile);
+				fail("a file with a bad header field at " + offsets[i] + " was read");
+			} catch (CircuitFileFormatException e) {
+				//expected
+			}
+		}
+		
+		//A text file is not a binary circuit.
+		writeText(randomCircuit(4), textFile);
+		try {
+			BinaryCircuitFormat.read(textFile);
+			fail("a text file was read");
+		} catch (CircuitFileFormatException e) {
+			//expected
+		}
+	}
+	
+	public void testUnsupportedGates() throws Exception {
+		BitSet truthTable = new BitSet();
+		truthTable.set(7);
+		Gate[] gates = {new Gate(0, truthTable, new int[]{0, 1, 2}, new int[]{3})};
+		BooleanCircuit circuit = new BooleanCircuit(gates, new int[]{3}, inputWires(new int[]{0, 1}, new int[]{2}));
+		try {
+			BinaryCircuitFormat.write(circuit, binaryFile);
+			fail("a gate with three inputs was written");
+		} catch (CircuitFileFormatException e) {
+			//expected
+		}
+	}
+	
+	/**
+	 * Checks that both circuits give the same outputs for the given inputs.
+	 */
+	private static void assertSameOutputs(String message, BooleanCircuit expected, BooleanCircuit actual, Map<Integer, Byte> inputs) throws Exception {
+		for (int party = 1; party <= expected.getNumberOfParties(); party++){
+			Map<Integer, Wire> partyInputs = new HashMap<Integer, Wire>();
+			for (int w : expected.getInputWireIndices(party)){
+				partyInputs.put(w, new Wire(inputs.get(w).byteValue()));
+			}
+			expected.setInputs(partyInputs, party);
+			actual.setInputs(partyInputs, party);
+		}
+		Map<Integer, Wire> expectedOutputs = expected.compute();
+		Map<Integer, Wire> actualOutputs = actual.compute();
+		for (int w : expected.getOutputWireIndices()){
+			assertEquals(message + ", wire " + w, expectedOutputs.get(w).getValue(), actualOutputs.get(w).getValue());
+		}
+	}
+	
+	/**
+	 * Creates a circuit of gates with one or two inputs. The wire indices are not consecutive.
+	 */
+	private BooleanCircuit randomCircuit(int numberOfGates){
+		int[][] partyWires = {new int[3], new int[4]};
+		List<Integer> wires = new ArrayList<Integer>();
+		int nextWire = 10;
+		for (int p = 0; p < partyWires.length; p++){
+			for (int i = 0; i < partyWires[p].length; i++){
+				partyWires[p][i] = nextWire;
+				wires.add(Integer.valueOf(nextWire));
+				nextWire += 2;
+			}
+		}
+		
+		Gate[] gates = new Gate[numberOfGates];
+		for (int g = 0; g < numberOfGates; g++){
+			int[] inputs = new int[1 + random.nextInt(2)];
+			for (int i = 0; i < inputs.length; i++){
+				inputs[i] = wires.get(random.nextInt(wires.size())).intValue();
+			}
+			BitSet truthTable = new BitSet();
+			for (int row = 0; row < (1 << inputs.length); row++){
+				truthTable.set(row, random.nextBoolean());
+			}
+			gates[g] = new Gate(g, truthTable, inputs, new int[]{nextWire});
+			wires.add(Integer.valueOf(nextWire));
+			nextWire += 3;
+		}
+		
+		int[] outputWires = new int[1 + random.nextInt(5)];
+		for (int i = 0; i < outputWires.length; i++){
+			outputWires[i] = wires.get(wires.size() - 1 - random.nextInt(Math.min(wires.size(), 10))).intValue();
+		}
+		return new BooleanCircuit(gates, outputWires, inputWires(partyWires[0], partyWires[1]));
+	}
+	
+	/**
+	 * Writes the given circuit in the text format that is read by {@link BooleanCircuit#BooleanCircuit(File)}.
+	 */
+	private static void writeText(BooleanCircuit circuit, File f) throws Exception {
+		PrintWriter out = new PrintWriter(new FileOutputStream(f));
+		try {
+			out.println("# A random circuit");
+			out.println(circuit.getGates().length + " " + circuit.getNumberOfParties());
+			for (int party = 1; party <= circuit.getNumberOfParties(); party++){
+				List<Integer> inputs = circuit.getInputWireIndices(party);
+				out.print(party + " " + inputs.size());
+				for (int w : inputs){
+					out.print(" " + w);
+				}
+				out.println();
+			}
+			int[] outputs = circuit.getOutputWireIndices();
+			out.print(outputs.length);
+			for (int w : outputs){
+				out.print(" " + w);
+			}
+			out.println();
+			for (Gate gate : circuit.getGates()){
+				int[] inputs = gate.getInputWireIndices();
+				int[] gateOutputs = gate.getOutputWireIndices();
+				out.print(inputs.length + " " + gateOutputs.length);
+				for (int w : inputs){
+					out.print(" " + w);
+				}
+				for (int w : gateOutputs){
+					out.print(" " + w);
+				}
+				out.print(" ");
+				for (int row = 0; row < (1 << inputs.length); row++){
+					out.print(gate.getTruthTable().get(row) ? '1' : '0');
+				}
+				out.println();
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	private Map<Integer, Byte> randomInputs(BooleanCircuit circuit) throws Exception {
+		Map<Integer, Byte> inputs = new HashMap<Integer, Byte>();
+		for (int party = 1; party <= circuit.getNumberOfParties(); party++){
+			for (int w : circuit.getInputWireIndices(party)){
+				inputs.put(w, Byte.valueOf((byte) random.nextInt(2)));
+			}
+		}
+		return inputs;
+	}
+	
+	private static ArrayList<ArrayList<Integer>> inputWires(int[] firstParty, int[] secondParty){
+		ArrayList<ArrayList<Integer>> eachPartysInputWires = new ArrayList<ArrayList<Integer>>();
+		int[][] parties = {firstParty, secondParty};
+		for (int p = 0; p < parties.length; p++){
+			ArrayList<Integer> wires = new ArrayList<Integer>();
+			for (int i = 0; i < parties[p].length; i++){
+				wires.add(Integer.valueOf(parties[p][i]));
+			}
+			eachPartysInputWires.add(wires);
+		}
+		return eachPartysInputWires;
+	}
+}
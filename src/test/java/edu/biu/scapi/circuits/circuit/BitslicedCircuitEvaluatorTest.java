@@ -0,0 +1,203 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.exceptions.NotAllInputsSetException;
+
+/**
+ * Tests that the {@link BitslicedCircuitEvaluator} gives the same outputs as {@link BooleanCircuit#compute()} on each of the
+ * input assignments of a batch.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class BitslicedCircuitEvaluatorTest extends TestCase {
+
+	//Truth tables of the two input gates that have their own operations in the evaluator.
+	private static final int[] NAMED_TABLES = {0x1, 0x6, 0x7, 0x8, 0x9, 0xE};
+	
+	public void testCompareWithCompute() throws Exception {
+		Random random = new Random(12);
+		//Batches that fill whole words and batches that leave part of the last word unused.
+		int[] batchSizes = {64, 65, 100, 128, 200};
+		for (int c = 0; c < 5; c++){
+			BooleanCircuit circuit = randomCircuit(random, 300);
+			BitslicedCircuitEvaluator evaluator = new BitslicedCircuitEvaluator(circuit);
+			for (int b = 0; b < batchSizes.length; b++){
+				List<Map<Integer, Wire>> assignments = new ArrayList<Map<Integer, Wire>>();
+				for (int i = 0; i < batchSizes[b]; i++){
+					assignments.add(randomInputs(circuit, random));
+				}
+				
+				List<Map<Integer, Wire>> outputs = BitslicedCircuitEvaluator.unpack(
+						evaluator.compute(BitslicedCircuitEvaluator.pack(assignments)), batchSizes[b]);
+				assertEquals(batchSizes[b], outputs.size());
+				for (int i = 0; i < batchSizes[b]; i++){
+					Map<Integer, Wire> expected = compute(circuit, assignments.get(i));
+					for (int w : circuit.getOutputWireIndices()){
+						assertEquals("circuit " + c + ", batch of " + batchSizes[b] + ", assignment " + i + ", wire " + w, 
+								expected.get(w).getValue(), outputs.get(i).get(w).getValue());
+					}
+				}
+			}
+		}
+	}
+	
+	public void testPackAndUnpack() throws Exception {
+		Random random = new Random(3);
+		List<Map<Integer, Wire>> assignments = new ArrayList<Map<Integer, Wire>>();
+		for (int i = 0; i < 70; i++){
+			Map<Integer, Wire> assignment = new HashMap<Integer, Wire>();
+			assignment.put(Integer.valueOf(5), new Wire((byte) random.nextInt(2)));
+			assignment.put(Integer.valueOf(9), new Wire((byte) random.nextInt(2)));
+			assignments.add(assignment);
+		}
+		Map<Integer, long[]> packed = BitslicedCircuitEvaluator.pack(assignments);
+		assertEquals(2, packed.get(Integer.valueOf(5)).length);
+		
+		List<Map<Integer, Wire>> unpacked = BitslicedCircuitEvaluator.unpack(packed, assignments.size());
+		for (int i = 0; i < assignments.size(); i++){
+			for (Map.Entry<Integer, Wire> entry : assignments.get(i).entrySet()){
+				assertEquals(entry.getValue().getValue(), unpacked.get(i).get(entry.getKey()).getValue());
+			}
+		}
+	}
+	
+	public void testMissingInput() throws Exception {
+		BooleanCircuit circuit = randomCircuit(new Random(1), 10);
+		Map<Integer, long[]> inputs = new HashMap<Integer, long[]>();
+		List<Integer> wires = circuit.getInputWireIndices(1);
+		for (int w : wires){
+			inputs.put(w, new long[1]);
+		}
+		try {
+			new BitslicedCircuitEvaluator(circuit).compute(inputs);
+			fail("the inputs of the second party were not set");
+		} catch (NotAllInputsSetException e) {
+			//expected
+		}
+		
+		for (int w : circuit.getInputWireIndices(2)){
+			inputs.put(w, new long[2]);
+		}
+		try {
+			new BitslicedCircuitEvaluator(circuit).compute(inputs);
+			fail("the inputs have different lengths");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+	
+	/**
+	 * Computes the given circuit on one input assignment.
+	 */
+	private static Map<Integer, Wire> compute(BooleanCircuit circuit, Map<Integer, Wire> inputs) throws Exception {
+		for (int party = 1; party <= circuit.getNumberOfParties(); party++){
+			Map<Integer, Wire> partyInputs = new HashMap<Integer, Wire>();
+			for (int w : circuit.getInputWireIndices(party)){
+				partyInputs.put(w, inputs.get(w));
+			}
+			circuit.setInputs(partyInputs, party);
+		}
+		return circuit.compute();
+	}
+	
+	private static Map<Integer, Wire> randomInputs(BooleanCircuit circuit, Random random) throws Exception {
+		Map<Integer, Wire> inputs = new HashMap<Integer, Wire>();
+		for (int party = 1; party <= circuit.getNumberOfParties(); party++){
+			for (int w : circuit.getInputWireIndices(party)){
+				inputs.put(w, new Wire((byte) random.nextInt(2)));
+			}
+		}
+		return inputs;
+	}
+	
+	/**
+	 * Creates a circuit of two parties that has every kind of gate the evaluator handles: the named two input gates, two input 
+	 * gates with other truth tables, one input gates, constants and gates with three inputs. Some of the gates have two 
+	 * output wires.
+	 */
+	private static BooleanCircuit randomCircuit(Random random, int numberOfGates){
+		ArrayList<ArrayList<Integer>> eachPartysInputWires = new ArrayList<ArrayList<Integer>>();
+		List<Integer> wires = new ArrayList<Integer>();
+		int nextWire = 0;
+		for (int p = 0; p < 2; p++){
+			ArrayList<Integer> partyWires = new ArrayList<Integer>();
+			for (int i = 0; i < 8; i++){
+				partyWires.add(Integer.valueOf(nextWire));
+				wires.add(Integer.valueOf(nextWire));
+				nextWire++;
+			}
+			eachPartysInputWires.add(partyWires);
+		}
+		
+		Gate[] gates = new Gate[numberOfGates];
+		for (int g = 0; g < numberOfGates; g++){
+			int kind = random.nextInt(6);
+			int numberOfInputs = (kind < 3) ? 2 : (kind == 3) ? 1 : (kind == 4) ? 0 : 3;
+			if (numberOfInputs == 0 && random.nextInt(4) != 0){
+				//Keep the constants rare so that the outputs depend on the inputs.
+				numberOfInputs = 2;
+			}
+			int[] inputs = new int[numberOfInputs];
+			for (int i = 0; i < numberOfInputs; i++){
+				inputs[i] = wires.get(random.nextInt(wires.size())).intValue();
+			}
+			
+			BitSet truthTable = new BitSet();
+			if (numberOfInputs == 2 && kind < 2){
+				int table = NAMED_TABLES[random.nextInt(NAMED_TABLES.length)];
+				for (int row = 0; row < 4; row++){
+					truthTable.set(row, ((table >> row) & 1) == 1);
+				}
+			} else {
+				for (int row = 0; row < (1 << numberOfInputs); row++){
+					truthTable.set(row, random.nextBoolean());
+				}
+			}
+			
+			int[] outputs = new int[1 + random.nextInt(2)];
+			for (int i = 0; i < outputs.length; i++){
+				outputs[i] = nextWire;
+				wires.add(Integer.valueOf(nextWire));
+				nextWire++;
+			}
+			gates[g] = new Gate(g, truthTable, inputs, outputs);
+		}
+		
+		int[] outputWires = new int[10];
+		for (int i = 0; i < outputWires.length; i++){
+			outputWires[i] = wires.get(wires.size() - 1 - random.nextInt(30)).intValue();
+		}
+		return new BooleanCircuit(gates, outputWires, eachPartysInputWires);
+	}
+}
@@ -0,0 +1,416 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests each of the templates of the {@link BooleanCircuitBuilder} by computing the built circuit and comparing the result to 
+ * the same operation on Java numbers.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class BooleanCircuitBuilderTest extends TestCase {
+
+	/**
+	 * A template that is applied to a number x of the first party and a number y of the second party.
+	 */
+	private static abstract class Template {
+		/**
+		 * Adds the gates of the template and returns the wires of the result, least significant bit first.
+		 */
+		abstract int[] build(BooleanCircuitBuilder builder, int[] x, int[] y);
+		
+		/**
+		 * Computes the expected result.
+		 */
+		abstract long expected(long x, long y);
+	}
+	
+	private Random random;
+	
+	@Override
+	protected void setUp() throws Exception {
+		random = new Random(20);
+	}
+	
+	public void testAdd() throws Exception {
+		Template add = new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return builder.add(x, y);
+			}
+			long expected(long x, long y){
+				return x + y;
+			}
+		};
+		check("add", add, 5, 5);
+		check("add", add, 6, 3);
+		check("add", add, 2, 7);
+		check("add", add, 32, 32);
+	}
+	
+	public void testCarrySelectAdd() throws Exception {
+		int[] blockSizes = {1, 3, 4, 6, 10};
+		for (int i = 0; i < blockSizes.length; i++){
+			final int blockSize = blockSizes[i];
+			Template add = new Template(){
+				int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+					return builder.carrySelectAdd(x, y, blockSize);
+				}
+				long expected(long x, long y){
+					return x + y;
+				}
+			};
+			check("carry select add, blocks of " + blockSize, add, 6, 6);
+			check("carry select add, blocks of " + blockSize, add, 20, 20);
+		}
+	}
+	
+	public void testComparators() throws Exception {
+		check("greater than", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return new int[]{builder.greaterThan(x, y)};
+			}
+			long expected(long x, long y){
+				return (x > y) ? 1 : 0;
+			}
+		}, 6, 6);
+		check("less than", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return new int[]{builder.lessThan(x, y)};
+			}
+			long expected(long x, long y){
+				return (x < y) ? 1 : 0;
+			}
+		}, 6, 6);
+		check("greater or equal", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return new int[]{builder.greaterOrEqual(x, y)};
+			}
+			long expected(long x, long y){
+				return (x >= y) ? 1 : 0;
+			}
+		}, 6, 6);
+		check("less or equal", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return new int[]{builder.lessOrEqual(x, y)};
+			}
+			long expected(long x, long y){
+				return (x <= y) ? 1 : 0;
+			}
+		}, 6, 6);
+		check("equal", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return new int[]{builder.equal(x, y)};
+			}
+			long expected(long x, long y){
+				return (x == y) ? 1 : 0;
+			}
+		}, 6, 6);
+		//Random numbers are rarely equal, so half of the random inputs of the large comparators are equal or differ in one bit.
+		check("greater than", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return new int[]{builder.greaterThan(x, y)};
+			}
+			long expected(long x, long y){
+				return (x > y) ? 1 : 0;
+			}
+		}, 32, 32);
+		check("equal", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return new int[]{builder.equal(x, y)};
+			}
+			long expected(long x, long y){
+				return (x == y) ? 1 : 0;
+			}
+		}, 32, 32);
+	}
+	
+	public void testMux() throws Exception {
+		//The lowest bit of x selects between the other bits of x and y.
+		check("mux", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				int[] rest = new int[x.length - 1];
+				System.arraycopy(x, 1, rest, 0, rest.length);
+				return builder.mux(x[0], rest, y);
+			}
+			long expected(long x, long y){
+				return ((x & 1) == 1) ? y : x >> 1;
+			}
+		}, 7, 6);
+	}
+	
+	public void testBitwise() throws Exception {
+		check("xor", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return builder.xor(x, y);
+			}
+			long expected(long x, long y){
+				return x ^ y;
+			}
+		}, 6, 6);
+		check("and of all bits", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return new int[]{builder.and(x)};
+			}
+			long expected(long x, long y){
+				return (x == 31) ? 1 : 0;
+			}
+		}, 5, 3);
+		check("not", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				int[] result = new int[x.length];
+				for (int i = 0; i < x.length; i++){
+					result[i] = builder.not(x[i]);
+				}
+				return result;
+			}
+			long expected(long x, long y){
+				return ~x & 0x3F;
+			}
+		}, 6, 2);
+		check("constants", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return new int[]{builder.one(), builder.zero(), builder.one()};
+			}
+			long expected(long x, long y){
+				return 5;
+			}
+		}, 3, 3);
+	}
+	
+	public void testCount() throws Exception {
+		check("count", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				int[] bits = new int[x.length + y.length];
+				System.arraycopy(x, 0, bits, 0, x.length);
+				System.arraycopy(y, 0, bits, x.length, y.length);
+				return builder.count(bits);
+			}
+			long expected(long x, long y){
+				return Long.bitCount(x) + Long.bitCount(y);
+			}
+		}, 7, 5);
+		check("hamming distance", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return builder.hammingDistance(x, y);
+			}
+			long expected(long x, long y){
+				return Long.bitCount(x ^ y);
+			}
+		}, 6, 6);
+		check("hamming distance", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return builder.hammingDistance(x, y);
+			}
+			long expected(long x, long y){
+				return Long.bitCount(x ^ y);
+			}
+		}, 40, 40);
+	}
+	
+	public void testMinAndMax() throws Exception {
+		//y holds two numbers, so the minimum and maximum are of three numbers.
+		check("min", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return builder.min(x, low(y), high(y));
+			}
+			long expected(long x, long y){
+				return Math.min(x, Math.min(y & 0xF, y >> 4));
+			}
+		}, 4, 8);
+		check("max", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return builder.max(x, low(y), high(y));
+			}
+			long expected(long x, long y){
+				return Math.max(x, Math.max(y & 0xF, y >> 4));
+			}
+		}, 4, 8);
+		check("max", new Template(){
+			int[] build(BooleanCircuitBuilder builder, int[] x, int[] y){
+				return builder.max(x, y);
+			}
+			long expected(long x, long y){
+				return Math.max(x, y);
+			}
+		}, 24, 24);
+	}
+	
+	public void testNumberOfNonXorGates() throws Exception {
+		int bits = 16;
+		BooleanCircuitBuilder builder = new BooleanCircuitBuilder(2);
+		int[] x = builder.addInputs(1, bits);
+		int[] y = builder.addInputs(2, bits);
+		
+		builder.add(x, y);
+		assertEquals("add", bits, builder.getNumberOfNonXorGates());
+		builder.greaterThan(x, y);
+		assertEquals("greater than", 2 * bits, builder.getNumberOfNonXorGates());
+		builder.mux(x[0], x, y);
+		assertEquals("mux", 3 * bits, builder.getNumberOfNonXorGates());
+		builder.equal(x, y);
+		assertEquals("equal", 4 * bits - 1, builder.getNumberOfNonXorGates());
+		builder.hammingDistance(x, y);
+		assertTrue("hamming distance", builder.getNumberOfNonXorGates() < 5 * bits - 1);
+		int before = builder.getNumberOfNonXorGates();
+		builder.not(x[0]);
+		builder.one();
+		assertEquals("not and constants", before, builder.getNumberOfNonXorGates());
+	}
+	
+	public void testOutputsAreDistinctGateOutputs() throws Exception {
+		BooleanCircuitBuilder builder = new BooleanCircuitBuilder(2);
+		int[] x = builder.addInputs(1, 2);
+		int[] y = builder.addInputs(2, 2);
+		int and = builder.and(x[0], y[0]);
+		BooleanCircuit circuit = builder.build(new int[]{x[1], and, and, y[1]});
+		
+		Set<Integer> outputs = new HashSet<Integer>();
+		for (int w : circuit.getOutputWireIndices()){
+			assertTrue("wire " + w + " is an output twice", outputs.add(w));
+			assertFalse("wire " + w + " is an input", circuit.getInputWireIndices(1).contains(w) || circuit.getInputWireIndices(2).contains(w));
+		}
+		
+		//The copies hold the values of the wires they replace.
+		Map<Integer, Wire> first = new HashMap<Integer, Wire>();
+		first.put(x[0], new Wire((byte) 1));
+		first.put(x[1], new Wire((byte) 1));
+		Map<Integer, Wire> second = new HashMap<Integer, Wire>();
+		second.put(y[0], new Wire((byte) 1));
+		second.put(y[1], new Wire((byte) 0));
+		circuit.setInputs(first, 1);
+		circuit.setInputs(second, 2);
+		Map<Integer, Wire> result = circuit.compute();
+		int[] expected = {1, 1, 1, 0};
+		for (int i = 0; i < expected.length; i++){
+			assertEquals("output " + i, expected[i], result.get(circuit.getOutputWireIndices()[i]).getValue());
+		}
+	}
+	
+	public void testIllegalArguments() throws Exception {
+		BooleanCircuitBuilder builder = new BooleanCircuitBuilder(2);
+		try {
+			builder.zero();
+			fail("a constant was created without inputs");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+		int[] x = builder.addInputs(1, 3);
+		int[] y = builder.addInputs(2, 4);
+		try {
+			builder.greaterThan(x, y);
+			fail("numbers of different lengths were compared");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		try {
+			builder.carrySelectAdd(x, x, 0);
+			fail("a block size of zero was accepted");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		try {
+			builder.min();
+			fail("the minimum of no numbers was accepted");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+	
+	/**
+	 * Builds a circuit from the given template and compares its outputs to the expected results. Small inputs are checked for 
+	 * all the values, and large inputs are checked for random values.
+	 */
+	private void check(String name, Template template, int xBits, int yBits) throws Exception {
+		BooleanCircuitBuilder builder = new BooleanCircuitBuilder(2);
+		int[] x = builder.addInputs(1, xBits);
+		int[] y = builder.addInputs(2, yBits);
+		BooleanCircuit circuit = builder.build(template.build(builder, x, y));
+		
+		if (xBits + yBits <= 12){
+			for (long xValue = 0; xValue < (1L << xBits); xValue++){
+				for (long yValue = 0; yValue < (1L << yBits); yValue++){
+					checkValues(name, template, circuit, x, y, xValue, yValue);
+				}
+			}
+		} else {
+			for (int i = 0; i < 300; i++){
+				long xValue = randomValue(xBits);
+				long yValue = randomValue(yBits);
+				if (i % 2 == 1 && xBits == yBits){
+					//Equal values, or values that differ in a single bit.
+					yValue = xValue ^ ((i % 4 == 1) ? 0 : 1L << random.nextInt(yBits));
+				}
+				checkValues(name, template, circuit, x, y, xValue, yValue);
+			}
+		}
+	}
+	
+	private static void checkValues(String name, Template template, BooleanCircuit circuit, int[] x, int[] y, long xValue, long yValue) throws Exception {
+		circuit.setInputs(toWires(x, xValue), 1);
+		circuit.setInputs(toWires(y, yValue), 2);
+		Map<Integer, Wire> outputs = circuit.compute();
+		int[] outputWires = circuit.getOutputWireIndices();
+		long result = 0;
+		for (int i = 0; i < outputWires.length; i++){
+			result |= ((long) outputs.get(outputWires[i]).getValue()) << i;
+		}
+		assertEquals(name + " of " + xValue + " and " + yValue, template.expected(xValue, yValue), result);
+	}
+	
+	/**
+	 * Puts the bits of the given value on the given wires, least significant bit first.
+	 */
+	private static Map<Integer, Wire> toWires(int[] wires, long value){
+		Map<Integer, Wire> inputs = new HashMap<Integer, Wire>();
+		for (int i = 0; i < wires.length; i++){
+			inputs.put(wires[i], new Wire((byte) ((value >> i) & 1)));
+		}
+		return inputs;
+	}
+	
+	private long randomValue(int bits){
+		return random.nextLong() & ((1L << bits) - 1);
+	}
+	
+	private static int[] low(int[] bits){
+		int[] low = new int[bits.length / 2];
+		System.arraycopy(bits, 0, low, 0, low.length);
+		return low;
+	}
+	
+	private static int[] high(int[] bits){
+		int[] high = new int[bits.length - bits.length / 2];
+		System.arraycopy(bits, bits.length / 2, high, 0, high.length);
+		return high;
+	}
+}
@@ -0,0 +1,267 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.circuits.encryption.AESFixedKeyMultiKeyEncryption;
+import edu.biu.scapi.circuits.garbledCircuit.CircuitCreationValues;
+import edu.biu.scapi.circuits.garbledCircuit.FreeXORGarblingParameters;
+import edu.biu.scapi.circuits.garbledCircuit.GarbledBooleanCircuit;
+import edu.biu.scapi.circuits.garbledCircuit.GarbledBooleanCircuitImp;
+import edu.biu.scapi.circuits.garbledCircuit.GarblingParameters;
+import edu.biu.scapi.circuits.garbledCircuit.HalfGatesGarblingParameters;
+import edu.biu.scapi.primitives.prf.bc.BcAES;
+
+/**
+ * Tests that the {@link CircuitOptimizer} keeps the function of the circuit and removes the redundant gates.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class CircuitOptimizerTest extends TestCase {
+
+	public void testRandomCircuits() throws Exception {
+		Random random = new Random(1);
+		for (int trial = 0; trial < 300; trial++){
+			BooleanCircuit circuit = randomCircuit(random);
+			CircuitOptimizer optimizer = new CircuitOptimizer(circuit);
+			assertTrue(optimizer.getNonFreeGatesAfter() <= optimizer.getNonFreeGatesBefore());
+			for (int i = 0; i < 8; i++){
+				assertSameOutputs("trial " + trial, circuit, optimizer, randomInputs(circuit, random));
+			}
+		}
+	}
+	
+	public void testRedundantGates() throws Exception {
+		//The input of the first party is wire 0 and the input of the second party is wire 1.
+		Gate[] gates = {
+			new Gate(0, truthTable(0), new int[]{0}, new int[]{2}),				//NOT a
+			new Gate(1, truthTable(0, 3), new int[]{2, 1}, new int[]{3}),		//(NOT a) XNOR b, which is a XOR b
+			new Gate(2, truthTable(3), new int[]{0, 1}, new int[]{4}),			//a AND b
+			new Gate(3, truthTable(3), new int[]{0, 1}, new int[]{5}),			//a AND b again
+			new Gate(4, truthTable(1), new int[]{4}, new int[]{6}),				//the identity of a AND b
+			new Gate(5, truthTable(1, 2, 3), new int[]{0, 1}, new int[]{7})		//a OR b, which is not used
+		};
+		BooleanCircuit circuit = new BooleanCircuit(gates, new int[]{3, 5, 6}, inputWires(new int[]{0}, new int[]{1}));
+		CircuitOptimizer optimizer = new CircuitOptimizer(circuit);
+		
+		//Only a single AND gate is left.
+		assertEquals(5, optimizer.getNonFreeGatesBefore());
+		assertEquals(1, optimizer.getNonFreeGatesAfter());
+		assertEquals(3, optimizer.getOptimizedCircuit().getOutputWireIndices().length);
+		for (int a = 0; a < 2; a++){
+			for (int b = 0; b < 2; b++){
+				Map<Integer, Byte> inputs = new HashMap<Integer, Byte>();
+				inputs.put(Integer.valueOf(0), Byte.valueOf((byte) a));
+				inputs.put(Integer.valueOf(1), Byte.valueOf((byte) b));
+				assertSameOutputs("a=" + a + ", b=" + b, circuit, optimizer, inputs);
+			}
+		}
+	}
+	
+	public void testConstantOutput() throws Exception {
+		//a AND (NOT a) is always zero.
+		Gate[] gates = {
+			new Gate(0, truthTable(0), new int[]{0}, new int[]{2}),
+			new Gate(1, truthTable(3), new int[]{0, 2}, new int[]{3}),
+			new Gate(2, truthTable(1, 2), new int[]{3, 1}, new int[]{4})
+		};
+		BooleanCircuit circuit = new BooleanCircuit(gates, new int[]{3, 4}, inputWires(new int[]{0}, new int[]{1}));
+		CircuitOptimizer optimizer = new CircuitOptimizer(circuit);
+		assertEquals(0, optimizer.getNonFreeGatesAfter());
+		for (int a = 0; a < 2; a++){
+			for (int b = 0; b < 2; b++){
+				Map<Integer, Byte> inputs = new HashMap<Integer, Byte>();
+				inputs.put(Integer.valueOf(0), Byte.valueOf((byte) a));
+				inputs.put(Integer.valueOf(1), Byte.valueOf((byte) b));
+				assertSameOutputs("a=" + a + ", b=" + b, circuit, optimizer, inputs);
+			}
+		}
+	}
+	
+	public void testGarbledOptimizedCircuit() throws Exception {
+		//The copies of the outputs and the constants are XOR gates of the same wire, which should be garbled as any other XOR gate.
+		Gate[] gates = {
+			new Gate(0, truthTable(0), new int[]{0}, new int[]{3}),
+			new Gate(1, truthTable(3), new int[]{0, 3}, new int[]{4}),
+			new Gate(2, truthTable(1), new int[]{1}, new int[]{5}),
+			new Gate(3, truthTable(1, 2, 3), new int[]{1, 2}, new int[]{6})
+		};
+		BooleanCircuit circuit = new BooleanCircuit(gates, new int[]{4, 5, 0, 6, 6}, inputWires(new int[]{0, 1}, new int[]{2}));
+		CircuitOptimizer optimizer = new CircuitOptimizer(circuit);
+		BooleanCircuit optimized = optimizer.getOptimizedCircuit();
+		
+		GarblingParameters[] parameters = {
+			new FreeXORGarblingParameters(optimized, new AESFixedKeyMultiKeyEncryption(new BcAES()), false),
+			new FreeXORGarblingParameters(optimized, new AESFixedKeyMultiKeyEncryption(new BcAES()), true),
+			new HalfGatesGarblingParameters(optimized, new AESFixedKeyMultiKeyEncryption(new BcAES()))
+		};
+		for (int p = 0; p < parameters.length; p++){
+			GarbledBooleanCircuit garbled = new GarbledBooleanCircuitImp(parameters[p]);
+			CircuitCreationValues values = garbled.garble();
+			for (int input = 0; input < 8; input++){
+				Map<Integer, Byte> inputs = new HashMap<Integer, Byte>();
+				Map<Integer, Byte> optimizedInputs = new HashMap<Integer, Byte>();
+				for (int wire = 0; wire < 3; wire++){
+					Byte value = Byte.valueOf((byte) ((input >> wire) & 1));
+					inputs.put(Integer.valueOf(wire), value);
+					optimizedInputs.put(optimizer.getWireMapping().get(wire), value);
+				}
+				assertSameOutputs("input " + input, circuit, optimizer, inputs);
+				
+				garbled.setGarbledInputFromUngarbledInput(optimizedInputs, values.getAllInputWireValues());
+				Map<Integer, Wire> outputs = garbled.translate(garbled.compute());
+				Map<Integer, Wire> expected = optimized.compute();
+				for (int w : optimized.getOutputWireIndices()){
+					assertEquals("input " + input, expected.get(w).getValue(), outputs.get(w).getValue());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Checks that the original and the optimized circuits give the same outputs for the given inputs.
+	 */
+	private static void assertSameOutputs(String message, BooleanCircuit circuit, CircuitOptimizer optimizer, Map<Integer, Byte> inputs) throws Exception {
+		BooleanCircuit optimized = optimizer.getOptimizedCircuit();
+		Map<Integer, Integer> mapping = optimizer.getWireMapping();
+		for (int party = 1; party <= circuit.getNumberOfParties(); party++){
+			Map<Integer, Wire> original = new HashMap<Integer, Wire>();
+			Map<Integer, Wire> renumbered = new HashMap<Integer, Wire>();
+			List<Integer> wires = circuit.getInputWireIndices(party);
+			for (int i = 0; i < wires.size(); i++){
+				byte value = inputs.get(wires.get(i)).byteValue();
+				original.put(wires.get(i), new Wire(value));
+				renumbered.put(mapping.get(wires.get(i)), new Wire(value));
+			}
+			circuit.setInputs(original, party);
+			optimized.setInputs(renumbered, party);
+		}
+		Map<Integer, Wire> expected = circuit.compute();
+		Map<Integer, Wire> actual = optimized.compute();
+		
+		//The optimized circuit has an output wire for each output wire of the original circuit, in the same order.
+		int[] outputs = circuit.getOutputWireIndices();
+		int[] optimizedOutputs = optimized.getOutputWireIndices();
+		assertEquals(message, outputs.length, optimizedOutputs.length);
+		for (int i = 0; i < outputs.length; i++){
+			assertEquals(message + ", output " + i, expected.get(outputs[i]).getValue(), actual.get(optimizedOutputs[i]).getValue());
+		}
+	}
+	
+	/**
+	 * Creates a small circuit with gates of up to three inputs, some of them with more than one output wire. The truth tables 
+	 * are random, identities or parities, so all the passes of the optimizer have something to do. The wire indices are 
+	 * not consecutive.
+	 */
+	private static BooleanCircuit randomCircuit(Random random){
+		int numberOfInputs = 1 + random.nextInt(5);
+		int[][] partyWires = new int[2][];
+		partyWires[0] = new int[(numberOfInputs + 1) / 2];
+		partyWires[1] = new int[numberOfInputs / 2];
+		List<Integer> wires = new ArrayList<Integer>();
+		int nextWire = 100;
+		for (int i = 0; i < numberOfInputs; i++){
+			partyWires[i % 2][i / 2] = nextWire;
+			wires.add(Integer.valueOf(nextWire));
+			nextWire += 3;
+		}
+		
+		int numberOfGates = 1 + random.nextInt(25);
+		Gate[] gates = new Gate[numberOfGates];
+		for (int g = 0; g < numberOfGates; g++){
+			int numberOfGateInputs = random.nextInt(4);
+			int[] inputs = new int[numberOfGateInputs];
+			for (int i = 0; i < numberOfGateInputs; i++){
+				inputs[i] = wires.get(random.nextInt(wires.size())).intValue();
+			}
+			BitSet truthTable = new BitSet();
+			int kind = random.nextInt(3);
+			for (int row = 0; row < (1 << numberOfGateInputs); row++){
+				boolean value;
+				if (kind == 0){
+					value = random.nextBoolean();
+				} else if (kind == 1 && numberOfGateInputs > 0){
+					//The identity of the first input.
+					value = ((row >> (numberOfGateInputs - 1)) & 1) == 1;
+				} else {
+					value = Integer.bitCount(row) % 2 == 1;
+				}
+				truthTable.set(row, value);
+			}
+			int[] outputs = new int[(random.nextInt(8) == 0) ? 2 : 1];
+			for (int i = 0; i < outputs.length; i++){
+				outputs[i] = nextWire;
+				wires.add(Integer.valueOf(nextWire));
+				nextWire += 2;
+			}
+			gates[g] = new Gate(g, truthTable, inputs, outputs);
+		}
+		
+		int[] outputWires = new int[1 + random.nextInt(4)];
+		for (int i = 0; i < outputWires.length; i++){
+			outputWires[i] = wires.get(random.nextInt(wires.size())).intValue();
+		}
+		return new BooleanCircuit(gates, outputWires, inputWires(partyWires[0], partyWires[1]));
+	}
+	
+	private static Map<Integer, Byte> randomInputs(BooleanCircuit circuit, Random random) throws Exception {
+		Map<Integer, Byte> inputs = new HashMap<Integer, Byte>();
+		for (int party = 1; party <= circuit.getNumberOfParties(); party++){
+			List<Integer> wires = circuit.getInputWireIndices(party);
+			for (int i = 0; i < wires.size(); i++){
+				inputs.put(wires.get(i), Byte.valueOf((byte) random.nextInt(2)));
+			}
+		}
+		return inputs;
+	}
+	
+	private static ArrayList<ArrayList<Integer>> inputWires(int[] firstParty, int[] secondParty){
+		ArrayList<ArrayList<Integer>> eachPartysInputWires = new ArrayList<ArrayList<Integer>>();
+		int[][] parties = {firstParty, secondParty};
+		for (int p = 0; p < parties.length; p++){
+			ArrayList<Integer> wires = new ArrayList<Integer>();
+			for (int i = 0; i < parties[p].length; i++){
+				wires.add(Integer.valueOf(parties[p][i]));
+			}
+			eachPartysInputWires.add(wires);
+		}
+		return eachPartysInputWires;
+	}
+	
+	private static BitSet truthTable(int... rows){
+		BitSet truthTable = new BitSet();
+		for (int i = 0; i < rows.length; i++){
+			truthTable.set(rows[i]);
+		}
+		return truthTable;
+	}
+}
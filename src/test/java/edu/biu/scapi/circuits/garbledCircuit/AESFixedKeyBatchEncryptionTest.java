@@ -0,0 +1,218 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.InvalidParameterSpecException;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import junit.framework.TestCase;
+
+import org.bouncycastle.crypto.engines.AESEngine;
+
+import edu.biu.scapi.circuits.encryption.AESFixedKeyMultiKeyEncryption;
+import edu.biu.scapi.primitives.prf.AES;
+import edu.biu.scapi.primitives.prf.PrpFixedBatch;
+import edu.biu.scapi.primitives.prf.bc.BcAES;
+import edu.biu.scapi.primitives.prf.bc.BcPRP;
+import edu.biu.scapi.primitives.prf.cryptopp.CryptoPpAES;
+
+/**
+ * Tests that the batch path of {@link AESFixedKeyMultiKeyEncryption}, which the garbled gates use, gives the same rows as 
+ * setting the key and the tweak of each row and calling encrypt.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class AESFixedKeyBatchEncryptionTest extends TestCase {
+
+	private static final int SIZE = 16;
+	
+	private Random random;
+	
+	@Override
+	protected void setUp() throws Exception {
+		random = new Random(15);
+	}
+	
+	/**
+	 * An AES that computes the blocks of a batch one by one, so that the batch path is taken without the native libraries.
+	 * Counts the batch calls.
+	 */
+	private static class CountingBatchAES extends BcPRP implements AES, PrpFixedBatch {
+		
+		int batches;
+		
+		CountingBatchAES(){
+			super(new AESEngine());
+		}
+		
+		public void computeBlocks(byte[] inBytes, int inOff, byte[] outBytes, int outOff, int numBlocks) {
+			batches++;
+			for (int i = 0; i < numBlocks; i++){
+				computeBlock(inBytes, inOff + i * SIZE, outBytes, outOff + i * SIZE);
+			}
+		}
+		
+		public SecretKey generateKey(AlgorithmParameterSpec keyParams) throws InvalidParameterSpecException {
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	public void testBlockByBlock() throws Exception {
+		checkAllModes(new BcAES());
+	}
+	
+	public void testBatch() throws Exception {
+		CountingBatchAES aes = new CountingBatchAES();
+		checkAllModes(aes);
+		//Each of the 16 calls of processRows computes its whole batch in a single call.
+		assertEquals(16, aes.batches);
+	}
+	
+	public void testNativeBatch() throws Exception {
+		AES aes;
+		try {
+			aes = new CryptoPpAES();
+		} catch (LinkageError e) {
+			//The native library is not installed.
+			return;
+		}
+		checkAllModes(aes);
+	}
+	
+	public void testSingleRow() throws Exception {
+		for (int freeXor = 0; freeXor < 2; freeXor++){
+			AESFixedKeyMultiKeyEncryption batch = new AESFixedKeyMultiKeyEncryption(new CountingBatchAES());
+			AESFixedKeyMultiKeyEncryption single = new AESFixedKeyMultiKeyEncryption(new BcAES());
+			batch.setFreeXor(freeXor == 1);
+			single.setFreeXor(freeXor == 1);
+			
+			byte[] keys = randomBytes(2 * SIZE);
+			byte[] tweak = randomBytes(SIZE);
+			byte[] text = randomBytes(SIZE + 3);
+			byte[] out = new byte[SIZE + 5];
+			batch.processRow(keys, new int[]{SIZE, 0}, tweak, text, 3, out, 5);
+			
+			byte[] plaintext = new byte[SIZE];
+			System.arraycopy(text, 3, plaintext, 0, SIZE);
+			byte[] row = new byte[SIZE];
+			System.arraycopy(out, 5, row, 0, SIZE);
+			assertEquals(toHex(encrypt(single, keys, new int[]{SIZE, 0}, tweak, 0, plaintext)), toHex(row));
+		}
+	}
+	
+	/**
+	 * Checks the batch path with and without free XOR, with one and two keys per row, and with and without texts.
+	 */
+	private void checkAllModes(AES aes) throws Exception {
+		AESFixedKeyMultiKeyEncryption batch = new AESFixedKeyMultiKeyEncryption(aes);
+		AESFixedKeyMultiKeyEncryption single = new AESFixedKeyMultiKeyEncryption(new BcAES());
+		for (int freeXor = 0; freeXor < 2; freeXor++){
+			batch.setFreeXor(freeXor == 1);
+			single.setFreeXor(freeXor == 1);
+			for (int keysPerRow = 1; keysPerRow <= 2; keysPerRow++){
+				checkRows(batch, single, keysPerRow, 7, true);
+				checkRows(batch, single, keysPerRow, 4, false);
+			}
+		}
+	}
+	
+	/**
+	 * Processes the given number of rows in one batch and compares each row with the encryption of the row on its own.
+	 */
+	private void checkRows(AESFixedKeyMultiKeyEncryption batch, AESFixedKeyMultiKeyEncryption single, int keysPerRow, 
+			int numRows, boolean withTexts) throws Exception {
+		//The keys are in a shared array in a random order, as the labels in a wire store.
+		int numKeys = numRows * keysPerRow;
+		byte[] keys = randomBytes(numKeys * SIZE + 10);
+		int[] keyOffsets = new int[numKeys];
+		for (int i = 0; i < numKeys; i++){
+			keyOffsets[i] = 10 + random.nextInt(numKeys) * SIZE;
+		}
+		byte[] tweaks = randomBytes(numRows * SIZE + 2);
+		byte[] texts = withTexts ? randomBytes(numRows * SIZE + 1) : null;
+		
+		byte[] out = new byte[numRows * SIZE + 4];
+		batch.processRows(keys, keyOffsets, keysPerRow, tweaks, 2, texts, 1, out, 4, numRows);
+		
+		String message = "keys per row: " + keysPerRow + ", rows: " + numRows + ", texts: " + withTexts;
+		for (int row = 0; row < numRows; row++){
+			byte[] plaintext = new byte[SIZE];
+			if (withTexts){
+				System.arraycopy(texts, 1 + row * SIZE, plaintext, 0, SIZE);
+			}
+			int[] rowKeys = new int[keysPerRow];
+			System.arraycopy(keyOffsets, row * keysPerRow, rowKeys, 0, keysPerRow);
+			byte[] expected = encrypt(single, keys, rowKeys, tweaks, 2 + row * SIZE, plaintext);
+			
+			byte[] actual = new byte[SIZE];
+			System.arraycopy(out, 4 + row * SIZE, actual, 0, SIZE);
+			assertEquals(message + ", row " + row, toHex(expected), toHex(actual));
+		}
+		
+		//The results may be written over the keys, since all the keys are read first.
+		byte[] keysCopy = new byte[keys.length];
+		System.arraycopy(keys, 0, keysCopy, 0, keys.length);
+		batch.processRows(keysCopy, keyOffsets, keysPerRow, tweaks, 2, texts, 1, keysCopy, 10, numRows);
+		for (int i = 0; i < numRows * SIZE; i++){
+			assertEquals(message + ", over the keys", out[4 + i], keysCopy[10 + i]);
+		}
+	}
+	
+	/**
+	 * Encrypts a row by setting the keys and the tweak of the scheme, as the garbled gates did before the batch path.
+	 */
+	private static byte[] encrypt(AESFixedKeyMultiKeyEncryption mes, byte[] keys, int[] keyOffsets, byte[] tweaks, int tweakOffset, 
+			byte[] plaintext) throws Exception {
+		SecretKey[] rowKeys = new SecretKey[keyOffsets.length];
+		for (int i = 0; i < keyOffsets.length; i++){
+			byte[] key = new byte[SIZE];
+			System.arraycopy(keys, keyOffsets[i], key, 0, SIZE);
+			rowKeys[i] = new SecretKeySpec(key, "");
+		}
+		byte[] tweak = new byte[SIZE];
+		System.arraycopy(tweaks, tweakOffset, tweak, 0, SIZE);
+		mes.setKey(mes.generateMultiKey(rowKeys));
+		mes.setTweak(tweak);
+		return mes.encrypt(plaintext);
+	}
+	
+	private byte[] randomBytes(int length){
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+	
+	private static String toHex(byte[] bytes){
+		StringBuilder hex = new StringBuilder();
+		for (int i = 0; i < bytes.length; i++){
+			hex.append(Integer.toHexString((bytes[i] & 0xFF) | 0x100).substring(1));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,244 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.circuits.circuit.Wire;
+import edu.biu.scapi.circuits.encryption.AESFixedKeyMultiKeyEncryption;
+import edu.biu.scapi.primitives.hash.CryptographicHash;
+import edu.biu.scapi.primitives.hash.bc.BcSHA256;
+import edu.biu.scapi.primitives.prf.bc.BcAES;
+import edu.biu.scapi.primitives.prg.bc.BcRC4;
+
+/**
+ * Tests the extended garbled circuit, whose input and output keys can be set by the user.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class GarbledBooleanCircuitExtendedTest extends TestCase {
+
+	private BooleanCircuit circuit;
+	private Random random;
+	
+	@Override
+	protected void setUp() throws Exception {
+		circuit = GarbledCircuitTestUtil.adderCircuit(8);
+		random = new Random(11);
+	}
+	
+	public void testUserInputKeys() throws Exception {
+		for (int scheme = 0; scheme < GarbledCircuitTestUtil.SCHEMES.length; scheme++){
+			GarbledBooleanCircuitExtended garbled = createCircuit(scheme);
+			Map<Integer, SecretKey[]> inputKeys = randomKeys(allInputWires());
+			garbled.setInputKeys(inputKeys);
+			CircuitCreationValues values = garbled.garble();
+			assertSame(GarbledCircuitTestUtil.SCHEMES[scheme], inputKeys.get(0)[1], values.getAllInputWireValues().get(0)[1]);
+			
+			checkOutputs(garbled, values, GarbledCircuitTestUtil.SCHEMES[scheme]);
+		}
+	}
+	
+	public void testKeysAreKeptForFollowingGarblings() throws Exception {
+		GarbledBooleanCircuitExtended garbled = createCircuit(0);
+		Map<Integer, SecretKey[]> inputKeys = randomKeys(allInputWires());
+		Map<Integer, SecretKey[]> outputKeys = randomKeys(outputWires());
+		garbled.setInputKeys(inputKeys);
+		garbled.setOutputKeys(outputKeys);
+		
+		for (int i = 0; i < 2; i++){
+			CircuitCreationValues values = garbled.garble();
+			assertSame(inputKeys.get(0)[1], values.getAllInputWireValues().get(0)[1]);
+			int output = circuit.getOutputWireIndices()[0];
+			assertSame(outputKeys.get(output)[0], values.getAllOutputWireValues().get(output)[0]);
+			checkOutputs(garbled, values, "garbling " + i);
+		}
+		
+		//Without keys, the following garblings sample the keys again.
+		garbled.setInputKeys(null);
+		CircuitCreationValues values = garbled.garble();
+		assertFalse(inputKeys.get(0)[1] == values.getAllInputWireValues().get(0)[1]);
+		checkOutputs(garbled, values, "garbling without input keys");
+	}
+	
+	public void testKeysForNextGarblingOnly() throws Exception {
+		GarbledBooleanCircuitExtended garbled = createCircuit(0);
+		Map<Integer, SecretKey[]> inputKeys = randomKeys(allInputWires());
+		garbled.setInputKeys(inputKeys, true);
+		
+		CircuitCreationValues values = garbled.garble();
+		assertSame(inputKeys.get(0)[1], values.getAllInputWireValues().get(0)[1]);
+		checkOutputs(garbled, values, "garbling with the keys");
+		
+		values = garbled.garble();
+		assertFalse(inputKeys.get(0)[1] == values.getAllInputWireValues().get(0)[1]);
+		checkOutputs(garbled, values, "garbling after the keys were used");
+	}
+	
+	public void testGarbleAndHash() throws Exception {
+		byte[] seed = new byte[16];
+		random.nextBytes(seed);
+		for (int scheme = 0; scheme < GarbledCircuitTestUtil.SCHEMES.length; scheme++){
+			String name = GarbledCircuitTestUtil.SCHEMES[scheme];
+			
+			//Hashing while garbling gives the hash of the garbled tables.
+			GarbledBooleanCircuitExtended garbled = createSeededCircuit(scheme);
+			garbled.garble(seed);
+			byte[] expected = garbled.getHashedCircuit(new BcSHA256());
+			GarbledBooleanCircuitExtended streamed = createSeededCircuit(scheme);
+			byte[] hashed = streamed.garbleAndHash(seed, new BcSHA256());
+			assertTrue(name, Arrays.equals(expected, hashed));
+			
+			//The circuit can be used after it was garbled again.
+			checkOutputs(streamed, streamed.garble(seed), name);
+			
+			//The verifier garbles its own circuit from the seed.
+			assertTrue(name, createSeededCircuit(scheme).verifyHashedCircuit(seed, null, null, new BcSHA256(), hashed));
+			assertTrue(name, createSeededCircuit(scheme).verify(seed, null, null, new BcSHA256(), hashed));
+		}
+	}
+	
+	public void testGarbleAndHashWithInputKeys() throws Exception {
+		byte[] seed = new byte[16];
+		random.nextBytes(seed);
+		Map<Integer, SecretKey[]> inputKeys = randomKeys(allInputWires());
+		
+		GarbledBooleanCircuitExtended garbled = createSeededCircuit(0);
+		garbled.setInputKeys(inputKeys);
+		byte[] hashed = garbled.garbleAndHash(seed, new BcSHA256());
+		
+		GarbledBooleanCircuitExtended verifier = createSeededCircuit(0);
+		assertTrue(verifier.verifyHashedCircuit(seed, inputKeys, null, new BcSHA256(), hashed));
+		//The keys of the verification are not used by the following garblings.
+		CircuitCreationValues values = verifier.garble(seed);
+		assertFalse(inputKeys.get(0)[1] == values.getAllInputWireValues().get(0)[1]);
+		
+		//Other input keys give another circuit.
+		assertFalse(createSeededCircuit(0).verifyHashedCircuit(seed, randomKeys(allInputWires()), null, new BcSHA256(), hashed));
+		assertFalse(createSeededCircuit(0).verifyHashedCircuit(seed, null, null, new BcSHA256(), hashed));
+	}
+	
+	public void testTamperedHash() throws Exception {
+		byte[] seed = new byte[16];
+		random.nextBytes(seed);
+		CryptographicHash hash = new BcSHA256();
+		byte[] hashed = createSeededCircuit(4).garbleAndHash(seed, hash);
+		GarbledBooleanCircuitExtended verifier = createSeededCircuit(4);
+		
+		//A changed hash.
+		byte[] tampered = hashed.clone();
+		tampered[tampered.length / 2] ^= 1;
+		assertFalse(verifier.verifyHashedCircuit(seed, null, null, hash, tampered));
+		
+		//Another seed.
+		byte[] otherSeed = seed.clone();
+		otherSeed[0] ^= 1;
+		assertFalse(verifier.verifyHashedCircuit(otherSeed, null, null, hash, hashed));
+		
+		//A circuit whose garbled table was changed.
+		GarbledBooleanCircuitExtended garbled = createSeededCircuit(4);
+		garbled.garble(seed);
+		byte[][] tables = garbled.getGarbledTables().toDoubleByteArray();
+		for (int i = 0; i < tables.length; i++){
+			if (tables[i] != null && tables[i].length > 0){
+				tables[i][0] ^= 1;
+				break;
+			}
+		}
+		assertFalse(garbled.verifyHashedCircuit(hash, hashed));
+		
+		assertTrue(verifier.verifyHashedCircuit(seed, null, null, hash, hashed));
+	}
+	
+	/**
+	 * Computes the garbled circuit on random inputs and compares the outputs to the ungarbled circuit.
+	 */
+	void checkOutputs(GarbledBooleanCircuitExtended garbled, CircuitCreationValues values, String message) throws Exception {
+		for (int i = 0; i < 3; i++){
+			Map<Integer, Byte> inputs = GarbledCircuitTestUtil.randomInputs(circuit, random);
+			Map<Integer, Wire> expected = GarbledCircuitTestUtil.computePlain(circuit, inputs);
+			garbled.setGarbledInputFromUngarbledInput(inputs, values.getAllInputWireValues());
+			try {
+				GarbledCircuitTestUtil.assertOutputs(expected, garbled.translate(garbled.compute()));
+			} catch (junit.framework.AssertionFailedError e) {
+				fail(message + ": " + e.getMessage());
+			}
+		}
+	}
+	
+	GarbledBooleanCircuitExtended createCircuit(int scheme){
+		GarbledBooleanCircuit inner = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, scheme));
+		return new GarbledBooleanCircuitExtendedImp(inner, new AESFixedKeyMultiKeyEncryption(new BcAES()));
+	}
+	
+	/**
+	 * Creates a circuit that is garbled using a seed.
+	 */
+	GarbledBooleanCircuitExtended createSeededCircuit(int scheme){
+		GarbledBooleanCircuit inner = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, scheme), new BcRC4());
+		return new GarbledBooleanCircuitExtendedImp(inner, new AESFixedKeyMultiKeyEncryption(new BcAES()), new BcRC4());
+	}
+	
+	List<Integer> allInputWires() throws Exception {
+		List<Integer> wires = circuit.getInputWireIndices(1);
+		wires.addAll(circuit.getInputWireIndices(2));
+		return wires;
+	}
+	
+	List<Integer> outputWires(){
+		List<Integer> wires = new ArrayList<Integer>();
+		for (int w : circuit.getOutputWireIndices()){
+			wires.add(w);
+		}
+		return wires;
+	}
+	
+	/**
+	 * Chooses two random keys for each of the given wires.
+	 */
+	Map<Integer, SecretKey[]> randomKeys(List<Integer> wires){
+		Map<Integer, SecretKey[]> keys = new HashMap<Integer, SecretKey[]>();
+		for (int w : wires){
+			SecretKey[] pair = new SecretKey[2];
+			for (int i = 0; i < 2; i++){
+				byte[] key = new byte[16];
+				random.nextBytes(key);
+				pair[i] = new SecretKeySpec(key, "");
+			}
+			keys.put(w, pair);
+		}
+		return keys;
+	}
+}
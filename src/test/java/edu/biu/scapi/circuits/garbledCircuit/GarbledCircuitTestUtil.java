@@ -0,0 +1,207 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Assert;
+import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.circuits.circuit.BooleanCircuitBuilder;
+import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.circuit.Wire;
+import edu.biu.scapi.circuits.encryption.AESFixedKeyMultiKeyEncryption;
+import edu.biu.scapi.primitives.prf.bc.BcAES;
+
+/**
+ * Creates the circuits and inputs that the tests of the garbled circuits use, and checks the outputs against the ungarbled circuit.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+final class GarbledCircuitTestUtil {
+
+	/**
+	 * The names of the garbling schemes that {@link #createParameters(BooleanCircuit, int)} creates, by their indices.
+	 */
+	static final String[] SCHEMES = {"free XOR", "free XOR with row reduction", "standard", "standard with row reduction", "half gates"};
+	
+	private GarbledCircuitTestUtil(){}
+	
+	/**
+	 * Creates the parameters of the scheme with the given index in {@link #SCHEMES}.
+	 */
+	static GarblingParameters createParameters(BooleanCircuit circuit, int scheme){
+		switch (scheme){
+			case 0: return new FreeXORGarblingParameters(circuit, new AESFixedKeyMultiKeyEncryption(new BcAES()), false);
+			case 1: return new FreeXORGarblingParameters(circuit, new AESFixedKeyMultiKeyEncryption(new BcAES()), true);
+			case 2: return new StandardGarblingParameters(circuit, new AESFixedKeyMultiKeyEncryption(new BcAES()), new SecureRandom(), false);
+			case 3: return new StandardGarblingParameters(circuit, new AESFixedKeyMultiKeyEncryption(new BcAES()), new SecureRandom(), true);
+			default: return new HalfGatesGarblingParameters(circuit, new AESFixedKeyMultiKeyEncryption(new BcAES()));
+		}
+	}
+	
+	/**
+	 * Creates a circuit of two parties with the given number of random gates.<p>
+	 * The gates use all the truth tables of two inputs except for the constant ones, whose garbled tables can not be verified. 
+	 * One of every ten gates has a single input. Each gate takes its inputs from any of the former wires, so the circuit has 
+	 * many levels of different sizes.
+	 */
+	static BooleanCircuit randomCircuit(long seed, int numberOfGates){
+		Random random = new Random(seed);
+		int inputsPerParty = 8;
+		ArrayList<ArrayList<Integer>> eachPartysInputWires = new ArrayList<ArrayList<Integer>>();
+		for (int party = 0; party < 2; party++){
+			ArrayList<Integer> wires = new ArrayList<Integer>();
+			for (int i = 0; i < inputsPerParty; i++){
+				wires.add(Integer.valueOf(party * inputsPerParty + i));
+			}
+			eachPartysInputWires.add(wires);
+		}
+		
+		List<Gate> gates = new ArrayList<Gate>();
+		int nextWire = 2 * inputsPerParty;
+		for (int g = 0; g < numberOfGates; g++){
+			int numberOfInputs = (g % 10 == 0) ? 1 : 2;
+			int[] inputWires = new int[numberOfInputs];
+			for (int i = 0; i < numberOfInputs; i++){
+				inputWires[i] = random.nextInt(nextWire);
+			}
+			int rows = 1 << numberOfInputs;
+			int table = (numberOfInputs == 1) ? 1 + random.nextInt(2) : 1 + g % 14;
+			BitSet truthTable = new BitSet();
+			for (int row = 0; row < rows; row++){
+				if (((table >> row) & 1) == 1){
+					truthTable.set(row);
+				}
+			}
+			gates.add(new Gate(g, truthTable, inputWires, new int[]{nextWire++}));
+		}
+		
+		int[] outputWires = new int[32];
+		for (int i = 0; i < outputWires.length; i++){
+			outputWires[i] = nextWire - 1 - i;
+		}
+		return new BooleanCircuit(gates.toArray(new Gate[gates.size()]), outputWires, eachPartysInputWires);
+	}
+	
+	/**
+	 * Creates a circuit of two parties whose gates are arranged in the given number of levels of the given width. Each gate takes 
+	 * its inputs from the previous level, so all the gates of a level can be computed at the same time.
+	 */
+	static BooleanCircuit layeredCircuit(long seed, int numberOfLevels, int width){
+		Random random = new Random(seed);
+		ArrayList<ArrayList<Integer>> eachPartysInputWires = new ArrayList<ArrayList<Integer>>();
+		for (int party = 0; party < 2; party++){
+			ArrayList<Integer> wires = new ArrayList<Integer>();
+			for (int i = 0; i < width / 2; i++){
+				wires.add(Integer.valueOf(party * (width / 2) + i));
+			}
+			eachPartysInputWires.add(wires);
+		}
+		
+		List<Gate> gates = new ArrayList<Gate>();
+		int levelStart = 0;
+		int nextWire = 2 * (width / 2);
+		for (int level = 0; level < numberOfLevels; level++){
+			int levelEnd = nextWire;
+			for (int g = 0; g < width; g++){
+				int[] inputWires = {levelStart + random.nextInt(levelEnd - levelStart), levelStart + random.nextInt(levelEnd - levelStart)};
+				int table = 1 + random.nextInt(14);
+				BitSet truthTable = new BitSet();
+				for (int row = 0; row < 4; row++){
+					if (((table >> row) & 1) == 1){
+						truthTable.set(row);
+					}
+				}
+				gates.add(new Gate(gates.size(), truthTable, inputWires, new int[]{nextWire++}));
+			}
+			levelStart = levelEnd;
+		}
+		
+		int[] outputWires = new int[width];
+		for (int i = 0; i < width; i++){
+			outputWires[i] = levelStart + i;
+		}
+		return new BooleanCircuit(gates.toArray(new Gate[gates.size()]), outputWires, eachPartysInputWires);
+	}
+	
+	/**
+	 * Creates a circuit that adds two numbers of the given length and compares them.
+	 */
+	static BooleanCircuit adderCircuit(int bits) throws Exception {
+		BooleanCircuitBuilder builder = new BooleanCircuitBuilder(2);
+		int[] x = builder.addInputs(1, bits);
+		int[] y = builder.addInputs(2, bits);
+		int[] sum = builder.add(x, y);
+		int[] outputs = new int[sum.length + 1];
+		System.arraycopy(sum, 0, outputs, 0, sum.length);
+		outputs[sum.length] = builder.greaterThan(x, y);
+		return builder.build(outputs);
+	}
+	
+	/**
+	 * Chooses a random bit for each input wire of the given circuit.
+	 */
+	static Map<Integer, Byte> randomInputs(BooleanCircuit circuit, Random random) throws Exception {
+		Map<Integer, Byte> inputs = new HashMap<Integer, Byte>();
+		for (int party = 1; party <= circuit.getNumberOfParties(); party++){
+			List<Integer> wires = circuit.getInputWireIndices(party);
+			for (int i = 0; i < wires.size(); i++){
+				inputs.put(wires.get(i), Byte.valueOf((byte) random.nextInt(2)));
+			}
+		}
+		return inputs;
+	}
+	
+	/**
+	 * Computes the ungarbled circuit on the given inputs.
+	 */
+	static Map<Integer, Wire> computePlain(BooleanCircuit circuit, Map<Integer, Byte> inputs) throws Exception {
+		for (int party = 1; party <= circuit.getNumberOfParties(); party++){
+			Map<Integer, Wire> partyInputs = new HashMap<Integer, Wire>();
+			List<Integer> wires = circuit.getInputWireIndices(party);
+			for (int i = 0; i < wires.size(); i++){
+				partyInputs.put(wires.get(i), new Wire(inputs.get(wires.get(i)).byteValue()));
+			}
+			circuit.setInputs(partyInputs, party);
+		}
+		return circuit.compute();
+	}
+	
+	/**
+	 * Checks that the translated outputs of a garbled circuit are the outputs of the ungarbled circuit.
+	 */
+	static void assertOutputs(Map<Integer, Wire> expected, Map<Integer, Wire> actual){
+		Assert.assertEquals(expected.size(), actual.size());
+		for (Map.Entry<Integer, Wire> entry : expected.entrySet()){
+			Assert.assertEquals("wire " + entry.getKey(), entry.getValue().getValue(), actual.get(entry.getKey()).getValue());
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.circuits.encryption.AESFixedKeyMultiKeyEncryption;
+import edu.biu.scapi.primitives.hash.CryptographicHash;
+import edu.biu.scapi.primitives.hash.bc.BcSHA256;
+import edu.biu.scapi.primitives.prf.bc.BcAES;
+import edu.biu.scapi.primitives.prg.PseudorandomGenerator;
+import edu.biu.scapi.primitives.prg.bc.BcRC4;
+
+/**
+ * Tests that the copies that the {@link GarbledCircuitsEngine} garbles can be evaluated, and that they are the circuits that 
+ * {@link GarbledBooleanCircuitExtendedImp} garbles from the same seeds.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class GarbledCircuitsEngineTest extends TestCase {
+
+	private static final int WORKERS = 3;
+	//More copies than workers, so that each worker garbles several copies with the same gates.
+	private static final int COPIES = 7;
+	
+	private ExecutorService executor;
+	private BooleanCircuit circuit;
+	private Random random;
+	private byte[][] seeds;
+	
+	@Override
+	protected void setUp() throws Exception {
+		executor = Executors.newFixedThreadPool(WORKERS);
+		circuit = GarbledCircuitTestUtil.adderCircuit(8);
+		random = new Random(16);
+		seeds = new byte[COPIES][16];
+		for (int i = 0; i < COPIES; i++){
+			random.nextBytes(seeds[i]);
+		}
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		executor.shutdown();
+	}
+	
+	public void testGarbleAndEvaluate() throws Exception {
+		for (int scheme = 0; scheme < GarbledCircuitTestUtil.SCHEMES.length; scheme++){
+			String name = GarbledCircuitTestUtil.SCHEMES[scheme];
+			GarbledCircuitsEngine.GarbledCopy[] copies = createEngine(scheme).garble(seeds);
+			assertEquals(COPIES, copies.length);
+			
+			for (int copy = 0; copy < COPIES; copy++){
+				CircuitCreationValues values = copies[copy].getCreationValues();
+				
+				//The evaluator receives the garbled tables and the translation table of the copy.
+				GarbledBooleanCircuit evaluator = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, scheme));
+				evaluator.setGarbledTables(copies[copy].getGarbledTables());
+				evaluator.setTranslationTable(values.getTranslationTable());
+				for (int i = 0; i < 3; i++){
+					Map<Integer, Byte> inputs = GarbledCircuitTestUtil.randomInputs(circuit, random);
+					evaluator.setGarbledInputFromUngarbledInput(inputs, values.getAllInputWireValues());
+					GarbledCircuitTestUtil.assertOutputs(GarbledCircuitTestUtil.computePlain(circuit, inputs), 
+							evaluator.translate(evaluator.compute()));
+				}
+				
+				//The copy is the circuit that is garbled from its seed on its own.
+				GarbledBooleanCircuitExtended single = createSeededCircuit(scheme);
+				CircuitCreationValues singleValues = single.garble(seeds[copy]);
+				assertEquals(name + ", copy " + copy, singleValues.getTranslationTable(), values.getTranslationTable());
+				byte[][] singleTables = single.getGarbledTables().toDoubleByteArray();
+				byte[][] copyTables = copies[copy].getGarbledTables().toDoubleByteArray();
+				assertEquals(singleTables.length, copyTables.length);
+				for (int g = 0; g < singleTables.length; g++){
+					assertTrue(name + ", copy " + copy + ", gate " + g, Arrays.equals(singleTables[g], copyTables[g]));
+				}
+			}
+		}
+	}
+	
+	public void testHashAndVerify() throws Exception {
+		for (int scheme = 0; scheme < GarbledCircuitTestUtil.SCHEMES.length; scheme++){
+			String name = GarbledCircuitTestUtil.SCHEMES[scheme];
+			GarbledCircuitsEngine engine = createEngine(scheme);
+			byte[][] hashed = engine.getHashedCircuits(seeds, createHashes());
+			for (int copy = 0; copy < COPIES; copy++){
+				byte[] expected = createSeededCircuit(scheme).garbleAndHash(seeds[copy], new BcSHA256());
+				assertTrue(name + ", copy " + copy, Arrays.equals(expected, hashed[copy]));
+			}
+			
+			//Change the hash of one copy and swap the hashes of two others.
+			hashed[1][0] ^= 1;
+			byte[] temp = hashed[3];
+			hashed[3] = hashed[4];
+			hashed[4] = temp;
+			boolean[] verified = engine.verify(seeds, hashed, createHashes());
+			for (int copy = 0; copy < COPIES; copy++){
+				assertEquals(name + ", copy " + copy, copy != 1 && copy != 3 && copy != 4, verified[copy]);
+			}
+		}
+	}
+	
+	public void testIllegalArguments() throws Exception {
+		try {
+			new GarbledCircuitsEngine(executor, new GarblingParameters[]{GarbledCircuitTestUtil.createParameters(circuit, 0)}, 
+					new PseudorandomGenerator[]{new BcRC4(), new BcRC4()});
+			fail("the numbers of parameters and prgs are different");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		try {
+			new GarbledCircuitsEngine(executor, new GarblingParameters[]{GarbledCircuitTestUtil.createParameters(circuit, 0), 
+					GarbledCircuitTestUtil.createParameters(GarbledCircuitTestUtil.adderCircuit(8), 0)}, 
+					new PseudorandomGenerator[]{new BcRC4(), new BcRC4()});
+			fail("the workers garble different circuits");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		try {
+			createEngine(0).getHashedCircuits(seeds, new BcSHA256());
+			fail("a single hash was given to several workers");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+	
+	private GarbledCircuitsEngine createEngine(int scheme){
+		GarblingParameters[] parameters = new GarblingParameters[WORKERS];
+		PseudorandomGenerator[] prgs = new PseudorandomGenerator[WORKERS];
+		for (int i = 0; i < WORKERS; i++){
+			parameters[i] = GarbledCircuitTestUtil.createParameters(circuit, scheme);
+			prgs[i] = new BcRC4();
+		}
+		return new GarbledCircuitsEngine(executor, parameters, prgs);
+	}
+	
+	private static CryptographicHash[] createHashes(){
+		CryptographicHash[] hashes = new CryptographicHash[WORKERS];
+		for (int i = 0; i < WORKERS; i++){
+			hashes[i] = new BcSHA256();
+		}
+		return hashes;
+	}
+	
+	/**
+	 * Creates a circuit that is garbled on its own using a seed.
+	 */
+	private GarbledBooleanCircuitExtended createSeededCircuit(int scheme){
+		GarbledBooleanCircuit inner = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, scheme), new BcRC4());
+		return new GarbledBooleanCircuitExtendedImp(inner, new AESFixedKeyMultiKeyEncryption(new BcAES()), new BcRC4());
+	}
+}
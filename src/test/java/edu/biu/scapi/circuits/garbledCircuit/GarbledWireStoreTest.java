@@ -0,0 +1,127 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the dense store of the garbled values of the wires.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class GarbledWireStoreTest extends TestCase {
+
+	public void testSetAndGet() throws Exception {
+		GarbledWireStore store = new GarbledWireStore(4, 16);
+		byte[] value = label(7);
+		store.setLabel(2, value, 0);
+		
+		assertTrue(store.isSet(2));
+		assertFalse(store.isSet(1));
+		assertFalse(store.isSet(-1));
+		assertFalse(store.isSet(100));
+		assertTrue(Arrays.equals(value, store.getLabel(2)));
+		assertTrue(Arrays.equals(value, store.getWire(2).getValueAndSignalBit().getEncoded()));
+		assertEquals(value[15] & 1, store.getSignalBit(2));
+		
+		//The store keeps a copy of the value.
+		value[0] ^= 1;
+		assertFalse(Arrays.equals(value, store.getLabel(2)));
+	}
+	
+	public void testXorAndCopy() throws Exception {
+		GarbledWireStore store = new GarbledWireStore(4, 16);
+		byte[] first = label(1);
+		byte[] second = label(2);
+		store.setLabel(0, first, 0);
+		store.setLabel(1, second, 0);
+		store.xor(2, 0, 1);
+		store.copy(3, 2);
+		
+		byte[] xor = store.getLabel(2);
+		for (int i = 0; i < 16; i++){
+			assertEquals((byte) (first[i] ^ second[i]), xor[i]);
+		}
+		assertTrue(Arrays.equals(xor, store.getLabel(3)));
+		assertTrue(store.isSet(3));
+	}
+	
+	public void testGrow() throws Exception {
+		GarbledWireStore store = new GarbledWireStore(2, 16);
+		store.setLabel(0, label(1), 0);
+		store.setLabel(10, label(2), 0);
+		assertTrue(store.getNumberOfWires() > 10);
+		assertTrue(Arrays.equals(label(1), store.getLabel(0)));
+		assertTrue(Arrays.equals(label(2), store.getLabel(10)));
+		assertFalse(store.isSet(5));
+	}
+	
+	public void testMapConversion() throws Exception {
+		GarbledWireStore store = new GarbledWireStore(8, 16);
+		Map<Integer, GarbledWire> wires = new HashMap<Integer, GarbledWire>();
+		wires.put(1, new GarbledWire(new SecretKeySpec(label(1), "")));
+		wires.put(5, new GarbledWire(new SecretKeySpec(label(5), "")));
+		store.putAll(wires);
+		
+		Map<Integer, GarbledWire> map = store.toMap(new int[]{1, 3, 5});
+		assertEquals(2, map.size());
+		assertTrue(Arrays.equals(label(1), map.get(1).getValueAndSignalBit().getEncoded()));
+		assertTrue(Arrays.equals(label(5), map.get(5).getValueAndSignalBit().getEncoded()));
+		
+		store.clear();
+		assertFalse(store.isSet(1));
+		assertEquals(0, store.toMap(new int[]{1, 5}).size());
+	}
+	
+	public void testIllegalValues() throws Exception {
+		GarbledWireStore store = new GarbledWireStore(4, 16);
+		try {
+			store.setLabel(-1, label(1), 0);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		try {
+			store.putWire(0, new GarbledWire(new SecretKeySpec(new byte[8], "")));
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+	
+	private static byte[] label(int seed){
+		byte[] label = new byte[16];
+		for (int i = 0; i < label.length; i++){
+			label[i] = (byte) (seed * 31 + i);
+		}
+		return label;
+	}
+}
@@ -0,0 +1,167 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.circuit.Wire;
+
+/**
+ * Tests that all the garbling schemes compute the function of the circuit: Free XOR and standard garbling, with and without 
+ * row reduction, and half gates.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class GarblingSchemesTest extends TestCase {
+
+	//The size of a row of a garbled table, which is the block size of the AES.
+	private static final int ROW_SIZE = 16;
+	
+	private Random random;
+	
+	@Override
+	protected void setUp() throws Exception {
+		random = new Random(3);
+	}
+	
+	public void testRandomCircuit() throws Exception {
+		checkAllSchemes(GarbledCircuitTestUtil.randomCircuit(5, 400));
+	}
+	
+	public void testAdderCircuit() throws Exception {
+		checkAllSchemes(GarbledCircuitTestUtil.adderCircuit(16));
+	}
+	
+	/**
+	 * Garbles the circuit in each scheme, computes it on a circuit of the other party and compares the outputs to the ungarbled circuit.
+	 */
+	private void checkAllSchemes(BooleanCircuit circuit) throws Exception {
+		for (int scheme = 0; scheme < GarbledCircuitTestUtil.SCHEMES.length; scheme++){
+			GarbledBooleanCircuit garbler = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, scheme));
+			CircuitCreationValues values = garbler.garble();
+			
+			GarbledBooleanCircuit evaluator = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, scheme));
+			evaluator.setGarbledTables(garbler.getGarbledTables());
+			evaluator.setTranslationTable(garbler.getTranslationTable());
+			
+			for (int i = 0; i < 3; i++){
+				Map<Integer, Byte> inputs = GarbledCircuitTestUtil.randomInputs(circuit, random);
+				Map<Integer, Wire> expected = GarbledCircuitTestUtil.computePlain(circuit, inputs);
+				evaluator.setGarbledInputFromUngarbledInput(inputs, values.getAllInputWireValues());
+				try {
+					GarbledCircuitTestUtil.assertOutputs(expected, evaluator.translate(evaluator.compute()));
+				} catch (junit.framework.AssertionFailedError e) {
+					fail(GarbledCircuitTestUtil.SCHEMES[scheme] + ": " + e.getMessage());
+				}
+			}
+			assertTrue(GarbledCircuitTestUtil.SCHEMES[scheme], evaluator.verify(values.getAllInputWireValues()));
+		}
+	}
+	
+	public void testVerifyDetectsModifiedTables() throws Exception {
+		BooleanCircuit circuit = GarbledCircuitTestUtil.adderCircuit(8);
+		for (int scheme = 0; scheme < GarbledCircuitTestUtil.SCHEMES.length; scheme++){
+			GarbledBooleanCircuit garbler = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, scheme));
+			CircuitCreationValues values = garbler.garble();
+			byte[][] tables = garbler.getGarbledTables().toDoubleByteArray();
+			for (int i = 0; i < tables.length; i++){
+				if (tables[i] != null && tables[i].length > 0){
+					tables[i][0] ^= 1;
+					break;
+				}
+			}
+			
+			GarbledBooleanCircuit evaluator = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, scheme));
+			evaluator.setGarbledTables(garbler.getGarbledTables());
+			evaluator.setTranslationTable(garbler.getTranslationTable());
+			assertFalse(GarbledCircuitTestUtil.SCHEMES[scheme], evaluator.verify(values.getAllInputWireValues()));
+		}
+	}
+	
+	public void testHalfGatesTablesAreSmaller() throws Exception {
+		BooleanCircuit circuit = GarbledCircuitTestUtil.adderCircuit(16);
+		GarbledBooleanCircuit rowReduction = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, 1));
+		GarbledBooleanCircuit halfGates = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, 4));
+		rowReduction.garble();
+		halfGates.garble();
+		
+		//Half gates uses two rows for each AND gate instead of three.
+		long rowReductionSize = size(rowReduction.getGarbledTables().toDoubleByteArray());
+		long halfGatesSize = size(halfGates.getGarbledTables().toDoubleByteArray());
+		assertEquals(rowReductionSize * 2 / 3, halfGatesSize);
+	}
+	
+	public void testHalfGatesTableSize() throws Exception {
+		BooleanCircuit circuit = GarbledCircuitTestUtil.randomCircuit(9, 400);
+		GarbledBooleanCircuit rowReduction = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, 1));
+		GarbledBooleanCircuit halfGates = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, 4));
+		rowReduction.garble();
+		halfGates.garble();
+		byte[][] rowReductionTables = rowReduction.getGarbledTables().toDoubleByteArray();
+		byte[][] halfGatesTables = halfGates.getGarbledTables().toDoubleByteArray();
+		
+		Gate[] gates = circuit.getGates();
+		int andGates = 0;
+		for (int i = 0; i < gates.length; i++){
+			if (gates[i].getInputWireIndices().length != 2){
+				continue;
+			}
+			int rows = gates[i].getTruthTable().cardinality();
+			if (rows == 2 && isXor(gates[i].getTruthTable())){
+				//XOR and XNOR gates are free in both schemes.
+				assertNull("gate " + i, halfGatesTables[i]);
+				assertNull("gate " + i, rowReductionTables[i]);
+			} else if (rows % 2 == 1){
+				//Each gate of the AND type has two rows, one for each half gate, instead of three rows with row reduction.
+				assertEquals("gate " + i, 2 * ROW_SIZE, halfGatesTables[i].length);
+				assertEquals("gate " + i, 3 * ROW_SIZE, rowReductionTables[i].length);
+				andGates++;
+			}
+		}
+		assertTrue(andGates > gates.length / 2);
+	}
+	
+	/**
+	 * Returns true if the given table of a gate with two inputs is XOR or XNOR.
+	 */
+	private static boolean isXor(BitSet truthTable){
+		return truthTable.get(0) == truthTable.get(3) && truthTable.get(1) == truthTable.get(2) && truthTable.get(0) != truthTable.get(1);
+	}
+	
+	private static long size(byte[][] tables){
+		long size = 0;
+		for (int i = 0; i < tables.length; i++){
+			if (tables[i] != null){
+				size += tables[i].length;
+			}
+		}
+		return size;
+	}
+}
@@ -0,0 +1,195 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.crypto.SecretKey;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.primitives.prg.bc.BcRC4;
+
+/**
+ * Tests that garbling and computing a circuit on several threads gives the same results as on a single thread.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class ParallelGarblingTest extends TestCase {
+
+	private static final int WORKERS = 3;
+	
+	private ExecutorService executor;
+	private BooleanCircuit circuit;
+	private Random random;
+	
+	@Override
+	protected void setUp() throws Exception {
+		executor = Executors.newFixedThreadPool(WORKERS);
+		//The levels are wide enough to be split between the workers.
+		circuit = GarbledCircuitTestUtil.layeredCircuit(7, 6, 256);
+		random = new Random(7);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		executor.shutdown();
+	}
+	
+	/**
+	 * Creates a circuit of the given scheme that uses all the workers.
+	 */
+	private GarbledBooleanCircuitImp createParallelCircuit(int scheme){
+		return createParallelCircuit(circuit, scheme, WORKERS);
+	}
+	
+	/**
+	 * Creates a circuit of the given scheme that uses the given number of workers.
+	 */
+	private GarbledBooleanCircuitImp createParallelCircuit(BooleanCircuit circuit, int scheme, int workers){
+		GarbledBooleanCircuitImp parallel = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, scheme), new BcRC4());
+		GarblingParameters[] workerParameters = new GarblingParameters[workers - 1];
+		for (int i = 0; i < workerParameters.length; i++){
+			workerParameters[i] = GarbledCircuitTestUtil.createParameters(circuit, scheme);
+		}
+		parallel.setParallelExecution(executor, workerParameters);
+		return parallel;
+	}
+	
+	public void testSameTablesAsSerial() throws Exception {
+		byte[] seed = new byte[16];
+		random.nextBytes(seed);
+		for (int scheme = 0; scheme < GarbledCircuitTestUtil.SCHEMES.length; scheme++){
+			String name = GarbledCircuitTestUtil.SCHEMES[scheme];
+			GarbledBooleanCircuitImp serial = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, scheme), new BcRC4());
+			GarbledBooleanCircuitImp parallel = createParallelCircuit(scheme);
+			CircuitCreationValues serialValues = serial.garble(seed);
+			CircuitCreationValues parallelValues = parallel.garble(seed);
+			
+			byte[][] serialTables = serial.getGarbledTables().toDoubleByteArray();
+			byte[][] parallelTables = parallel.getGarbledTables().toDoubleByteArray();
+			assertEquals(name, serialTables.length, parallelTables.length);
+			for (int i = 0; i < serialTables.length; i++){
+				assertTrue(name + ", gate " + i, Arrays.equals(serialTables[i], parallelTables[i]));
+			}
+			assertEquals(name, serialValues.getTranslationTable(), parallelValues.getTranslationTable());
+			
+			Map<Integer, Byte> inputs = GarbledCircuitTestUtil.randomInputs(circuit, random);
+			parallel.setGarbledInputFromUngarbledInput(inputs, parallelValues.getAllInputWireValues());
+			GarbledCircuitTestUtil.assertOutputs(GarbledCircuitTestUtil.computePlain(circuit, inputs), parallel.translate(parallel.compute()));
+		}
+	}
+	
+	public void testSameKeysAndOutputsAsSerial() throws Exception {
+		//The levels of the random circuit are narrow, so some of the workers have no gates in most levels.
+		BooleanCircuit[] circuits = {circuit, GarbledCircuitTestUtil.randomCircuit(8, 300)};
+		for (int c = 0; c < circuits.length; c++){
+			for (int workers = 2; workers <= WORKERS; workers++){
+				for (int scheme = 0; scheme < GarbledCircuitTestUtil.SCHEMES.length; scheme++){
+					String name = GarbledCircuitTestUtil.SCHEMES[scheme] + ", circuit " + c + ", " + workers + " workers";
+					GarbledBooleanCircuitImp serial = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuits[c], scheme), new BcRC4());
+					GarbledBooleanCircuitImp parallel = createParallelCircuit(circuits[c], scheme, workers);
+					
+					//The workers garble the second seed with the gates they kept from the first one.
+					for (int i = 0; i < 2; i++){
+						byte[] seed = new byte[16];
+						random.nextBytes(seed);
+						CircuitCreationValues serialValues = serial.garble(seed);
+						CircuitCreationValues parallelValues = parallel.garble(seed);
+						assertSameKeys(name, serialValues.getAllInputWireValues(), parallelValues.getAllInputWireValues());
+						assertSameKeys(name, serialValues.getAllOutputWireValues(), parallelValues.getAllOutputWireValues());
+						byte[][] serialTables = serial.getGarbledTables().toDoubleByteArray();
+						byte[][] parallelTables = parallel.getGarbledTables().toDoubleByteArray();
+						for (int g = 0; g < serialTables.length; g++){
+							assertTrue(name + ", garbling " + i + ", gate " + g, Arrays.equals(serialTables[g], parallelTables[g]));
+						}
+						
+						//Both circuits reach the same garbled values on all the output wires, not only the same translated outputs.
+						Map<Integer, Byte> inputs = GarbledCircuitTestUtil.randomInputs(circuits[c], random);
+						serial.setGarbledInputFromUngarbledInput(inputs, serialValues.getAllInputWireValues());
+						parallel.setGarbledInputFromUngarbledInput(inputs, parallelValues.getAllInputWireValues());
+						Map<Integer, GarbledWire> serialOutputs = serial.compute();
+						Map<Integer, GarbledWire> parallelOutputs = parallel.compute();
+						assertEquals(name, serialOutputs.size(), parallelOutputs.size());
+						for (Map.Entry<Integer, GarbledWire> entry : serialOutputs.entrySet()){
+							assertTrue(name + ", wire " + entry.getKey(), Arrays.equals(entry.getValue().getValueAndSignalBit().getEncoded(), 
+									parallelOutputs.get(entry.getKey()).getValueAndSignalBit().getEncoded()));
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Checks that both maps hold the same pair of keys for each wire.
+	 */
+	private static void assertSameKeys(String message, Map<Integer, SecretKey[]> expected, Map<Integer, SecretKey[]> actual){
+		assertEquals(message, expected.keySet(), actual.keySet());
+		for (Map.Entry<Integer, SecretKey[]> entry : expected.entrySet()){
+			for (int i = 0; i < 2; i++){
+				assertTrue(message + ", wire " + entry.getKey(), Arrays.equals(entry.getValue()[i].getEncoded(), 
+						actual.get(entry.getKey())[i].getEncoded()));
+			}
+		}
+	}
+	
+	public void testParallelEvaluation() throws Exception {
+		for (int scheme = 0; scheme < GarbledCircuitTestUtil.SCHEMES.length; scheme++){
+			GarbledBooleanCircuit garbler = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, scheme));
+			CircuitCreationValues values = garbler.garble();
+			
+			//Only the evaluator uses the workers.
+			GarbledBooleanCircuitImp evaluator = createParallelCircuit(scheme);
+			evaluator.setGarbledTables(garbler.getGarbledTables());
+			evaluator.setTranslationTable(garbler.getTranslationTable());
+			for (int i = 0; i < 3; i++){
+				Map<Integer, Byte> inputs = GarbledCircuitTestUtil.randomInputs(circuit, random);
+				evaluator.setGarbledInputFromUngarbledInput(inputs, values.getAllInputWireValues());
+				GarbledCircuitTestUtil.assertOutputs(GarbledCircuitTestUtil.computePlain(circuit, inputs), evaluator.translate(evaluator.compute()));
+			}
+			
+			//The circuit keeps working after the parallel execution was stopped.
+			evaluator.setParallelExecution(null);
+			Map<Integer, Byte> inputs = GarbledCircuitTestUtil.randomInputs(circuit, random);
+			evaluator.setGarbledInputFromUngarbledInput(inputs, values.getAllInputWireValues());
+			GarbledCircuitTestUtil.assertOutputs(GarbledCircuitTestUtil.computePlain(circuit, inputs), evaluator.translate(evaluator.compute()));
+		}
+	}
+	
+	public void testWorkersOfAnotherScheme() throws Exception {
+		GarbledBooleanCircuitImp freeXor = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, 0));
+		try {
+			freeXor.setParallelExecution(executor, GarbledCircuitTestUtil.createParameters(circuit, 4));
+			fail("workers of another scheme were accepted");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+}
@@ -0,0 +1,285 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.garbledCircuit;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.circuits.circuit.Wire;
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.twoPartyComm.LoopbackChannel;
+import edu.biu.scapi.primitives.prg.bc.BcRC4;
+
+/**
+ * Tests sending the garbled tables while garbling, using {@link GarbledBooleanCircuitImp#garbleAndSend(edu.biu.scapi.comm.Channel, int, GarbledKeysHandler)} 
+ * and {@link GarbledBooleanCircuitImp#receiveAndCompute(edu.biu.scapi.comm.Channel)}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class StreamingGarblingTest extends TestCase {
+
+	//A chunk of a single byte holds one table at a time. The largest chunk holds all the tables.
+	private static final int[] CHUNK_SIZES = {1, 4096, 1 << 20};
+	
+	private BooleanCircuit circuit;
+	private LoopbackChannel[] channels;
+	private Random random;
+	
+	@Override
+	protected void setUp() throws Exception {
+		circuit = GarbledCircuitTestUtil.randomCircuit(11, 1000);
+		channels = LoopbackChannel.createPair(false);
+		random = new Random(11);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		channels[0].close();
+		channels[1].close();
+	}
+	
+	public void testAllSchemesAndChunkSizes() throws Exception {
+		for (int scheme = 0; scheme < GarbledCircuitTestUtil.SCHEMES.length; scheme++){
+			for (int i = 0; i < CHUNK_SIZES.length; i++){
+				Map<Integer, Byte> inputs = GarbledCircuitTestUtil.randomInputs(circuit, random);
+				Map<Integer, Wire> expected = GarbledCircuitTestUtil.computePlain(circuit, inputs);
+				byte[] seed = null;
+				if (i == 1){
+					seed = new byte[16];
+					random.nextBytes(seed);
+				}
+				try {
+					GarbledCircuitTestUtil.assertOutputs(expected, stream(scheme, CHUNK_SIZES[i], seed, inputs));
+				} catch (junit.framework.AssertionFailedError e) {
+					fail(GarbledCircuitTestUtil.SCHEMES[scheme] + ", chunks of " + CHUNK_SIZES[i] + " bytes: " + e.getMessage());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Records the chunks that are sent over the channel it wraps.
+	 */
+	private static class RecordingChannel implements Channel {
+		private Channel channel;
+		private List<byte[]> chunks = new ArrayList<byte[]>();
+		
+		RecordingChannel(Channel channel){
+			this.channel = channel;
+		}
+		
+		public void send(Serializable data) throws IOException {
+			chunks.add(((byte[]) data).clone());
+			channel.send(data);
+		}
+		
+		public Serializable receive() throws ClassNotFoundException, IOException {
+			return channel.receive();
+		}
+		
+		public void close() {
+			channel.close();
+		}
+		
+		public boolean isClosed() {
+			return channel.isClosed();
+		}
+	}
+	
+	public void testChunkBoundaries() throws Exception {
+		/*
+		 * The records of the free XOR tables are of 40 bytes (gates of one input) and 72 bytes (gates of two inputs), including 
+		 * the header of 8 bytes. The sizes are around the records, so a chunk ends exactly after a record, one byte before 
+		 * or after it, or can not hold a single record.
+		 */
+		int[] chunkSizes = {1, 39, 40, 41, 71, 72, 73, 143, 144, 145, 1000};
+		byte[] seed = new byte[16];
+		random.nextBytes(seed);
+		GarbledBooleanCircuitImp reference = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, 0), new BcRC4());
+		reference.garble(seed);
+		byte[][] expectedTables = reference.getGarbledTables().toDoubleByteArray();
+		
+		for (int c = 0; c < chunkSizes.length; c++){
+			int chunkSize = chunkSizes[c];
+			String name = "chunks of " + chunkSize + " bytes";
+			Map<Integer, Byte> inputs = GarbledCircuitTestUtil.randomInputs(circuit, random);
+			RecordingChannel recorder = new RecordingChannel(channels[0]);
+			GarbledCircuitTestUtil.assertOutputs(GarbledCircuitTestUtil.computePlain(circuit, inputs), stream(0, chunkSize, seed, inputs, recorder));
+			
+			List<byte[]> chunks = recorder.chunks;
+			assertEquals(name, 0, chunks.get(chunks.size() - 1).length);
+			byte[][] tables = new byte[expectedTables.length][];
+			int lastGate = -1;
+			for (int i = 0; i < chunks.size() - 1; i++){
+				ByteBuffer chunk = ByteBuffer.wrap(chunks.get(i));
+				int records = 0;
+				while (chunk.hasRemaining()){
+					int gate = chunk.getInt();
+					assertTrue(name + ", the gates are not in order", gate > lastGate);
+					lastGate = gate;
+					tables[gate] = new byte[chunk.getInt()];
+					chunk.get(tables[gate]);
+					records++;
+				}
+				assertTrue(name + ", chunk " + i + " is empty", records > 0);
+				//Only a chunk of a single record may be larger than the chunk size.
+				if (records > 1){
+					assertTrue(name + ", chunk " + i + " is too large", chunk.capacity() <= chunkSize);
+				}
+				//A chunk is sent only when the next record does not fit in it.
+				if (i + 2 < chunks.size()){
+					int nextRecord = 8 + ByteBuffer.wrap(chunks.get(i + 1)).getInt(4);
+					assertTrue(name + ", chunk " + i + " was sent too early", chunk.capacity() + nextRecord > chunkSize);
+				}
+			}
+			
+			//The stream holds the tables of the garbling of the same seed, and nothing else.
+			for (int g = 0; g < expectedTables.length; g++){
+				if (expectedTables[g] == null){
+					assertNull(name + ", gate " + g, tables[g]);
+				} else {
+					assertTrue(name + ", gate " + g, Arrays.equals(expectedTables[g], tables[g]));
+				}
+			}
+		}
+	}
+	
+	public void testTablesAreReleased() throws Exception {
+		final GarbledBooleanCircuitImp garbler = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, 0));
+		Thread evaluator = new Thread(){
+			public void run(){
+				//Drop the tables until the channel is closed at the end of the test.
+				try {
+					while (true){
+						channels[1].receive();
+					}
+				} catch (Exception e) {
+					//The channel was closed.
+				}
+			}
+		};
+		evaluator.setDaemon(true);
+		evaluator.start();
+		garbler.garbleAndSend(channels[0], 4096, null);
+		
+		byte[][] tables = garbler.getGarbledTables().toDoubleByteArray();
+		for (int i = 0; i < tables.length; i++){
+			assertNull("gate " + i, tables[i]);
+		}
+	}
+	
+	public void testKeysHandlerFailure() throws Exception {
+		GarbledBooleanCircuitImp garbler = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, 0));
+		final GarbledBooleanCircuitImp evaluator = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, 0));
+		//The evaluator did not get the keys, but it has inputs of another garbling in order to start receiving.
+		GarbledBooleanCircuitImp other = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, 0));
+		evaluator.setGarbledInputFromUngarbledInput(GarbledCircuitTestUtil.randomInputs(circuit, random), other.garble().getAllInputWireValues());
+		
+		final Exception[] error = new Exception[1];
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					evaluator.receiveAndCompute(channels[1]);
+				} catch (Exception e) {
+					error[0] = e;
+				}
+			}
+		};
+		thread.start();
+		try {
+			garbler.garbleAndSend(channels[0], 4096, new GarbledKeysHandler() {
+				public void keysCreated(CircuitCreationValues values) throws IOException {
+					throw new IOException("the keys could not be delivered");
+				}
+			});
+			fail("the failure of the keys handler was not reported");
+		} catch (IOException e) {
+			assertEquals("the keys could not be delivered", e.getMessage());
+		}
+		
+		//The evaluator gets an error instead of waiting for the tables.
+		thread.join(10000);
+		assertFalse("the evaluator was not released", thread.isAlive());
+		assertTrue(error[0] instanceof IOException);
+	}
+	
+	/**
+	 * Garbles and sends the circuit on another thread, receives and computes it on this thread and returns the translated outputs.
+	 */
+	private Map<Integer, Wire> stream(int scheme, int chunkSize, byte[] seed, Map<Integer, Byte> inputs) throws Exception {
+		return stream(scheme, chunkSize, seed, inputs, channels[0]);
+	}
+	
+	/**
+	 * Garbles and sends the circuit over the given channel, which should lead to the second channel of the pair.
+	 */
+	private Map<Integer, Wire> stream(int scheme, final int chunkSize, final byte[] seed, Map<Integer, Byte> inputs, final Channel channel) throws Exception {
+		final GarbledBooleanCircuitImp garbler = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, scheme), new BcRC4());
+		GarbledBooleanCircuitImp evaluator = new GarbledBooleanCircuitImp(GarbledCircuitTestUtil.createParameters(circuit, scheme));
+		
+		//The keys are passed to the evaluator before the tables are sent.
+		final BlockingQueue<CircuitCreationValues> keys = new ArrayBlockingQueue<CircuitCreationValues>(1);
+		final GarbledKeysHandler handler = new GarbledKeysHandler() {
+			public void keysCreated(CircuitCreationValues values) {
+				keys.add(values);
+			}
+		};
+		final Exception[] error = new Exception[1];
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					if (seed == null){
+						garbler.garbleAndSend(channel, chunkSize, handler);
+					} else {
+						garbler.garbleAndSend(seed, channel, chunkSize, handler);
+					}
+				} catch (Exception e) {
+					error[0] = e;
+				}
+			}
+		};
+		thread.start();
+		
+		CircuitCreationValues values = keys.take();
+		evaluator.setTranslationTable(values.getTranslationTable());
+		evaluator.setGarbledInputFromUngarbledInput(inputs, values.getAllInputWireValues());
+		Map<Integer, Wire> outputs = evaluator.translate(evaluator.receiveAndCompute(channels[1]));
+		thread.join();
+		if (error[0] != null){
+			throw error[0];
+		}
+		return outputs;
+	}
+}
@@ -0,0 +1,218 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.comm.twoPartyComm.LoopbackChannel;
+
+/**
+ * Tests the asynchronous sending of the {@link PipelinedChannel}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class PipelinedChannelTest extends TestCase {
+
+	/**
+	 * A channel that takes a while to send each message.
+	 */
+	private static class SlowChannel implements Channel {
+		private Channel channel;
+		
+		SlowChannel(Channel channel){
+			this.channel = channel;
+		}
+		
+		public void send(Serializable data) throws IOException {
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				throw new IOException(e.toString());
+			}
+			channel.send(data);
+		}
+		
+		public Serializable receive() throws ClassNotFoundException, IOException {
+			return channel.receive();
+		}
+		
+		public void close() {
+			channel.close();
+		}
+		
+		public boolean isClosed() {
+			return channel.isClosed();
+		}
+	}
+	
+	public void testOrder() throws Exception {
+		LoopbackChannel[] pair = LoopbackChannel.createPair(false);
+		PipelinedChannel sender = new PipelinedChannel(pair[0], 16);
+		try {
+			//More messages than the queue holds, so sendAsync waits for the writer thread.
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int i = 0; i < 500; i++){
+				futures.add(sender.sendAsync(new byte[]{(byte) i}));
+				if (i % 100 == 0){
+					sender.send("message " + i);
+				}
+			}
+			sender.flush();
+			for (int i = 0; i < futures.size(); i++){
+				assertTrue(futures.get(i).isDone());
+				futures.get(i).get();
+			}
+			
+			for (int i = 0; i < 500; i++){
+				assertEquals((byte) i, pair[1].receiveBytes()[0]);
+				if (i % 100 == 0){
+					assertEquals("message " + i, pair[1].receive());
+				}
+			}
+		} finally {
+			sender.close();
+		}
+	}
+	
+	public void testReceiveFlushes() throws Exception {
+		final LoopbackChannel[] pair = LoopbackChannel.createPair(false);
+		PipelinedChannel channel = new PipelinedChannel(pair[0]);
+		Thread echo = new Thread(){
+			public void run(){
+				try {
+					pair[1].send(pair[1].receiveBytes());
+				} catch (IOException e) {
+					//The main thread fails on a missing message.
+				}
+			}
+		};
+		echo.start();
+		try {
+			channel.sendAsync(new byte[]{3});
+			assertEquals(3, channel.receiveBytes()[0]);
+		} finally {
+			channel.close();
+		}
+		echo.join();
+	}
+	
+	public void testCloseWhileWritesArePending() throws Exception {
+		LoopbackChannel[] pair = LoopbackChannel.createPair(false);
+		PipelinedChannel sender = new PipelinedChannel(new SlowChannel(pair[0]));
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int i = 0; i < 50; i++){
+			futures.add(sender.sendAsync(new byte[]{(byte) i}));
+		}
+		sender.close();
+		
+		//The queued messages are sent before the channel is closed.
+		for (int i = 0; i < futures.size(); i++){
+			assertTrue(futures.get(i).isDone());
+			futures.get(i).get();
+		}
+		for (int i = 0; i < 50; i++){
+			assertEquals((byte) i, pair[1].receiveBytes()[0]);
+		}
+		try {
+			pair[1].receiveBytes();
+			fail("a message was received after the channel was closed");
+		} catch (EOFException e) {
+			//expected
+		}
+		try {
+			sender.sendAsync(new byte[]{1});
+			fail("a message was queued after the channel was closed");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+	
+	public void testSendWhileClosing() throws Exception {
+		LoopbackChannel[] pair = LoopbackChannel.createPair(false);
+		final PipelinedChannel sender = new PipelinedChannel(new SlowChannel(pair[0]), 4);
+		final List<Future<Void>> futures = Collections.synchronizedList(new ArrayList<Future<Void>>());
+		
+		//Threads keep on queuing messages, so some of them wait for a free place in the queue while the channel is closed.
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++){
+			threads[t] = new Thread(){
+				public void run(){
+					try {
+						while (true){
+							futures.add(sender.sendAsync(new byte[]{1}));
+						}
+					} catch (IOException e) {
+						//The channel was closed.
+					}
+				}
+			};
+			threads[t].start();
+		}
+		Thread.sleep(50);
+		sender.close();
+		for (int t = 0; t < threads.length; t++){
+			threads[t].join();
+		}
+		
+		//Each future is either done or failed. None of them is left waiting.
+		for (int i = 0; i < futures.size(); i++){
+			try {
+				futures.get(i).get(5, TimeUnit.SECONDS);
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IOException);
+			}
+		}
+	}
+	
+	public void testFailure() throws Exception {
+		LoopbackChannel[] pair = LoopbackChannel.createPair(false);
+		PipelinedChannel sender = new PipelinedChannel(pair[0]);
+		pair[0].close();
+		Future<Void> future = sender.sendAsync(new byte[]{1});
+		try {
+			future.get();
+			fail("a message was sent on a closed channel");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		//The following operations fail too.
+		try {
+			sender.send(new byte[]{2});
+			fail("a message was sent after a failure");
+		} catch (IOException e) {
+			//expected
+		}
+		sender.close();
+	}
+}
@@ -0,0 +1,138 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.comm.BufferedChannel;
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.RawChannel;
+
+/**
+ * Tests the binary framing of the {@link BinaryTCPSocketChannel}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class BinaryTCPSocketChannelTest extends TestCase {
+
+	//Each test listens on its own ports, since the listener of the setup does not reuse a port whose connections were just closed.
+	private static int nextPort = 8101;
+	
+	private RawChannel sender;
+	private RawChannel receiver;
+	
+	@Override
+	protected void setUp() throws Exception {
+		InetAddress localhost = InetAddress.getByName("127.0.0.1");
+		final SocketPartyData first = new SocketPartyData(localhost, nextPort++);
+		final SocketPartyData second = new SocketPartyData(localhost, nextPort++);
+		
+		//The setup of both parties should run at the same time.
+		final Channel[] other = new Channel[1];
+		final Exception[] error = new Exception[1];
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					other[0] = connect(new BinarySocketCommunicationSetup(second, first));
+				} catch (Exception e) {
+					error[0] = e;
+				}
+			}
+		};
+		thread.start();
+		sender = (RawChannel) connect(new BinarySocketCommunicationSetup(first, second));
+		thread.join();
+		if (error[0] != null){
+			throw error[0];
+		}
+		receiver = (RawChannel) other[0];
+	}
+	
+	private static Channel connect(BinarySocketCommunicationSetup setup) throws Exception {
+		Map<String, Channel> channels = setup.prepareForCommunication(1, 10000);
+		return channels.values().iterator().next();
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		sender.close();
+		receiver.close();
+	}
+	
+	public void testEmptyMessage() throws Exception {
+		sender.send(new byte[0]);
+		sender.send(new byte[]{7});
+		
+		assertEquals(0, receiver.receiveBytes().length);
+		assertTrue(Arrays.equals(new byte[]{7}, receiver.receiveBytes()));
+	}
+	
+	public void testRawAndObjectMessages() throws Exception {
+		byte[] bytes = new byte[100000];
+		for (int i = 0; i < bytes.length; i++){
+			bytes[i] = (byte) i;
+		}
+		sender.send(bytes);
+		sender.send("object");
+		sender.send((java.io.Serializable) bytes);
+		
+		assertTrue(Arrays.equals(bytes, receiver.receiveBytes()));
+		assertEquals("object", receiver.receive());
+		assertTrue(Arrays.equals(bytes, (byte[]) receiver.receive()));
+	}
+	
+	public void testObjectIsNotRaw() throws Exception {
+		sender.send(Integer.valueOf(5));
+		try {
+			receiver.receiveBytes();
+			fail("an object frame was received as raw bytes");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+	
+	public void testCloseWhileDataIsQueued() throws Exception {
+		//Write several messages without flushing them and close the channel. The messages should be delivered before the end of the stream.
+		BufferedChannel buffered = (BufferedChannel) sender;
+		for (int i = 0; i < 10; i++){
+			buffered.write(new byte[]{(byte) i});
+		}
+		sender.close();
+		
+		for (int i = 0; i < 10; i++){
+			assertTrue(Arrays.equals(new byte[]{(byte) i}, receiver.receiveBytes()));
+		}
+		try {
+			receiver.receiveBytes();
+			fail("a message was received after the other party closed the channel");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+}
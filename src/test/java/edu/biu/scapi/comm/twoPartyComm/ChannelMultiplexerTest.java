@@ -0,0 +1,252 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the logical channels of the {@link ChannelMultiplexer}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class ChannelMultiplexerTest extends TestCase {
+
+	private ChannelMultiplexer first;
+	private ChannelMultiplexer second;
+	
+	@Override
+	protected void setUp() throws Exception {
+		LoopbackChannel[] pair = LoopbackChannel.createPair(false);
+		//Use small chunks, so that the messages are split and interleaved.
+		first = new ChannelMultiplexer(pair[0], 1024);
+		second = new ChannelMultiplexer(pair[1], 1024);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		first.close();
+		second.close();
+	}
+	
+	public void testEmptyMessage() throws Exception {
+		MultiplexedChannel sender = first.getChannel("a");
+		MultiplexedChannel receiver = second.getChannel("a");
+		sender.send(new byte[0]);
+		sender.send(new byte[]{7});
+		
+		assertEquals(0, receiver.receiveBytes().length);
+		assertTrue(Arrays.equals(new byte[]{7}, receiver.receiveBytes()));
+	}
+	
+	public void testInterleavedChannels() throws Exception {
+		final int channels = 4;
+		final byte[][] messages = new byte[channels][];
+		for (int c = 0; c < channels; c++){
+			messages[c] = new byte[10000 + c];
+			Arrays.fill(messages[c], (byte) c);
+		}
+		
+		//Each logical channel is used by a different thread.
+		Thread[] senders = new Thread[channels];
+		for (int c = 0; c < channels; c++){
+			final int index = c;
+			senders[c] = new Thread(){
+				public void run(){
+					try {
+						MultiplexedChannel channel = first.getChannel("channel " + index);
+						for (int i = 0; i < 20; i++){
+							channel.send(messages[index]);
+							channel.send("message " + i);
+						}
+					} catch (IOException e) {
+						//The receiver fails on a missing message.
+					}
+				}
+			};
+			senders[c].start();
+		}
+		
+		for (int c = channels - 1; c >= 0; c--){
+			MultiplexedChannel channel = second.getChannel("channel " + c);
+			for (int i = 0; i < 20; i++){
+				assertTrue(Arrays.equals(messages[c], channel.receiveBytes()));
+				assertEquals("message " + i, channel.receive());
+			}
+		}
+		for (int c = 0; c < channels; c++){
+			senders[c].join();
+		}
+	}
+	
+	public void testCloseWhileDataIsQueued() throws Exception {
+		MultiplexedChannel sender = first.getChannel("a");
+		MultiplexedChannel receiver = second.getChannel("a");
+		for (int i = 0; i < 10; i++){
+			sender.send(new byte[]{(byte) i});
+		}
+		sender.close();
+		
+		//The messages that were sent before the channel was closed are still received.
+		for (int i = 0; i < 10; i++){
+			assertEquals((byte) i, receiver.receiveBytes()[0]);
+		}
+		try {
+			receiver.receiveBytes();
+			fail("a message was received after the channel was closed");
+		} catch (EOFException e) {
+			//expected
+		}
+		//The other logical channels are not affected.
+		first.getChannel("b").send(new byte[]{1});
+		assertEquals(1, second.getChannel("b").receiveBytes()[0]);
+	}
+	
+	public void testLongChannelName() throws Exception {
+		//The name is longer than a chunk, but the announcement of the stream is not split.
+		char[] name = new char[3000];
+		Arrays.fill(name, 'n');
+		MultiplexedChannel sender = first.getChannel(new String(name));
+		MultiplexedChannel receiver = second.getChannel(new String(name));
+		sender.send(new byte[]{5});
+		assertEquals(5, receiver.receiveBytes()[0]);
+		
+		first.getChannel("b").send(new byte[]{1});
+		assertEquals(1, second.getChannel("b").receiveBytes()[0]);
+		assertFalse(first.isClosed());
+		assertFalse(second.isClosed());
+	}
+	
+	public void testRemoteClose() throws Exception {
+		MultiplexedChannel sender = first.getChannel("a");
+		MultiplexedChannel receiver = second.getChannel("a");
+		sender.send(new byte[]{1});
+		sender.close();
+		
+		assertEquals(1, receiver.receiveBytes()[0]);
+		try {
+			receiver.receiveBytes();
+			fail("a message was received after the other side closed the channel");
+		} catch (EOFException e) {
+			//expected
+		}
+		//The close of the other side closes this end too.
+		assertTrue(receiver.isClosed());
+		try {
+			receiver.send(new byte[]{2});
+			fail("a message was sent on a closed channel");
+		} catch (IOException e) {
+			//expected
+		}
+		
+		//The closed channel is dropped on both sides, so the same name gives a new channel.
+		MultiplexedChannel newReceiver = second.getChannel("a");
+		assertTrue(receiver != newReceiver);
+		MultiplexedChannel newSender = first.getChannel("a");
+		newSender.send(new byte[]{3});
+		assertEquals(3, newReceiver.receiveBytes()[0]);
+		newReceiver.send(new byte[]{4});
+		assertEquals(4, newSender.receiveBytes()[0]);
+	}
+	
+	public void testCloseAfterLargeMessage() throws Exception {
+		final MultiplexedChannel sender = first.getChannel("a");
+		MultiplexedChannel receiver = second.getChannel("a");
+		final byte[] message = new byte[100 * 1024];
+		Arrays.fill(message, (byte) 9);
+		
+		//The channel is closed while the chunks of the message are being sent. The close frame should follow them.
+		final Exception[] error = new Exception[1];
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					sender.send(message);
+				} catch (IOException e) {
+					error[0] = e;
+				}
+			}
+		};
+		thread.start();
+		Thread.sleep(1);
+		sender.close();
+		thread.join();
+		
+		if (error[0] == null){
+			assertTrue(Arrays.equals(message, receiver.receiveBytes()));
+		}
+		try {
+			receiver.receiveBytes();
+			fail("a message was received after the other side closed the channel");
+		} catch (EOFException e) {
+			//expected
+		}
+		assertFalse(first.isClosed());
+		assertFalse(second.isClosed());
+	}
+	
+	public void testReopenAfterClose() throws Exception {
+		MultiplexedChannel sender = first.getChannel("a");
+		MultiplexedChannel receiver = second.getChannel("a");
+		sender.send(new byte[]{1});
+		assertEquals(1, receiver.receiveBytes()[0]);
+		sender.close();
+		receiver.close();
+		
+		//A closed channel is dropped, so the same name gives a new channel.
+		MultiplexedChannel newSender = first.getChannel("a");
+		MultiplexedChannel newReceiver = second.getChannel("a");
+		assertTrue(sender != newSender);
+		assertFalse(newSender.isClosed());
+		newSender.send(new byte[]{2});
+		assertEquals(2, newReceiver.receiveBytes()[0]);
+		newReceiver.send(new byte[]{3});
+		assertEquals(3, newSender.receiveBytes()[0]);
+	}
+	
+	public void testOpenArrivesAfterClose() throws Exception {
+		//The channel is closed before the other side opened its end, so the announcement of that end arrives late.
+		MultiplexedChannel sender = first.getChannel("a");
+		sender.close();
+		MultiplexedChannel receiver = second.getChannel("a");
+		try {
+			receiver.receiveBytes();
+			fail("a message was received after the other side closed the channel");
+		} catch (EOFException e) {
+			//expected
+		}
+		receiver.close();
+		
+		//The late announcement belongs to the closed channel, not to the new channel with the same name.
+		MultiplexedChannel newSender = first.getChannel("a");
+		MultiplexedChannel newReceiver = second.getChannel("a");
+		newReceiver.send(new byte[]{3});
+		assertEquals(3, newSender.receiveBytes()[0]);
+		newSender.send(new byte[]{4});
+		assertEquals(4, newReceiver.receiveBytes()[0]);
+	}
+}
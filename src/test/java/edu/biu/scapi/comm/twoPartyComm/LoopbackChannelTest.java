@@ -0,0 +1,154 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link LoopbackChannel}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class LoopbackChannelTest extends TestCase {
+
+	public void testEmptyMessage() throws Exception {
+		LoopbackChannel[] pair = LoopbackChannel.createPair(true);
+		pair[0].send(new byte[0]);
+		pair[0].send(new byte[]{7});
+		
+		assertEquals(0, pair[1].receiveBytes().length);
+		assertTrue(Arrays.equals(new byte[]{7}, pair[1].receiveBytes()));
+	}
+	
+	public void testCopyOnSend() throws Exception {
+		byte[] bytes = new byte[]{1, 2, 3};
+		ArrayList<Integer> list = new ArrayList<Integer>();
+		list.add(Integer.valueOf(1));
+		
+		//In copy on send mode, changing a message after sending it doesn't change the received message.
+		LoopbackChannel[] pair = LoopbackChannel.createPair(true);
+		pair[0].send(bytes);
+		pair[0].send(list);
+		bytes[0] = 9;
+		list.add(Integer.valueOf(2));
+		assertTrue(Arrays.equals(new byte[]{1, 2, 3}, pair[1].receiveBytes()));
+		assertEquals(1, ((ArrayList<?>) pair[1].receive()).size());
+		
+		//Otherwise, the same objects are passed.
+		pair = LoopbackChannel.createPair(false);
+		pair[0].send(bytes);
+		pair[0].send(list);
+		assertSame(bytes, pair[1].receiveBytes());
+		assertSame(list, pair[1].receive());
+	}
+	
+	public void testBothDirections() throws Exception {
+		final LoopbackChannel[] pair = LoopbackChannel.createPair(false, 4);
+		final int count = 10000;
+		//Echo each message back, through queues that are much smaller than the number of messages.
+		Thread echo = new Thread(){
+			public void run(){
+				try {
+					for (int i = 0; i < count; i++){
+						pair[1].send(pair[1].receiveBytes());
+					}
+				} catch (IOException e) {
+					//The main thread fails on a missing message.
+				}
+			}
+		};
+		echo.start();
+		
+		Thread sender = new Thread(){
+			public void run(){
+				try {
+					for (int i = 0; i < count; i++){
+						pair[0].send(new byte[]{(byte) i});
+					}
+				} catch (IOException e) {
+					//The main thread fails on a missing message.
+				}
+			}
+		};
+		sender.start();
+		
+		for (int i = 0; i < count; i++){
+			assertEquals((byte) i, pair[0].receiveBytes()[0]);
+		}
+		sender.join();
+		echo.join();
+	}
+	
+	public void testCloseWhileDataIsQueued() throws Exception {
+		LoopbackChannel[] pair = LoopbackChannel.createPair(false);
+		for (int i = 0; i < 10; i++){
+			pair[0].send(new byte[]{(byte) i});
+		}
+		pair[0].close();
+		assertTrue(pair[0].isClosed());
+		
+		//The messages that were sent before the channel was closed are still received.
+		for (int i = 0; i < 10; i++){
+			assertEquals((byte) i, pair[1].receiveBytes()[0]);
+		}
+		try {
+			pair[1].receiveBytes();
+			fail("a message was received after the channel was closed");
+		} catch (IOException e) {
+			//expected
+		}
+		try {
+			pair[0].send(new byte[1]);
+			fail("a message was sent on a closed channel");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+	
+	public void testCloseReleasesWaitingReceiver() throws Exception {
+		final LoopbackChannel[] pair = LoopbackChannel.createPair(false);
+		final Exception[] error = new Exception[1];
+		Thread receiver = new Thread(){
+			public void run(){
+				try {
+					pair[1].receiveBytes();
+				} catch (Exception e) {
+					error[0] = e;
+				}
+			}
+		};
+		receiver.start();
+		Thread.sleep(100);
+		pair[0].close();
+		receiver.join(5000);
+		
+		assertFalse("the receiver was not released", receiver.isAlive());
+		assertTrue(error[0] instanceof IOException);
+	}
+}
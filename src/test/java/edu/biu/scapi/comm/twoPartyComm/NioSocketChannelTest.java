@@ -0,0 +1,183 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.EOFException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.RawChannel;
+
+/**
+ * Tests the framing of the {@link NioSocketChannel}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class NioSocketChannelTest extends TestCase {
+
+	private NioSelectorPool pool;
+	private NioSocketCommunicationSetup firstSetup;
+	private NioSocketCommunicationSetup secondSetup;
+	private RawChannel sender;
+	private RawChannel receiver;
+	
+	@Override
+	protected void setUp() throws Exception {
+		pool = new NioSelectorPool(1);
+		InetAddress localhost = InetAddress.getByName("127.0.0.1");
+		final SocketPartyData first = new SocketPartyData(localhost, 8111);
+		final SocketPartyData second = new SocketPartyData(localhost, 8112);
+		firstSetup = new NioSocketCommunicationSetup(first, second, pool);
+		secondSetup = new NioSocketCommunicationSetup(second, first, pool);
+		
+		//The setup of both parties should run at the same time.
+		final Channel[] other = new Channel[1];
+		final Exception[] error = new Exception[1];
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					other[0] = connect(secondSetup);
+				} catch (Exception e) {
+					error[0] = e;
+				}
+			}
+		};
+		thread.start();
+		sender = (RawChannel) connect(firstSetup);
+		thread.join();
+		if (error[0] != null){
+			throw error[0];
+		}
+		receiver = (RawChannel) other[0];
+	}
+	
+	private static Channel connect(NioSocketCommunicationSetup setup) throws Exception {
+		Map<String, Channel> channels = setup.prepareForCommunication(1, 10000);
+		return channels.values().iterator().next();
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		sender.close();
+		receiver.close();
+		//Close the listening socket, so the next test can use the same port.
+		firstSetup.close();
+		secondSetup.close();
+		pool.shutdown();
+	}
+	
+	public void testConnectDeadline() throws Exception {
+		//The other party is at an address that does not answer, so the connection attempts should stop at the deadline.
+		SocketPartyData me = new SocketPartyData(InetAddress.getByName("127.0.0.1"), 8113);
+		SocketPartyData unreachable = new SocketPartyData(InetAddress.getByName("192.0.2.1"), 8114);
+		NioSocketCommunicationSetup setup = new NioSocketCommunicationSetup(me, unreachable, pool);
+		long start = System.currentTimeMillis();
+		try {
+			setup.prepareForCommunication(1, 500);
+			fail("connected to an unreachable address");
+		} catch (TimeoutException e) {
+			//expected
+		} finally {
+			setup.close();
+		}
+		assertTrue(System.currentTimeMillis() - start < 2000);
+	}
+	
+	public void testEmptyMessage() throws Exception {
+		sender.send(new byte[0]);
+		sender.send(new byte[]{7});
+		sender.send(new byte[0]);
+		
+		assertEquals(0, receiver.receiveBytes().length);
+		assertTrue(Arrays.equals(new byte[]{7}, receiver.receiveBytes()));
+		assertEquals(0, receiver.receiveBytes().length);
+	}
+	
+	public void testLargeMessages() throws Exception {
+		//Messages that are larger than the socket's buffers are split between several reads.
+		final byte[] bytes = new byte[3 * 1024 * 1024];
+		for (int i = 0; i < bytes.length; i++){
+			bytes[i] = (byte) (i * 31);
+		}
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					for (int i = 0; i < 4; i++){
+						sender.send(bytes);
+						sender.send("object " + i);
+					}
+				} catch (Exception e) {
+					//The receiver fails on a missing message.
+				}
+			}
+		};
+		thread.start();
+		
+		for (int i = 0; i < 4; i++){
+			assertTrue(Arrays.equals(bytes, receiver.receiveBytes()));
+			assertEquals("object " + i, receiver.receive());
+		}
+		thread.join();
+	}
+	
+	public void testCloseWhileDataIsQueued() throws Exception {
+		//The messages that arrived before the other party closed the channel should be received before the end of the stream.
+		for (int i = 0; i < 100; i++){
+			sender.send(new byte[]{(byte) i});
+		}
+		sender.close();
+		
+		for (int i = 0; i < 100; i++){
+			assertTrue(Arrays.equals(new byte[]{(byte) i}, receiver.receiveBytes()));
+		}
+		try {
+			receiver.receiveBytes();
+			fail("a message was received after the other party closed the channel");
+		} catch (EOFException e) {
+			//expected
+		}
+		//The end of the stream is reported on every following call.
+		try {
+			receiver.receive();
+			fail("a message was received after the other party closed the channel");
+		} catch (EOFException e) {
+			//expected
+		}
+	}
+	
+	public void testSendAfterClose() throws Exception {
+		sender.close();
+		try {
+			sender.send(new byte[1]);
+			fail("a message was sent on a closed channel");
+		} catch (java.io.IOException e) {
+			//expected
+		}
+	}
+}
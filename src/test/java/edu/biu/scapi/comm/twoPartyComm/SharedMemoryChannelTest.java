@@ -0,0 +1,247 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.comm.Channel;
+
+/**
+ * Tests the rings of the {@link SharedMemoryChannel} and the channels that the {@link SharedMemoryCommunicationSetup} creates.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class SharedMemoryChannelTest extends TestCase {
+
+	private File directory;
+	
+	@Override
+	protected void setUp() throws Exception {
+		directory = File.createTempFile("scapi", "shm");
+		directory.delete();
+		directory.mkdir();
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = directory.listFiles();
+		for (int i = 0; i < files.length; i++){
+			files[i].delete();
+		}
+		directory.delete();
+	}
+	
+	public void testRingRoundTrip() throws Exception {
+		//Each endpoint maps the file by itself, as two processes do. The ring is much smaller than the data, so it wraps around.
+		int capacity = 64;
+		File path = new File(directory, "ring");
+		RandomAccessFile producerFile = new RandomAccessFile(path, "rw");
+		producerFile.setLength(64 + SharedMemoryRing.size(capacity));
+		RandomAccessFile consumerFile = new RandomAccessFile(path, "rw");
+		try {
+			final SharedMemoryRing producer = createRing(producerFile, capacity);
+			SharedMemoryRing consumer = createRing(consumerFile, capacity);
+			
+			final byte[] data = new byte[100000];
+			new Random(1).nextBytes(data);
+			final Exception[] error = new Exception[1];
+			Thread thread = new Thread(){
+				public void run(){
+					Random random = new Random(2);
+					try {
+						int offset = 0;
+						while (offset < data.length){
+							int length = Math.min(data.length - offset, random.nextInt(200));
+							producer.write(data, offset, length);
+							offset += length;
+						}
+					} catch (IOException e) {
+						error[0] = e;
+					}
+				}
+			};
+			thread.start();
+			
+			byte[] received = new byte[data.length];
+			Random random = new Random(3);
+			int offset = 0;
+			while (offset < received.length){
+				int length = Math.min(received.length - offset, 1 + random.nextInt(150));
+				consumer.read(received, offset, length);
+				offset += length;
+			}
+			thread.join();
+			if (error[0] != null){
+				throw error[0];
+			}
+			assertTrue(Arrays.equals(data, received));
+			
+			//The closed flag is seen by the other endpoint.
+			producer.close();
+			assertTrue(consumer.isClosed());
+			try {
+				consumer.read(received, 0, 1);
+				fail("read from a closed ring");
+			} catch (EOFException e) {
+				//expected
+			}
+		} finally {
+			producerFile.close();
+			consumerFile.close();
+		}
+	}
+	
+	private static SharedMemoryRing createRing(RandomAccessFile file, int capacity) throws IOException {
+		MappedByteBuffer map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+		return new SharedMemoryRing(map, new SharedMemoryAccess(map), 64, capacity, 0);
+	}
+	
+	public void testChannels() throws Exception {
+		Channel[] channels = connect(64);
+		SharedMemoryChannel first = (SharedMemoryChannel) channels[0];
+		SharedMemoryChannel second = (SharedMemoryChannel) channels[1];
+		try {
+			first.send(new byte[0]);
+			first.send("message");
+			byte[] large = new byte[10000];
+			new Random(4).nextBytes(large);
+			
+			//A message that is larger than the ring is streamed through it while the other side reads.
+			final SharedMemoryChannel sender = second;
+			final byte[] message = large;
+			final Exception[] error = new Exception[1];
+			Thread thread = new Thread(){
+				public void run(){
+					try {
+						sender.send(message);
+					} catch (IOException e) {
+						error[0] = e;
+					}
+				}
+			};
+			thread.start();
+			
+			assertEquals(0, second.receiveBytes().length);
+			assertEquals("message", second.receive());
+			assertTrue(Arrays.equals(large, first.receiveBytes()));
+			thread.join();
+			if (error[0] != null){
+				throw error[0];
+			}
+			
+			//The close of one side is seen by the other.
+			first.close();
+			assertTrue(second.isClosed());
+			try {
+				second.receiveBytes();
+				fail("a message was received after the channel was closed");
+			} catch (EOFException e) {
+				//expected
+			}
+		} finally {
+			first.close();
+			second.close();
+		}
+	}
+	
+	public void testTimeout() throws Exception {
+		Channel[] channels = connect(64);
+		SharedMemoryChannel first = (SharedMemoryChannel) channels[0];
+		SharedMemoryChannel second = (SharedMemoryChannel) channels[1];
+		try {
+			//The other side does not write.
+			second.setTimeout(200);
+			long start = System.currentTimeMillis();
+			try {
+				second.receiveBytes();
+				fail("a message was received although none was sent");
+			} catch (EOFException e) {
+				fail("the channel was not closed");
+			} catch (IOException e) {
+				//expected
+			}
+			assertTrue(System.currentTimeMillis() - start >= 200);
+			
+			//The other side does not read, so the ring gets full.
+			first.setTimeout(200);
+			try {
+				first.send(new byte[1000]);
+				fail("a message that is larger than the ring was sent although the other side did not read");
+			} catch (EOFException e) {
+				fail("the channel was not closed");
+			} catch (IOException e) {
+				//expected
+			}
+		} finally {
+			first.close();
+			second.close();
+		}
+	}
+	
+	/**
+	 * Connects two parties by shared memory with the given ring size and returns their channels.
+	 */
+	private Channel[] connect(int capacity) throws Exception {
+		InetAddress localhost = InetAddress.getByName("127.0.0.1");
+		SocketPartyData first = new SocketPartyData(localhost, 8121);
+		SocketPartyData second = new SocketPartyData(localhost, 8122);
+		final SharedMemoryCommunicationSetup firstSetup = new SharedMemoryCommunicationSetup(first, second, directory, capacity);
+		SharedMemoryCommunicationSetup secondSetup = new SharedMemoryCommunicationSetup(second, first, directory, capacity);
+		
+		//The setup of both parties should run at the same time.
+		final Channel[] channels = new Channel[2];
+		final Exception[] error = new Exception[1];
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					channels[0] = firstChannel(firstSetup.prepareForCommunication(1, 10000));
+				} catch (Exception e) {
+					error[0] = e;
+				}
+			}
+		};
+		thread.start();
+		channels[1] = firstChannel(secondSetup.prepareForCommunication(1, 10000));
+		thread.join();
+		if (error[0] != null){
+			throw error[0];
+		}
+		return channels;
+	}
+	
+	private static Channel firstChannel(Map<String, Channel> channels){
+		return channels.values().iterator().next();
+	}
+}
@@ -0,0 +1,99 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension.OTExtensionUtil.FixedKeyHash;
+import edu.biu.scapi.primitives.prf.AES;
+import edu.biu.scapi.primitives.prf.bc.BcAES;
+
+/**
+ * Tests the fixed-key hash and the input checks of the Java OT extension.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class OTExtensionUtilTest extends TestCase {
+
+	public void testFixedKeyHash() throws Exception {
+		AES aes = new BcAES();
+		OTExtensionUtil.setFixedKey(aes);
+		FixedKeyHash hash = new FixedKeyHash(aes);
+		Random random = new Random(4);
+		
+		for (int len = 1; len <= 40; len += 13){
+			long x0 = random.nextLong();
+			long x1 = random.nextLong();
+			long index = random.nextInt(1000);
+			byte[] dest = new byte[len + 2];
+			random.nextBytes(dest);
+			byte[] expected = dest.clone();
+			
+			//Each block b is AES(AES(x) XOR j) XOR AES(x), where b is xored into the second half of x.
+			for (int block = 0; block * 16 < len; block++){
+				byte[] permuted = new byte[16];
+				aes.computeBlock(ByteBuffer.allocate(16).putLong(x0).putLong(x1 ^ block).array(), 0, permuted, 0);
+				ByteBuffer in = ByteBuffer.wrap(permuted.clone());
+				in.putLong(0, in.getLong(0) ^ index);
+				byte[] out = new byte[16];
+				aes.computeBlock(in.array(), 0, out, 0);
+				for (int i = 0; i < 16 && block * 16 + i < len; i++){
+					expected[1 + block * 16 + i] ^= out[i] ^ permuted[i];
+				}
+			}
+			
+			hash.xorInto(x0, x1, index, dest, 1, len);
+			for (int i = 0; i < dest.length; i++){
+				assertEquals("length " + len + ", byte " + i, expected[i], dest[i]);
+			}
+		}
+	}
+	
+	public void testElementSize() throws Exception {
+		assertEquals(16, OTExtensionUtil.elementSize(160, 10));
+		assertEquals(3, OTExtensionUtil.elementSize(24));
+		
+		int[][] illegal = {{161, 10}, {5, 10}, {0, 10}, {10, 0}, {10, -1}};
+		for (int i = 0; i < illegal.length; i++){
+			try {
+				OTExtensionUtil.elementSize(illegal[i][0], illegal[i][1]);
+				fail("expected IllegalArgumentException for " + illegal[i][0] + " bytes in " + illegal[i][1] + " OTs");
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+		}
+		int[] illegalBits = {0, 12, -8};
+		for (int i = 0; i < illegalBits.length; i++){
+			try {
+				OTExtensionUtil.elementSize(illegalBits[i]);
+				fail("expected IllegalArgumentException for " + illegalBits[i] + " bits");
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+		}
+	}
+}
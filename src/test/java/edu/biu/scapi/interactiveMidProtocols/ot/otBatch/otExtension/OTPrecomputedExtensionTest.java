@@ -0,0 +1,233 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.comm.twoPartyComm.LoopbackChannel;
+import edu.biu.scapi.exceptions.CheatAttemptException;
+import edu.biu.scapi.interactiveMidProtocols.ot.OTOnByteArrayROutput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchRInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchSInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchSOutput;
+
+/**
+ * Tests the offline/online split of {@link OTPrecomputedExtensionSender} and {@link OTPrecomputedExtensionReceiver}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class OTPrecomputedExtensionTest extends TestCase {
+
+	private static final int SIZE = 16;			//The size of each element, in bytes.
+	private static final int CAPACITY = 1000;	//The maximal number of OTs in the pools.
+	
+	private LoopbackChannel[] channels;
+	private OTPrecomputedExtensionSender sender;
+	private OTPrecomputedExtensionReceiver receiver;
+	private Random random;
+	private byte[] xSigma;		//The output of the receiver in the last transfer.
+	
+	@Override
+	protected void setUp() throws Exception {
+		channels = LoopbackChannel.createPair(false);
+		sender = new OTPrecomputedExtensionSender(new OTSemiHonestJavaExtensionSender(), SIZE * 8, CAPACITY);
+		receiver = new OTPrecomputedExtensionReceiver(new OTSemiHonestJavaExtensionReceiver(), SIZE * 8, CAPACITY);
+		random = new Random(2);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		channels[0].close();
+		channels[1].close();
+	}
+	
+	public void testAllInputs() throws Exception {
+		precompute(300);
+		precompute(300);
+		assertEquals(600, sender.getAvailable());
+		assertEquals(600, receiver.getAvailable());
+		
+		int numOfOts = 200;
+		byte[] x0 = randomBytes(numOfOts * SIZE);
+		byte[] x1 = randomBytes(numOfOts * SIZE);
+		byte[] sigma = randomSigma(numOfOts);
+		transfer(new OTExtensionGeneralSInput(x0, x1, numOfOts), new OTExtensionGeneralRInput(sigma, SIZE * 8));
+		assertChosen(x0, x1, sigma);
+		assertEquals(400, sender.getAvailable());
+		assertEquals(400, receiver.getAvailable());
+		
+		byte[] delta = randomBytes(numOfOts * SIZE);
+		sigma = randomSigma(numOfOts);
+		OTExtensionSOutput output = (OTExtensionSOutput) transfer(new OTExtensionCorrelatedSInput(delta, numOfOts), new OTExtensionCorrelatedRInput(sigma, SIZE * 8));
+		for (int k = 0; k < delta.length; k++){
+			assertEquals(delta[k], (byte) (output.getX0Arr()[k] ^ output.getX1Arr()[k]));
+		}
+		assertChosen(output.getX0Arr(), output.getX1Arr(), sigma);
+		
+		sigma = randomSigma(numOfOts);
+		output = (OTExtensionSOutput) transfer(new OTExtensionRandomSInput(numOfOts, SIZE * 8), new OTExtensionRandomRInput(sigma, SIZE * 8));
+		assertChosen(output.getX0Arr(), output.getX1Arr(), sigma);
+		assertEquals(0, sender.getAvailable());
+		assertEquals(0, receiver.getAvailable());
+	}
+	
+	public void testSaveAndLoad() throws Exception {
+		File senderFile = File.createTempFile("sender", ".pool");
+		File receiverFile = File.createTempFile("receiver", ".pool");
+		try {
+			precompute(300);
+			sender.save(senderFile);
+			receiver.save(receiverFile);
+			
+			int numOfOts = 300;
+			byte[] sigma = randomSigma(numOfOts);
+			OTExtensionSOutput first = (OTExtensionSOutput) transfer(new OTExtensionRandomSInput(numOfOts, SIZE * 8), new OTExtensionRandomRInput(sigma, SIZE * 8));
+			assertChosen(first.getX0Arr(), first.getX1Arr(), sigma);
+			assertEquals(0, sender.getAvailable());
+			
+			//The loaded pools hold the same OTs again.
+			sender.load(senderFile);
+			receiver.load(receiverFile);
+			assertEquals(300, sender.getAvailable());
+			assertEquals(300, receiver.getAvailable());
+			byte[] x0 = randomBytes(numOfOts * SIZE);
+			byte[] x1 = randomBytes(numOfOts * SIZE);
+			sigma = randomSigma(numOfOts);
+			transfer(new OTExtensionGeneralSInput(x0, x1, numOfOts), new OTExtensionGeneralRInput(sigma, SIZE * 8));
+			assertChosen(x0, x1, sigma);
+		} finally {
+			senderFile.delete();
+			receiverFile.delete();
+		}
+	}
+	
+	public void testDifferentPools() throws Exception {
+		File receiverFile = File.createTempFile("receiver", ".pool");
+		try {
+			precompute(200);
+			receiver.save(receiverFile);
+			int numOfOts = 100;
+			transfer(new OTExtensionRandomSInput(numOfOts, SIZE * 8), new OTExtensionRandomRInput(randomSigma(numOfOts), SIZE * 8));
+			
+			//Only the receiver goes back, so the parties use different OTs.
+			receiver.load(receiverFile);
+			try {
+				transfer(new OTExtensionRandomSInput(numOfOts, SIZE * 8), new OTExtensionRandomRInput(randomSigma(numOfOts), SIZE * 8));
+				fail("the sender accepted OTs from a different position of the pool");
+			} catch (CheatAttemptException e) {
+				//expected
+			}
+		} finally {
+			receiverFile.delete();
+		}
+	}
+	
+	public void testFullPool() throws Exception {
+		precompute(CAPACITY);
+		assertEquals(0, sender.getFree());
+		try {
+			sender.precompute(channels[0], 1);
+			fail("OTs were added to a full pool");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+		try {
+			receiver.precompute(channels[1], 1);
+			fail("OTs were added to a full pool");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+	}
+	
+	private void precompute(final int numOfOts) throws Exception {
+		FutureTask<Object> task = startSender(new Callable<Object>() {
+			public Object call() throws Exception {
+				sender.precompute(channels[0], numOfOts);
+				return null;
+			}
+		});
+		receiver.precompute(channels[1], numOfOts);
+		getResult(task);
+	}
+	
+	/**
+	 * Runs the sender on another thread and the receiver on this thread, and returns the output of the sender.
+	 */
+	private OTBatchSOutput transfer(final OTBatchSInput sInput, OTBatchRInput rInput) throws Exception {
+		FutureTask<OTBatchSOutput> task = startSender(new Callable<OTBatchSOutput>() {
+			public OTBatchSOutput call() throws Exception {
+				return sender.transfer(channels[0], sInput);
+			}
+		});
+		xSigma = ((OTOnByteArrayROutput) receiver.transfer(channels[1], rInput)).getXSigma();
+		return getResult(task);
+	}
+	
+	private static <T> FutureTask<T> startSender(Callable<T> call){
+		FutureTask<T> task = new FutureTask<T>(call);
+		new Thread(task).start();
+		return task;
+	}
+	
+	private static <T> T getResult(FutureTask<T> task) throws Exception {
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			throw (Exception) e.getCause();
+		}
+	}
+	
+	private byte[] randomBytes(int length){
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+	
+	private byte[] randomSigma(int numOfOts){
+		byte[] sigma = new byte[numOfOts];
+		for (int i = 0; i < numOfOts; i++){
+			sigma[i] = (byte) random.nextInt(2);
+		}
+		return sigma;
+	}
+	
+	/**
+	 * Checks that in the last transfer the receiver got x0 of each OT whose sigma is 0 and x1 of each OT whose sigma is 1.
+	 */
+	private void assertChosen(byte[] x0, byte[] x1, byte[] sigma){
+		assertEquals(sigma.length * SIZE, xSigma.length);
+		for (int j = 0; j < sigma.length; j++){
+			byte[] chosen = (sigma[j] == 0) ? x0 : x1;
+			for (int b = 0; b < SIZE; b++){
+				assertEquals("OT " + j, chosen[j * SIZE + b], xSigma[j * SIZE + b]);
+			}
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.interactiveMidProtocols.ot.otBatch.otExtension;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.comm.twoPartyComm.LoopbackChannel;
+import edu.biu.scapi.interactiveMidProtocols.ot.OTOnByteArrayROutput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchRInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchSInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchSOutput;
+
+/**
+ * Tests that the {@link OTSemiHonestJavaExtensionSender} and {@link OTSemiHonestJavaExtensionReceiver} transfer the 
+ * right values, for all kinds of inputs.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class OTSemiHonestJavaExtensionTest extends TestCase {
+
+	//The numbers of OTs to check. Some of them are not a multiple of the size of a block.
+	private static final int[] SIZES = {1, 131, 1000};
+	
+	private LoopbackChannel[] channels;
+	private OTSemiHonestJavaExtensionSender sender;
+	private OTSemiHonestJavaExtensionReceiver receiver;
+	private Random random;
+	private OTBatchSOutput senderOutput;		//The output of the sender in the last transfer.
+	
+	@Override
+	protected void setUp() throws Exception {
+		channels = LoopbackChannel.createPair(false);
+		sender = new OTSemiHonestJavaExtensionSender();
+		receiver = new OTSemiHonestJavaExtensionReceiver();
+		random = new Random(1);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		channels[0].close();
+		channels[1].close();
+	}
+	
+	public void testGeneralInput() throws Exception {
+		for (int i = 0; i < SIZES.length; i++){
+			int numOfOts = SIZES[i];
+			int size = 16 + i * 7;
+			byte[] x0 = randomBytes(numOfOts * size);
+			byte[] x1 = randomBytes(numOfOts * size);
+			byte[] sigma = randomSigma(numOfOts);
+			
+			byte[] xSigma = transfer(new OTExtensionGeneralSInput(x0, x1, numOfOts), new OTExtensionGeneralRInput(sigma, size * 8));
+			assertChosen(x0, x1, sigma, xSigma, size);
+		}
+	}
+	
+	public void testCorrelatedInput() throws Exception {
+		for (int i = 0; i < SIZES.length; i++){
+			int numOfOts = SIZES[i];
+			int size = 16 + i * 7;
+			byte[] delta = randomBytes(numOfOts * size);
+			byte[] sigma = randomSigma(numOfOts);
+			
+			byte[] xSigma = transfer(new OTExtensionCorrelatedSInput(delta, numOfOts), new OTExtensionCorrelatedRInput(sigma, size * 8));
+			OTExtensionSOutput output = (OTExtensionSOutput) senderOutput;
+			byte[] x0 = output.getX0Arr();
+			byte[] x1 = output.getX1Arr();
+			for (int k = 0; k < delta.length; k++){
+				assertEquals(delta[k], (byte) (x0[k] ^ x1[k]));
+			}
+			assertChosen(x0, x1, sigma, xSigma, size);
+		}
+	}
+	
+	public void testRandomInput() throws Exception {
+		for (int i = 0; i < SIZES.length; i++){
+			int numOfOts = SIZES[i];
+			int size = 16 + i * 7;
+			byte[] sigma = randomSigma(numOfOts);
+			
+			byte[] xSigma = transfer(new OTExtensionRandomSInput(numOfOts, size * 8), new OTExtensionRandomRInput(sigma, size * 8));
+			OTExtensionSOutput output = (OTExtensionSOutput) senderOutput;
+			assertEquals(numOfOts * size, output.getX0Arr().length);
+			assertFalse(Arrays.equals(output.getX0Arr(), output.getX1Arr()));
+			assertChosen(output.getX0Arr(), output.getX1Arr(), sigma, xSigma, size);
+		}
+	}
+	
+	public void testIllegalLengths() throws Exception {
+		//The inputs are checked before anything is sent.
+		OTBatchSInput[] inputs = {new OTExtensionGeneralSInput(new byte[33], new byte[33], 2), 
+				new OTExtensionCorrelatedSInput(new byte[16], 32), new OTExtensionRandomSInput(2, 12)};
+		for (int i = 0; i < inputs.length; i++){
+			try {
+				sender.transfer(channels[0], inputs[i]);
+				fail("expected IllegalArgumentException for input " + i);
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+		}
+		try {
+			receiver.transfer(channels[1], new OTExtensionGeneralRInput(randomSigma(2), 12));
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+	
+	/**
+	 * Runs the sender on another thread and the receiver on this thread, and returns the output of the receiver.
+	 */
+	private byte[] transfer(final OTBatchSInput sInput, OTBatchRInput rInput) throws Exception {
+		final OTBatchSOutput[] output = new OTBatchSOutput[1];
+		final Exception[] error = new Exception[1];
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					output[0] = sender.transfer(channels[0], sInput);
+				} catch (Exception e) {
+					error[0] = e;
+				}
+			}
+		};
+		thread.start();
+		byte[] xSigma = ((OTOnByteArrayROutput) receiver.transfer(channels[1], rInput)).getXSigma();
+		thread.join();
+		if (error[0] != null){
+			throw error[0];
+		}
+		senderOutput = output[0];
+		return xSigma;
+	}
+	
+	private byte[] randomBytes(int length){
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+	
+	private byte[] randomSigma(int numOfOts){
+		byte[] sigma = new byte[numOfOts];
+		for (int i = 0; i < numOfOts; i++){
+			sigma[i] = (byte) random.nextInt(2);
+		}
+		return sigma;
+	}
+	
+	/**
+	 * Checks that the receiver got x0 of each OT whose sigma is 0 and x1 of each OT whose sigma is 1.
+	 */
+	private static void assertChosen(byte[] x0, byte[] x1, byte[] sigma, byte[] xSigma, int size){
+		assertEquals(sigma.length * size, xSigma.length);
+		for (int j = 0; j < sigma.length; j++){
+			byte[] chosen = (sigma[j] == 0) ? x0 : x1;
+			for (int b = 0; b < size; b++){
+				assertEquals("OT " + j, chosen[j * size + b], xSigma[j * size + b]);
+			}
+		}
+	}
+}
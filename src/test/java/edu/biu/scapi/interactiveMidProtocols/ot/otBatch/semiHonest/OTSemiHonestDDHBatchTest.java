@@ -0,0 +1,152 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.interactiveMidProtocols.ot.otBatch.semiHonest;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.comm.twoPartyComm.LoopbackChannel;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchOnByteArrayROutput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchOnByteArraySInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchOnGroupElementROutput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchOnGroupElementSInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchRBasicInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchROutput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchReceiver;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchSInput;
+import edu.biu.scapi.interactiveMidProtocols.ot.otBatch.OTBatchSender;
+import edu.biu.scapi.primitives.dlog.DlogGroup;
+import edu.biu.scapi.primitives.dlog.GroupElement;
+import edu.biu.scapi.primitives.dlog.bc.BcDlogECF2m;
+import edu.biu.scapi.primitives.kdf.HKDF;
+import edu.biu.scapi.primitives.prf.bc.BcHMAC;
+
+/**
+ * Tests that the batch semi honest OT, which computes its exponentiations and multiplications with the batch operations of the 
+ * {@link DlogGroup}, transfers the chosen values.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class OTSemiHonestDDHBatchTest extends TestCase {
+
+	private static final int NUMBER_OF_OTS = 20;
+	
+	private LoopbackChannel[] channels;
+	private DlogGroup dlog;
+	private Random random;
+	
+	@Override
+	protected void setUp() throws Exception {
+		channels = LoopbackChannel.createPair(false);
+		dlog = new BcDlogECF2m("B-163");
+		random = new Random(3);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		channels[0].close();
+		channels[1].close();
+	}
+	
+	public void testOnGroupElement() throws Exception {
+		ArrayList<GroupElement> x0 = new ArrayList<GroupElement>();
+		ArrayList<GroupElement> x1 = new ArrayList<GroupElement>();
+		for (int i = 0; i < NUMBER_OF_OTS; i++){
+			x0.add(dlog.createRandomElement());
+			x1.add(dlog.createRandomElement());
+		}
+		ArrayList<Byte> sigma = randomSigma();
+		
+		OTBatchROutput output = transfer(new OTSemiHonestDDHBatchOnGroupElementSender(dlog, new SecureRandom()), 
+				new OTSemiHonestDDHBatchOnGroupElementReceiver(dlog, new SecureRandom()), new OTBatchOnGroupElementSInput(x0, x1), sigma);
+		ArrayList<GroupElement> xSigma = ((OTBatchOnGroupElementROutput) output).getXSigmaArr();
+		assertEquals(NUMBER_OF_OTS, xSigma.size());
+		for (int i = 0; i < NUMBER_OF_OTS; i++){
+			GroupElement expected = (sigma.get(i) == 0) ? x0.get(i) : x1.get(i);
+			assertEquals("OT " + i, expected, xSigma.get(i));
+		}
+	}
+	
+	public void testOnByteArray() throws Exception {
+		ArrayList<byte[]> x0 = new ArrayList<byte[]>();
+		ArrayList<byte[]> x1 = new ArrayList<byte[]>();
+		for (int i = 0; i < NUMBER_OF_OTS; i++){
+			x0.add(randomBytes(16));
+			x1.add(randomBytes(16));
+		}
+		ArrayList<Byte> sigma = randomSigma();
+		
+		OTBatchROutput output = transfer(new OTSemiHonestDDHBatchOnByteArraySender(dlog, new HKDF(new BcHMAC()), new SecureRandom()), 
+				new OTSemiHonestDDHBatchOnByteArrayReceiver(dlog, new HKDF(new BcHMAC()), new SecureRandom()), 
+				new OTBatchOnByteArraySInput(x0, x1), sigma);
+		ArrayList<byte[]> xSigma = ((OTBatchOnByteArrayROutput) output).getXSigmaArr();
+		assertEquals(NUMBER_OF_OTS, xSigma.size());
+		for (int i = 0; i < NUMBER_OF_OTS; i++){
+			byte[] expected = (sigma.get(i) == 0) ? x0.get(i) : x1.get(i);
+			assertTrue("OT " + i, Arrays.equals(expected, xSigma.get(i)));
+		}
+	}
+	
+	/**
+	 * Runs the sender on another thread and the receiver on this thread, and returns the output of the receiver.
+	 */
+	private OTBatchROutput transfer(final OTBatchSender sender, OTBatchReceiver receiver, final OTBatchSInput input, 
+			ArrayList<Byte> sigma) throws Exception {
+		final Exception[] error = new Exception[1];
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					sender.transfer(channels[0], input);
+				} catch (Exception e) {
+					error[0] = e;
+				}
+			}
+		};
+		thread.start();
+		OTBatchROutput output = receiver.transfer(channels[1], new OTBatchRBasicInput(sigma));
+		thread.join();
+		if (error[0] != null){
+			throw error[0];
+		}
+		return output;
+	}
+	
+	private ArrayList<Byte> randomSigma(){
+		ArrayList<Byte> sigma = new ArrayList<Byte>();
+		for (int i = 0; i < NUMBER_OF_OTS; i++){
+			sigma.add((byte) random.nextInt(2));
+		}
+		return sigma;
+	}
+	
+	private byte[] randomBytes(int length){
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+}
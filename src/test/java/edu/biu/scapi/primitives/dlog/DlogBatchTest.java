@@ -0,0 +1,219 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.primitives.dlog;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.primitives.dlog.bc.BcDlogECF2m;
+import edu.biu.scapi.primitives.dlog.cryptopp.CryptoPpDlogZpSafePrime;
+import edu.biu.scapi.primitives.dlog.miracl.MiraclDlogECF2m;
+import edu.biu.scapi.primitives.dlog.miracl.MiraclDlogECFp;
+import edu.biu.scapi.primitives.dlog.openSSL.OpenSSLDlogECF2m;
+import edu.biu.scapi.primitives.dlog.openSSL.OpenSSLDlogECFp;
+import edu.biu.scapi.primitives.dlog.openSSL.OpenSSLDlogZpSafePrime;
+
+/**
+ * Tests that the batch exponentiate, multiplyGroupElements and isMember of each Dlog group give the same results as the 
+ * single element operations.<p>
+ * The groups whose native library is not installed are skipped.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class DlogBatchTest extends TestCase {
+
+	//Not a multiple of the number of processors, so that the parallel tasks get batches of different sizes.
+	private static final int BATCH_SIZE = 37;
+	
+	/**
+	 * Creates a group to test.
+	 */
+	private static abstract class GroupCreator {
+		String name;
+		
+		GroupCreator(String name){
+			this.name = name;
+		}
+		
+		abstract DlogGroup create() throws Exception;
+	}
+	
+	private Random random;
+	private ExecutorService executor;
+	
+	@Override
+	protected void setUp() throws Exception {
+		random = new Random(9);
+		executor = Executors.newFixedThreadPool(4);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		executor.shutdown();
+	}
+	
+	public void testBatchOperations() throws Exception {
+		int tested = 0;
+		for (GroupCreator creator : getGroups()){
+			DlogGroup dlog;
+			try {
+				dlog = creator.create();
+			} catch (LinkageError e) {
+				//The native library of this group is not installed.
+				continue;
+			}
+			checkExponentiate(creator.name, dlog);
+			checkMultiply(creator.name, dlog);
+			checkIsMember(creator.name, dlog);
+			checkIllegalLengths(creator.name, dlog);
+			tested++;
+		}
+		assertTrue(tested >= 2);
+	}
+	
+	private List<GroupCreator> getGroups(){
+		List<GroupCreator> groups = new ArrayList<GroupCreator>();
+		groups.add(new GroupCreator("BcDlogECF2m"){
+			DlogGroup create() throws Exception {
+				return new BcDlogECF2m("B-163");
+			}
+		});
+		groups.add(new GroupCreator("BcDlogECF2m in parallel"){
+			DlogGroup create() throws Exception {
+				BcDlogECF2m dlog = new BcDlogECF2m("B-163");
+				dlog.setParallelExecution(executor);
+				return dlog;
+			}
+		});
+		groups.add(new GroupCreator("OpenSSLDlogECF2m"){
+			DlogGroup create() throws Exception {
+				return new OpenSSLDlogECF2m("B-163");
+			}
+		});
+		groups.add(new GroupCreator("OpenSSLDlogECFp"){
+			DlogGroup create() throws Exception {
+				return new OpenSSLDlogECFp("P-192");
+			}
+		});
+		groups.add(new GroupCreator("OpenSSLDlogZpSafePrime"){
+			DlogGroup create() throws Exception {
+				return new OpenSSLDlogZpSafePrime(128);
+			}
+		});
+		groups.add(new GroupCreator("CryptoPpDlogZpSafePrime"){
+			DlogGroup create() throws Exception {
+				return new CryptoPpDlogZpSafePrime(128);
+			}
+		});
+		groups.add(new GroupCreator("MiraclDlogECF2m"){
+			DlogGroup create() throws Exception {
+				return new MiraclDlogECF2m("B-163");
+			}
+		});
+		groups.add(new GroupCreator("MiraclDlogECFp"){
+			DlogGroup create() throws Exception {
+				return new MiraclDlogECFp("P-192");
+			}
+		});
+		return groups;
+	}
+	
+	private void checkExponentiate(String name, DlogGroup dlog){
+		GroupElement[] bases = randomElements(dlog);
+		BigInteger[] exponents = new BigInteger[BATCH_SIZE];
+		for (int i = 0; i < BATCH_SIZE; i++){
+			exponents[i] = new BigInteger(dlog.getOrder().bitLength() - 1, random);
+		}
+		exponents[1] = BigInteger.ZERO;
+		exponents[2] = BigInteger.ONE;
+		exponents[3] = dlog.getOrder().subtract(BigInteger.ONE);
+		
+		GroupElement[] results = dlog.exponentiate(bases, exponents);
+		assertEquals(name, BATCH_SIZE, results.length);
+		for (int i = 0; i < BATCH_SIZE; i++){
+			FixedBaseCombTableTest.assertSameElement(name + " exponentiation " + i, dlog.exponentiate(bases[i], exponents[i]), results[i]);
+		}
+		assertEquals(name, 0, dlog.exponentiate(new GroupElement[0], new BigInteger[0]).length);
+	}
+	
+	private void checkMultiply(String name, DlogGroup dlog){
+		GroupElement[] elements1 = randomElements(dlog);
+		GroupElement[] elements2 = randomElements(dlog);
+		//An element multiplied by itself and by its inverse.
+		elements2[4] = elements1[4];
+		elements2[5] = dlog.getInverse(elements1[5]);
+		
+		GroupElement[] results = dlog.multiplyGroupElements(elements1, elements2);
+		assertEquals(name, BATCH_SIZE, results.length);
+		for (int i = 0; i < BATCH_SIZE; i++){
+			FixedBaseCombTableTest.assertSameElement(name + " multiplication " + i, 
+					dlog.multiplyGroupElements(elements1[i], elements2[i]), results[i]);
+		}
+		assertTrue(name, results[5].isIdentity());
+	}
+	
+	private void checkIsMember(String name, DlogGroup dlog){
+		GroupElement[] elements = randomElements(dlog);
+		boolean[] results = dlog.isMember(elements);
+		assertEquals(name, BATCH_SIZE, results.length);
+		for (int i = 0; i < BATCH_SIZE; i++){
+			assertEquals(name + " member " + i, dlog.isMember(elements[i]), results[i]);
+		}
+	}
+	
+	private void checkIllegalLengths(String name, DlogGroup dlog){
+		GroupElement[] elements = randomElements(dlog);
+		try {
+			dlog.exponentiate(elements, new BigInteger[BATCH_SIZE - 1]);
+			fail(name + ": expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		try {
+			dlog.multiplyGroupElements(elements, new GroupElement[BATCH_SIZE + 1]);
+			fail(name + ": expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+	
+	/**
+	 * Returns random elements, along with the identity and the generator.
+	 */
+	private GroupElement[] randomElements(DlogGroup dlog){
+		GroupElement[] elements = new GroupElement[BATCH_SIZE];
+		for (int i = 0; i < BATCH_SIZE; i++){
+			elements[i] = dlog.createRandomElement();
+		}
+		elements[0] = dlog.getIdentity();
+		elements[6] = dlog.getGenerator();
+		return elements;
+	}
+}
@@ -0,0 +1,116 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.primitives.dlog;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.primitives.dlog.bc.BcDlogECF2m;
+
+/**
+ * Tests that the {@link FixedBaseCombTable} gives the same results as a plain exponentiation.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class FixedBaseCombTableTest extends TestCase {
+
+	//Pairs of window and number of tables. The last pair has more tables than columns.
+	private static final int[][] PARAMETERS = {{6, 2}, {1, 1}, {4, 3}, {8, 1}, {3, 100}};
+	
+	private DlogGroupAbs dlog;
+	private GroupElement base;
+	private Random random;
+	
+	@Override
+	protected void setUp() throws Exception {
+		dlog = new BcDlogECF2m("B-163");
+		base = dlog.createRandomElement();
+		random = new Random(1);
+	}
+	
+	public void testAllParameters() throws Exception {
+		int numberOfBits = dlog.getOrder().bitLength();
+		for (int p = 0; p < PARAMETERS.length; p++){
+			int window = PARAMETERS[p][0];
+			int numberOfTables = PARAMETERS[p][1];
+			FixedBaseCombTable table = new FixedBaseCombTable(dlog, base, numberOfBits, window, numberOfTables);
+			assertEquals(FixedBaseCombTable.getNumberOfElements(numberOfBits, window, numberOfTables), table.getTables().length << window);
+			
+			String message = "window " + window + ", " + numberOfTables + " tables";
+			BigInteger[] exponents = {BigInteger.ZERO, BigInteger.ONE, dlog.getOrder().subtract(BigInteger.ONE), dlog.getOrder(), 
+					BigInteger.ONE.shiftLeft(numberOfBits).subtract(BigInteger.ONE)};
+			for (int i = 0; i < exponents.length; i++){
+				assertSameElement(message, dlog.exponentiate(base, exponents[i]), table.exponentiate(exponents[i]));
+			}
+			for (int i = 0; i < 10; i++){
+				BigInteger exponent = new BigInteger(numberOfBits, random);
+				assertSameElement(message, dlog.exponentiate(base, exponent), table.exponentiate(exponent));
+			}
+		}
+	}
+	
+	public void testExponentsOutOfTheTables() throws Exception {
+		dlog.setPreComputationParameters(4, 2);
+		//The tables support exponents of up to the bit length of the order. Other exponents are computed directly.
+		BigInteger[] exponents = {BigInteger.valueOf(-5), dlog.getOrder().negate(), dlog.getOrder().shiftLeft(3).add(BigInteger.ONE)};
+		for (int i = 0; i < exponents.length; i++){
+			assertSameElement(exponents[i].toString(), dlog.exponentiate(base, exponents[i]), dlog.exponentiateWithPreComputedValues(base, exponents[i]));
+		}
+	}
+	
+	public void testSeveralBases() throws Exception {
+		dlog.setPreComputationParameters(5, 2);
+		GroupElement[] bases = {base, dlog.getGenerator(), dlog.getIdentity(), dlog.createRandomElement()};
+		for (int i = 0; i < 20; i++){
+			GroupElement b = bases[i % bases.length];
+			BigInteger exponent = new BigInteger(dlog.getOrder().bitLength(), random);
+			assertSameElement("base " + (i % bases.length), dlog.exponentiate(b, exponent), dlog.exponentiateWithPreComputedValues(b, exponent));
+		}
+	}
+	
+	public void testIllegalParameters() throws Exception {
+		int[][] illegal = {{0, 1}, {17, 1}, {4, 0}};
+		for (int i = 0; i < illegal.length; i++){
+			try {
+				dlog.setPreComputationParameters(illegal[i][0], illegal[i][1]);
+				fail("window " + illegal[i][0] + " and " + illegal[i][1] + " tables were accepted");
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+		}
+	}
+	
+	/**
+	 * Checks that the given elements are equal. The identity is compared separately, since it can not be compared by equals 
+	 * in all the groups.
+	 */
+	static void assertSameElement(String message, GroupElement expected, GroupElement actual){
+		assertEquals(message, expected.isIdentity(), actual.isIdentity());
+		if (!expected.isIdentity()){
+			assertEquals(message, expected, actual);
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.primitives.dlog;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.primitives.dlog.bc.BcDlogECF2m;
+
+/**
+ * Tests that the bounded cache of the fixed base tables gives the same results as plain exponentiations, evicts the least 
+ * recently used tables and counts its hits, misses and evictions.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class FixedBaseTableCacheTest extends TestCase {
+
+	private DlogGroupAbs dlog;
+	private FixedBaseTableCache cache;
+	private int tableSize;
+	private Random random;
+	
+	@Override
+	protected void setUp() throws Exception {
+		dlog = new BcDlogECF2m("B-163");
+		dlog.setPreComputationParameters(4, 2);
+		cache = dlog.getPreComputationCache();
+		tableSize = FixedBaseCombTable.getNumberOfElements(dlog.getOrder().bitLength(), 4, 2);
+		random = new Random(5);
+	}
+	
+	public void testConcurrentExponentiations() throws Exception {
+		cache.setLimits(5, 1 << 16);
+		final GroupElement[] bases = new GroupElement[12];
+		for (int i = 0; i < bases.length; i++){
+			bases[i] = dlog.createRandomElement();
+		}
+		
+		//Each thread mostly uses the first three bases, and sometimes the others, so that tables are evicted while they are used.
+		int threads = 8;
+		final int exponentiations = 100;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int t = 0; t < threads; t++){
+			final int seed = t;
+			tasks.add(new Callable<Object>(){
+				@Override
+				public Object call() throws Exception {
+					Random random = new Random(seed);
+					for (int i = 0; i < exponentiations; i++){
+						GroupElement base = bases[random.nextInt(random.nextBoolean() ? 3 : bases.length)];
+						BigInteger exponent = new BigInteger(dlog.getOrder().bitLength(), random);
+						FixedBaseCombTableTest.assertSameElement("thread " + seed, dlog.exponentiate(base, exponent), 
+								dlog.exponentiateWithPreComputedValues(base, exponent));
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Object> future : executor.invokeAll(tasks)){
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		assertTrue(cache.size() <= 5);
+		assertEquals(cache.size() * tableSize, cache.getNumberOfElements());
+		assertEquals(threads * exponentiations, cache.getHits() + cache.getMisses());
+		assertEquals(cache.getMisses() - cache.size(), cache.getEvictions());
+	}
+	
+	public void testLeastRecentlyUsedEviction() throws Exception {
+		cache.setLimits(2, 1 << 16);
+		GroupElement a = dlog.createRandomElement();
+		GroupElement b = dlog.createRandomElement();
+		GroupElement c = dlog.createRandomElement();
+		
+		exponentiate(a);	//miss
+		exponentiate(b);	//miss
+		exponentiate(a);	//hit, so b is the least recently used base
+		exponentiate(c);	//miss, evicts b
+		exponentiate(a);	//hit
+		exponentiate(b);	//miss, evicts c
+		
+		assertEquals(2, cache.getHits());
+		assertEquals(4, cache.getMisses());
+		assertEquals(2, cache.getEvictions());
+		assertEquals(2, cache.size());
+		assertEquals(2 * tableSize, cache.getNumberOfElements());
+	}
+	
+	public void testElementsBound() throws Exception {
+		cache.setLimits(100, 3 * tableSize);
+		for (int i = 0; i < 5; i++){
+			exponentiate(dlog.createRandomElement());
+		}
+		assertEquals(3, cache.size());
+		assertEquals(3 * tableSize, cache.getNumberOfElements());
+		assertEquals(2, cache.getEvictions());
+		
+		//Shrinking the bounds evicts tables, but a single table is kept even if it is larger than the bound.
+		cache.setLimits(100, 1);
+		assertEquals(1, cache.size());
+		assertEquals(tableSize, cache.getNumberOfElements());
+		assertEquals(4, cache.getEvictions());
+	}
+	
+	public void testEqualElementsShareTable() throws Exception {
+		GroupElement h = dlog.createRandomElement();
+		GroupElement copy = dlog.reconstructElement(true, h.generateSendableData());
+		exponentiate(h);
+		exponentiate(copy);
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.size());
+	}
+	
+	public void testParametersAreInTheKey() throws Exception {
+		GroupElement h = dlog.createRandomElement();
+		exponentiate(h);
+		
+		//A table of other parameters is built, and the result is the same.
+		dlog.setPreComputationParameters(3, 1);
+		exponentiate(h);
+		assertEquals(2, cache.getMisses());
+		assertEquals(2, cache.size());
+		assertEquals(tableSize + FixedBaseCombTable.getNumberOfElements(dlog.getOrder().bitLength(), 3, 1), cache.getNumberOfElements());
+		
+		//Going back to the previous parameters uses the previous table.
+		dlog.setPreComputationParameters(4, 2);
+		exponentiate(h);
+		assertEquals(1, cache.getHits());
+		
+		//Ending the base removes the tables of all the parameters.
+		dlog.endExponentiateWithPreComputedValues(h);
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getNumberOfElements());
+	}
+	
+	public void testEndAndClear() throws Exception {
+		GroupElement a = dlog.createRandomElement();
+		GroupElement b = dlog.createRandomElement();
+		exponentiate(a);
+		exponentiate(b);
+		
+		dlog.endExponentiateWithPreComputedValues(a);
+		assertEquals(1, cache.size());
+		assertEquals(tableSize, cache.getNumberOfElements());
+		
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getNumberOfElements());
+		
+		//The tables are built again after they were removed.
+		exponentiate(a);
+		exponentiate(b);
+		assertEquals(4, cache.getMisses());
+		assertEquals(0, cache.getHits());
+		assertEquals(0, cache.getEvictions());
+	}
+	
+	public void testIllegalLimits() throws Exception {
+		try {
+			cache.setLimits(0, 100);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		try {
+			cache.setLimits(100, 0);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+	
+	/**
+	 * Checks one exponentiation with the tables of the given base against a plain exponentiation.
+	 */
+	private void exponentiate(GroupElement base){
+		BigInteger exponent = new BigInteger(dlog.getOrder().bitLength() - 1, random);
+		FixedBaseCombTableTest.assertSameElement("exponentiation", dlog.exponentiate(base, exponent), 
+				dlog.exponentiateWithPreComputedValues(base, exponent));
+	}
+}
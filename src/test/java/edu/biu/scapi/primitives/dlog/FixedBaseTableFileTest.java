@@ -0,0 +1,154 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.primitives.dlog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.exceptions.InvalidDlogGroupException;
+import edu.biu.scapi.exceptions.ScapiRuntimeException;
+import edu.biu.scapi.primitives.dlog.bc.BcDlogECF2m;
+
+/**
+ * Tests that fixed base tables that were exported to a file and imported by another instance of the group give the same results 
+ * as plain exponentiations, and that invalid files are rejected.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class FixedBaseTableFileTest extends TestCase {
+
+	private DlogGroupAbs dlog;
+	private GroupElement h;
+	private File file;
+	
+	@Override
+	protected void setUp() throws Exception {
+		dlog = new BcDlogECF2m("B-163");
+		dlog.setPreComputationParameters(5, 2);
+		h = dlog.createRandomElement();
+		file = File.createTempFile("tables", ".bin");
+		dlog.exportPreComputedValues(file, dlog.getGenerator(), h);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+	
+	public void testExportAndImport() throws Exception {
+		DlogGroupAbs other = new BcDlogECF2m("B-163");
+		//The imported tables are used instead of tables of these parameters.
+		other.setPreComputationParameters(2, 1);
+		other.importPreComputedValues(file, true);
+		GroupElement otherH = other.reconstructElement(true, h.generateSendableData());
+		
+		Random random = new Random(7);
+		for (int i = 0; i < 50; i++){
+			BigInteger exponent = new BigInteger(other.getOrder().bitLength(), random);
+			FixedBaseCombTableTest.assertSameElement("h", other.exponentiate(otherH, exponent), 
+					other.exponentiateWithPreComputedValues(otherH, exponent));
+			FixedBaseCombTableTest.assertSameElement("generator", other.exponentiate(other.getGenerator(), exponent), 
+					other.exponentiateWithPreComputedValues(other.getGenerator(), exponent));
+		}
+		FixedBaseTableCache cache = other.getPreComputationCache();
+		int tableSize = FixedBaseCombTable.getNumberOfElements(other.getOrder().bitLength(), 5, 2);
+		assertEquals(2, cache.getMisses());
+		assertEquals(2 * tableSize, cache.getNumberOfElements());
+		
+		//A cleared table is read from the file again.
+		cache.clear();
+		FixedBaseCombTableTest.assertSameElement("h after clear", other.exponentiate(otherH, BigInteger.TEN), 
+				other.exponentiateWithPreComputedValues(otherH, BigInteger.TEN));
+		assertEquals(tableSize, cache.getNumberOfElements());
+	}
+	
+	public void testWrongGroup() throws Exception {
+		try {
+			new BcDlogECF2m("K-233").importPreComputedValues(file, false);
+			fail("expected InvalidDlogGroupException");
+		} catch (InvalidDlogGroupException e) {
+			//expected
+		}
+	}
+	
+	public void testTruncatedFile() throws Exception {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(file.length() - 100);
+		} finally {
+			raf.close();
+		}
+		try {
+			new BcDlogECF2m("B-163").importPreComputedValues(file, false);
+			fail("expected IOException");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+	
+	public void testNotTablesFile() throws Exception {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(new byte[1000]);
+		} finally {
+			out.close();
+		}
+		try {
+			new BcDlogECF2m("B-163").importPreComputedValues(file, false);
+			fail("expected IOException");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+	
+	public void testElementNotInGroup() throws Exception {
+		//Changes the last coordinate in the file, so that the last element of the table of h is not on the curve.
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(file.length() - 1);
+			int last = raf.read();
+			raf.seek(file.length() - 1);
+			raf.write(last ^ 1);
+		} finally {
+			raf.close();
+		}
+		DlogGroupAbs other = new BcDlogECF2m("B-163");
+		other.importPreComputedValues(file, true);
+		GroupElement otherH = other.reconstructElement(true, h.generateSendableData());
+		try {
+			other.exponentiateWithPreComputedValues(otherH, BigInteger.TEN);
+			fail("expected ScapiRuntimeException");
+		} catch (ScapiRuntimeException e) {
+			//expected
+		}
+		//The failed table is not kept in the cache.
+		assertEquals(0, other.getPreComputationCache().size());
+	}
+}
@@ -0,0 +1,135 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.primitives.dlog;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+import edu.biu.scapi.primitives.dlog.bc.BcDlogECF2m;
+
+/**
+ * Tests that the bucket multi-exponentiation of Pippenger gives the same results as separate exponentiations.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class PippengerExponentiationTest extends TestCase {
+
+	private DlogGroupAbs dlog;
+	private Random random;
+	
+	@Override
+	protected void setUp() throws Exception {
+		dlog = new BcDlogECF2m("B-163");
+		random = new Random(2);
+	}
+	
+	public void testNumbersOfBases() throws Exception {
+		//The simultaneous exponentiation uses Pippenger from 256 bases.
+		int[] sizes = {1, 2, 63, 255, 256, 300};
+		for (int i = 0; i < sizes.length; i++){
+			GroupElement[] bases = randomBases(sizes[i]);
+			BigInteger[] exponents = randomExponents(sizes[i]);
+			GroupElement expected = product(bases, exponents);
+			FixedBaseCombTableTest.assertSameElement(sizes[i] + " bases", expected, dlog.computePippenger(bases, exponents));
+			FixedBaseCombTableTest.assertSameElement(sizes[i] + " bases", expected, dlog.simultaneousMultipleExponentiations(bases, exponents));
+		}
+	}
+	
+	public void testSpecialExponents() throws Exception {
+		int n = 80;
+		GroupElement[] bases = randomBases(n);
+		BigInteger[] exponents = randomExponents(n);
+		//Zero and small exponents, an exponent that is larger than the order, the identity and a repeated base.
+		exponents[0] = BigInteger.ZERO;
+		exponents[1] = BigInteger.ONE;
+		exponents[2] = dlog.getOrder().shiftLeft(5).add(BigInteger.TEN);
+		bases[3] = dlog.getIdentity();
+		bases[4] = bases[5];
+		FixedBaseCombTableTest.assertSameElement("special exponents", product(bases, exponents), dlog.computePippenger(bases, exponents));
+		
+		//A negative exponent.
+		exponents[6] = exponents[6].negate();
+		FixedBaseCombTableTest.assertSameElement("negative exponent", product(bases, exponents), dlog.computePippenger(bases, exponents));
+		
+		//All the exponents are zero.
+		BigInteger[] zeros = new BigInteger[n];
+		for (int i = 0; i < n; i++){
+			zeros[i] = BigInteger.ZERO;
+		}
+		assertTrue(dlog.computePippenger(bases, zeros).isIdentity());
+		
+		//The result is the identity: g^e * g^(-e).
+		GroupElement[] pair = {bases[7], bases[7]};
+		BigInteger[] opposite = {exponents[7], dlog.getOrder().subtract(exponents[7])};
+		assertTrue(dlog.computePippenger(pair, opposite).isIdentity());
+	}
+	
+	public void testParallelWindows() throws Exception {
+		int n = 100;
+		GroupElement[] bases = randomBases(n);
+		BigInteger[] exponents = randomExponents(n);
+		GroupElement expected = dlog.computePippenger(bases, exponents);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			dlog.setParallelExecution(executor);
+			FixedBaseCombTableTest.assertSameElement("parallel", expected, dlog.computePippenger(bases, exponents));
+			FixedBaseCombTableTest.assertSameElement("parallel", product(bases, exponents), dlog.simultaneousMultipleExponentiations(bases, exponents));
+		} finally {
+			dlog.setParallelExecution(null);
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Computes the product of the exponentiations one by one.
+	 */
+	private GroupElement product(GroupElement[] bases, BigInteger[] exponents){
+		GroupElement result = dlog.getIdentity();
+		for (int i = 0; i < bases.length; i++){
+			result = dlog.multiplyGroupElements(result, dlog.exponentiate(bases[i], exponents[i]));
+		}
+		return result;
+	}
+	
+	private GroupElement[] randomBases(int n){
+		GroupElement[] bases = new GroupElement[n];
+		for (int i = 0; i < n; i++){
+			bases[i] = dlog.createRandomElement();
+		}
+		return bases;
+	}
+	
+	private BigInteger[] randomExponents(int n){
+		BigInteger[] exponents = new BigInteger[n];
+		for (int i = 0; i < n; i++){
+			exponents[i] = new BigInteger(dlog.getOrder().bitLength(), random).mod(dlog.getOrder());
+		}
+		return exponents;
+	}
+}